@@ -227,6 +227,17 @@ public class Console
 		return input;
 	}
 
+	/**
+	 * Prints a line to the error output stream.
+	 *
+	 * @param string The string to print.
+	 */
+	protected void printlnError( String string )
+	{
+		carriageReturn();
+		this.err.println( string );
+	}
+
 	/**
 	 * Prints a stacktrace to the error output stream.
 	 *
@@ -127,6 +127,13 @@ public class Progress extends ProgressListener implements ConfigListener
 		}
 	}
 
+	@Override
+	protected void statistics( String message ) {
+		if( verbose ) {
+			console.printlnError( "STATISTICS: " + message ); // Kept out of the normal output
+		}
+	}
+
 	@Override
 	public void print( String message ) {
 		console.carriageReturn();
@@ -171,6 +171,13 @@ public class Progress extends ProgressListener
 		verbose( "DEBUG: " + message );
 	}
 
+	@Override
+	protected void statistics( String message )
+	{
+		flush();
+		this.project.log( this.task, "STATISTICS: " + message, Project.MSG_DEBUG );
+	}
+
 	@Override
 	public void print( String message )
 	{
@@ -38,6 +38,11 @@ import solidstack.script.scopes.Scope;
  */
 abstract public class CommandContext
 {
+	/**
+	 * The fetch size that sizes the fetches automatically.
+	 */
+	static public final int FETCH_SIZE_AUTO = -1;
+
 	/**
 	 * The parent execution context.
 	 */
@@ -91,6 +96,21 @@ abstract public class CommandContext
 
 	private CommitStrategy commitStrategy;
 
+	/**
+	 * The maximum number of statements in a batch, 0 if batching is off.
+	 */
+	private int batchStatements;
+
+	/**
+	 * The maximum number of statements that are executed concurrently, 0 if parallel execution is off.
+	 */
+	private int parallelStatements;
+
+	/**
+	 * The default fetch size for queries with large results, null if not set.
+	 */
+	private Integer fetchSize;
+
 	/**
 	 * The scripting scope.
 	 */
@@ -119,6 +139,7 @@ abstract public class CommandContext
 		jdbcEscaping = parent.jdbcEscaping;
 		sectionLevel = parent.sectionLevel;
 		currentDatabase = parent.currentDatabase;
+		fetchSize = parent.fetchSize;
 		// TODO Inherit scope from parent?
 
 		// no inherit
@@ -397,6 +418,56 @@ abstract public class CommandContext
 		commitStrategy = strategy;
 	}
 
+	/**
+	 * @return The maximum number of statements in a batch, 0 if batching is off.
+	 */
+	public int getBatchStatements() {
+		return batchStatements;
+	}
+
+	/**
+	 * Sets the maximum number of statements in a batch.
+	 *
+	 * @param batchStatements The maximum number of statements in a batch, 0 to turn batching off.
+	 */
+	public void setBatchStatements( int batchStatements ) {
+		this.batchStatements = batchStatements;
+	}
+
+	/**
+	 * @return The maximum number of statements that are executed concurrently, 0 if parallel execution is off.
+	 */
+	public int getParallelStatements() {
+		return parallelStatements;
+	}
+
+	/**
+	 * Sets the maximum number of statements that are executed concurrently. Parallel execution takes precedence over
+	 * batching.
+	 *
+	 * @param parallelStatements The maximum number of statements that are executed concurrently, 0 to turn parallel
+	 *        execution off.
+	 */
+	public void setParallelStatements( int parallelStatements ) {
+		this.parallelStatements = parallelStatements;
+	}
+
+	/**
+	 * @return The default fetch size for queries with large results, {@link #FETCH_SIZE_AUTO}, or null if not set.
+	 */
+	public Integer getFetchSize() {
+		return fetchSize;
+	}
+
+	/**
+	 * Sets the default fetch size for queries with large results, like the queries of the exports.
+	 *
+	 * @param fetchSize The fetch size, {@link #FETCH_SIZE_AUTO}, or null to reset it.
+	 */
+	public void setFetchSize( Integer fetchSize ) {
+		this.fetchSize = fetchSize;
+	}
+
 	/**
 	 * Are we in transient mode?
 	 *
@@ -16,20 +16,35 @@
 
 package solidbase.core;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import solidbase.core.Delimiter.Type;
 import solidbase.util.Assert;
+import solidbase.util.LRUCache;
 import solidstack.io.Resource;
 import solidstack.io.SourceException;
 import solidstack.io.SourceLocation;
 import solidstack.io.SourceReader;
 import solidstack.io.SourceReaders;
+import solidstack.lang.ThreadInterrupted;
 import solidstack.script.Script;
 import solidstack.script.ScriptParser;
 import solidstack.script.expressions.Expression;
@@ -155,6 +170,36 @@ abstract public class CommandProcessor
 	 */
 	static protected Pattern RESET_COMMIT_STRATEGY = Pattern.compile( "RESET\\s+COMMIT_STRATEGY", Pattern.CASE_INSENSITIVE );
 
+	/**
+	 * Pattern for FETCH_SIZE.
+	 */
+	static protected Pattern SET_FETCH_SIZE = Pattern.compile( "SET\\s+FETCH_SIZE\\s+=\\s+(\\d+|AUTO)", Pattern.CASE_INSENSITIVE );
+
+	/**
+	 * Pattern for FETCH_SIZE.
+	 */
+	static protected Pattern RESET_FETCH_SIZE = Pattern.compile( "RESET\\s+FETCH_SIZE", Pattern.CASE_INSENSITIVE );
+
+	/**
+	 * Pattern for BATCH STATEMENTS.
+	 */
+	static protected Pattern BATCH_STATEMENTS = Pattern.compile( "BATCH\\s+STATEMENTS\\s+(\\d+)", Pattern.CASE_INSENSITIVE );
+
+	/**
+	 * Pattern for END BATCH.
+	 */
+	static protected Pattern END_BATCH = Pattern.compile( "END\\s+BATCH|/BATCH", Pattern.CASE_INSENSITIVE );
+
+	/**
+	 * Pattern for PARALLEL STATEMENTS.
+	 */
+	static protected Pattern PARALLEL_STATEMENTS = Pattern.compile( "PARALLEL\\s+STATEMENTS\\s+(\\d+)", Pattern.CASE_INSENSITIVE );
+
+	/**
+	 * Pattern for END PARALLEL.
+	 */
+	static protected Pattern END_PARALLEL = Pattern.compile( "END\\s+PARALLEL|/PARALLEL", Pattern.CASE_INSENSITIVE );
+
 	// TODO Commit pattern
 //	static protected final Pattern commitPattern = Pattern.compile( "COMMIT", Pattern.CASE_INSENSITIVE );
 
@@ -165,6 +210,26 @@ abstract public class CommandProcessor
 	// TODO Only with { }?
 	static protected Pattern placeHolderPattern = Pattern.compile( "&(([A-Za-z\\$_][A-Za-z0-9\\$_]*)|\\{([A-Za-z\\$_][A-Za-z0-9\\$_]*)\\})" );
 
+	/**
+	 * The maximum number of compiled expressions and scripts that are cached.
+	 */
+	static public final int SCRIPT_CACHE_SIZE = 1000;
+
+	/**
+	 * Commands and scripts longer than this are not cached.
+	 */
+	static public final int SCRIPT_CACHE_MAX_LENGTH = 0x2000;
+
+	/**
+	 * Compiled expressions of expanded commands, indexed by location and command text.
+	 */
+	static private final Map<String, Expression> expressions = Collections.synchronizedMap( new LRUCache<String, Expression>( SCRIPT_CACHE_SIZE ) );
+
+	/**
+	 * Compiled scripts of SCRIPT and IF SCRIPT annotations, indexed by location and script text.
+	 */
+	static private final Map<String, Script> scripts = Collections.synchronizedMap( new LRUCache<String, Script>( SCRIPT_CACHE_SIZE ) );
+
 	/**
 	 * Current execution context.
 	 */
@@ -175,6 +240,38 @@ abstract public class CommandProcessor
 	 */
 	protected ProgressListener progress;
 
+	/**
+	 * The statement that holds the current batch, or null.
+	 */
+	private Statement batchStatement;
+
+	/**
+	 * The commands in the current batch.
+	 */
+	private List<Command> batchCommands = new ArrayList<>();
+
+	/**
+	 * The threads that execute the statements of the current PARALLEL block, or null.
+	 */
+	private ExecutorService parallelExecutor;
+
+	/**
+	 * The number of threads of {@link #parallelExecutor}.
+	 */
+	private int parallelThreads;
+
+	/**
+	 * The connections of the current PARALLEL block, one for each statement of a group. They are kept until the end of
+	 * the block.
+	 */
+	private List<Connection> parallelConnections = new ArrayList<>();
+
+	/**
+	 * The database and user of {@link #parallelConnections}.
+	 */
+	private Database parallelDatabase;
+	private String parallelUser;
+
 	/**
 	 * Constructor.
 	 *
@@ -247,7 +344,8 @@ abstract public class CommandProcessor
 	}
 
 	/**
-	 * Substitutes place holders in the command.
+	 * Substitutes place holders in the command. Commands without a $ or \ are returned as they are, because the
+	 * expansion would not change them. The compiled expressions of other commands are cached.
 	 *
 	 * @param command The command.
 	 * @return The expanded command.
@@ -257,11 +355,22 @@ abstract public class CommandProcessor
 			return command;
 		}
 
-//		if( !command.getCommand().contains( "${" ) ) {
-//			return command;
-//		}
+		String text = command.getCommand();
+		if( text.indexOf( '$' ) < 0 && text.indexOf( '\\' ) < 0 ) {
+			return command;
+		}
 
-		Expression expression = ScriptParser.parseString( command.getCommand(), command.getLocation() );
+		Expression expression;
+		if( text.length() <= SCRIPT_CACHE_MAX_LENGTH ) {
+			String key = command.getLocation() + "\n" + text;
+			expression = expressions.get( key );
+			if( expression == null ) {
+				expression = ScriptParser.parseString( text, command.getLocation() );
+				expressions.put( key, expression );
+			}
+		} else {
+			expression = ScriptParser.parseString( text, command.getLocation() );
+		}
 		Object object = Script.eval( expression, context.getScope() );
 		return command.withCommand( object.toString() );
 
@@ -280,111 +389,20 @@ abstract public class CommandProcessor
 	 */
 	protected boolean executeListeners( Command command, boolean skip ) throws SQLException {
 		String sql = command.getCommand();
-		Matcher matcher;
+		String keyword = getKeyword( sql );
 		if( command.isAnnotation() ) {
-			if( ( matcher = sectionPattern.matcher( sql ) ).matches() ) {
-				section( matcher.group( 1 ), matcher.group( 2 ), command );
-				return true;
-			}
-			if( ( matcher = delimiterPattern.matcher( sql ) ).matches() || ( matcher = terminatorPattern.matcher( sql ) ).matches() ) {
-				setDelimiters( parseDelimiters( matcher ) );
-				return true;
-			}
-			if( resetTerminatorPattern.matcher( sql ).matches() ) {
-				setDelimiters( null );
-				return true;
-			}
-			if( ( matcher = ignoreSqlErrorPattern.matcher( sql ) ).matches() ) {
-				context.pushIgnores( matcher.group( 1 ) );
-				return true;
-			}
-			if( ignoreEnd.matcher( sql ).matches() ) {
-				context.popIgnores();
-				return true;
-			}
-			if( ( matcher = selectConnectionPattern.matcher( sql ) ).matches() ) {
-				selectConnection( matcher.group( 1 ), command );
-				return true;
-			}
-			if( ( matcher = IF_SCRIPT_COMMAND.matcher( sql ) ).matches() ) {
-				ifScript( matcher.group( 1 ), command.getLocation() );
-				return true;
-			}
-			if( elsePattern.matcher( sql ).matches() ) {
-				context.doElse( command.getLocation() );
-				return true;
-			}
-			if( ifEndPattern.matcher( sql ).matches() ) {
-				context.endIf( command.getLocation() );
-				return true;
-			}
-			if( ( matcher = setUserPattern.matcher( sql ) ).matches() ) {
-				setUser( matcher.group( 1 ) );
-				return true;
-			}
-			if( skipPattern.matcher( sql ).matches() ) {
-				context.skip( true );
-				return true;
-			}
-			if( skipEnd.matcher( sql ).matches() ) {
-				context.endSkip( command.getLocation() );
-				return true;
-			}
-			if( ( matcher = JDBC_ESCAPING.matcher( sql ) ).matches() ) {
-				context.setJdbcEscaping( matcher.group( 1 ).equalsIgnoreCase( "ON" ) );
+			if( executeAnnotation( keyword, command ) ) {
 				return true;
 			}
-			if( encodingPattern.matcher( sql ).matches() ) {
-				// Ignore, already picked up by the EncodingDetector
-				// TODO Check that it is the first line, and check with the detected encoding
-				return true;
-			}
-			if( ( matcher = SCRIPT_EXPANSION_COMMAND.matcher( sql ) ).matches() ) {
-				context.setScriptExpansion( "ON".equalsIgnoreCase( matcher.group( 1 ) ) );
-				return true;
-			}
-			if( ( matcher = SCRIPT_COMMAND.matcher( sql ) ).matches() ) {
-				String script = matcher.group( 1 );
-				if( script != null ) {
-					script( script, command.getLocation() );
-				} else {
-					SourceReader reader = getReader();
-					StringBuilder buf = new StringBuilder();
-					while( true ) {
-						String line = reader.readLine();
-						if( line == null ) {
-							throw new SourceException( "Missing END SCRIPT for script", command.getLocation() );
-						}
-						if( END_SCRIPT_COMMAND.matcher( line ).matches() ) {
-							break;
-						}
-						buf.append( line ).append( '\n' );
-					}
-					script( buf.toString(), command.getLocation().nextLine() );
-				}
-				return true;
-			}
-			if( ( matcher = SET_COMMIT_STRATEGY.matcher( sql ) ).matches() ) {
-				context.setCommitStrategy( "AUTOCOMMIT".equalsIgnoreCase( matcher.group( 1 ) ) ? CommitStrategy.AUTOCOMMIT : CommitStrategy.TRANSACTIONAL );
-				return true;
-			}
-			if( RESET_COMMIT_STRATEGY.matcher( sql ).matches() ) {
-				context.setCommitStrategy( null );
-				return true;
-			}
-//			if( commitPattern.matcher( sql ).matches() )
-//			{
-//				getCurrentDatabase().getConnection().commit();
-//				return true;
-//			}
-		} else if( !skip ) {
-			if( ( matcher = runPattern.matcher( sql ) ).matches() ) {
+		} else if( !skip && "RUN".equals( keyword ) ) {
+			Matcher matcher = runPattern.matcher( sql );
+			if( matcher.matches() ) {
 				run( matcher.group( 1 ) );
 				return true;
 			}
 		}
 
-		for( CommandListener listener : PluginManager.listeners ) {
+		for( CommandListener listener : PluginManager.getListeners( keyword ) ) {
 			if( listener.execute( this, command, skip ) ) {
 				return true;
 			}
@@ -393,6 +411,220 @@ abstract public class CommandProcessor
 		return false;
 	}
 
+	/**
+	 * Returns the first word of the given command in upper case. Leading whitespace is skipped. A leading / is part of
+	 * the word.
+	 *
+	 * @param command The command.
+	 * @return The first word of the command in upper case.
+	 */
+	static protected String getKeyword( String command ) {
+		int len = command.length();
+		int start = 0;
+		while( start < len && Character.isWhitespace( command.charAt( start ) ) ) {
+			start++;
+		}
+		int end = start;
+		if( end < len && command.charAt( end ) == '/' ) {
+			end++;
+		}
+		while( end < len ) {
+			char ch = command.charAt( end );
+			if( !Character.isLetterOrDigit( ch ) && ch != '_' ) {
+				break;
+			}
+			end++;
+		}
+		return command.substring( start, end ).toUpperCase( Locale.ENGLISH );
+	}
+
+	/**
+	 * Executes the given annotation. Only the patterns of the annotations that start with the given keyword are
+	 * matched.
+	 *
+	 * @param keyword The first word of the annotation.
+	 * @param command The annotation.
+	 * @return True if the annotation has been executed, false otherwise.
+	 * @throws SQLException If the database throws an exception.
+	 */
+	protected boolean executeAnnotation( String keyword, Command command ) throws SQLException {
+		String sql = command.getCommand();
+		Matcher matcher;
+		switch( keyword ) {
+			case "SECTION":
+				if( ( matcher = sectionPattern.matcher( sql ) ).matches() ) {
+					section( matcher.group( 1 ), matcher.group( 2 ), command );
+					return true;
+				}
+				break;
+			case "SET":
+				if( ( matcher = delimiterPattern.matcher( sql ) ).matches() || ( matcher = terminatorPattern.matcher( sql ) ).matches() ) {
+					setDelimiters( parseDelimiters( matcher ) );
+					return true;
+				}
+				if( ( matcher = setUserPattern.matcher( sql ) ).matches() ) {
+					setUser( matcher.group( 1 ) );
+					return true;
+				}
+				if( ( matcher = SET_COMMIT_STRATEGY.matcher( sql ) ).matches() ) {
+					context.setCommitStrategy( "AUTOCOMMIT".equalsIgnoreCase( matcher.group( 1 ) ) ? CommitStrategy.AUTOCOMMIT : CommitStrategy.TRANSACTIONAL );
+					return true;
+				}
+				if( ( matcher = SET_FETCH_SIZE.matcher( sql ) ).matches() ) {
+					context.setFetchSize( "AUTO".equalsIgnoreCase( matcher.group( 1 ) ) ? CommandContext.FETCH_SIZE_AUTO : Integer.parseInt( matcher.group( 1 ) ) );
+					return true;
+				}
+				break;
+			case "DELIMITER":
+				if( ( matcher = delimiterPattern.matcher( sql ) ).matches() ) {
+					setDelimiters( parseDelimiters( matcher ) );
+					return true;
+				}
+				break;
+			case "RESET":
+				if( resetTerminatorPattern.matcher( sql ).matches() ) {
+					setDelimiters( null );
+					return true;
+				}
+				if( RESET_COMMIT_STRATEGY.matcher( sql ).matches() ) {
+					context.setCommitStrategy( null );
+					return true;
+				}
+				if( RESET_FETCH_SIZE.matcher( sql ).matches() ) {
+					context.setFetchSize( null );
+					return true;
+				}
+				break;
+			case "IGNORE":
+				if( ( matcher = ignoreSqlErrorPattern.matcher( sql ) ).matches() ) {
+					context.pushIgnores( matcher.group( 1 ) );
+					return true;
+				}
+				break;
+			case "BATCH":
+				if( ( matcher = BATCH_STATEMENTS.matcher( sql ) ).matches() ) {
+					executeBatch();
+					context.setBatchStatements( Integer.parseInt( matcher.group( 1 ) ) );
+					return true;
+				}
+				break;
+			case "PARALLEL":
+				if( ( matcher = PARALLEL_STATEMENTS.matcher( sql ) ).matches() ) {
+					if( context.commitStrategy() != CommitStrategy.AUTOCOMMIT ) {
+						// The statements are committed on their own connections, so a transaction of the current connection can't include them
+						throw new SourceException( "PARALLEL STATEMENTS needs SET COMMIT_STRATEGY = AUTOCOMMIT", command.getLocation() );
+					}
+					executeBatch();
+					endParallel();
+					context.setParallelStatements( Integer.parseInt( matcher.group( 1 ) ) );
+					return true;
+				}
+				break;
+			case "END":
+			case "/IGNORE":
+			case "/IF":
+			case "/SKIP":
+			case "/BATCH":
+			case "/PARALLEL":
+				if( ignoreEnd.matcher( sql ).matches() ) {
+					context.popIgnores();
+					return true;
+				}
+				if( ifEndPattern.matcher( sql ).matches() ) {
+					context.endIf( command.getLocation() );
+					return true;
+				}
+				if( skipEnd.matcher( sql ).matches() ) {
+					context.endSkip( command.getLocation() );
+					return true;
+				}
+				if( END_BATCH.matcher( sql ).matches() ) {
+					executeBatch();
+					context.setBatchStatements( 0 );
+					return true;
+				}
+				if( END_PARALLEL.matcher( sql ).matches() ) {
+					executeBatch();
+					endParallel();
+					context.setParallelStatements( 0 );
+					return true;
+				}
+				break;
+			case "USE":
+			case "SELECT":
+				if( ( matcher = selectConnectionPattern.matcher( sql ) ).matches() ) {
+					selectConnection( matcher.group( 1 ), command );
+					return true;
+				}
+				break;
+			case "IF":
+				if( ( matcher = IF_SCRIPT_COMMAND.matcher( sql ) ).matches() ) {
+					ifScript( matcher.group( 1 ), command.getLocation() );
+					return true;
+				}
+				break;
+			case "ELSE":
+				if( elsePattern.matcher( sql ).matches() ) {
+					context.doElse( command.getLocation() );
+					return true;
+				}
+				break;
+			case "SKIP":
+				if( skipPattern.matcher( sql ).matches() ) {
+					context.skip( true );
+					return true;
+				}
+				break;
+			case "JDBC":
+				if( ( matcher = JDBC_ESCAPING.matcher( sql ) ).matches() ) {
+					context.setJdbcEscaping( matcher.group( 1 ).equalsIgnoreCase( "ON" ) );
+					return true;
+				}
+				break;
+			case "ENCODING":
+				if( encodingPattern.matcher( sql ).matches() ) {
+					// Ignore, already picked up by the EncodingDetector
+					// TODO Check that it is the first line, and check with the detected encoding
+					return true;
+				}
+				break;
+			case "SCRIPT":
+				if( ( matcher = SCRIPT_EXPANSION_COMMAND.matcher( sql ) ).matches() ) {
+					context.setScriptExpansion( "ON".equalsIgnoreCase( matcher.group( 1 ) ) );
+					return true;
+				}
+				if( ( matcher = SCRIPT_COMMAND.matcher( sql ) ).matches() ) {
+					String script = matcher.group( 1 );
+					if( script != null ) {
+						script( script, command.getLocation() );
+					} else {
+						SourceReader reader = getReader();
+						StringBuilder buf = new StringBuilder();
+						while( true ) {
+							String line = reader.readLine();
+							if( line == null ) {
+								throw new SourceException( "Missing END SCRIPT for script", command.getLocation() );
+							}
+							if( END_SCRIPT_COMMAND.matcher( line ).matches() ) {
+								break;
+							}
+							buf.append( line ).append( '\n' );
+						}
+						script( buf.toString(), command.getLocation().nextLine() );
+					}
+					return true;
+				}
+				break;
+//			case "COMMIT":
+//				if( commitPattern.matcher( sql ).matches() ) {
+//					getCurrentDatabase().getConnection().commit();
+//					return true;
+//				}
+//				break;
+		}
+		return false;
+	}
+
 	/**
 	 * Creates a new statement from the current connection. JDBC escape processing is enabled or disabled according to
 	 * the current configuration.
@@ -400,12 +632,31 @@ abstract public class CommandProcessor
 	 * @return The statement.
 	 * @throws SQLException Whenever JDBC throws an SQLException.
 	 */
-	// TODO Maybe we should wrap the connection and override the createStatement there.
 	public Statement createStatement() throws SQLException {
-		Connection connection = getCurrentDatabase().getConnection();
-		connection.setAutoCommit( context.commitStrategy() == CommitStrategy.AUTOCOMMIT );
+		Database database = getCurrentDatabase();
+		Connection connection = database.getConnection();
+		database.setAutoCommit( connection, context.commitStrategy() == CommitStrategy.AUTOCOMMIT );
 		Statement statement = connection.createStatement();
-		statement.setEscapeProcessing( context.isJdbcEscaping() );
+		database.setEscapeProcessing( statement, context.isJdbcEscaping() );
+		return statement;
+	}
+
+	/**
+	 * Creates a new statement from the current connection for a query with a large result. With a fetch size other than
+	 * 0 auto commit is turned off, because some drivers, like the one of PostgreSQL, read the whole result into memory
+	 * in auto commit mode. Close the statement with {@link #closeQueryStatement(Statement, boolean)}.
+	 *
+	 * @param fetchSize The fetch size, 0 for the default of the driver.
+	 * @return The statement.
+	 * @throws SQLException Whenever JDBC throws an SQLException.
+	 */
+	public Statement createQueryStatement( int fetchSize ) throws SQLException {
+		Database database = getCurrentDatabase();
+		Connection connection = database.getConnection();
+		database.setAutoCommit( connection, fetchSize == 0 && context.commitStrategy() == CommitStrategy.AUTOCOMMIT );
+		Statement statement = connection.createStatement( ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY );
+		database.setEscapeProcessing( statement, context.isJdbcEscaping() );
+		statement.setFetchSize( fetchSize );
 		return statement;
 	}
 
@@ -417,8 +668,7 @@ abstract public class CommandProcessor
 	 * @throws SQLException Whenever JDBC throws an SQLException.
 	 */
 	public PreparedStatement prepareStatement( String sql ) throws SQLException {
-		Connection connection = getCurrentDatabase().getConnection();
-		connection.setAutoCommit( context.commitStrategy() == CommitStrategy.AUTOCOMMIT );
+		Connection connection = getCurrentConnection();
 		try {
 			return connection.prepareStatement( sql );
 		} catch( SQLException e ) {
@@ -430,6 +680,43 @@ abstract public class CommandProcessor
 //		statement.setEscapeProcessing( this.context.getJdbcEscaping() );
 	}
 
+	/**
+	 * Returns the connection of the current database, with its auto commit mode set according to the current commit
+	 * strategy. For plugins that need to use the connection directly, instead of through a statement.
+	 *
+	 * @return The connection.
+	 * @throws SQLException Whenever JDBC throws an SQLException.
+	 * @see #endTransaction(Connection, boolean)
+	 */
+	public Connection getCurrentConnection() throws SQLException {
+		Database database = getCurrentDatabase();
+		Connection connection = database.getConnection();
+		database.setAutoCommit( connection, context.commitStrategy() == CommitStrategy.AUTOCOMMIT );
+		return connection;
+	}
+
+	/**
+	 * Commits or rollbacks the given connection if the command processor is in auto commit mode.
+	 *
+	 * @param connection The connection.
+	 * @param commitOrRollback If the command processor is in auto commit mode, this boolean indicates if commit or
+	 *        rollback should be called on the connection. If the command processor is not in auto commit mode, this
+	 *        boolean is ignored.
+	 */
+	public void endTransaction( Connection connection, boolean commitOrRollback ) {
+		try {
+			if( implicitCommit() && context.commitStrategy() != CommitStrategy.AUTOCOMMIT ) {
+				if( commitOrRollback ) {
+					connection.commit();
+				} else {
+					connection.rollback();
+				}
+			}
+		} catch( SQLException e ) {
+			throw new SystemException( e );
+		}
+	}
+
 	/**
 	 * Closes the given statement and commits or rollbacks if the command processor is in auto commit mode.
 	 *
@@ -454,6 +741,36 @@ abstract public class CommandProcessor
 		}
 	}
 
+	/**
+	 * Closes a statement that is created with {@link #createQueryStatement(int)}. With the AUTOCOMMIT commit strategy,
+	 * the transaction of the query is ended and auto commit is turned on again, otherwise the read locks would be held
+	 * until the next statement.
+	 *
+	 * @param statement The statement to close.
+	 * @param commitOrRollback Indicates if commit or rollback should be called on the statement's connection.
+	 * @see #closeStatement(Statement, boolean)
+	 */
+	public void closeQueryStatement( Statement statement, boolean commitOrRollback ) {
+		if( context.commitStrategy() != CommitStrategy.AUTOCOMMIT ) {
+			closeStatement( statement, commitOrRollback );
+			return;
+		}
+		try {
+			Connection connection = statement.getConnection();
+			statement.close();
+			if( !connection.getAutoCommit() ) {
+				if( commitOrRollback ) {
+					connection.commit();
+				} else {
+					connection.rollback();
+				}
+				getCurrentDatabase().setAutoCommit( connection, true );
+			}
+		} catch( SQLException e ) {
+			throw new SystemException( e );
+		}
+	}
+
 	/**
 	 * Execute the given command.
 	 *
@@ -478,6 +795,301 @@ abstract public class CommandProcessor
 		}
 	}
 
+	/**
+	 * Can the given command be added to the statement batch? This is the case when batching or parallel execution is
+	 * on and the command is a plain SQL statement that is not handled by a plugin. The first word of the command is checked before script
+	 * expansion.
+	 *
+	 * @param command The command.
+	 * @param skip The command needs to be skipped.
+	 * @return True if the command can be added to the statement batch, false otherwise.
+	 */
+	protected boolean isBatchable( Command command, boolean skip ) {
+		if( skip || command.isAnnotation() || context.getBatchStatements() <= 0 && context.getParallelStatements() <= 0 || context.isTransient() ) {
+			return false;
+		}
+		String sql = command.getCommand();
+		if( sql.length() == 0 ) {
+			return false;
+		}
+		String keyword = getKeyword( sql );
+		return !"RUN".equals( keyword ) && PluginManager.getListeners( keyword ).isEmpty();
+	}
+
+	/**
+	 * Adds the given command to the statement batch. The caller should check {@link #isBatchable(Command, boolean)}
+	 * first, and call {@link #executeBatch()} when {@link #isBatchFull()} returns true.
+	 *
+	 * @param command The command.
+	 * @throws ProcessException Whenever an {@link SQLException} occurs.
+	 */
+	protected void addBatch( Command command ) throws ProcessException {
+		command = expand( command );
+		progress.executing( command );
+		if( context.getParallelStatements() <= 0 ) {
+			try {
+				if( batchStatement == null ) {
+					batchStatement = createStatement();
+				}
+				batchStatement.addBatch( command.getCommand() );
+			} catch( SQLException e ) {
+				ProcessException newException = new ProcessException( e ).addProcess( "executing: " + command.getCommand() ).addLocation( command.getLocation() );
+				progress.exception( newException );
+				throw newException;
+			}
+		}
+		batchCommands.add( command );
+		progress.executed();
+	}
+
+	/**
+	 * @return True if the statement batch contains the maximum number of statements.
+	 */
+	protected boolean isBatchFull() {
+		int parallel = context.getParallelStatements();
+		return batchCommands.size() >= ( parallel > 0 ? parallel : context.getBatchStatements() );
+	}
+
+	/**
+	 * Executes the statement batch, if there is one.
+	 *
+	 * <p>When the batch fails, the failing statement is determined from the {@link BatchUpdateException}, and the
+	 * statements that have not been executed are executed one by one. This way ignored SQL errors and failures are
+	 * handled as if the statements were executed without batching. When the processor commits each statement and
+	 * auto commit is off, nothing of the batch has been committed yet. In that case the batch is rolled back and all
+	 * of its statements are executed one by one.</p>
+	 *
+	 * <p>Statements that are collected for parallel execution are executed by {@link #executeParallel()}.</p>
+	 *
+	 * @throws ProcessException Whenever an {@link SQLException} occurs that is not ignored.
+	 */
+	protected void executeBatch() throws ProcessException {
+		Statement statement = batchStatement;
+		if( statement == null ) {
+			if( !batchCommands.isEmpty() ) {
+				executeParallel();
+			}
+			return;
+		}
+		List<Command> commands = batchCommands;
+		batchStatement = null;
+		batchCommands = new ArrayList<>();
+
+		int size = commands.size();
+		ProcessException[] results = new ProcessException[ size ];
+		boolean[] done = null; // All done
+		SQLException batchException = null;
+		boolean commit = false;
+		try {
+			statement.executeBatch();
+			commit = true;
+		} catch( SQLException e ) {
+			done = new boolean[ size ];
+			if( implicitCommit() && context.commitStrategy() != CommitStrategy.AUTOCOMMIT ) {
+				// The whole batch is rolled back, so everything needs to be executed again
+			} else {
+				// Keep the statements that succeeded
+				int[] counts = e instanceof BatchUpdateException ? ( (BatchUpdateException)e ).getUpdateCounts() : null;
+				if( counts != null ) {
+					boolean failed = false;
+					for( int i = 0; i < counts.length && i < size; i++ ) {
+						done[ i ] = counts[ i ] != Statement.EXECUTE_FAILED;
+						failed |= !done[ i ];
+					}
+					if( !failed && counts.length >= size ) {
+						done[ size - 1 ] = false; // Don't know which one failed
+					}
+				}
+				commit = true;
+				batchException = e.getNextException() != null ? e.getNextException() : e;
+			}
+		} finally {
+			closeStatement( statement, commit );
+		}
+
+		int executed = size;
+		ProcessException failure = null;
+		if( done != null ) {
+			for( int i = 0; i < size; i++ ) {
+				if( done[ i ] ) {
+					continue;
+				}
+				Command command = commands.get( i );
+				SQLException exception = batchException;
+				batchException = null; // Belongs to the first statement that failed
+				if( exception == null ) {
+					try {
+						executeJdbc( command );
+					} catch( SQLException e ) {
+						exception = e;
+					}
+				}
+				if( exception != null ) {
+					ProcessException newException = new ProcessException( exception ).addProcess( "executing: " + command.getCommand() ).addLocation( command.getLocation() );
+					if( !context.ignoreSQLError( exception.getSQLState() ) ) {
+						failure = newException;
+						executed = i;
+						break;
+					}
+					results[ i ] = newException;
+				}
+			}
+		}
+
+		batchExecuted( commands, results, executed, failure );
+
+		if( failure != null ) {
+			progress.exception( failure );
+			throw failure;
+		}
+	}
+
+	/**
+	 * Executes the statements that are collected for parallel execution concurrently, each on its own connection of
+	 * the current database and user. The threads and connections are kept until the end of the PARALLEL block. Each
+	 * statement is committed on its own connection. The results are reported like {@link #executeBatch()} does, with the first
+	 * statement that failed as the failure. Statements after the failing statement may have been executed too, so the
+	 * statements in a parallel block should be independent of each other.
+	 *
+	 * @throws ProcessException Whenever an {@link SQLException} occurs that is not ignored.
+	 */
+	protected void executeParallel() throws ProcessException {
+		List<Command> commands = batchCommands;
+		batchCommands = new ArrayList<>();
+
+		final int size = commands.size();
+		final SQLException[] exceptions = new SQLException[ size ];
+		final boolean escaping = context.isJdbcEscaping();
+		Database database = getCurrentDatabase();
+		if( database != parallelDatabase || !Objects.equals( database.getCurrentUser(), parallelUser ) ) {
+			endParallel();
+		}
+		if( parallelExecutor == null || parallelThreads < size ) {
+			endParallel();
+			parallelThreads = Math.max( size, context.getParallelStatements() );
+			parallelExecutor = Executors.newFixedThreadPool( parallelThreads );
+			parallelDatabase = database;
+			parallelUser = database.getCurrentUser();
+		}
+		if( parallelConnections.size() < size ) {
+			database.warmUp( size - parallelConnections.size() );
+			try {
+				while( parallelConnections.size() < size ) {
+					Connection connection = database.newConnection();
+					parallelConnections.add( connection );
+					connection.setAutoCommit( true );
+				}
+			} catch( SQLException e ) {
+				endParallel();
+				throw new SystemException( e );
+			}
+		}
+
+		List<Callable<Void>> tasks = new ArrayList<>( size );
+		for( int i = 0; i < size; i++ ) {
+			final Connection connection = parallelConnections.get( i );
+			final String sql = commands.get( i ).getCommand();
+			final int index = i;
+			tasks.add( new Callable<Void>() {
+				@Override
+				public Void call() {
+					try( Statement statement = connection.createStatement() ) {
+						if( !escaping ) {
+							statement.setEscapeProcessing( false );
+						}
+						statement.execute( sql );
+					} catch( SQLException e ) {
+						exceptions[ index ] = e;
+					}
+					return null;
+				}
+			} );
+		}
+
+		try {
+			for( Future<Void> future : parallelExecutor.invokeAll( tasks ) ) {
+				future.get();
+			}
+		} catch( ExecutionException e ) {
+			endParallel();
+			Throwable cause = e.getCause();
+			if( cause instanceof RuntimeException ) {
+				throw (RuntimeException)cause;
+			}
+			throw (Error)cause;
+		} catch( InterruptedException e ) {
+			endParallel();
+			throw new ThreadInterrupted();
+		}
+
+		ProcessException[] results = new ProcessException[ size ];
+		int executed = size;
+		ProcessException failure = null;
+		for( int i = 0; i < size; i++ ) {
+			SQLException exception = exceptions[ i ];
+			if( exception != null ) {
+				Command command = commands.get( i );
+				ProcessException newException = new ProcessException( exception ).addProcess( "executing: " + command.getCommand() ).addLocation( command.getLocation() );
+				if( !context.ignoreSQLError( exception.getSQLState() ) ) {
+					failure = newException;
+					executed = i;
+					break;
+				}
+				results[ i ] = newException;
+			}
+		}
+
+		batchExecuted( commands, results, executed, failure );
+
+		if( failure != null ) {
+			progress.exception( failure );
+			throw failure;
+		}
+	}
+
+	/**
+	 * Stops the threads of the current PARALLEL block and closes its connections.
+	 */
+	protected void endParallel() {
+		if( parallelExecutor != null ) {
+			parallelExecutor.shutdownNow();
+			parallelExecutor = null;
+		}
+		for( Connection connection : parallelConnections ) {
+			parallelDatabase.close( connection );
+		}
+		parallelConnections.clear();
+		parallelDatabase = null;
+		parallelUser = null;
+	}
+
+	/**
+	 * Closes the statement batch without executing it. This also stops the threads of the current PARALLEL block.
+	 */
+	protected void discardBatch() {
+		endParallel();
+		batchCommands.clear();
+		if( batchStatement != null ) {
+			Statement statement = batchStatement;
+			batchStatement = null;
+			closeStatement( statement, false );
+		}
+	}
+
+	/**
+	 * Called when a statement batch has been executed. When a statement failed, this is called before the failure is
+	 * thrown.
+	 *
+	 * @param commands The statements in the batch.
+	 * @param results For each statement the SQL error that has been ignored, or null.
+	 * @param executed The number of statements that have been executed. When a statement failed, this is the index
+	 *        of the statement that failed.
+	 * @param failure The failure, or null.
+	 */
+	protected void batchExecuted( List<Command> commands, ProcessException[] results, int executed, ProcessException failure ) {
+		// Nothing by default
+	}
+
 	/**
 	 * Sets the current database and initializes it.
 	 *
@@ -548,8 +1160,27 @@ abstract public class CommandProcessor
 	 * @return The result of the script.
 	 */
 	protected Object script( String script, SourceLocation location ) {
-		SourceReader reader = SourceReaders.forString( script, location );
-		return Script.compile( reader ).eval( context.getScope() );
+		return compile( script, location ).eval( context.getScope() );
+	}
+
+	/**
+	 * Compiles the given script. Compiled scripts are cached.
+	 *
+	 * @param script The script.
+	 * @param location The source location.
+	 * @return The compiled script.
+	 */
+	protected Script compile( String script, SourceLocation location ) {
+		if( script.length() > SCRIPT_CACHE_MAX_LENGTH ) {
+			return Script.compile( SourceReaders.forString( script, location ) );
+		}
+		String key = location + "\n" + script;
+		Script result = scripts.get( key );
+		if( result == null ) {
+			result = Script.compile( SourceReaders.forString( script, location ) );
+			scripts.put( key, result );
+		}
+		return result;
 	}
 
 	/**
@@ -597,8 +1228,7 @@ abstract public class CommandProcessor
 	 * @param location The source location.
 	 */
 	protected void ifScript( String script, SourceLocation location ) {
-		SourceReader reader = SourceReaders.forString( script, location );
-		boolean condition = Script.compile( reader ).evalBoolean( context.getScope() );
+		boolean condition = compile( script, location ).evalBoolean( context.getScope() );
 		context.skip( !condition );
 	}
 
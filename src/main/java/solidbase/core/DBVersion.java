@@ -28,6 +28,9 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -119,6 +122,33 @@ public class DBVersion
 	 */
 	protected ProgressListener callBack;
 
+	/**
+	 * The versions that have been completed according to the DBVERSIONLOG table. Loaded on first use after
+	 * {@link #init()}.
+	 */
+	protected Set<String> history;
+
+	/**
+	 * Write-behind mode. When enabled, progress and log records are kept back until the next {@link #checkpoint()}.
+	 */
+	protected boolean writeBehind;
+
+	/**
+	 * Has the progress been changed without being written to the version table?
+	 */
+	protected boolean progressPending;
+
+	/**
+	 * Cached statements with batched log records.
+	 */
+	protected Set<PreparedStatement> batchedStatements = new LinkedHashSet<>();
+
+	/**
+	 * Log-only mode. When enabled, only the log table is written. The progress is then found in the log records, and the
+	 * version is updated by the processor that coordinates the concurrent segments.
+	 */
+	protected boolean logOnly;
+
 	/**
 	 * An instance of this class needs to now in which database the version tables can be found. The default connection
 	 * of this database determines the schema where those tables reside.
@@ -148,6 +178,8 @@ public class DBVersion
 	 * initialized or upgraded to a new version of the DBVERSION tables.
 	 */
 	protected void setStale() {
+		checkpoint();
+		database.closeStatements(); // The version tables may have been changed
 		stale = true;
 	}
 
@@ -216,6 +248,77 @@ public class DBVersion
 		effectiveSpec = eSpec;
 	}
 
+	/**
+	 * Enables or disables log-only mode. In log-only mode the progress and the version are not written to the version
+	 * table, only the log records are written to the log table. This is used for segments that are executed
+	 * concurrently.
+	 *
+	 * @param logOnly True to enable log-only mode, false to disable it.
+	 */
+	protected void setLogOnly( boolean logOnly ) {
+		this.logOnly = logOnly;
+	}
+
+	/**
+	 * Can the progress of a segment be found in the log table? This needs the TYPE column of spec 1.1.
+	 *
+	 * @return True if the progress of a segment can be found in the log table, false otherwise.
+	 */
+	protected boolean isProgressLogged() {
+		if( stale ) {
+			init();
+		}
+		return SPEC11.equals( effectiveSpec ) && logTableExists;
+	}
+
+	/**
+	 * Returns the number of statements of the given segment that have been executed successfully according to the log
+	 * table. Only the log records since the segment was last completed or reverted are considered.
+	 *
+	 * @param segment The upgrade segment.
+	 * @return The number of statements of the given segment that have been executed successfully.
+	 */
+	protected int getLoggedStatements( UpgradeSegment segment ) {
+		Assert.isTrue( isProgressLogged() );
+		checkpoint();
+
+		Connection connection = database.getVersionTablesConnection();
+		try {
+			try {
+				Timestamp since = null;
+				try( PreparedStatement statement = connection.prepareStatement( "SELECT MAX( STAMP ) FROM " + logTableName + " WHERE TYPE IN ( 'B', 'R' ) AND TARGET = ?" ) ) {
+					statement.setString( 1, segment.getTarget() );
+					ResultSet resultSet = statement.executeQuery(); // Resultset is closed when the statement is closed
+					if( resultSet.next() ) {
+						since = resultSet.getTimestamp( 1 );
+					}
+				}
+
+				String sql = "SELECT MAX( STATEMENT ) FROM " + logTableName + " WHERE TYPE = 'S' AND TARGET = ? AND RESULT IS NULL";
+				sql += segment.getSource() != null ? " AND SOURCE = ?" : " AND SOURCE IS NULL";
+				if( since != null ) {
+					sql += " AND STAMP > ?";
+				}
+				try( PreparedStatement statement = connection.prepareStatement( sql ) ) {
+					int i = 1;
+					statement.setString( i++, segment.getTarget() );
+					if( segment.getSource() != null ) {
+						statement.setString( i++, segment.getSource() );
+					}
+					if( since != null ) {
+						statement.setTimestamp( i++, since );
+					}
+					ResultSet resultSet = statement.executeQuery(); // Resultset is closed when the statement is closed
+					return resultSet.next() ? resultSet.getInt( 1 ) : 0;
+				}
+			} finally {
+				connection.commit();
+			}
+		} catch( SQLException e ) {
+			throw new SystemException( e );
+		}
+	}
+
 	/**
 	 * Initializes this instance by trying to read the version tables. It will succeed when one or all of the version
 	 * tables does not exist.
@@ -226,6 +329,7 @@ public class DBVersion
 		version = null;
 		target = null;
 		statements = 0;
+		history = null;
 
 		Connection connection = database.getVersionTablesConnection();
 		try {
@@ -313,15 +417,31 @@ public class DBVersion
 			init();
 		}
 
+		this.target = target;
+		this.statements = statements;
+
+		if( logOnly ) {
+			return;
+		}
+		progressPending = true;
+		if( !writeBehind ) {
+			checkpoint();
+		}
+	}
+
+	/**
+	 * Writes the current target and number of statements to the version table, without committing.
+	 *
+	 * @param connection The connection to the version tables.
+	 * @throws SQLException Whenever JDBC throws an SQLException.
+	 */
+	private void writeProgress( Connection connection ) throws SQLException {
 		if( versionRecordExists ) {
-			execute( "UPDATE " + versionTableName + " SET TARGET = ?, STATEMENTS = ?", target, statements );
+			executeUpdate( connection, "UPDATE " + versionTableName + " SET TARGET = ?, STATEMENTS = ?", target, statements );
 		} else {
-			execute( "INSERT INTO " + versionTableName + " ( TARGET, STATEMENTS ) VALUES ( ?, ? )", target, statements );
+			executeUpdate( connection, "INSERT INTO " + versionTableName + " ( TARGET, STATEMENTS ) VALUES ( ?, ? )", target, statements );
 			versionRecordExists = true;
 		}
-
-		this.target = target;
-		this.statements = statements;
 	}
 
 	/**
@@ -336,11 +456,14 @@ public class DBVersion
 			init();
 		}
 
-		if( versionRecordExists ) {
-			execute( "UPDATE " + versionTableName + " SET VERSION = ?, TARGET = NULL", version );
-		} else {
-			execute( "INSERT INTO " + versionTableName + " ( VERSION, TARGET, STATEMENTS ) VALUES ( ?, NULL, 0 )", version );
-			versionRecordExists = true;
+		// In log-only mode the processor that coordinates the concurrent segments does this
+		if( !logOnly ) {
+			if( versionRecordExists ) {
+				execute( "UPDATE " + versionTableName + " SET VERSION = ?, TARGET = NULL", version );
+			} else {
+				execute( "INSERT INTO " + versionTableName + " ( VERSION, TARGET, STATEMENTS ) VALUES ( ?, NULL, 0 )", version );
+				versionRecordExists = true;
+			}
 		}
 
 		this.version = version;
@@ -406,10 +529,10 @@ public class DBVersion
 		}
 
 		if( SPEC11.equals( effectiveSpec ) ) {
-			execute( "INSERT INTO " + logTableName + " ( TYPE, SOURCE, TARGET, STATEMENT, STAMP, COMMAND, RESULT ) VALUES ( ?, ?, ?, ?, ?, ?, ? )", type,
+			executeOrBatch( "INSERT INTO " + logTableName + " ( TYPE, SOURCE, TARGET, STATEMENT, STAMP, COMMAND, RESULT ) VALUES ( ?, ?, ?, ?, ?, ?, ? )", type,
 					source, target, count, new Timestamp( System.currentTimeMillis() ), command, result );
 		} else {
-			execute( "INSERT INTO " + logTableName + " ( SOURCE, TARGET, STATEMENT, STAMP, COMMAND, RESULT ) VALUES ( ?, ?, ?, ?, ?, ? )", source, target,
+			executeOrBatch( "INSERT INTO " + logTableName + " ( SOURCE, TARGET, STATEMENT, STAMP, COMMAND, RESULT ) VALUES ( ?, ?, ?, ?, ?, ? )", source, target,
 					count, new Timestamp( System.currentTimeMillis() ), command, result );
 		}
 	}
@@ -447,6 +570,9 @@ public class DBVersion
 	protected void logComplete( UpgradeSegment segment, int count ) {
 		log( segment.isDowngrade() ? "D" : "B", segment.getSource(), segment.getTarget(), count, null,
 				SPEC11.equals( effectiveSpec ) ? "COMPLETE" : "COMPLETED VERSION " + segment.getTarget() );
+		if( history != null && ( !segment.isDowngrade() || !SPEC11.equals( effectiveSpec ) ) ) {
+			history.add( segment.getTarget() );
+		}
 	}
 
 	/**
@@ -457,6 +583,7 @@ public class DBVersion
 	 */
 	protected void logToXML( OutputStream out, Charset charSet ) {
 		// This method does not care about staleness
+		checkpoint();
 
 		boolean spec11 = SPEC11.equals( effectiveSpec );
 
@@ -514,27 +641,47 @@ public class DBVersion
 	protected boolean logContains( String version ) {
 		Assert.isFalse( stale );
 
+		if( history == null ) {
+			checkpoint();
+			history = loadHistory();
+		}
+		return history.contains( version );
+	}
+
+	/**
+	 * Reads the completed versions from the DBVERSIONLOG table.
+	 *
+	 * @return The completed versions.
+	 */
+	private Set<String> loadHistory() {
+		Set<String> result = new HashSet<>();
+		if( !logTableExists ) {
+			return result;
+		}
+
+		boolean spec11 = SPEC11.equals( effectiveSpec );
 		String sql;
-		if( SPEC11.equals( effectiveSpec ) ) {
-			sql = "SELECT 1 FROM " + logTableName + " WHERE TYPE = 'B' AND TARGET = '" + version + "' AND RESULT = 'COMPLETE'";
+		if( spec11 ) {
+			sql = "SELECT TARGET FROM " + logTableName + " WHERE TYPE = 'B' AND RESULT = 'COMPLETE'";
 		} else {
-			sql = "SELECT 1 FROM " + logTableName + " WHERE RESULT = 'COMPLETED VERSION " + version + "'";
+			sql = "SELECT RESULT FROM " + logTableName + " WHERE RESULT LIKE 'COMPLETED VERSION %'";
 		}
 
 		Connection connection = database.getVersionTablesConnection();
 		try {
-			PreparedStatement stat = connection.prepareStatement( sql );
-			try {
-				ResultSet result = stat.executeQuery();
-				return result.next();
+			try( Statement stat = connection.createStatement() ) {
+				ResultSet resultSet = stat.executeQuery( sql ); // Resultset is closed when the statement is closed
+				while( resultSet.next() ) {
+					String value = resultSet.getString( 1 );
+					result.add( spec11 ? value : value.substring( "COMPLETED VERSION ".length() ) );
+				}
 			} finally {
-				stat.close();
 				connection.commit();
 			}
-
 		} catch( SQLException e ) {
 			throw new SystemException( e );
 		}
+		return result;
 	}
 
 	/**
@@ -547,23 +694,7 @@ public class DBVersion
 		try {
 			Connection connection = database.getVersionTablesConnection();
 			try {
-				int i = 1;
-				try( PreparedStatement statement = connection.prepareStatement( sql ) ) {
-					for( Object parameter : parameters ) {
-						if( parameter == null ) {
-							// Derby does not allow setObject(null), so we need to use setNull() with a type obtained from getParameterMetaData().
-							// But getParameterMetaData() is not supported by the Oracle JDBC driver.
-							// As we know that only character columns will be nullable, we choose to use setString() with a null.
-							// This works with Oracle and Derby alike. Maybe it even works with number columns.
-							statement.setString( i++, null );
-						} else {
-							statement.setObject( i++, parameter );
-						}
-					}
-					int modified = statement.executeUpdate();
-					Assert.isTrue( modified == 1, "Expecting 1 record to be updated, not " + modified );
-				}
-
+				executeUpdate( connection, sql, parameters );
 			} finally {
 				connection.commit(); // You can commit even if it fails. Only 1 update done.
 			}
@@ -574,25 +705,149 @@ public class DBVersion
 	}
 
 	/**
-	 * Mark the given versions as 'DOWNGRADED' in the DBVERSIONLOG table.
+	 * Execute the given sql with the given parameters, without committing. It asserts that exactly one record is
+	 * updated.
+	 *
+	 * @param connection The connection to the version tables.
+	 * @param sql The sql to be executed.
+	 * @param parameters The parameters for the sql.
+	 * @throws SQLException Whenever JDBC throws an SQLException.
+	 */
+	private void executeUpdate( Connection connection, String sql, Object... parameters ) throws SQLException {
+		PreparedStatement statement = database.prepareCachedStatement( connection, sql );
+		setParameters( statement, parameters );
+		int modified = statement.executeUpdate();
+		Assert.isTrue( modified == 1, "Expecting 1 record to be updated, not " + modified );
+	}
+
+	/**
+	 * Execute the given sql with the given parameters. In write-behind mode the sql is added to the batch of a cached
+	 * statement, to be executed at the next {@link #checkpoint()}.
+	 *
+	 * @param sql The sql to be executed.
+	 * @param parameters The parameters for the sql.
+	 */
+	protected void executeOrBatch( String sql, Object... parameters ) {
+		if( !writeBehind ) {
+			execute( sql, parameters );
+			return;
+		}
+
+		try {
+			PreparedStatement statement = database.prepareCachedStatement( database.getVersionTablesConnection(), sql );
+			setParameters( statement, parameters );
+			statement.addBatch();
+			batchedStatements.add( statement );
+		} catch( SQLException e ) {
+			throw new SystemException( e );
+		}
+	}
+
+	static private void setParameters( PreparedStatement statement, Object... parameters ) throws SQLException {
+		int i = 1;
+		for( Object parameter : parameters ) {
+			if( parameter == null ) {
+				// Derby does not allow setObject(null), so we need to use setNull() with a type obtained from getParameterMetaData().
+				// But getParameterMetaData() is not supported by the Oracle JDBC driver.
+				// As we know that only character columns will be nullable, we choose to use setString() with a null.
+				// This works with Oracle and Derby alike. Maybe it even works with number columns.
+				statement.setString( i++, null );
+			} else {
+				statement.setObject( i++, parameter );
+			}
+		}
+	}
+
+	/**
+	 * Enables or disables write-behind mode. In write-behind mode the progress and the log records are only written to
+	 * the version tables at a {@link #checkpoint()}. Disabling write-behind mode writes everything that is pending.
+	 *
+	 * @param writeBehind True to enable write-behind mode, false to disable it.
+	 */
+	protected void setWriteBehind( boolean writeBehind ) {
+		if( writeBehind == this.writeBehind ) {
+			return;
+		}
+		if( !writeBehind ) {
+			checkpoint();
+		}
+		this.writeBehind = writeBehind;
+	}
+
+	/**
+	 * Writes the pending progress and log records to the version tables in one transaction. It is committed when all
+	 * are written, otherwise it is rolled back and the version tables keep the previous checkpoint.
+	 */
+	protected void checkpoint() {
+		if( !progressPending && batchedStatements.isEmpty() ) {
+			return;
+		}
+		try {
+			Connection connection = database.getVersionTablesConnection();
+			boolean commit = false;
+			try {
+				if( progressPending ) {
+					progressPending = false;
+					writeProgress( connection );
+				}
+				for( PreparedStatement statement : batchedStatements ) {
+					statement.executeBatch();
+				}
+				commit = true;
+			} finally {
+				for( PreparedStatement statement : batchedStatements ) {
+					statement.clearBatch(); // In case it failed
+				}
+				batchedStatements.clear();
+				if( commit ) {
+					connection.commit();
+				} else {
+					connection.rollback();
+				}
+			}
+		} catch( SQLException e ) {
+			throw new SystemException( e );
+		}
+	}
+
+	/**
+	 * Mark the given versions as 'REVERTED' in the DBVERSIONLOG table. A 1.0 log has no TYPE column, there the 'COMPLETED
+	 * VERSION' results are changed into 'REVERTED VERSION'.
 	 *
 	 * @param versions The versions to be downgraded.
 	 */
-	// TODO Make this faster with an IN or a batch.
 	protected void downgradeHistory( Collection<String> versions ) {
 		Assert.notEmpty( versions );
+		checkpoint();
 		try {
 			Connection connection = database.getVersionTablesConnection();
 			boolean commit = false;
 			try {
-				try( PreparedStatement statement = connection.prepareStatement( "UPDATE " + logTableName + " SET TYPE = 'R', RESULT = 'REVERTED' WHERE TYPE = 'B' AND TARGET = ? AND RESULT = 'COMPLETE'" ) ) {
-					for( String version : versions ) {
-						statement.setString( 1, version );
-						int modified = statement.executeUpdate();
-						Assert.isTrue( modified <= 1, "Expecting not more than 1 record to be updated, not " + modified );
+				if( SPEC11.equals( effectiveSpec ) ) {
+					try( PreparedStatement statement = connection.prepareStatement( "UPDATE " + logTableName + " SET TYPE = 'R', RESULT = 'REVERTED' WHERE TYPE = 'B' AND TARGET = ? AND RESULT = 'COMPLETE'" ) ) {
+						for( String version : versions ) {
+							statement.setString( 1, version );
+							statement.addBatch();
+						}
+						for( int modified : statement.executeBatch() ) {
+							Assert.isTrue( modified <= 1, "Expecting not more than 1 record to be updated, not " + modified );
+						}
+					}
+				} else {
+					// A 1.0 downgrade also logs 'COMPLETED VERSION', so more than 1 record can match
+					try( PreparedStatement statement = connection.prepareStatement( "UPDATE " + logTableName + " SET RESULT = ? WHERE RESULT = ?" ) ) {
+						for( String version : versions ) {
+							statement.setString( 1, "REVERTED VERSION " + version );
+							statement.setString( 2, "COMPLETED VERSION " + version );
+							statement.addBatch();
+						}
+						statement.executeBatch();
 					}
 				}
 				commit = true;
+				if( history != null ) {
+					history.removeAll( versions );
+				}
 
 			} finally {
 				if( commit ) {
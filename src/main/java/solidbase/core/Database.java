@@ -20,13 +20,17 @@ import static solidbase.util.Nulls.nonNull;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 import javax.sql.DataSource;
 
 import solidbase.util.Assert;
+import solidbase.util.ConnectionPool;
 
 
 /**
@@ -37,6 +41,11 @@ import solidbase.util.Assert;
  */
 public class Database
 {
+	/**
+	 * The maximum number of prepared statements cached per connection.
+	 */
+	static public final int STATEMENT_CACHE_SIZE = 50;
+
 	/**
 	 * Name for this database.
 	 */
@@ -57,6 +66,12 @@ public class Database
 	 */
 	protected DataSource dataSource;
 
+	/**
+	 * The connection pool that is owned by this database and closed by {@link #closeConnections()}. When set, it is
+	 * also the {@link #dataSource}.
+	 */
+	protected ConnectionPool pool;
+
 	/**
 	 * A map of connections indexed by user name.
 	 */
@@ -67,6 +82,23 @@ public class Database
 	 */
 	protected Connection versionTablesConnection;
 
+	/**
+	 * Cached prepared statements per connection. Not synchronized, only the thread that executes the commands may use
+	 * the cache.
+	 */
+	protected Map<Connection, StatementCache> statementCaches = new IdentityHashMap<>();
+
+	/**
+	 * The auto commit mode that has been applied to each connection. Only changes are sent to the driver.
+	 */
+	protected Map<Connection, Boolean> autoCommits = new IdentityHashMap<>();
+
+	/**
+	 * The number of driver calls that were not needed because the connection or statement was already in the requested
+	 * state.
+	 */
+	protected int savedDriverCalls;
+
 	/**
 	 * The default user name to use for this database. When using a {@link #dataSource} this can be left blank.
 	 * Connection are then retrieved from the datasource without specifying a user name.
@@ -139,6 +171,21 @@ public class Database
 		}
 	}
 
+	/**
+	 * Constructor for a named database that manages connections for multiple users. The connection pool is owned by
+	 * this database. It is closed when the connections are closed.
+	 *
+	 * @param name The name of the database.
+	 * @param pool The connection pool providing connections to the database.
+	 * @param defaultUser The default user name.
+	 * @param defaultPassword The password belonging to the default user.
+	 * @param callBack The progress listener.
+	 */
+	public Database( String name, ConnectionPool pool, String defaultUser, String defaultPassword, ProgressListener callBack ) {
+		this( name, (DataSource)pool, defaultUser, defaultPassword, callBack );
+		this.pool = pool;
+	}
+
 	/**
 	 * Constructor for a named database. You can't use multiple users with this database.
 	 *
@@ -150,6 +197,24 @@ public class Database
 		this( name, dataSource, null, null, callBack );
 	}
 
+	/**
+	 * Constructor for a copy of the given database with connections of its own. A connection pool is shared, it stays
+	 * owned by the given database.
+	 *
+	 * @param database The database to copy.
+	 * @param callBack The progress listener.
+	 */
+	public Database( Database database, ProgressListener callBack ) {
+		name = database.name;
+		driverName = database.driverName;
+		url = database.url;
+		dataSource = database.dataSource;
+		defaultUser = database.defaultUser;
+		passwords.putAll( database.passwords );
+		currentUser = defaultUser;
+		this.callBack = callBack;
+	}
+
 	/**
 	 * Resets the current user and initializes the connection if a password is known.
 	 */
@@ -215,7 +280,7 @@ public class Database
 		if( versionTablesConnection == null ) {
 			versionTablesConnection = newConnection( defaultUser );
 			try {
-				versionTablesConnection.setAutoCommit( false );
+				setAutoCommit( versionTablesConnection, false );
 			} catch( SQLException e ) {
 				throw new SystemException( e );
 			}
@@ -312,6 +377,26 @@ public class Database
 		}
 	}
 
+	/**
+	 * Opens new connections for the current user in parallel, so that the given number of connections can be returned
+	 * quickly by {@link #newConnection()}. This does nothing when the connections are not pooled.
+	 *
+	 * @param count The number of connections needed.
+	 */
+	public void warmUp( int count ) {
+		if( pool == null ) {
+			return;
+		}
+		String user = currentUser;
+		// Makes sure that the password is known
+		close( newConnection( user ) );
+		try {
+			pool.warmUp( user, passwords.get( user ), count );
+		} catch( SQLException e ) {
+			throw new FatalException( e );
+		}
+	}
+
 	/**
 	 * Sets the current user.
 	 *
@@ -343,10 +428,98 @@ public class Database
 		}
 	}
 
+	/**
+	 * Sets the auto commit mode of the given connection. The driver is only called when the mode differs from the mode
+	 * that was last applied to the connection, because some drivers do a round trip to the server for each call. The
+	 * connection must be one of the connections maintained by this instance of {@link Database}, and its auto commit
+	 * mode should not be changed directly.
+	 *
+	 * @param connection The connection.
+	 * @param autoCommit The auto commit mode.
+	 * @throws SQLException Whenever JDBC throws an SQLException.
+	 */
+	public void setAutoCommit( Connection connection, boolean autoCommit ) throws SQLException {
+		Boolean applied = autoCommits.get( connection );
+		if( applied != null && applied == autoCommit ) {
+			savedDriverCalls++;
+			return;
+		}
+		autoCommits.remove( connection ); // Unknown state when the driver fails
+		connection.setAutoCommit( autoCommit );
+		autoCommits.put( connection, autoCommit );
+	}
+
+	/**
+	 * Enables or disables JDBC escape processing on the given new statement. New statements have escape processing
+	 * enabled, so the driver is only called to disable it.
+	 *
+	 * @param statement The new statement.
+	 * @param escaping Enable or disable escape processing.
+	 * @throws SQLException Whenever JDBC throws an SQLException.
+	 */
+	public void setEscapeProcessing( Statement statement, boolean escaping ) throws SQLException {
+		if( escaping ) {
+			savedDriverCalls++;
+			return;
+		}
+		statement.setEscapeProcessing( false );
+	}
+
+	/**
+	 * Returns the number of driver calls that were saved by {@link #setAutoCommit(Connection, boolean)} and
+	 * {@link #setEscapeProcessing(Statement, boolean)}. The number is reported to
+	 * {@link ProgressListener#statistics(String)} when the connections are closed.
+	 *
+	 * @return The number of driver calls that were saved.
+	 */
+	public int getSavedDriverCalls() {
+		return savedDriverCalls;
+	}
+
+	/**
+	 * Returns a cached prepared statement for the given SQL. The connection must be one of the connections maintained by
+	 * this instance of {@link Database}. The statement must not be closed, it stays open until it is evicted from the
+	 * cache, {@link #closeStatements()} is called or the connections are closed. This method is not thread safe, and
+	 * neither are the statements it returns. Only the thread that executes the commands may call it.
+	 *
+	 * @param connection The connection to prepare the statement on.
+	 * @param sql The SQL for the statement.
+	 * @return The prepared statement.
+	 * @throws SQLException Whenever JDBC throws an SQLException.
+	 */
+	public PreparedStatement prepareCachedStatement( Connection connection, String sql ) throws SQLException {
+		StatementCache cache = statementCaches.get( connection );
+		if( cache == null ) {
+			Assert.isTrue( connection == versionTablesConnection || connections.containsValue( connection ), "Connection is not maintained by this database" );
+			cache = new StatementCache( connection, STATEMENT_CACHE_SIZE );
+			statementCaches.put( connection, cache );
+		}
+		return cache.prepareStatement( sql );
+	}
+
+	/**
+	 * Closes all cached prepared statements. This is needed when the tables they refer to may have changed.
+	 */
+	public void closeStatements() {
+		try {
+			for( StatementCache cache : statementCaches.values() ) {
+				cache.close();
+			}
+		} finally {
+			statementCaches.clear();
+		}
+	}
+
 	/**
 	 * Close all open connections that are maintained by this instance of {@link Database}.
 	 */
 	protected void closeConnections() {
+		if( savedDriverCalls > 0 && callBack != null ) {
+			callBack.statistics( "Database " + name + ": " + savedDriverCalls + " driver calls saved" );
+		}
+
+		closeStatements();
+
 		if( versionTablesConnection != null ) {
 			close( versionTablesConnection );
 			versionTablesConnection = null;
@@ -356,6 +529,10 @@ public class Database
 			close( connection );
 		}
 		connections.clear();
+
+		if( pool != null ) {
+			pool.close();
+		}
 	}
 
 	/**
@@ -364,6 +541,7 @@ public class Database
 	 * @param connection The connection to close.
 	 */
 	protected void close( Connection connection ) {
+		autoCommits.remove( connection );
 		try {
 //			connection.rollback(); // TODO Derby 10.6 does not like it when connection is closed during an open transaction
 			connection.close();
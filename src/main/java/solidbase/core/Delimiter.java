@@ -16,6 +16,7 @@
 
 package solidbase.core;
 
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 
@@ -62,6 +63,11 @@ class Delimiter
 	 */
 	protected Pattern pattern;
 
+	/**
+	 * Can the delimiter be matched without the regular expression? Not when the text starts or ends with whitespace.
+	 */
+	private boolean literal;
+
 	/**
 	 * Constructor for the delimiter.
 	 * 
@@ -78,6 +84,89 @@ class Delimiter
 			this.pattern = Pattern.compile( "(.*)" + Pattern.quote( text ) + "\\s*" );
 		else
 			this.pattern = Pattern.compile( "(.*?)" + Pattern.quote( text ) + "\\s*(.+)?" );
+		this.literal = text.length() > 0 && !isWhitespace( text.charAt( 0 ) ) && !isWhitespace( text.charAt( text.length() - 1 ) );
+	}
+
+	/**
+	 * Matches the line against the delimiter, with the same result as the {@link #pattern}. The line is scanned for
+	 * the literal text of the delimiter, the regular expression is only needed in exceptional cases.
+	 *
+	 * @param line The line to match.
+	 * @return Null if the line does not match. Otherwise the text before the delimiter and the text after the
+	 *         delimiter, which are null when the type of the delimiter does not allow them.
+	 */
+	protected String[] match( String line )
+	{
+		if( !this.literal )
+			return matchPattern( line );
+
+		int len = this.text.length();
+		int end = line.length();
+		while( end > 0 && isWhitespace( line.charAt( end - 1 ) ) )
+			end--;
+
+		if( this.type == Type.ISOLATED )
+		{
+			int start = 0;
+			while( start < end && isWhitespace( line.charAt( start ) ) )
+				start++;
+			if( end - start != len || !line.startsWith( this.text, start ) )
+				return null;
+			return new String[ 2 ];
+		}
+
+		if( this.type == Type.TRAILING )
+		{
+			int start = end - len;
+			if( start < 0 || !line.startsWith( this.text, start ) )
+				return null;
+			if( hasLineTerminator( line ) )
+				return matchPattern( line );
+			return new String[] { line.substring( 0, start ), null };
+		}
+
+		int start = line.indexOf( this.text );
+		if( start < 0 )
+			return null;
+		if( hasLineTerminator( line ) )
+			return matchPattern( line );
+		int rest = start + len;
+		while( rest < end && isWhitespace( line.charAt( rest ) ) )
+			rest++;
+		return new String[] { line.substring( 0, start ), rest < end ? line.substring( rest ) : null };
+	}
+
+	private String[] matchPattern( String line )
+	{
+		Matcher matcher = this.pattern.matcher( line );
+		if( !matcher.matches() )
+			return null;
+		String[] result = new String[ 2 ];
+		for( int i = 0; i < matcher.groupCount(); i++ )
+			result[ i ] = matcher.group( i + 1 );
+		return result;
+	}
+
+	/**
+	 * Is the given character matched by \s?
+	 */
+	static private boolean isWhitespace( char ch )
+	{
+		return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\u000B' || ch == '\f' || ch == '\r';
+	}
+
+	/**
+	 * Does the line contain a character that is not matched by the . of the regular expressions?
+	 */
+	static private boolean hasLineTerminator( String line )
+	{
+		for( int i = 0, len = line.length(); i < len; i++ )
+		{
+			char ch = line.charAt( i );
+			if( ch == '\n' || ch == '\r' || ch == '\u0085' || ch == '\u2028' || ch == '\u2029' )
+				return true;
+		}
+		return false;
 	}
 
 	@Override
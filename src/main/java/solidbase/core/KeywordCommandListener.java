@@ -0,0 +1,36 @@
+/*--
+ * Copyright 2006 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core;
+
+
+/**
+ * A {@link CommandListener} that is only triggered by commands that start with one of its keywords. The
+ * {@link CommandProcessor} only calls the listener for commands that start with one of these keywords, so that the
+ * listener does not need to match every command in the upgrade or SQL file. Listeners that do not implement this
+ * interface are called for every command.
+ *
+ * @author René M. de Bloois
+ */
+public interface KeywordCommandListener extends CommandListener
+{
+	/**
+	 * Returns the keywords that can trigger this listener. A keyword is the first word of a command, in upper case.
+	 *
+	 * @return The keywords that can trigger this listener.
+	 */
+	String[] getKeywords();
+}
@@ -23,7 +23,9 @@ import java.lang.reflect.InvocationTargetException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import solidstack.io.FatalIOException;
 
@@ -43,6 +45,17 @@ public class PluginManager
 	 */
 	static protected List< CommandListener > listeners;
 
+	/**
+	 * The listeners that can be triggered by a keyword, by keyword. The listeners that do not declare keywords are
+	 * included in each list, in the order in which the plugins are found.
+	 */
+	static protected Map< String, List< CommandListener > > keywordListeners;
+
+	/**
+	 * The listeners that do not declare keywords.
+	 */
+	static protected List< CommandListener > otherListeners;
+
 	static
 	{
 		listeners = new ArrayList<>();
@@ -102,6 +115,30 @@ public class PluginManager
 		{
 			throw new FatalIOException( e.getCause() );
 		}
+
+		keywordListeners = new HashMap<>();
+		otherListeners = new ArrayList<>();
+		for( CommandListener listener : listeners )
+			if( listener instanceof KeywordCommandListener )
+				for( String keyword : ( (KeywordCommandListener)listener ).getKeywords() )
+					if( !keywordListeners.containsKey( keyword ) )
+						keywordListeners.put( keyword, new ArrayList< CommandListener >() );
+		for( CommandListener listener : listeners )
+			if( listener instanceof KeywordCommandListener )
+			{
+				for( String keyword : ( (KeywordCommandListener)listener ).getKeywords() )
+				{
+					List< CommandListener > list = keywordListeners.get( keyword );
+					if( !list.contains( listener ) )
+						list.add( listener );
+				}
+			}
+			else
+			{
+				otherListeners.add( listener );
+				for( List< CommandListener > list : keywordListeners.values() )
+					list.add( listener );
+			}
 	}
 
 	/**
@@ -114,6 +151,20 @@ public class PluginManager
 		return listeners;
 	}
 
+	/**
+	 * Returns the plugins that can be triggered by a command starting with the given keyword.
+	 *
+	 * @param keyword The first word of the command, in upper case.
+	 * @return The plugins that can be triggered by the keyword.
+	 */
+	static public List< CommandListener > getListeners( String keyword )
+	{
+		List< CommandListener > result = keywordListeners.get( keyword );
+		if( result != null )
+			return result;
+		return otherListeners;
+	}
+
 	/**
 	 * Send all listeners the signal to terminate
 	 */
@@ -65,6 +65,17 @@ public class ProcessException extends FatalException
 		return this;
 	}
 
+	/**
+	 * @return True if a location has been added to this exception, false otherwise.
+	 */
+	public boolean hasLocation()
+	{
+		for( Object object : this.hierarchy )
+			if( object instanceof SourceLocation )
+				return true;
+		return false;
+	}
+
 	/**
 	 * Loops through all the exceptions contained in the {@link SQLException} and combines all messages and SQLStates into one String.
 	 *
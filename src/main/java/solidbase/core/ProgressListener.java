@@ -234,6 +234,17 @@ abstract public class ProgressListener
 		// could be implemented in subclass
 	}
 
+	/**
+	 * Statistics of the run are given, like the number of driver calls that were saved. These are not part of the
+	 * normal output.
+	 *
+	 * @param message The statistics.
+	 */
+	protected void statistics( String message )
+	{
+		// could be implemented in subclass
+	}
+
 	/**
 	 * An info message is produced.
 	 *
@@ -24,6 +24,8 @@ import java.util.Map;
 import javax.sql.DataSource;
 
 import solidbase.Version;
+import solidbase.util.ConnectionPool;
+import solidbase.util.DriverDataSource;
 import solidbase.util.SynchronizedProtectedWorkerThread;
 import solidstack.io.Resource;
 import solidstack.script.scopes.MapScope;
@@ -70,6 +72,11 @@ public class Runner
 	 */
 	protected Resource outputFile;
 
+	/**
+	 * Are the connections that are configured with a driver and URL pooled? True by default.
+	 */
+	protected boolean connectionPooling = true;
+
 	/**
 	 * The parameters.
 	 */
@@ -173,6 +180,18 @@ public class Runner
 		this.outputFile = outputFile;
 	}
 
+	/**
+	 * Enables or disables pooling of the connections that are configured with a driver and URL, enabled by default.
+	 * Pooled connections are reused by the parallel IMPORT and EXPORT and the LOG POLLER. Session state that JDBC does
+	 * not expose, like temporary tables or session variables, is not reset when a connection is reused.
+	 *
+	 * @param connectionPooling Pool the connections?
+	 */
+	public void setConnectionPooling( boolean connectionPooling )
+	{
+		this.connectionPooling = connectionPooling;
+	}
+
 	/**
 	 * Adds a parameter.
 	 *
@@ -314,8 +333,13 @@ public class Runner
 
 			if( dataSource != null )
 				databases.addDatabase( new Database( connection.getName(), dataSource, connection.getUsername(), connection.getPassword(), this.listener ) );
-			else
+			else if( !this.connectionPooling )
 				databases.addDatabase( new Database( connection.getName(), driver, url, connection.getUsername(), connection.getPassword(), this.listener ) );
+			else
+			{
+				ConnectionPool pool = new ConnectionPool( new DriverDataSource( driver, url, connection.getUsername(), connection.getPassword() ) );
+				databases.addDatabase( new Database( connection.getName(), pool, connection.getUsername(), connection.getPassword(), this.listener ) );
+			}
 		}
 		return databases;
 	}
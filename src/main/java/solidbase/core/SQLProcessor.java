@@ -69,11 +69,30 @@ public class SQLProcessor extends CommandProcessor
 		this.context.setCurrentDatabase( getDefaultDatabase() );
 		this.context.getCurrentDatabase().resetUser();
 
-		Command command = this.sqlContext.getSource().readCommand();
-		while( command != null )
+		try
 		{
-			executeWithListeners( command, this.context.skipping() ); // TODO What if exception is ignored, how do we call progress then?
-			command = this.sqlContext.getSource().readCommand();
+			Command command = this.sqlContext.getSource().readCommand();
+			while( command != null )
+			{
+				boolean skip = this.context.skipping();
+				if( isBatchable( command, skip ) )
+				{
+					addBatch( command );
+					if( isBatchFull() )
+						executeBatch();
+				}
+				else
+				{
+					executeBatch();
+					executeWithListeners( command, skip ); // TODO What if exception is ignored, how do we call progress then?
+				}
+				command = this.sqlContext.getSource().readCommand();
+			}
+			executeBatch();
+		}
+		finally
+		{
+			discardBatch();
 		}
 	}
 
@@ -16,8 +16,6 @@
 
 package solidbase.core;
 
-import java.util.regex.Matcher;
-
 import solidbase.core.Delimiter.Type;
 import solidstack.io.Resource;
 import solidstack.io.SourceLocation;
@@ -38,6 +36,11 @@ public class SQLSource
 	 */
 	static protected final Delimiter[] DEFAULT_DELIMITERS = new Delimiter[] { new Delimiter( ";", Type.TRAILING ) };
 
+	/**
+	 * The maximum capacity of the command buffer that is kept for the next command.
+	 */
+	static private final int MAX_REUSE = 0x10000;
+
 	/**
 	 * The underlying reader.
 	 */
@@ -53,6 +56,11 @@ public class SQLSource
 	 */
 	protected Delimiter[] delimiters = DEFAULT_DELIMITERS;
 
+	/**
+	 * Collects the lines of a command. It is reused for the next command, unless it has grown too large.
+	 */
+	private StringBuilder result = new StringBuilder();
+
 
 	/**
 	 * Constructor.
@@ -133,7 +141,10 @@ public class SQLSource
 	 */
 	public Command readCommand()
 	{
-		StringBuilder result = new StringBuilder();
+		StringBuilder result = this.result;
+		result.setLength( 0 );
+		if( result.capacity() > MAX_REUSE )
+			this.result = result = new StringBuilder();
 		int pos = 0; // No line found yet TODO Can we use source location instead?
 
 		while( true )
@@ -170,20 +181,19 @@ public class SQLSource
 				}
 			}
 
-			if( pos == 0 && line.trim().length() == 0 ) // Skip the first empty lines
+			if( pos == 0 && isBlank( line ) ) // Skip the first empty lines
 				continue;
 
 			for( Delimiter delimiter : this.delimiters )
 			{
-				Matcher matcher = delimiter.pattern.matcher( line );
-				if( matcher.matches() )
+				String[] match = delimiter.match( line );
+				if( match != null )
 				{
 					if( pos == 0 )
 						pos = this.reader.getLocation().getLineNumber() - 1;
-					if( matcher.groupCount() > 0 )
-						result.append( matcher.group( 1 ) );
-					if( matcher.groupCount() > 1 )
-						this.buffer = matcher.group( 2 );
+					if( match[ 0 ] != null )
+						result.append( match[ 0 ] );
+					this.buffer = match[ 1 ];
 					return new Command( result.toString(), false, this.reader.getLocation().lineNumber( pos ) );
 				}
 			}
@@ -195,6 +205,18 @@ public class SQLSource
 		}
 	}
 
+	/**
+	 * Is the given line empty or does it contain whitespace only? Same as {@link String#trim()} returning an empty
+	 * string, without creating a new string.
+	 */
+	static private boolean isBlank( String line )
+	{
+		for( int i = 0, len = line.length(); i < len; i++ )
+			if( line.charAt( i ) > ' ' )
+				return false;
+		return true;
+	}
+
 	/**
 	 * Returns the underlying resource.
 	 *
@@ -19,6 +19,7 @@ package solidbase.core;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 
 import solidstack.script.objects.Tuple;
 
@@ -34,16 +35,19 @@ public class ScriptDB
 	public Object selectFirst( String sql ) throws SQLException
 	{
 		Connection connection = this.context.getCurrentDatabase().getConnection();
-		ResultSet result = connection.createStatement().executeQuery( sql );
-		boolean record = result.next();
-
-		int count = result.getMetaData().getColumnCount();
-		if( count == 1 )
-			return record ? result.getObject( 1 ) : null;
-
-		Tuple tuple = new Tuple(); // TODO This is not language independent
-		for( int i = 1; i <= count; i++ )
-			tuple.append( record ? result.getObject( i ) : null );
-		return tuple;
+		try( Statement statement = connection.createStatement() )
+		{
+			ResultSet result = statement.executeQuery( sql );
+			boolean record = result.next();
+
+			int count = result.getMetaData().getColumnCount();
+			if( count == 1 )
+				return record ? result.getObject( 1 ) : null;
+
+			Tuple tuple = new Tuple(); // TODO This is not language independent
+			for( int i = 1; i <= count; i++ )
+				tuple.append( record ? result.getObject( i ) : null );
+			return tuple;
+		}
 	}
 }
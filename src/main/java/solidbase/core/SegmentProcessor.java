@@ -0,0 +1,86 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core;
+
+import solidstack.io.SourceReader;
+
+
+/**
+ * Executes a segment concurrently with other segments, see {@link UpgradeProcessor#upgradeConcurrently(Path)}. It
+ * has its own connections and reader, and it only writes the log table.
+ *
+ * @author René M. de Bloois
+ */
+class SegmentProcessor extends UpgradeProcessor {
+	/**
+	 * The number of statements to skip, because they have been executed in an earlier upgrade that did not complete.
+	 */
+	private int skipCount;
+
+	/**
+	 * The source of the segment.
+	 */
+	private UpgradeSource source;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param parent The processor that coordinates the concurrent segments.
+	 * @param listener Listens to the progress.
+	 * @param skipCount The number of statements to skip.
+	 */
+	SegmentProcessor( UpgradeProcessor parent, ProgressListener listener, int skipCount ) {
+		super( listener );
+		DatabaseContext databases = new DatabaseContext();
+		for( Database database : parent.databases.getDatabases() ) {
+			databases.addDatabase( new Database( database, listener ) );
+		}
+		setDatabases( databases );
+		setUpgradeFile( parent.upgradeFile );
+		setParameters( parent.parameters );
+		init();
+		dbVersion.setLogOnly( true );
+		this.skipCount = skipCount;
+	}
+
+	@Override
+	protected UpgradeSource openSegment( UpgradeSegment segment ) {
+		source = upgradeFile.openSegment( segment );
+		return source;
+	}
+
+	@Override
+	protected int getSkipCount( UpgradeSegment segment ) {
+		return skipCount;
+	}
+
+	@Override
+	public void end() {
+		if( source != null ) {
+			source.close();
+			source = null;
+		}
+		for( Database database : databases.getDatabases() ) {
+			database.closeConnections();
+		}
+	}
+
+	@Override
+	public SourceReader getReader() {
+		return source.reader;
+	}
+}
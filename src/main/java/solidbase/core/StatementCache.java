@@ -0,0 +1,91 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import solidbase.util.LRUCache;
+
+
+/**
+ * Prepared statements of a single connection, by SQL. The least recently used statement is closed when the cache is
+ * full. The statements are owned by the cache and should not be closed by the user.
+ *
+ * @author René M. de Bloois
+ */
+public class StatementCache
+{
+	private Connection connection;
+	private LRUCache<String, PreparedStatement> statements;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param connection The connection to prepare the statements on.
+	 * @param size The maximum number of statements to keep open.
+	 */
+	public StatementCache( Connection connection, int size ) {
+		this.connection = connection;
+		statements = new LRUCache<String, PreparedStatement>( size ) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void evicted( String sql, PreparedStatement statement ) {
+				close( statement );
+			}
+		};
+	}
+
+	/**
+	 * Returns the prepared statement for the given SQL. The statement is prepared when it is not in the cache.
+	 *
+	 * @param sql The SQL.
+	 * @return The prepared statement.
+	 * @throws SQLException Whenever JDBC throws an SQLException.
+	 */
+	public PreparedStatement prepareStatement( String sql ) throws SQLException {
+		PreparedStatement statement = statements.get( sql );
+		if( statement == null ) {
+			statement = connection.prepareStatement( sql );
+			statements.put( sql, statement );
+		}
+		return statement;
+	}
+
+	/**
+	 * Closes all statements.
+	 */
+	public void close() {
+		try {
+			for( PreparedStatement statement : statements.values() ) {
+				close( statement );
+			}
+		} finally {
+			statements.clear();
+		}
+	}
+
+	static private void close( PreparedStatement statement ) {
+		try {
+			statement.close();
+		} catch( SQLException e ) {
+			throw new SystemException( e );
+		}
+	}
+}
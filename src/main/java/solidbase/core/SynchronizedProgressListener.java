@@ -0,0 +1,252 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core;
+
+import solidstack.io.Resource;
+
+
+/**
+ * Passes the events to another progress listener one at a time. This is used by segments that are executed
+ * concurrently.
+ *
+ * @author René M. de Bloois
+ */
+class SynchronizedProgressListener extends ProgressListener
+{
+	/**
+	 * The listener that receives the events.
+	 */
+	private ProgressListener listener;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param listener The listener that receives the events.
+	 */
+	SynchronizedProgressListener( ProgressListener listener )
+	{
+		this.listener = listener;
+	}
+
+	@Override
+	public void cr()
+	{
+		synchronized( this.listener )
+		{
+			this.listener.cr();
+		}
+	}
+
+	@Override
+	public void println( String message )
+	{
+		synchronized( this.listener )
+		{
+			this.listener.println( message );
+		}
+	}
+
+	@Override
+	public void reset()
+	{
+		synchronized( this.listener )
+		{
+			this.listener.reset();
+		}
+	}
+
+	@Override
+	protected void openingUpgradeFile( Resource file )
+	{
+		synchronized( this.listener )
+		{
+			this.listener.openingUpgradeFile( file );
+		}
+	}
+
+	@Override
+	protected void openingSQLFile( Resource sqlFile )
+	{
+		synchronized( this.listener )
+		{
+			this.listener.openingSQLFile( sqlFile );
+		}
+	}
+
+	@Override
+	protected void openedUpgradeFile( UpgradeFile file )
+	{
+		synchronized( this.listener )
+		{
+			this.listener.openedUpgradeFile( file );
+		}
+	}
+
+	@Override
+	protected void openedSQLFile( SQLFile sqlFile )
+	{
+		synchronized( this.listener )
+		{
+			this.listener.openedSQLFile( sqlFile );
+		}
+	}
+
+	@Override
+	protected void upgradeStarting( UpgradeSegment segment )
+	{
+		synchronized( this.listener )
+		{
+			this.listener.upgradeStarting( segment );
+		}
+	}
+
+	@Override
+	protected void startSection( int level, String message )
+	{
+		synchronized( this.listener )
+		{
+			this.listener.startSection( level, message );
+		}
+	}
+
+	@Override
+	protected void executing( Command command )
+	{
+		synchronized( this.listener )
+		{
+			this.listener.executing( command );
+		}
+	}
+
+	@Override
+	protected void exception( ProcessException exception )
+	{
+		synchronized( this.listener )
+		{
+			this.listener.exception( exception );
+		}
+	}
+
+	@Override
+	protected void executed()
+	{
+		synchronized( this.listener )
+		{
+			this.listener.executed();
+		}
+	}
+
+	@Override
+	protected void upgradeFinished()
+	{
+		synchronized( this.listener )
+		{
+			this.listener.upgradeFinished();
+		}
+	}
+
+	@Override
+	protected void upgradeComplete()
+	{
+		synchronized( this.listener )
+		{
+			this.listener.upgradeComplete();
+		}
+	}
+
+	@Override
+	protected void upgradeAborted()
+	{
+		synchronized( this.listener )
+		{
+			this.listener.upgradeAborted();
+		}
+	}
+
+	@Override
+	protected void noUpgradeNeeded()
+	{
+		synchronized( this.listener )
+		{
+			this.listener.noUpgradeNeeded();
+		}
+	}
+
+	@Override
+	protected void sqlExecutionComplete()
+	{
+		synchronized( this.listener )
+		{
+			this.listener.sqlExecutionComplete();
+		}
+	}
+
+	@Override
+	protected void sqlExecutionAborted()
+	{
+		synchronized( this.listener )
+		{
+			this.listener.sqlExecutionAborted();
+		}
+	}
+
+	@Override
+	protected String requestPassword( String user )
+	{
+		synchronized( this.listener )
+		{
+			return this.listener.requestPassword( user );
+		}
+	}
+
+	@Override
+	protected void skipped( Command command )
+	{
+		synchronized( this.listener )
+		{
+			this.listener.skipped( command );
+		}
+	}
+
+	@Override
+	protected void debug( String message )
+	{
+		synchronized( this.listener )
+		{
+			this.listener.debug( message );
+		}
+	}
+
+	@Override
+	protected void statistics( String message )
+	{
+		synchronized( this.listener )
+		{
+			this.listener.statistics( message );
+		}
+	}
+
+	@Override
+	public void print( String message )
+	{
+		synchronized( this.listener )
+		{
+			this.listener.print( message );
+		}
+	}
+}
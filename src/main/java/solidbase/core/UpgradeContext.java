@@ -32,6 +32,12 @@ public class UpgradeContext extends CommandContext
 	 */
 	private boolean isTransient;
 
+	/**
+	 * Number of statements after which the progress is written to the version tables. With 0 or 1 the progress is
+	 * written after each statement.
+	 */
+	private int progressCheckpoint;
+
 	/**
 	 * Constructor.
 	 *
@@ -52,6 +58,7 @@ public class UpgradeContext extends CommandContext
 	{
 		super( parent );
 		this.isTransient = parent.isTransient;
+		this.progressCheckpoint = parent.progressCheckpoint;
 
 		this.source = source;
 	}
@@ -77,6 +84,27 @@ public class UpgradeContext extends CommandContext
 		this.isTransient = isTransient;
 	}
 
+	/**
+	 * Returns the number of statements after which the progress is written to the version tables.
+	 *
+	 * @return The number of statements after which the progress is written to the version tables.
+	 */
+	public int getProgressCheckpoint()
+	{
+		return this.progressCheckpoint;
+	}
+
+	/**
+	 * Sets the number of statements after which the progress is written to the version tables. With 0 or 1 the
+	 * progress is written after each statement.
+	 *
+	 * @param progressCheckpoint The number of statements.
+	 */
+	public void setProgressCheckpoint( int progressCheckpoint )
+	{
+		this.progressCheckpoint = progressCheckpoint;
+	}
+
 	/**
 	 * Returns the source for the SQL commands.
 	 *
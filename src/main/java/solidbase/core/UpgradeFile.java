@@ -16,7 +16,13 @@
 
 package solidbase.core;
 
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -34,9 +40,12 @@ import org.apache.commons.lang3.StringUtils;
 
 import solidbase.core.UpgradeSegment.Type;
 import solidbase.util.Assert;
+import solidstack.io.FatalIOException;
 import solidstack.io.RandomAccessSourceReader;
+import solidstack.io.ReaderSourceReader;
 import solidstack.io.SourceException;
 import solidstack.io.SourceLocation;
+import solidstack.io.SourceReader;
 
 
 /**
@@ -48,11 +57,13 @@ import solidstack.io.SourceLocation;
 public class UpgradeFile
 {
 	static private final Pattern DEFINITION_MARKER_PATTERN = Pattern.compile( "(SETUP|UPGRADE|SWITCH|DOWNGRADE)[ \t]+.*", Pattern.CASE_INSENSITIVE );
-	static private final Pattern DEFINITION_PATTERN = Pattern.compile( "(SETUP|UPGRADE|SWITCH|DOWNGRADE)([ \t]+OPEN)?[ \t]+\"([^\"]*)\"[ \t]+-->[ \t]+\"([^\"]+)\"([ \t]*//.*)?", Pattern.CASE_INSENSITIVE );
-	static private final String DEFINITION_SYNTAX_ERROR = "Line should match the following syntax: (SETUP|UPGRADE|SWITCH|DOWNGRADE) [OPEN] \"...\" --> \"...\"";
+	static private final Pattern DEFINITION_PATTERN = Pattern.compile( "(SETUP|UPGRADE|SWITCH|DOWNGRADE)([ \t]+OPEN)?[ \t]+\"([^\"]*)\"[ \t]+-->[ \t]+\"([^\"]+)\"(?:[ \t]+DEPENDS[ \t]+ON[ \t]+(\"[^\"]*\"(?:[ \t]*,[ \t]*\"[^\"]*\")*))?([ \t]*//.*)?", Pattern.CASE_INSENSITIVE );
+	static private final String DEFINITION_SYNTAX_ERROR = "Line should match the following syntax: (SETUP|UPGRADE|SWITCH|DOWNGRADE) [OPEN] \"...\" --> \"...\" [DEPENDS ON \"...\", ...]";
+	static private final Pattern DEPENDENCY_PATTERN = Pattern.compile( "\"([^\"]*)\"" );
 	static private final Pattern DEFINITION_END_PATTERN = Pattern.compile( "(?:END\\s+|/)DEFINITION", Pattern.CASE_INSENSITIVE );
 
 	static private final Pattern CONTROL_TABLES_PATTERN = Pattern.compile( "VERSION\\s+TABLE\\s+(\\S+)\\s+LOG\\s+TABLE\\s+(\\S+)", Pattern.CASE_INSENSITIVE );
+	static private final Pattern SEGMENT_INDEX_PATTERN = Pattern.compile( "SEGMENT\\s+INDEX\\s+\"([^\"]+)\"", Pattern.CASE_INSENSITIVE );
 
 	static private final Pattern SEGMENT_START_MARKER_PATTERN = Pattern.compile( "--\\*[ \t]*(SETUP|UPGRADE|SWITCH|DOWNGRADE).*", Pattern.CASE_INSENSITIVE );
 	static final Pattern SEGMENT_START_PATTERN = Pattern.compile( "(SETUP|UPGRADE|SWITCH|DOWNGRADE)[ \t]+\"([^\"]*)\"[ \t]-->[ \t]+\"([^\"]+)\"", Pattern.CASE_INSENSITIVE );
@@ -74,6 +85,11 @@ public class UpgradeFile
 	 */
 	protected RandomAccessSourceReader reader;
 
+	/**
+	 * The reader which is positioned directly at the last segment by its byte offset, if any.
+	 */
+	protected SourceReader segmentReader;
+
 	/**
 	 * The default delimiters.
 	 */
@@ -94,6 +110,27 @@ public class UpgradeFile
 	 */
 	protected Map< String, UpgradeSegment > setups = new HashMap<>();
 
+	/**
+	 * All normal segments in a map indexed by target version. This index and the memoized results below are built on
+	 * first use, after the segments are complete.
+	 */
+	protected Map< String, Collection< UpgradeSegment > > segmentsByTarget;
+
+	/**
+	 * Memoized versions from which a version can be reached, indexed by the version.
+	 */
+	protected Map< String, Set< String > > ancestors;
+
+	/**
+	 * Memoized upgrade paths, indexed by source and target version.
+	 */
+	protected Map< List< Object >, Path > paths;
+
+	/**
+	 * Memoized reachable versions, indexed by source version, targeting version and downgrades allowed.
+	 */
+	protected Map< List< Object >, Set< String > > reachables;
+
 //	/**
 //	 * Initialization fragment.
 //	 */
@@ -114,6 +151,16 @@ public class UpgradeFile
 	 */
 	protected String logTableName;
 
+	/**
+	 * The name of the segment index file as defined in the upgrade file, relative to the upgrade file.
+	 */
+	protected String indexFileName;
+
+	/**
+	 * Does the upgrade file declare segment dependencies? Then independent segments are executed concurrently.
+	 */
+	protected boolean segmentDependencies;
+
 
 	/**
 	 * Constructor.
@@ -152,6 +199,7 @@ public class UpgradeFile
 	 */
 	protected void scan()
 	{
+		Map< UpgradeSegment, SourceLocation > dependents = new HashMap<>();
 		boolean withinDefinition = false;
 		boolean definitionComplete = false;
 		while( !definitionComplete )
@@ -199,6 +247,18 @@ public class UpgradeFile
 						String target = matcher.group( 4 );
 						Type type = stringToType( action );
 						UpgradeSegment segment = new UpgradeSegment( type, source, target, open );
+						if( matcher.group( 5 ) != null )
+						{
+							if( type != Type.UPGRADE && type != Type.SWITCH )
+								throw new SourceException( "DEPENDS ON is only allowed for UPGRADE and SWITCH", location );
+							Set< String > dependencies = new HashSet<>();
+							Matcher dependency = DEPENDENCY_PATTERN.matcher( matcher.group( 5 ) );
+							while( dependency.find() )
+								dependencies.add( dependency.group( 1 ).length() == 0 ? null : dependency.group( 1 ) );
+							segment.setDependencies( dependencies );
+							dependents.put( segment, location );
+							this.segmentDependencies = true;
+						}
 						if( type == Type.SETUP )
 						{
 							if( this.setups.containsKey( source ) )
@@ -220,6 +280,8 @@ public class UpgradeFile
 						this.versionTableName = matcher.group( 1 );
 						this.logTableName = matcher.group( 2 );
 					}
+					else if( ( matcher = SEGMENT_INDEX_PATTERN.matcher( line ) ).matches() )
+						this.indexFileName = matcher.group( 1 );
 					else if( ( matcher = CommandProcessor.delimiterPattern.matcher( line ) ).matches() || ( matcher = CommandProcessor.terminatorPattern.matcher( line ) ).matches() )
 						this.defaultDelimiters = CommandProcessor.parseDelimiters( matcher );
 					else
@@ -230,6 +292,28 @@ public class UpgradeFile
 			}
 		}
 
+		// Check that segments only depend on versions that come before them
+		if( !dependents.isEmpty() )
+		{
+			index();
+			for( Map.Entry< UpgradeSegment, SourceLocation > entry : dependents.entrySet() )
+			{
+				UpgradeSegment segment = entry.getKey();
+				Set< String > ancestors = getAncestors( segment.getSource() );
+				for( String dependency : segment.getDependencies() )
+					if( !Objects.equals( dependency, segment.getSource() ) && !ancestors.contains( dependency ) )
+						throw new SourceException( "Version \"" + StringUtils.defaultString( dependency ) + "\" does not come before \"" + StringUtils.defaultString( segment.getSource() ) + "\"", entry.getValue() );
+			}
+		}
+
+		UpgradeFileIndex index = null;
+		if( this.indexFileName != null )
+		{
+			index = UpgradeFileIndex.forUpgradeFile( this.reader.getResource(), this.indexFileName );
+			if( index != null && index.load( this, this.reader.getResource(), this.reader.getEncoding() ) )
+				return;
+		}
+
 		String line = this.reader.readLine();
 		while( line != null )
 		{
@@ -359,6 +443,20 @@ public class UpgradeFile
 		for( UpgradeSegment segment : this.setups.values() )
 			if( segment.getLocation() == null )
 				throw new FatalException( "Setup block \"" + StringUtils.defaultString( segment.getSource() ) + "\" --> \"" + segment.getTarget() + "\" not found" );
+
+		if( index != null )
+			index.save( this, this.reader.getEncoding() );
+	}
+
+
+	/**
+	 * Does the upgrade file declare segment dependencies?
+	 *
+	 * @return True if the upgrade file declares segment dependencies, false otherwise.
+	 */
+	protected boolean hasSegmentDependencies()
+	{
+		return this.segmentDependencies;
 	}
 
 
@@ -378,6 +476,7 @@ public class UpgradeFile
 	 */
 	protected void close()
 	{
+		closeSegmentReader();
 		if( this.reader != null )
 		{
 			this.reader.close();
@@ -428,7 +527,60 @@ public class UpgradeFile
 
 
 	/**
-	 * Determine the best path between a source version and a target version.
+	 * Builds the index of segments by target version, if not already built.
+	 */
+	protected void index()
+	{
+		if( this.segmentsByTarget != null )
+			return;
+
+		this.segmentsByTarget = new HashMap<>();
+		for( Collection< UpgradeSegment > segments : this.segments.values() )
+			for( UpgradeSegment segment : segments )
+			{
+				Collection< UpgradeSegment > sources = this.segmentsByTarget.get( segment.getTarget() );
+				if( sources == null )
+					this.segmentsByTarget.put( segment.getTarget(), sources = new ArrayList<>() );
+				sources.add( segment );
+			}
+
+		this.ancestors = new HashMap<>();
+		this.paths = new HashMap<>();
+		this.reachables = new HashMap<>();
+	}
+
+
+	/**
+	 * Returns all versions from which the given version can be reached.
+	 *
+	 * @param version The version.
+	 * @return All versions from which the given version can be reached.
+	 */
+	protected Set< String > getAncestors( String version )
+	{
+		Set< String > result = this.ancestors.get( version );
+		if( result != null )
+			return result;
+
+		result = new HashSet<>();
+		LinkedList< String > queue = new LinkedList<>();
+		queue.add( version );
+		while( !queue.isEmpty() )
+		{
+			Collection< UpgradeSegment > segments = this.segmentsByTarget.get( queue.removeFirst() );
+			if( segments != null )
+				for( UpgradeSegment segment : segments )
+					if( result.add( segment.getSource() ) )
+						queue.add( segment.getSource() );
+		}
+
+		this.ancestors.put( version, result );
+		return result;
+	}
+
+
+	/**
+	 * Determine the best path between a source version and a target version. The result is memoized.
 	 *
 	 * @param source The source version.
 	 * @param target The target version.
@@ -438,9 +590,23 @@ public class UpgradeFile
 	 */
 	protected Path getUpgradePath( String source, String target, boolean downgradesAllowed )
 	{
-		Set< String > done = new HashSet<>();
-		done.add( source );
-		return getUpgradePath0( source, target, downgradesAllowed, done );
+		index();
+
+		// downgradesAllowed does not influence the path
+		List< Object > key = Arrays.< Object >asList( source, target );
+		Path result;
+		if( this.paths.containsKey( key ) )
+			result = this.paths.get( key );
+		else
+		{
+			Set< String > done = new HashSet<>();
+			done.add( source );
+			result = getUpgradePath0( source, target, downgradesAllowed, done );
+			this.paths.put( key, result );
+		}
+
+		// Path is mutable, return a copy
+		return result != null ? new Path().append( result ) : null;
 	}
 
 
@@ -487,11 +653,14 @@ public class UpgradeFile
 			return null;
 
 		// More then one segment found, select the best one
+		Set< String > ancestors = getAncestors( target );
 		Path selected = null;
 		for( UpgradeSegment segment : segments )
 		{
 			if( targetsProcessed.contains( segment.getTarget() ) ) // Target already processed -> ignore
 				continue;
+			if( !target.equals( segment.getTarget() ) && !ancestors.contains( segment.getTarget() ) ) // Target can't be reached from here -> ignore
+				continue;
 
 			// Build new set for recursive call
 			Set< String > processed = new HashSet<>();
@@ -607,6 +776,7 @@ public class UpgradeFile
 
 	/**
 	 * Retrieves all versions that are reachable from the given source version. The current version is also considered.
+	 * The result is memoized.
 	 *
 	 * @param source The source version.
 	 * @param targeting Already targeting a specific version.
@@ -614,6 +784,30 @@ public class UpgradeFile
 	 * @param result This set gets filled with all versions that are reachable from the given source version.
 	 */
 	protected void collectReachableVersions( String source, String targeting, boolean downgradesAllowed, Set< String > result )
+	{
+		index();
+
+		List< Object > key = Arrays.< Object >asList( source, targeting, downgradesAllowed );
+		Set< String > reachable = this.reachables.get( key );
+		if( reachable == null )
+		{
+			reachable = new LinkedHashSet<>();
+			collectReachableVersions0( source, targeting, downgradesAllowed, reachable );
+			this.reachables.put( key, reachable );
+		}
+		result.addAll( reachable );
+	}
+
+
+	/**
+	 * Retrieves all versions that are reachable from the given source version. The current version is also considered.
+	 *
+	 * @param source The source version.
+	 * @param targeting Already targeting a specific version.
+	 * @param downgradesAllowed Allow downgrades.
+	 * @param result This set gets filled with all versions that are reachable from the given source version.
+	 */
+	protected void collectReachableVersions0( String source, String targeting, boolean downgradesAllowed, Set< String > result )
 	{
 		if( !this.versions.contains( source ) )
 			throw new FatalException( "The current database version " + StringUtils.defaultString( source, "<no version>" ) + " is not available in the upgrade file. Maybe this version is deprecated or the wrong upgrade file is used." );
@@ -669,12 +863,114 @@ public class UpgradeFile
 	{
 		Assert.isTrue( segment.getLocation() != null, "Upgrade or setup block not found" );
 
-		this.reader.gotoLine( segment.getLineNumber() );
-		String line = this.reader.readLine();
-//		System.out.println( line );
-		Assert.isTrue( SEGMENT_START_MARKER_PATTERN.matcher( line ).matches() );
-		UpgradeSource source = new UpgradeSource( this.reader );
+		closeSegmentReader();
+		SourceReader reader = null;
+		if( segment.getOffset() >= 0 )
+			reader = this.segmentReader = openSegmentReader( segment );
+		if( reader == null )
+		{
+			this.reader.gotoLine( segment.getLineNumber() );
+			String line = this.reader.readLine();
+//			System.out.println( line );
+			Assert.isTrue( SEGMENT_START_MARKER_PATTERN.matcher( line ).matches() );
+			reader = this.reader;
+		}
+		UpgradeSource source = new UpgradeSource( reader );
+		source.setDelimiters( this.defaultDelimiters );
+		return source;
+	}
+
+
+	/**
+	 * Opens a source for the given segment with a reader of its own. Unlike {@link #gotoSegment(UpgradeSegment)}, this
+	 * can be used from multiple threads at the same time. The source needs to be closed.
+	 *
+	 * @param segment The upgrade segment to open.
+	 * @return The source for the given segment.
+	 */
+	protected UpgradeSource openSegment( UpgradeSegment segment )
+	{
+		Assert.isTrue( segment.getLocation() != null, "Upgrade or setup block not found" );
+
+		SourceReader reader = null;
+		if( segment.getOffset() >= 0 )
+			reader = openSegmentReader( segment );
+		if( reader == null )
+		{
+			RandomAccessSourceReader file;
+			try
+			{
+				file = new RandomAccessSourceReader( this.reader.getResource(), EncodingDetector.INSTANCE );
+			}
+			catch( FileNotFoundException e )
+			{
+				throw new FatalException( e.toString() );
+			}
+			file.gotoLine( segment.getLineNumber() );
+			String line = file.readLine();
+			Assert.isTrue( SEGMENT_START_MARKER_PATTERN.matcher( line ).matches() );
+			reader = file;
+		}
+		UpgradeSource source = new UpgradeSource( reader );
 		source.setDelimiters( this.defaultDelimiters );
 		return source;
 	}
+
+
+	/**
+	 * Opens a reader positioned directly at the given segment by its byte offset, which is found in the segment index.
+	 * The reader is positioned after the segment start marker.
+	 *
+	 * @param segment The segment.
+	 * @return The reader, or null if the segment start marker is not found at the offset.
+	 */
+	protected SourceReader openSegmentReader( UpgradeSegment segment )
+	{
+		InputStream in = null;
+		try
+		{
+			in = this.reader.getResource().newInputStream();
+			long remaining = segment.getOffset();
+			while( remaining > 0 )
+			{
+				long skipped = in.skip( remaining );
+				if( skipped <= 0 )
+					break;
+				remaining -= skipped;
+			}
+			String encoding = this.reader.getEncoding();
+			SourceReader result = new ReaderSourceReader( new BufferedReader( new InputStreamReader( in, encoding ) ), segment.getLocation(), encoding );
+			String line = result.readLine();
+			if( remaining == 0 && line != null && SEGMENT_START_MARKER_PATTERN.matcher( line ).matches() )
+				return result;
+			result.close();
+			return null;
+		}
+		catch( IOException e )
+		{
+			if( in != null )
+				try
+				{
+					in.close();
+				}
+				catch( IOException ee )
+				{
+					// Ignore
+				}
+			throw new FatalIOException( e );
+		}
+	}
+
+
+	/**
+	 * Closes the reader which is positioned directly at the last segment, if any.
+	 */
+	protected void closeSegmentReader()
+	{
+		if( this.segmentReader != null )
+		{
+			this.segmentReader.close();
+			this.segmentReader = null;
+		}
+	}
 }
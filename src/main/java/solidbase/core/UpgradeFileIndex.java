@@ -0,0 +1,307 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.CRC32;
+
+import solidbase.core.UpgradeSegment.Type;
+import solidstack.io.FatalIOException;
+import solidstack.io.FileResource;
+import solidstack.io.Resource;
+import solidstack.io.SourceLocation;
+
+
+/**
+ * A sidecar file which stores the positions of the segments of an upgrade file. When the index is still valid for the
+ * upgrade file, the upgrade file does not need to be scanned beyond its definition. The index is keyed by the size,
+ * modification time and checksum of the upgrade file.
+ *
+ * @author René M. de Bloois
+ * @since 2016
+ */
+class UpgradeFileIndex
+{
+	/**
+	 * The upgrade file.
+	 */
+	private File file;
+
+	/**
+	 * The index file.
+	 */
+	private Resource index;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param file The upgrade file.
+	 * @param index The index file.
+	 */
+	private UpgradeFileIndex( File file, Resource index )
+	{
+		this.file = file;
+		this.index = index;
+	}
+
+
+	/**
+	 * Creates an index for the given upgrade file. Only plain files can be indexed.
+	 *
+	 * @param resource The upgrade file.
+	 * @param indexName The name of the index file, relative to the upgrade file.
+	 * @return The index, or null if the upgrade file is not a plain file.
+	 */
+	static UpgradeFileIndex forUpgradeFile( Resource resource, String indexName )
+	{
+		if( !( resource.unwrap() instanceof FileResource ) || resource.isGZip() )
+			return null;
+		return new UpgradeFileIndex( new File( resource.getURI() ), resource.resolve( indexName ) );
+	}
+
+
+	/**
+	 * Loads the segment positions from the index into the segments of the given upgrade file. Nothing is changed when
+	 * the index is missing, unreadable or out of date.
+	 *
+	 * @param upgradeFile The upgrade file with its definition parsed.
+	 * @param resource The resource of the upgrade file, for the segment locations.
+	 * @param encoding The encoding of the upgrade file.
+	 * @return True if the positions are loaded, false if the upgrade file needs to be scanned.
+	 */
+	boolean load( UpgradeFile upgradeFile, Resource resource, String encoding )
+	{
+		if( !this.index.exists() )
+			return false;
+
+		Properties properties = new Properties();
+		try( InputStream in = this.index.newInputStream() )
+		{
+			properties.load( in );
+		}
+		catch( IOException e )
+		{
+			return false;
+		}
+
+		if( !String.valueOf( this.file.length() ).equals( properties.getProperty( "size" ) ) )
+			return false;
+		if( !String.valueOf( this.file.lastModified() ).equals( properties.getProperty( "modified" ) ) )
+			return false;
+		if( !encoding.equals( properties.getProperty( "encoding" ) ) )
+			return false;
+
+		Map< UpgradeSegment, long[] > positions = new IdentityHashMap<>();
+		try
+		{
+			int count = Integer.parseInt( properties.getProperty( "segments", "-1" ) );
+			if( count != countSegments( upgradeFile ) )
+				return false;
+			for( int i = 0; i < count; i++ )
+			{
+				String prefix = "segment." + i + ".";
+				Type type = Type.valueOf( properties.getProperty( prefix + "type", "" ) );
+				String source = properties.getProperty( prefix + "source" );
+				String target = properties.getProperty( prefix + "target" );
+				UpgradeSegment segment;
+				if( type == Type.SETUP )
+				{
+					segment = upgradeFile.setups.get( source );
+					if( segment != null && !segment.getTarget().equals( target ) )
+						segment = null;
+				}
+				else
+					segment = upgradeFile.getSegment( source, target );
+				if( segment == null || segment.type != type || positions.containsKey( segment ) )
+					return false;
+				long line = Long.parseLong( properties.getProperty( prefix + "line", "" ) );
+				long offset = Long.parseLong( properties.getProperty( prefix + "offset", "" ) );
+				positions.put( segment, new long[] { line, offset } );
+			}
+		}
+		catch( IllegalArgumentException e ) // Also NumberFormatException
+		{
+			return false;
+		}
+
+		// The most expensive check last
+		if( !String.valueOf( checksum( null, null ) ).equals( properties.getProperty( "crc" ) ) )
+			return false;
+
+		for( Map.Entry< UpgradeSegment, long[] > entry : positions.entrySet() )
+		{
+			UpgradeSegment segment = entry.getKey();
+			segment.setLocation( SourceLocation.forText( resource, (int)entry.getValue()[ 0 ] ) );
+			segment.setOffset( entry.getValue()[ 1 ] );
+		}
+		return true;
+	}
+
+
+	/**
+	 * Saves the segment positions of the given scanned upgrade file to the index. A failure to write the index is
+	 * ignored, the upgrade file will just be scanned again the next time.
+	 *
+	 * @param upgradeFile The scanned upgrade file.
+	 * @param encoding The encoding of the upgrade file.
+	 */
+	void save( UpgradeFile upgradeFile, String encoding )
+	{
+		List< UpgradeSegment > segments = new ArrayList<>( upgradeFile.setups.values() );
+		for( Collection< UpgradeSegment > list : upgradeFile.segments.values() )
+			segments.addAll( list );
+
+		int[] lines = new int[ segments.size() ];
+		for( int i = 0; i < lines.length; i++ )
+			lines[ i ] = segments.get( i ).getLineNumber();
+		long[] offsets = new long[ lines.length ];
+
+		Properties properties = new Properties();
+		properties.setProperty( "size", String.valueOf( this.file.length() ) );
+		properties.setProperty( "modified", String.valueOf( this.file.lastModified() ) );
+		properties.setProperty( "crc", String.valueOf( checksum( lines, offsets ) ) );
+		properties.setProperty( "encoding", encoding );
+		properties.setProperty( "segments", String.valueOf( lines.length ) );
+
+		boolean seekable = isSeekable( encoding );
+		for( int i = 0; i < lines.length; i++ )
+		{
+			UpgradeSegment segment = segments.get( i );
+			String prefix = "segment." + i + ".";
+			properties.setProperty( prefix + "type", segment.type.name() );
+			if( segment.getSource() != null )
+				properties.setProperty( prefix + "source", segment.getSource() );
+			properties.setProperty( prefix + "target", segment.getTarget() );
+			properties.setProperty( prefix + "line", String.valueOf( lines[ i ] ) );
+			properties.setProperty( prefix + "offset", String.valueOf( seekable ? offsets[ i ] : -1 ) );
+			segment.setOffset( seekable ? offsets[ i ] : -1 );
+		}
+
+		try( OutputStream out = this.index.newOutputStream() )
+		{
+			properties.store( out, "SolidBase upgrade file index, do not edit" );
+		}
+		catch( IOException | FatalIOException e )
+		{
+			// The index is an optimization only
+		}
+	}
+
+
+	/**
+	 * Reads the raw bytes of the upgrade file to calculate its checksum, and optionally the byte offsets of the given
+	 * lines.
+	 *
+	 * @param lines The line numbers to find the offsets for, may be null.
+	 * @param offsets Receives the byte offsets of the given lines.
+	 * @return The checksum of the upgrade file.
+	 */
+	private long checksum( int[] lines, long[] offsets )
+	{
+		// Sort the lines while remembering where they came from
+		Integer[] order = new Integer[ lines != null ? lines.length : 0 ];
+		for( int i = 0; i < order.length; i++ )
+			order[ i ] = i;
+		if( lines != null )
+		{
+			final int[] l = lines;
+			Arrays.sort( order, new Comparator< Integer >()
+			{
+				@Override
+				public int compare( Integer o1, Integer o2 )
+				{
+					return Integer.compare( l[ o1 ], l[ o2 ] );
+				}
+			} );
+		}
+
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[ 65536 ];
+		int next = 0;
+		int line = 1;
+		long position = 0;
+		while( next < order.length && lines[ order[ next ] ] == line )
+			offsets[ order[ next++ ] ] = 0;
+		try( InputStream in = new FileInputStream( this.file ) )
+		{
+			for( int read = in.read( buffer ); read >= 0; read = in.read( buffer ) )
+			{
+				crc.update( buffer, 0, read );
+				for( int i = 0; i < read && next < order.length; i++ )
+					if( buffer[ i ] == '\n' )
+					{
+						line++;
+						while( next < order.length && lines[ order[ next ] ] == line )
+							offsets[ order[ next++ ] ] = position + i + 1;
+					}
+				position += read;
+			}
+		}
+		catch( IOException e )
+		{
+			throw new FatalIOException( e );
+		}
+
+		while( next < order.length )
+			offsets[ order[ next++ ] ] = -1; // Beyond the end
+		return crc.getValue();
+	}
+
+
+	/**
+	 * Can byte offsets be used to seek in files with the given encoding? This is the case when the newline and the
+	 * segment marker have the same single bytes as in US-ASCII.
+	 *
+	 * @param encoding The encoding.
+	 * @return True if byte offsets can be used, false otherwise.
+	 */
+	static boolean isSeekable( String encoding )
+	{
+		byte[] test = "\n--*".getBytes( StandardCharsets.US_ASCII );
+		return Arrays.equals( test, "\n--*".getBytes( Charset.forName( encoding ) ) );
+	}
+
+
+	/**
+	 * Counts the defined segments of the given upgrade file.
+	 *
+	 * @param upgradeFile The upgrade file.
+	 * @return The number of defined segments.
+	 */
+	static private int countSegments( UpgradeFile upgradeFile )
+	{
+		int result = upgradeFile.setups.size();
+		for( Collection< UpgradeSegment > segments : upgradeFile.segments.values() )
+			result += segments.size();
+		return result;
+	}
+}
@@ -22,11 +22,22 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -76,6 +87,27 @@ public class UpgradeProcessor extends CommandProcessor implements ConnectionList
 	 */
 	static protected Pattern includePattern = Pattern.compile( "INCLUDE\\s+\"(.*)\"", Pattern.CASE_INSENSITIVE );
 
+	/**
+	 * Pattern for SET PROGRESS_CHECKPOINT.
+	 */
+	static protected Pattern setProgressCheckpointPattern = Pattern.compile( "SET\\s+PROGRESS_CHECKPOINT\\s*=\\s*(\\d+)", Pattern.CASE_INSENSITIVE );
+
+	/**
+	 * Pattern for RESET PROGRESS_CHECKPOINT.
+	 */
+	static protected Pattern resetProgressCheckpointPattern = Pattern.compile( "RESET\\s+PROGRESS_CHECKPOINT", Pattern.CASE_INSENSITIVE );
+
+	/**
+	 * Pattern for DML statements. Only the progress of these can be written behind. Other statements, like DDL, are not
+	 * transactional in most databases and cause an immediate checkpoint.
+	 */
+	static protected Pattern dmlPattern = Pattern.compile( "\\s*(?:INSERT|UPDATE|DELETE|MERGE)\\b", Pattern.CASE_INSENSITIVE );
+
+	/**
+	 * The maximum number of segments that are executed concurrently.
+	 */
+	static protected int maxConcurrentSegments = 4;
+
 	// The fields below are all part of the upgrade context. It's reset at the start of each change package.
 
 	/**
@@ -99,6 +131,11 @@ public class UpgradeProcessor extends CommandProcessor implements ConnectionList
 	 */
 	protected UpgradeSegment segment;
 
+	/**
+	 * The number of the last statement in the statement batch.
+	 */
+	protected int batchEnd;
+
 	/**
 	 * The upgrade execution context.
 	 */
@@ -336,6 +373,11 @@ public class UpgradeProcessor extends CommandProcessor implements ConnectionList
 		Path path = upgradeFile.getUpgradePath( version, target, downgradeable );
 		Assert.isTrue( path.size() > 0, "No upgrades found" );
 
+		if( upgradeFile.hasSegmentDependencies() && !path.hasDowngrade && dbVersion.isProgressLogged() ) {
+			upgradeConcurrently( path );
+			return;
+		}
+
 		for( UpgradeSegment segment : path ) {
 			process( segment );
 			if( Thread.currentThread().isInterrupted() ) {
@@ -344,6 +386,143 @@ public class UpgradeProcessor extends CommandProcessor implements ConnectionList
 		}
 	}
 
+	/**
+	 * Executes the segments of the given path that do not depend on each other concurrently, each with connections of
+	 * its own. A segment depends on the segment before it in the path that has its source version as target, or on the
+	 * segments that have one of its declared dependencies as target. The segments only write the log table. The version
+	 * table is updated here, in the order of the path, when all segments before it are complete too. This way the
+	 * final version does not depend on the order in which the segments complete. When the upgrade is restarted, the
+	 * segments that have been completed are skipped, and the progress of the others is found in the log table.
+	 *
+	 * @param path The upgrade path.
+	 * @throws ProcessException Whenever an {@link SQLException} occurs during the execution of a command.
+	 */
+	protected void upgradeConcurrently( Path path ) throws ProcessException {
+		List<UpgradeSegment> segments = new ArrayList<>( path.segments );
+		int size = segments.size();
+		String version = dbVersion.getVersion();
+
+		// Determine which segments need to be complete before a segment can start
+		Set<String> passed = upgradeFile.getAncestors( version );
+		Map<String, Integer> targets = new HashMap<>();
+		targets.put( version, -1 );
+		List<Set<Integer>> dependencies = new ArrayList<>( size );
+		for( int i = 0; i < size; i++ ) {
+			UpgradeSegment segment = segments.get( i );
+			Set<String> versions = segment.getDependencies();
+			if( versions == null ) {
+				versions = Collections.singleton( segment.getSource() );
+			}
+			Set<Integer> depends = new HashSet<>();
+			for( String v : versions ) {
+				Integer index = targets.get( v );
+				if( index == null ) {
+					// Versions that are not in the path: already passed, or on another branch
+					index = passed.contains( v ) ? -1 : i - 1;
+				}
+				if( index >= 0 ) {
+					depends.add( index );
+				}
+			}
+			dependencies.add( depends );
+			targets.put( segment.getTarget(), i );
+		}
+
+		// Determine which segments have been completed, and how many statements to skip for the others
+		boolean[] complete = new boolean[ size ];
+		int[] skipCounts = new int[ size ];
+		for( int i = 0; i < size; i++ ) {
+			UpgradeSegment segment = segments.get( i );
+			if( dbVersion.logContains( segment.getTarget() ) ) {
+				complete[ i ] = true;
+			} else {
+				skipCounts[ i ] = dbVersion.getLoggedStatements( segment );
+				if( i == 0 && segment.getTarget().equals( dbVersion.getTarget() ) ) {
+					skipCounts[ i ] = Math.max( skipCounts[ i ], dbVersion.getStatements() );
+				}
+			}
+		}
+
+		ProgressListener listener = new SynchronizedProgressListener( progress );
+		ExecutorService executor = Executors.newFixedThreadPool( Math.min( size, maxConcurrentSegments ) );
+		CompletionService<Integer> completion = new ExecutorCompletionService<>( executor );
+		boolean[] started = new boolean[ size ];
+		int running = 0;
+		int completed = 0;
+		Throwable failure = null;
+		try {
+			while( true ) {
+				// The version includes the segments at the start of the path that are complete
+				while( completed < size && complete[ completed ] ) {
+					UpgradeSegment segment = segments.get( completed++ );
+					if( !segment.isOpen() ) {
+						dbVersion.updateVersion( segment.getTarget() );
+					}
+				}
+
+				if( failure == null ) {
+					for( int i = 0; i < size; i++ ) {
+						if( !started[ i ] && !complete[ i ] && isComplete( dependencies.get( i ), complete ) ) {
+							started[ i ] = true;
+							running++;
+							completion.submit( newSegmentTask( segments.get( i ), i, new SegmentProcessor( this, listener, skipCounts[ i ] ) ) );
+						}
+					}
+				}
+
+				if( running == 0 ) {
+					break;
+				}
+				Future<Integer> future = completion.take();
+				running--;
+				try {
+					complete[ future.get() ] = true;
+				} catch( ExecutionException e ) {
+					if( failure == null ) {
+						failure = e.getCause();
+					} else {
+						failure.addSuppressed( e.getCause() );
+					}
+				}
+			}
+		} catch( InterruptedException e ) {
+			throw new ThreadInterrupted();
+		} finally {
+			executor.shutdownNow(); // Interrupts the segments that are still running
+			dbVersion.setStale(); // The segments have written the log table
+		}
+
+		if( failure instanceof RuntimeException ) {
+			throw (RuntimeException)failure;
+		}
+		if( failure != null ) {
+			throw (Error)failure;
+		}
+	}
+
+	static private boolean isComplete( Set<Integer> segments, boolean[] complete ) {
+		for( int segment : segments ) {
+			if( !complete[ segment ] ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	static private Callable<Integer> newSegmentTask( final UpgradeSegment segment, final int index, final SegmentProcessor processor ) {
+		return new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				try {
+					processor.process( segment );
+				} finally {
+					processor.end();
+				}
+				return index;
+			}
+		};
+	}
+
 	/**
 	 * Reads a command from the upgrade source.
 	 *
@@ -374,7 +553,7 @@ public class UpgradeProcessor extends CommandProcessor implements ConnectionList
 		progress.upgradeStarting( nonNull( segment ) );
 
 		// TODO Different levels of contexts and scopes, maybe merge them?
-		UpgradeContext context = new UpgradeContext( upgradeFile.gotoSegment( segment ) );
+		UpgradeContext context = new UpgradeContext( openSegment( segment ) );
 		context.setDatabases( databases );
 		if( parameters != null ) {
 			context.swapScope( new MapScope( parameters, context.getScope() ) );
@@ -384,37 +563,57 @@ public class UpgradeProcessor extends CommandProcessor implements ConnectionList
 		this.context.getCurrentDatabase().resetUser();
 
 		// Determine how many to skip
-		int skipCount = 0;
-		if( dbVersion.getTarget() != null ) {
-			skipCount = dbVersion.getStatements();
-		}
+		int skipCount = getSkipCount( segment );
 
 		int count = 0;
+		int sinceCheckpoint = 0;
 		this.segment = segment;
+		Throwable failure = null;
 		try {
 			Command command = readCommand();
 			while( command != null ) {
 				if( !command.isAnnotation() && !upgradeContext.isTransient() && !segment.isSetup() ) {
 					boolean windForward = count < skipCount;
 					count++;
-					try {
-						ProcessException result = executeWithListeners( command, windForward || this.context.skipping() );
-						if( !windForward ) {
-							// We have to update the progress even if the logging fails. Otherwise the segment cannot be
-							// restarted. That's why the progress update is first. But some logging will be lost in that case.
-							dbVersion.updateProgress( segment.getTarget(), count );
-							if( result != null ) {
-								dbVersion.logSQLException( segment, count, command.getCommand(), result );
-							} else {
-								dbVersion.log( segment, count, command.getCommand() );
+					if( !windForward && isBatchable( command, this.context.skipping() ) ) {
+						addBatch( command );
+						batchEnd = count;
+						if( isBatchFull() ) {
+							executeBatch();
+						}
+					} else {
+						executeBatch();
+						int checkpoint = upgradeContext.getProgressCheckpoint();
+						dbVersion.setWriteBehind( checkpoint > 1 );
+						try {
+							ProcessException result = executeWithListeners( command, windForward || this.context.skipping() );
+							if( !windForward ) {
+								// We have to update the progress even if the logging fails. Otherwise the segment cannot be
+								// restarted. That's why the progress update is first. But some logging will be lost in that case.
+								dbVersion.updateProgress( segment.getTarget(), count );
+								if( result != null ) {
+									dbVersion.logSQLException( segment, count, command.getCommand(), result );
+								} else {
+									dbVersion.log( segment, count, command.getCommand() );
+								}
+								if( ++sinceCheckpoint >= checkpoint || !dmlPattern.matcher( command.getCommand() ).lookingAt() ) {
+									dbVersion.checkpoint();
+									sinceCheckpoint = 0;
+								}
+							}
+						} catch( ProcessException e ) {
+							// TODO We need a unit test for this, and the above
+							try {
+								dbVersion.logSQLException( segment, count, command.getCommand(), e );
+								dbVersion.checkpoint();
+							} catch( RuntimeException e2 ) {
+								e.addSuppressed( e2 ); // Keep the original exception
 							}
+							throw e;
 						}
-					} catch( ProcessException e ) {
-						// TODO We need a unit test for this, and the above
-						dbVersion.logSQLException( segment, count, command.getCommand(), e );
-						throw e;
 					}
 				} else {
+					executeBatch();
 					executeWithListeners( command, false );
 				}
 
@@ -427,6 +626,9 @@ public class UpgradeProcessor extends CommandProcessor implements ConnectionList
 				command = readCommand();
 			}
 
+			executeBatch();
+			dbVersion.setWriteBehind( false );
+
 			progress.upgradeFinished();
 
 			dbVersion.setStale(); // TODO With a normal segment, only set stale if not both of the 2 version tables are found
@@ -444,35 +646,125 @@ public class UpgradeProcessor extends CommandProcessor implements ConnectionList
 					dbVersion.logComplete( segment, count );
 				}
 			}
+		} catch( RuntimeException | Error e ) {
+			failure = e;
+			throw e;
 		} finally {
+			discardBatch();
 			this.segment = null;
+			try {
+				dbVersion.setWriteBehind( false ); // Also when interrupted
+			} catch( RuntimeException e ) {
+				if( failure == null ) {
+					throw e;
+				}
+				failure.addSuppressed( e ); // Keep the original exception
+			}
 		}
 	}
 
+	/**
+	 * Opens the source of the given segment.
+	 *
+	 * @param segment The segment.
+	 * @return The source of the given segment.
+	 */
+	protected UpgradeSource openSegment( UpgradeSegment segment ) {
+		return upgradeFile.gotoSegment( segment );
+	}
+
+	/**
+	 * Returns the number of statements of the given segment that have been executed in an earlier upgrade that did not
+	 * complete.
+	 *
+	 * @param segment The segment.
+	 * @return The number of statements to skip.
+	 */
+	protected int getSkipCount( UpgradeSegment segment ) {
+		if( dbVersion.getTarget() != null ) {
+			return dbVersion.getStatements();
+		}
+		return 0;
+	}
+
+	/**
+	 * Records the progress once for the whole batch, and logs each statement of the batch.
+	 */
 	@Override
-	protected boolean executeListeners( Command command, boolean skip ) throws SQLException {
-		if( command.isAnnotation() ) {
-			String sql = command.getCommand();
-			Matcher matcher;
-			if( transientPattern.matcher( sql ).matches() ) {
-				startTransient( command.getLocation() );
-				return true;
-			}
-			if( transientPatternEnd.matcher( sql ).matches() ) {
-				stopTransient( command.getLocation() );
-				return true;
-			}
-			if( ( matcher = ifHistoryContainsPattern.matcher( sql ) ).matches() ) {
-				ifHistoryContains( matcher.group( 1 ), matcher.group( 2 ) );
-				return true;
-			}
-			if( ( matcher = includePattern.matcher( sql ) ).matches() ) {
-				include( matcher.group( 1 ) );
-				return true;
+	protected void batchExecuted( List<Command> commands, ProcessException[] results, int executed, ProcessException failure ) {
+		UpgradeSegment segment = this.segment;
+		int first = batchEnd - commands.size() + 1;
+		dbVersion.setWriteBehind( true );
+		if( executed > 0 ) {
+			dbVersion.updateProgress( segment.getTarget(), first + executed - 1 );
+		}
+		for( int i = 0; i < executed; i++ ) {
+			String sql = commands.get( i ).getCommand();
+			if( results[ i ] != null ) {
+				dbVersion.logSQLException( segment, first + i, sql, results[ i ] );
+			} else {
+				dbVersion.log( segment, first + i, sql );
 			}
 		}
+		if( failure != null ) {
+			dbVersion.logSQLException( segment, first + executed, commands.get( executed ).getCommand(), failure );
+		}
+		dbVersion.checkpoint();
+		dbVersion.setWriteBehind( upgradeContext.getProgressCheckpoint() > 1 );
+	}
+
+	@Override
+	protected boolean executeAnnotation( String keyword, Command command ) throws SQLException {
+		String sql = command.getCommand();
+		Matcher matcher;
+		switch( keyword ) {
+			case "TRANSIENT":
+				if( transientPattern.matcher( sql ).matches() ) {
+					startTransient( command.getLocation() );
+					return true;
+				}
+				break;
+			case "END":
+			case "/TRANSIENT":
+				if( transientPatternEnd.matcher( sql ).matches() ) {
+					stopTransient( command.getLocation() );
+					return true;
+				}
+				break;
+			case "IF":
+				if( ( matcher = ifHistoryContainsPattern.matcher( sql ) ).matches() ) {
+					ifHistoryContains( matcher.group( 1 ), matcher.group( 2 ) );
+					return true;
+				}
+				break;
+			case "INCLUDE":
+				if( ( matcher = includePattern.matcher( sql ) ).matches() ) {
+					include( matcher.group( 1 ) );
+					return true;
+				}
+				break;
+			case "SET":
+				if( ( matcher = setProgressCheckpointPattern.matcher( sql ) ).matches() ) {
+					upgradeContext.setProgressCheckpoint( Integer.parseInt( matcher.group( 1 ) ) );
+					return true;
+				}
+				break;
+			case "RESET":
+				if( resetProgressCheckpointPattern.matcher( sql ).matches() ) {
+					upgradeContext.setProgressCheckpoint( 0 );
+					return true;
+				}
+				break;
+			case "PARALLEL":
+				if( PARALLEL_STATEMENTS.matcher( sql ).matches() ) {
+					// When a statement fails, later statements of its group may have been committed already. DBVERSION
+					// can't record that, so a restart would execute them again.
+					throw new SourceException( "PARALLEL STATEMENTS is not allowed in an upgrade file", command.getLocation() );
+				}
+				break;
+		}
 
-		return super.executeListeners( command, skip );
+		return super.executeAnnotation( keyword, command );
 	}
 
 	@Override
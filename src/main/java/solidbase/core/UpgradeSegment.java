@@ -16,6 +16,8 @@
 
 package solidbase.core;
 
+import java.util.Set;
+
 import solidstack.io.SourceLocation;
 
 
@@ -76,6 +78,16 @@ public class UpgradeSegment
 	 */
 	protected SourceLocation location;
 
+	/**
+	 * The byte offset of this segment in the file, or -1 if unknown.
+	 */
+	protected long offset = -1;
+
+	/**
+	 * The versions this segment depends on, or null if it depends on its source version only.
+	 */
+	protected Set< String > dependencies;
+
 	/**
 	 * Constructs a new segment.
 	 *
@@ -152,6 +164,46 @@ public class UpgradeSegment
 		return this.location;
 	}
 
+	/**
+	 * Sets the byte offset in the file for this segment.
+	 *
+	 * @param offset The byte offset in the file for this segment, or -1 if unknown.
+	 */
+	protected void setOffset( long offset )
+	{
+		this.offset = offset;
+	}
+
+	/**
+	 * Gets the byte offset in the file for this segment.
+	 *
+	 * @return The byte offset in the file for this segment, or -1 if unknown.
+	 */
+	protected long getOffset()
+	{
+		return this.offset;
+	}
+
+	/**
+	 * Sets the versions this segment depends on. Segments that do not depend on each other can be executed concurrently.
+	 *
+	 * @param dependencies The versions this segment depends on.
+	 */
+	protected void setDependencies( Set< String > dependencies )
+	{
+		this.dependencies = dependencies;
+	}
+
+	/**
+	 * Gets the versions this segment depends on.
+	 *
+	 * @return The versions this segment depends on, or null if it depends on its source version only.
+	 */
+	protected Set< String > getDependencies()
+	{
+		return this.dependencies;
+	}
+
 	/**
 	 * Is this segment open.
 	 *
@@ -0,0 +1,190 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core.plugins;
+
+import java.io.InputStream;
+import java.io.Reader;
+
+
+/**
+ * Tunes the batch size for BATCH SIZE AUTO. The batch size is doubled as long as executing the batches gets at least
+ * 10% more records per second done. When it stops improving, the best size is kept. It is halved when the rate drops
+ * below half of the rate measured for it. Batches are also kept below {@link #MAXIMUM_BYTES}, based on the bytes per
+ * record measured so far.
+ *
+ * @author René M. de Bloois
+ */
+public class AdaptiveBatchSize
+{
+	/**
+	 * The batch size to start with.
+	 */
+	static public final int INITIAL = 100;
+
+	/**
+	 * The minimum batch size.
+	 */
+	static public final int MINIMUM = 10;
+
+	/**
+	 * The maximum batch size.
+	 */
+	static public final int MAXIMUM = 10000;
+
+	/**
+	 * The maximum estimated number of bytes in a batch.
+	 */
+	static public final long MAXIMUM_BYTES = 0x400000; // 4MB
+
+	/**
+	 * The estimated size of a value that is not a string or binary.
+	 */
+	static private final int VALUE_BYTES = 8;
+
+	private ImportLogger logger;
+
+	private int size = INITIAL;
+	private boolean growing = true;
+	private int previousSize;
+	private double previousRate;
+	private double rate; // Of the current size
+
+	private long records;
+	private long bytes;
+
+
+	/**
+	 * @param logger The logger to report changes of the batch size to, or null.
+	 */
+	public void setLogger( ImportLogger logger )
+	{
+		this.logger = logger;
+	}
+
+	/**
+	 * @return The current batch size.
+	 */
+	public int getSize()
+	{
+		return this.size;
+	}
+
+	/**
+	 * Registers the execution of a batch and tunes the batch size.
+	 *
+	 * @param records The number of records in the batch.
+	 * @param bytes The estimated number of bytes in the batch.
+	 * @param nanos The time it took to execute the batch.
+	 */
+	public void executed( int records, long bytes, long nanos )
+	{
+		if( records <= 0 )
+			return;
+
+		this.records += records;
+		this.bytes += bytes;
+
+		int size = this.size;
+		if( records >= size ) // Final batches and batches that are executed early say nothing about the size
+		{
+			double rate = records * 1e9 / Math.max( nanos, 1 );
+			if( this.growing )
+			{
+				if( rate > this.previousRate * 1.1 )
+				{
+					this.previousSize = size;
+					this.previousRate = rate;
+					size *= 2;
+				}
+				else
+				{
+					this.growing = false;
+					if( rate < this.previousRate )
+					{
+						size = this.previousSize;
+						rate = this.previousRate;
+					}
+				}
+				this.rate = rate;
+			}
+			else if( rate < this.rate / 2 )
+			{
+				size /= 2;
+				this.rate = rate;
+			}
+		}
+
+		// Keep the batches below the maximum bytes
+		long recordBytes = Math.max( this.bytes / this.records, 1 );
+		if( size * recordBytes > MAXIMUM_BYTES )
+			size = (int)( MAXIMUM_BYTES / recordBytes );
+
+		setSize( Math.max( MINIMUM, Math.min( MAXIMUM, size ) ) );
+	}
+
+	private void setSize( int size )
+	{
+		if( size == this.size )
+			return;
+		this.size = size;
+		if( this.logger != null )
+			this.logger.batchSize( size );
+	}
+
+	/**
+	 * Estimates the number of bytes of a record.
+	 *
+	 * @param record The record.
+	 * @return The estimated number of bytes of the record.
+	 */
+	static public long estimate( Object[] record )
+	{
+		long result = 0;
+		for( Object value : record )
+			result += estimate( value );
+		return result;
+	}
+
+	/**
+	 * Estimates the number of bytes of a record.
+	 *
+	 * @param record The record.
+	 * @return The estimated number of bytes of the record.
+	 */
+	static public long estimate( Record record )
+	{
+		long result = 0;
+		int count = record.size();
+		for( int i = 0; i < count; i++ )
+			if( record.getKind( i ) == Record.Kind.OBJECT && !record.isNull( i ) )
+				result += estimate( record.getObject( i ) );
+			else
+				result += VALUE_BYTES;
+		return result;
+	}
+
+	static private long estimate( Object value )
+	{
+		if( value instanceof String )
+			return ( (String)value ).length();
+		if( value instanceof byte[] )
+			return ( (byte[])value ).length;
+		if( value instanceof InputStream || value instanceof Reader )
+			return MAXIMUM_BYTES / MINIMUM; // Unknown, assume large
+		return VALUE_BYTES;
+	}
+}
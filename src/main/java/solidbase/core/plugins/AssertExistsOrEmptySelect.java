@@ -22,8 +22,8 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import solidbase.core.Command;
-import solidbase.core.CommandListener;
 import solidbase.core.CommandProcessor;
+import solidbase.core.KeywordCommandListener;
 import solidbase.util.Assert;
 import solidstack.io.SourceException;
 
@@ -35,10 +35,16 @@ import solidstack.io.SourceException;
  * @author René M. de Bloois
  * @since Apr 1, 2006 7:13:28 PM
  */
-public class AssertExistsOrEmptySelect implements CommandListener
+public class AssertExistsOrEmptySelect implements KeywordCommandListener
 {
 	static private final Pattern assertPattern = Pattern.compile( "\\s*ASSERT\\s+(EXISTS|EMPTY)\\s+MESSAGE\\s+['\"]([^']*)['\"]\\s+(.*)", Pattern.DOTALL | Pattern.CASE_INSENSITIVE );
 
+	@Override
+	public String[] getKeywords()
+	{
+		return new String[] { "ASSERT" };
+	}
+
 	@Override
 	public boolean execute( CommandProcessor processor, Command command, boolean skip ) throws SQLException
 	{
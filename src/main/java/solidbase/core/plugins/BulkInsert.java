@@ -0,0 +1,54 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core.plugins;
+
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+
+
+/**
+ * Collects records and inserts them into a table with a database specific fast path.
+ *
+ * @author René M. de Bloois
+ * @see BulkLoader
+ */
+public interface BulkInsert
+{
+	/**
+	 * Adds a record. The values need to be consumed before returning, they may be closed or reused afterwards.
+	 *
+	 * @param values The values of the record, in the order of the columns.
+	 * @throws SQLFeatureNotSupportedException When one of the values can not be loaded. The record is not added and the
+	 *         values are not consumed, so the record can still be inserted in another way.
+	 * @throws SQLException When JDBC throws an SQLException.
+	 */
+	void add( Object[] values ) throws SQLException;
+
+	/**
+	 * Inserts the records added since the previous execute.
+	 *
+	 * @throws SQLException When JDBC throws an SQLException.
+	 */
+	void execute() throws SQLException;
+
+	/**
+	 * Releases the resources of this insert. Records that are not executed yet are discarded.
+	 *
+	 * @throws SQLException When JDBC throws an SQLException.
+	 */
+	void close() throws SQLException;
+}
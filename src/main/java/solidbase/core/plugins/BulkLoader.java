@@ -0,0 +1,52 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core.plugins;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+
+/**
+ * A database specific fast path for inserting records into a table, used by IMPORT ... USING BULK. Implementations are
+ * found with the {@link java.util.ServiceLoader}, by listing them in
+ * META-INF/services/solidbase.core.plugins.BulkLoader.
+ *
+ * @author René M. de Bloois
+ * @see BulkLoaders
+ */
+public interface BulkLoader
+{
+	/**
+	 * Can this loader load records through the given connection?
+	 *
+	 * @param connection The connection.
+	 * @return True if this loader can load records through the given connection, false otherwise.
+	 * @throws SQLException When JDBC throws an SQLException.
+	 */
+	boolean accepts( Connection connection ) throws SQLException;
+
+	/**
+	 * Starts inserting records into the given table.
+	 *
+	 * @param connection The connection.
+	 * @param tableName The table to insert into.
+	 * @param columnNames The columns to insert into, or null for all the columns of the table.
+	 * @return The insert.
+	 * @throws SQLException When JDBC throws an SQLException.
+	 */
+	BulkInsert newInsert( Connection connection, String tableName, String[] columnNames ) throws SQLException;
+}
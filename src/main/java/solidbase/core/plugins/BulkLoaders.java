@@ -0,0 +1,59 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core.plugins;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+
+
+/**
+ * Finds the {@link BulkLoader} for a connection. The loaders are found with the {@link ServiceLoader}.
+ *
+ * @author René M. de Bloois
+ */
+public class BulkLoaders
+{
+	static private final List<BulkLoader> loaders = new ArrayList<>();
+
+	static
+	{
+		for( BulkLoader loader : ServiceLoader.load( BulkLoader.class, BulkLoaders.class.getClassLoader() ) )
+			loaders.add( loader );
+	}
+
+	private BulkLoaders()
+	{
+	}
+
+	/**
+	 * Finds the loader that can load records through the given connection.
+	 *
+	 * @param connection The connection.
+	 * @return The first loader that accepts the connection, or null if none does.
+	 * @throws SQLException When JDBC throws an SQLException.
+	 */
+	static public BulkLoader find( Connection connection ) throws SQLException
+	{
+		for( BulkLoader loader : loaders )
+			if( loader.accepts( connection ) )
+				return loader;
+		return null;
+	}
+}
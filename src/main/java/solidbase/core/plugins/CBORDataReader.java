@@ -16,12 +16,13 @@
 
 package solidbase.core.plugins;
 
+import java.math.BigDecimal;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Map;
 
 import solidbase.core.ProcessException;
 import solidbase.util.JDBCSupport;
+import solidbase.util.LRUCache;
 import solidstack.cbor.CBORReader;
 import solidstack.cbor.Token;
 import solidstack.cbor.Token.TYPE;
@@ -33,8 +34,30 @@ import solidstack.json.JSONObject;
 import solidstack.lang.ThreadInterrupted;
 
 
-public class CBORDataReader implements RecordSource
+/**
+ * Reads a CBOR record stream. When the header defines the field types and the sink accepts typed records, the values
+ * are decoded straight into a reusable {@link Record}, with integers, floats and booleans taken from the tokens into the
+ * primitive slots of the record. Otherwise each record is decoded into an {@code Object[]}. Strings that are referenced
+ * from the string namespace of the stream come back as shared instances.
+ */
+public class CBORDataReader implements RecordSource, RecordLocator
 {
+	/**
+	 * The CBOR tag of a reference to a string in the namespace.
+	 */
+	static private final long STRINGREF = 25;
+
+	/**
+	 * The CBOR tag of an epoch based date/time.
+	 */
+	static private final long DATETIME = 1;
+
+	/**
+	 * The maximum number of shared strings, the same as the size of the namespace written by the
+	 * {@link CBORDataWriter}.
+	 */
+	static private final int SHARED_STRINGS = 10000;
+
 	private CBORReader in;
 	private ImportLogger counter;
 
@@ -46,6 +69,13 @@ public class CBORDataReader implements RecordSource
 
 	private JSONArray firstRecord;
 
+	private SourceLocation location;
+
+	/**
+	 * The referenced strings, most recently used last.
+	 */
+	private Map<String, String> strings = new LRUCache<String, String>( SHARED_STRINGS );
+
 
 	public CBORDataReader( SourceInputStream in, ImportLogger counter )
 	{
@@ -58,6 +88,12 @@ public class CBORDataReader implements RecordSource
 		this.in.close();
 	}
 
+	@Override
+	public SourceLocation getLocation()
+	{
+		return this.location;
+	}
+
 	public String[] getFieldNames()
 	{
 		return this.fieldNames;
@@ -121,6 +157,11 @@ public class CBORDataReader implements RecordSource
 		this.sink.init( this.columns );
 		this.sink.start();
 
+		// With field types, the values are decoded into a reusable record
+		Record record = null;
+		if( this.columns != null && this.sink instanceof TypedRecordSink )
+			record = new Record( this.columns );
+
 		Token t;
 		loc = this.in.getLocation();
 		for( t = this.in.get(); t.type() != TYPE.EOF; t = this.in.get() )
@@ -131,24 +172,36 @@ public class CBORDataReader implements RecordSource
 			loc = this.in.getLocation();
 			for( t = this.in.get(); t.type() == TYPE.ARRAY; t = this.in.get() )
 			{
-				int len = t.length(); // TODO Check array length
+				int len = t.length();
 
 				// Detect interruption
 				if( Thread.currentThread().isInterrupted() ) // TODO Is this the right spot during an upgrade?
 					throw new ThreadInterrupted();
 
-				loc = this.in.getLocation();
+				loc = this.location = this.in.getLocation();
 
-				List<Object> values = new ArrayList<>( len );
-				for( int i = 0; i < len; i++ )
-					values.add( this.in.read() );
+				// Records with a different number of values than the header are passed on as they are
+				Object[] values = null;
+				if( record != null && len == record.size() )
+					readRecord( record );
+				else
+				{
+					values = new Object[ len ];
+					for( int i = 0; i < len; i++ )
+						values[ i ] = readValue();
+				}
 
 				try
 				{
-					this.sink.process( values.toArray() );
+					if( values == null )
+						( (TypedRecordSink)this.sink ).process( record );
+					else
+						this.sink.process( values );
 				}
 				catch( ProcessException e )
 				{
+					if( e.hasLocation() )
+						throw e; // Already located at the record that caused it by an asynchronous sink
 					throw new ProcessException( e ).addLocation( loc );
 				}
 
@@ -166,6 +219,139 @@ public class CBORDataReader implements RecordSource
 		this.sink.end();
 	}
 
+	/**
+	 * Reads a value with the generic {@link CBORReader#read()}.
+	 */
+	private Object readValue()
+	{
+		if( this.in.peek().hasTag( STRINGREF ) )
+			return share( this.in.read() );
+		return this.in.read();
+	}
+
+	/**
+	 * Reads the values of a record into the given record, without boxing the values that fit in its primitive slots.
+	 */
+	private void readRecord( Record record )
+	{
+		CBORReader in = this.in;
+		int count = record.size();
+		for( int i = 0; i < count; i++ )
+		{
+			Token t = in.get();
+			Record.Kind kind = record.getKind( i );
+			switch( t.type() )
+			{
+				case NULL:
+				case UNDEF:
+					record.setNull( i );
+					break;
+				case UINT:
+				case NINT:
+					if( t.hasTag( STRINGREF ) )
+					{
+						in.push( t );
+						setConverted( record, i, share( in.read() ) );
+					}
+					else if( t.hasTag( DATETIME ) )
+					{
+						in.push( t );
+						setConverted( record, i, in.read() );
+					}
+					else if( kind == Record.Kind.LONG )
+						record.setLong( i, t.longValue() );
+					else if( kind == Record.Kind.INT && (int)t.longValue() == t.longValue() )
+						record.setInt( i, (int)t.longValue() );
+					else
+						setConverted( record, i, t.longValue() );
+					break;
+				case HFLOAT:
+				case SFLOAT:
+				case DFLOAT:
+					if( kind == Record.Kind.DOUBLE )
+						record.setDouble( i, t.doubleValue() );
+					else if( kind == Record.Kind.FLOAT )
+						record.setFloat( i, (float)t.doubleValue() );
+					else
+						setConverted( record, i, t.doubleValue() );
+					break;
+				case BOOL:
+					if( kind == Record.Kind.BOOLEAN )
+						record.setBoolean( i, t.booleanValue() );
+					else
+						setConverted( record, i, t.booleanValue() );
+					break;
+				default:
+					in.push( t );
+					setConverted( record, i, in.read() );
+			}
+		}
+	}
+
+	/**
+	 * Sets a value that does not match the kind of slot of the column, converting it when the slot is primitive.
+	 */
+	private void setConverted( Record record, int index, Object value )
+	{
+		Record.Kind kind = record.getKind( index );
+		if( kind == Record.Kind.OBJECT || value == null )
+		{
+			record.setObject( index, value );
+			return;
+		}
+		try
+		{
+			if( kind == Record.Kind.BOOLEAN )
+			{
+				if( value instanceof Boolean )
+					record.setBoolean( index, (Boolean)value );
+				else if( value instanceof String && ( "true".equalsIgnoreCase( (String)value ) || "false".equalsIgnoreCase( (String)value ) ) )
+					record.setBoolean( index, "true".equalsIgnoreCase( (String)value ) );
+				else
+					record.setBoolean( index, toDecimal( value ).signum() != 0 );
+				return;
+			}
+			BigDecimal decimal = toDecimal( value );
+			switch( kind )
+			{
+				case INT: record.setInt( index, decimal.intValueExact() ); break;
+				case LONG: record.setLong( index, decimal.longValueExact() ); break;
+				case FLOAT: record.setFloat( index, decimal.floatValue() ); break;
+				default: record.setDouble( index, decimal.doubleValue() );
+			}
+		}
+		catch( ArithmeticException | NumberFormatException | ClassCastException e )
+		{
+			throw new SourceException( "Can't convert '" + value + "' to " + JDBCSupport.toTypeName( this.columns[ index ].getType() ) + " for field " + this.columns[ index ].getName(), this.location );
+		}
+	}
+
+	static private BigDecimal toDecimal( Object value )
+	{
+		if( value instanceof Boolean )
+			return (Boolean)value ? BigDecimal.ONE : BigDecimal.ZERO;
+		if( value instanceof Long )
+			return BigDecimal.valueOf( (Long)value );
+		if( value instanceof Number || value instanceof String )
+			return new BigDecimal( value.toString().trim() );
+		throw new ClassCastException( value.getClass().getName() );
+	}
+
+	/**
+	 * Returns the shared instance of a referenced string. The CBOR reader decodes the string again for each reference,
+	 * this keeps only one instance of it alive.
+	 */
+	private Object share( Object value )
+	{
+		if( !( value instanceof String ) )
+			return value;
+		String result = this.strings.get( value );
+		if( result != null )
+			return result;
+		this.strings.put( (String)value, (String)value );
+		return value;
+	}
+
 	@Override
 	public Column[] getColumns()
 	{
@@ -28,7 +28,7 @@ import java.util.Map;
 import solidstack.cbor.CBORWriter;
 
 
-public class CBORDataWriter implements RecordSink
+public class CBORDataWriter implements TypedRecordSink
 {
 	static public final int MAX_DICTIONARY_SIZE = 0x4000000;
 
@@ -37,6 +37,7 @@ public class CBORDataWriter implements RecordSink
 
 	private FileSpec[] fileSpecs;
 	private Column[] columns;
+	private Types[] columnTypes;
 
 
 	public CBORDataWriter( OutputStream out, Map<String, ColumnSpec> columnSpecs )
@@ -55,6 +56,11 @@ public class CBORDataWriter implements RecordSink
 	{
 		this.columns = columns;
 
+		// Typed records are known to match the column types, so their types are resolved only once
+		this.columnTypes = new Types[ columns.length ];
+		for( int i = 0; i < columns.length; i++ )
+			this.columnTypes[ i ] = toType( columns[ i ].getType() );
+
 		if( this.columnSpecs != null )
 		{
 			this.fileSpecs = new FileSpec[ columns.length ];
@@ -99,6 +105,62 @@ public class CBORDataWriter implements RecordSink
 		types.put( java.sql.Timestamp.class, Types.SQLTIMESTAMP );
 	}
 
+	/**
+	 * Determines the type of the values of a column with the given JDBC type.
+	 *
+	 * @param type The JDBC type.
+	 * @return The type of the values, or null if it needs to be determined from the values.
+	 */
+	static private Types toType( int type )
+	{
+		switch( type )
+		{
+			case java.sql.Types.NUMERIC:
+			case java.sql.Types.DECIMAL: return Types.BIGDECIMAL;
+			case java.sql.Types.CHAR:
+			case java.sql.Types.VARCHAR: return Types.STRING;
+			case java.sql.Types.BINARY:
+			case java.sql.Types.VARBINARY: return Types.BYTES;
+			case java.sql.Types.CLOB: return Types.CLOB;
+			case java.sql.Types.BLOB: return Types.BLOB;
+			case java.sql.Types.DATE: return Types.SQLDATE;
+			case java.sql.Types.TIME: return Types.SQLTIME;
+			case java.sql.Types.TIMESTAMP: return Types.SQLTIMESTAMP;
+			default: return null;
+		}
+	}
+
+	@Override
+	public void process( Record record ) throws SQLException
+	{
+		CBORWriter out = this.out;
+
+		int columns = record.size();
+		if( this.columns.length != columns )
+			throw new IllegalStateException( "Column count mismatch" );
+
+		out.startArray( columns );
+
+		for( int i = 0; i < columns; i++ )
+			if( record.isNull( i ) )
+				out.writeNull();
+			else
+				switch( record.getKind( i ) )
+				{
+					case INT: out.writeInt( record.getInt( i ) ); break;
+					case LONG: out.writeLong( record.getLong( i ) ); break;
+					case FLOAT: out.writeFloatS( record.getFloat( i ) ); break;
+					case DOUBLE: out.writeFloatD( record.getDouble( i ) ); break;
+					case BOOLEAN: out.writeBoolean( record.getBoolean( i ) ); break;
+					default:
+						Object value = record.getObject( i );
+						Types type = this.columnTypes[ i ];
+						write( type != null ? type : getType( value ), value );
+				}
+
+		out.end();
+	}
+
 	@Override
 	public void process( Object[] record ) throws SQLException
 	{
@@ -117,41 +179,50 @@ public class CBORDataWriter implements RecordSink
 			if( value == null )
 				out.writeNull();
 			else
-			{
-				// TODO RowId? UUID?
-				Types type = types.get( value.getClass() );
-				if( type == null )
-					if( value instanceof Blob )
-						type = Types.BLOB;
-					else if( value instanceof Clob )
-						type = Types.CLOB;
-					else
-						throw new UnsupportedOperationException( "Type not supported: " + value.getClass().getName() );
-				switch( type )
-				{
-					// TODO Need to close these?
-					case BIGDECIMAL: out.writeText( value.toString() ); break; // TODO Is there another CBOR type (tag) ?
-					case BLOB: out.writeBytes( ( (Blob)value ).getBinaryStream() ); break;
-					case BOOLEAN: out.writeBoolean( (Boolean)value ); break;
-					case BYTES: out.writeBytes( (byte[])value ); break;
-					case CLOB: out.writeText( ( (Clob)value ).getCharacterStream() ); break;
-					case DOUBLE: out.writeFloatD( (Double)value ); break;
-					case FLOAT: out.writeFloatS( (Float)value ); break;
-					case INTEGER: out.writeInt( (Integer)value ); break;
-					case LONG: out.writeLong( (Long)value ); break;
-					case STRING: out.writeText( (String)value ); break;
-					case SQLDATE:
-					case SQLTIME:
-					case SQLTIMESTAMP: out.writeDateTime( (Date)value ); break; // FIXME We need to write string because of the timezone
-					default:
-						throw new UnsupportedOperationException( "Unexpected type: " + type );
-				}
-			}
+				write( getType( value ), value );
 		}
 
 		out.end();
 	}
 
+	static private Types getType( Object value )
+	{
+		// TODO RowId? UUID?
+		Types type = types.get( value.getClass() );
+		if( type == null )
+			if( value instanceof Blob )
+				type = Types.BLOB;
+			else if( value instanceof Clob )
+				type = Types.CLOB;
+			else
+				throw new UnsupportedOperationException( "Type not supported: " + value.getClass().getName() );
+		return type;
+	}
+
+	private void write( Types type, Object value ) throws SQLException
+	{
+		CBORWriter out = this.out;
+		switch( type )
+		{
+			// TODO Need to close these?
+			case BIGDECIMAL: out.writeText( value.toString() ); break; // TODO Is there another CBOR type (tag) ?
+			case BLOB: out.writeBytes( ( (Blob)value ).getBinaryStream() ); break;
+			case BOOLEAN: out.writeBoolean( (Boolean)value ); break;
+			case BYTES: out.writeBytes( (byte[])value ); break;
+			case CLOB: out.writeText( ( (Clob)value ).getCharacterStream() ); break;
+			case DOUBLE: out.writeFloatD( (Double)value ); break;
+			case FLOAT: out.writeFloatS( (Float)value ); break;
+			case INTEGER: out.writeInt( (Integer)value ); break;
+			case LONG: out.writeLong( (Long)value ); break;
+			case STRING: out.writeText( (String)value ); break;
+			case SQLDATE:
+			case SQLTIME:
+			case SQLTIMESTAMP: out.writeDateTime( (Date)value ); break; // FIXME We need to write string because of the timezone
+			default:
+				throw new UnsupportedOperationException( "Unexpected type: " + type );
+		}
+	}
+
 	@Override
 	public void end()
 	{
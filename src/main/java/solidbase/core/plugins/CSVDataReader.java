@@ -16,37 +16,56 @@
 
 package solidbase.core.plugins;
 
+import java.io.Reader;
 import java.sql.SQLException;
 import java.sql.Types;
 
 import solidbase.core.ProcessException;
 import solidbase.util.CSVReader;
+import solidbase.util.FastCSVReader;
 import solidstack.io.SourceLocation;
 import solidstack.io.SourceReader;
 import solidstack.lang.ThreadInterrupted;
 
 
-public class CSVDataReader // TODO implements RecordSource
+public class CSVDataReader implements RecordLocator // TODO implements RecordSource
 {
 	private CSVReader reader;
+	private FastCSVReader fastReader;
 	private boolean prependLineNumber;
 	private ImportLogger counter;
 
 	private RecordSink sink;
 	private boolean done;
+	private SourceLocation location;
 
 
 	public CSVDataReader( SourceReader sourceReader, boolean skipHeader, char separator, boolean escape, boolean ignoreWhiteSpace, boolean prependLineNumber, ImportLogger counter )
 	{
 		// Initialize csv reader & read first line (and skip header if needed)
 		this.reader = new CSVReader( sourceReader, separator, escape, ignoreWhiteSpace );
+		init( skipHeader, prependLineNumber, counter );
+	}
+
+	/**
+	 * Reads the CSV data directly from the given reader with a {@link FastCSVReader}. Only possible when the CSV data
+	 * is all there is to read, for example with a separate CSV file.
+	 */
+	public CSVDataReader( Reader reader, SourceLocation location, boolean skipHeader, char separator, boolean escape, boolean ignoreWhiteSpace, boolean prependLineNumber, ImportLogger counter )
+	{
+		this.fastReader = new FastCSVReader( reader, location, separator, escape, ignoreWhiteSpace );
+		init( skipHeader, prependLineNumber, counter );
+	}
+
+	private void init( boolean skipHeader, boolean prependLineNumber, ImportLogger counter )
+	{
 		this.prependLineNumber = prependLineNumber;
 		this.counter = counter;
 
 		// TODO Move to start of process()
 		if( skipHeader )
 		{
-			String[] line = this.reader.getLine();
+			String[] line = getLine();
 			if( line == null )
 				this.done = true;
 		}
@@ -61,18 +80,13 @@ public class CSVDataReader // TODO implements RecordSource
 	{
 		boolean initDone = false;
 
-		SourceLocation loc = this.reader.getLocation();
-		String[] line = this.reader.getLine();
+		SourceLocation loc = this.location = getReaderLocation();
+		String[] line = getLine();
 		while( line != null )
 		{
 			if( Thread.currentThread().isInterrupted() ) // TODO Is this the right spot during an upgrade?
 				throw new ThreadInterrupted();
 
-			// Empty --> null
-			for( int i = 0; i < line.length; i++ )
-				if( line[ i ].length() == 0 )
-					line[ i ] = null;
-
 			if( this.prependLineNumber )
 			{
 				String[] temp = line;
@@ -87,28 +101,62 @@ public class CSVDataReader // TODO implements RecordSource
 				for( int i = 0; i < columns.length; i++ )
 					columns[ i ] = new Column( null, Types.VARCHAR, null, null );
 				this.sink.init( columns );
+				this.sink.start();
 				initDone = true;
 			}
 
-			this.sink.start();
 			try
 			{
 				this.sink.process( line );
 			}
 			catch( ProcessException e )
 			{
+				if( e.hasLocation() )
+					throw e; // Already located at the record that caused it by an asynchronous sink
 				throw new ProcessException( e ).addLocation( loc );
 			}
-			this.sink.end();
 
 			if( this.counter != null )
 				this.counter.count();
 
-			loc = this.reader.getLocation();
-			line = this.reader.getLine();
+			loc = this.location = getReaderLocation();
+			line = getLine();
 		}
 
+		if( initDone )
+			this.sink.end();
+
 		if( this.counter != null )
 			this.counter.end();
 	}
+
+	/**
+	 * Reads a line of values. Empty values are returned as null.
+	 */
+	private String[] getLine()
+	{
+		if( this.fastReader != null )
+			return this.fastReader.getLine(); // Already returns null for empty values
+
+		String[] line = this.reader.getLine();
+		if( line != null )
+			// Empty --> null
+			for( int i = 0; i < line.length; i++ )
+				if( line[ i ].length() == 0 )
+					line[ i ] = null;
+		return line;
+	}
+
+	private SourceLocation getReaderLocation()
+	{
+		if( this.fastReader != null )
+			return this.fastReader.getLocation();
+		return this.reader.getLocation();
+	}
+
+	@Override
+	public SourceLocation getLocation()
+	{
+		return this.location;
+	}
 }
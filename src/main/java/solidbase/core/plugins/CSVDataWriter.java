@@ -19,26 +19,29 @@ package solidbase.core.plugins;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
-import java.io.Writer;
+import java.nio.charset.Charset;
 import java.sql.Blob;
 import java.sql.Clob;
 import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
 
-import solidbase.util.CSVWriter;
+import solidbase.util.FastCSVWriter;
 import solidstack.io.FatalIOException;
 import solidstack.io.HexInputStreamReader;
 
 
-public class CSVDataWriter implements RecordSink
+public class CSVDataWriter implements TypedRecordSink
 {
-	private CSVWriter csvWriter;
+	private FastCSVWriter csvWriter;
 	private boolean writeHeader;
 
 
-	public CSVDataWriter( Writer out, char separator, boolean writeHeader )
+	public CSVDataWriter( OutputStream out, Charset charset, char separator, boolean writeHeader )
 	{
-		this.csvWriter = new CSVWriter( out, separator );
+		this.csvWriter = new FastCSVWriter( out, charset, separator );
 		this.writeHeader = writeHeader;
 	}
 
@@ -65,25 +68,7 @@ public class CSVDataWriter implements RecordSink
 		try
 		{
 			for( Object value : record )
-				if( value == null )
-					this.csvWriter.writeValue( (String)null );
-				else if( value instanceof Clob )
-				{
-					Reader in = ( (Clob)value ).getCharacterStream();
-					this.csvWriter.writeValue( in );
-					in.close();
-				}
-				else if( value instanceof Blob )
-				{
-					// TODO Add {HEX} prefix? But some database can read hexadecimal without the prefix.
-					InputStream in = ( (Blob)value ).getBinaryStream();
-					this.csvWriter.writeValue( new HexInputStreamReader( in ) );
-					in.close();
-				}
-				else if( value instanceof byte[] )
-					this.csvWriter.writeValue( new HexInputStreamReader( new ByteArrayInputStream( (byte[])value ) ) );
-				else
-					this.csvWriter.writeValue( value.toString() );
+				writeValue( value );
 
 			this.csvWriter.nextRecord();
 		}
@@ -93,6 +78,66 @@ public class CSVDataWriter implements RecordSink
 		}
 	}
 
+	@Override
+	public void process( Record record ) throws SQLException
+	{
+		try
+		{
+			FastCSVWriter out = this.csvWriter;
+			int columns = record.size();
+			for( int i = 0; i < columns; i++ )
+				if( record.isNull( i ) )
+					out.writeValue( (String)null );
+				else
+					switch( record.getKind( i ) )
+					{
+						case INT: out.writeValue( record.getInt( i ) ); break;
+						case LONG: out.writeValue( record.getLong( i ) ); break;
+						case FLOAT: out.writeValue( Float.toString( record.getFloat( i ) ) ); break;
+						case DOUBLE: out.writeValue( Double.toString( record.getDouble( i ) ) ); break;
+						case BOOLEAN: out.writeValue( Boolean.toString( record.getBoolean( i ) ) ); break;
+						default: writeValue( record.getObject( i ) );
+					}
+
+			out.nextRecord();
+		}
+		catch( IOException e )
+		{
+			throw new FatalIOException( e );
+		}
+	}
+
+	private void writeValue( Object value ) throws SQLException, IOException
+	{
+		if( value == null )
+			this.csvWriter.writeValue( (String)null );
+		else if( value instanceof Clob )
+		{
+			Reader in = ( (Clob)value ).getCharacterStream();
+			this.csvWriter.writeValue( in );
+			in.close();
+		}
+		else if( value instanceof Blob )
+		{
+			// TODO Add {HEX} prefix? But some database can read hexadecimal without the prefix.
+			InputStream in = ( (Blob)value ).getBinaryStream();
+			this.csvWriter.writeValue( new HexInputStreamReader( in ) );
+			in.close();
+		}
+		else if( value instanceof byte[] )
+			this.csvWriter.writeValue( new HexInputStreamReader( new ByteArrayInputStream( (byte[])value ) ) );
+		else if( value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte )
+			this.csvWriter.writeValue( ( (Number)value ).longValue() );
+		else if( value instanceof Timestamp )
+			this.csvWriter.writeValue( (Timestamp)value );
+		else if( value instanceof java.sql.Date )
+			this.csvWriter.writeValue( (java.sql.Date)value );
+		else if( value instanceof Time )
+			this.csvWriter.writeValue( (Time)value );
+		else
+			this.csvWriter.writeValue( value.toString() );
+	}
+
 	@Override
 	public void end()
 	{
@@ -103,7 +148,7 @@ public class CSVDataWriter implements RecordSink
 		this.csvWriter.close();
 	}
 
-	public CSVWriter getCSVWriter()
+	public FastCSVWriter getCSVWriter()
 	{
 		return this.csvWriter;
 	}
@@ -26,6 +26,7 @@ public class Column
 	private String table;
 	private String schema;
 	private String typeName;
+	private int size;
 
 
 	public Column( String name, int type, String table, String schema )
@@ -66,4 +67,17 @@ public class Column
 	{
 		return this.typeName;
 	}
+
+	/**
+	 * @return The maximum number of characters or bytes of the values, or 0 if not known.
+	 */
+	public int getSize()
+	{
+		return this.size;
+	}
+
+	public void setSize( int size )
+	{
+		this.size = size;
+	}
 }
@@ -23,6 +23,8 @@ import java.sql.Types;
 
 import org.apache.commons.lang3.StringUtils;
 
+import solidstack.lang.ThreadInterrupted;
+
 
 public class DBReader implements ResultSource
 {
@@ -51,9 +53,21 @@ public class DBReader implements ResultSource
 			String table = StringUtils.upperCase( StringUtils.defaultIfEmpty( metaData.getTableName( col ), null ) );
 			String schema = StringUtils.upperCase( StringUtils.defaultIfEmpty( metaData.getSchemaName( col ), null ) );
 			this.columns[ i ] = new Column( name, type, table, schema );
+			this.columns[ i ].setSize( Math.max( metaData.getPrecision( col ), 0 ) );
 		}
 	}
 
+	/**
+	 * Sets the fetch size of the result. With {@link FetchSize#AUTO} the fetch size is determined from the columns.
+	 *
+	 * @param fetchSize The fetch size.
+	 * @throws SQLException Whenever an SQLException is thrown.
+	 */
+	public void setFetchSize( int fetchSize ) throws SQLException
+	{
+		this.result.setFetchSize( fetchSize == FetchSize.AUTO ? FetchSize.forColumns( this.columns ) : fetchSize );
+	}
+
 	@Override
 	public void setSink( ResultSink sink )
 	{
@@ -79,6 +93,9 @@ public class DBReader implements ResultSource
 		sink.start();
 		while( result.next() )
 		{
+			if( Thread.currentThread().isInterrupted() )
+				throw new ThreadInterrupted();
+
 			sink.process( result );
 
 			if( this.counter != null )
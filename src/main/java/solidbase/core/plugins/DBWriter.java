@@ -18,8 +18,10 @@ package solidbase.core.plugins;
 
 import java.io.InputStream;
 import java.io.Reader;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -30,10 +32,21 @@ import org.apache.commons.lang3.ArrayUtils;
 import solidbase.core.CommandProcessor;
 import solidbase.core.ProcessException;
 import solidbase.core.SystemException;
+import solidbase.util.CloseQueue;
 
 
-public class DBWriter implements RecordSink
+public class DBWriter implements TypedRecordSink
 {
+	/**
+	 * The batch limit for BATCH SIZE AUTO.
+	 */
+	static public final int AUTO = -1;
+
+	/**
+	 * The maximum number of files in the {@link CloseQueue}. The batch is executed early when it is reached.
+	 */
+	static public final int MAXIMUM_OPEN_FILES = 100;
+
 	static private final Pattern parameterPattern = Pattern.compile( ":(\\d+)" );
 
 	private String sql;
@@ -43,34 +56,217 @@ public class DBWriter implements RecordSink
 	private int batchLimit;
 	private boolean batchCommit;
 	private CommandProcessor processor;
+	private Connection connection;
 
 	private Column[] columns;
 
 	private PreparedStatement statement;
 	private int[] parameterMap;
 	private int batchSize;
+	private long batchBytes;
+	private AdaptiveBatchSize adaptive;
+	private CloseQueue closer;
+
+	private boolean bulk;
+	private BulkInsert bulkInsert;
+	private Connection bulkConnection;
+	private int bulkColumns;
 
 
 	public DBWriter( String sql, String tableName, String[] fieldNames, String[] values, int batchLimit, boolean batchCommit, CommandProcessor processor )
 	{
-		if( this.batchLimit < 0 )
-			throw new IllegalArgumentException( "batchLimit must be 0 or greater" );
+		if( batchLimit < 0 && batchLimit != AUTO )
+			throw new IllegalArgumentException( "batchLimit must be 0 or greater, or AUTO" );
 		this.sql = sql;
 		this.tableName = tableName;
 		this.fieldNames = fieldNames;
 		this.values = values;
-		this.batchLimit = batchLimit;
+		setBatchLimit( batchLimit );
 		this.batchCommit = batchCommit;
 		this.processor = processor;
 	}
 
+	/**
+	 * Creates a writer that uses the given connection instead of the connection of the processor. The writer commits or
+	 * rolls back the connection when it is closed, but it does not close the connection.
+	 */
+	public DBWriter( String sql, String tableName, String[] fieldNames, String[] values, int batchLimit, boolean batchCommit, Connection connection )
+	{
+		if( batchLimit < 0 && batchLimit != AUTO )
+			throw new IllegalArgumentException( "batchLimit must be 0 or greater, or AUTO" );
+		this.sql = sql;
+		this.tableName = tableName;
+		this.fieldNames = fieldNames;
+		this.values = values;
+		setBatchLimit( batchLimit );
+		this.batchCommit = batchCommit;
+		this.connection = connection;
+	}
+
+	private void setBatchLimit( int batchLimit )
+	{
+		if( batchLimit == AUTO )
+		{
+			this.adaptive = new AdaptiveBatchSize();
+			batchLimit = this.adaptive.getSize();
+		}
+		this.batchLimit = batchLimit;
+	}
+
+	/**
+	 * @param logger The logger to report the batch sizes chosen by BATCH SIZE AUTO to.
+	 */
+	public void setLogger( ImportLogger logger )
+	{
+		if( this.adaptive != null )
+			this.adaptive.setLogger( logger );
+	}
+
+	/**
+	 * Sets the queue with the files that are opened by the reader for the records. These need to stay open until the
+	 * database has read them, so they are closed after executing the batch. The batch is executed early when
+	 * {@link #MAXIMUM_OPEN_FILES} is reached.
+	 *
+	 * @param closer The queue with the files that are opened by the reader.
+	 */
+	public void setCloseQueue( CloseQueue closer )
+	{
+		this.closer = closer;
+	}
+
+	/**
+	 * Insert the records with the {@link BulkLoader} for the database, if there is one. Only possible when inserting
+	 * the values of the records directly into a table, otherwise batched INSERTs are used. Batched INSERTs also take
+	 * over when the bulk loader can not load a value, like a binary value for MySQL.
+	 *
+	 * @param bulk True to insert the records with the bulk loader for the database.
+	 */
+	public void setBulk( boolean bulk )
+	{
+		this.bulk = bulk;
+	}
+
 	@Override
 	public void init( Column[] columns )
 	{
 		this.columns = columns;
 	}
 
-	private PreparedStatement createStatement( Object[] line ) throws SQLException
+	/**
+	 * Starts a bulk insert if the database has a bulk loader.
+	 *
+	 * @param columns The number of values in the first record.
+	 */
+	private void startBulk( int columns ) throws SQLException
+	{
+		this.bulk = false;
+		if( this.sql != null || this.values != null )
+			return;
+
+		Connection connection = this.processor != null ? this.processor.getCurrentConnection() : this.connection;
+		BulkLoader loader = BulkLoaders.find( connection );
+		if( loader == null )
+			return;
+
+		this.bulkInsert = loader.newInsert( connection, this.tableName, this.fieldNames );
+		this.bulkConnection = connection;
+		this.bulkColumns = this.fieldNames != null ? this.fieldNames.length : columns;
+	}
+
+	/**
+	 * Adds a record to the bulk insert.
+	 *
+	 * @return False when the bulk loader can not load the record. The bulk insert is stopped then, and the record needs
+	 *         to be inserted with an INSERT.
+	 */
+	private boolean addBulk( Object[] record ) throws SQLException
+	{
+		if( record.length != this.bulkColumns )
+		{
+			if( record.length < this.bulkColumns )
+				throw new ProcessException( new ArrayIndexOutOfBoundsException( record.length ) ).addProcess( "getting value, index: " + record.length + ", size: " + this.bulkColumns );
+			Object[] values = new Object[ this.bulkColumns ];
+			System.arraycopy( record, 0, values, 0, values.length );
+			record = values;
+		}
+
+		try
+		{
+			this.bulkInsert.add( record );
+		}
+		catch( SQLFeatureNotSupportedException e )
+		{
+			stopBulk();
+			return false;
+		}
+		this.batchSize++;
+		if( this.adaptive != null )
+			this.batchBytes += AdaptiveBatchSize.estimate( record );
+		if( isBatchFull() ) // Also when not batching
+			executeBatch();
+		return true;
+	}
+
+	/**
+	 * Loads the records that are added to the bulk insert and stops it. The files of the records are not closed,
+	 * because the current record, which could not be added, still needs its files.
+	 */
+	private void stopBulk() throws SQLException
+	{
+		BulkInsert bulkInsert = this.bulkInsert;
+		this.bulkInsert = null;
+		try
+		{
+			bulkInsert.execute();
+		}
+		finally
+		{
+			bulkInsert.close();
+		}
+		if( this.batchCommit )
+			this.bulkConnection.commit();
+		this.batchSize = 0;
+		this.batchBytes = 0;
+	}
+
+	private boolean isBatchFull()
+	{
+		return this.batchSize >= this.batchLimit || this.closer != null && this.closer.size() >= MAXIMUM_OPEN_FILES;
+	}
+
+	/**
+	 * Executes the batch or the bulk insert.
+	 */
+	private void executeBatch() throws SQLException
+	{
+		long start = System.nanoTime();
+		Connection connection;
+		if( this.bulkInsert != null )
+		{
+			this.bulkInsert.execute();
+			connection = this.bulkConnection;
+		}
+		else
+		{
+			this.statement.executeBatch();
+			connection = this.statement.getConnection();
+		}
+		long nanos = System.nanoTime() - start;
+
+		if( this.batchCommit )
+			connection.commit();
+		if( this.closer != null )
+			this.closer.closeAll();
+		if( this.adaptive != null )
+		{
+			this.adaptive.executed( this.batchSize, this.batchBytes, nanos );
+			this.batchLimit = this.adaptive.getSize();
+			this.batchBytes = 0;
+		}
+		this.batchSize = 0;
+	}
+
+	private PreparedStatement createStatement( int columns ) throws SQLException
 	{
 		String[] fieldNames = this.fieldNames;
 		String[] values = this.values;
@@ -113,7 +309,7 @@ public class DBWriter implements RecordSink
 			}
 			else
 			{
-				int count = line.length;
+				int count = columns;
 				if( fieldNames != null )
 					count = fieldNames.length;
 //				if( prependLineNumber )
@@ -134,7 +330,9 @@ public class DBWriter implements RecordSink
 		// TODO Google Guava has a Ints.toArray() ?
 		this.parameterMap = ArrayUtils.toPrimitive( parameterMap.toArray( new Integer[ parameterMap.size() ] ) );
 		this.sql = sql;
-		return this.processor.prepareStatement( sql );
+		if( this.processor != null )
+			return this.processor.prepareStatement( sql );
+		return this.connection.prepareStatement( sql );
 	}
 
 	@Override
@@ -145,8 +343,13 @@ public class DBWriter implements RecordSink
 	@Override
 	public void process( Object[] record ) throws SQLException
 	{
+		if( this.bulk )
+			startBulk( record.length );
+		if( this.bulkInsert != null && addBulk( record ) )
+			return;
+
 		if( this.statement == null )
-			this.statement = createStatement( record );
+			this.statement = createStatement( record.length );
 
 		int pos = 1;
 		int index = 0;
@@ -177,29 +380,89 @@ public class DBWriter implements RecordSink
 			}
 		}
 
+		execute( record, null );
+	}
+
+	@Override
+	public void process( Record record ) throws SQLException
+	{
+		if( this.bulk )
+			startBulk( record.size() );
+		if( this.bulkInsert != null && addBulk( record.toArray() ) )
+			return;
+
+		if( this.statement == null )
+			this.statement = createStatement( record.size() );
+
+		PreparedStatement statement = this.statement;
+		int pos = 1;
+		for( int par : this.parameterMap )
+		{
+			int index = par - 1;
+			if( index >= record.size() )
+				throw new ProcessException( new ArrayIndexOutOfBoundsException( index ) ).addProcess( "getting value, index: " + index + ", size: " + record.size() );
+			try
+			{
+				if( record.isNull( index ) )
+					statement.setNull( pos, record.getColumns()[ index ].getType() );
+				else
+					switch( record.getKind( index ) )
+					{
+						case INT: statement.setInt( pos, record.getInt( index ) ); break;
+						case LONG: statement.setLong( pos, record.getLong( index ) ); break;
+						case FLOAT: statement.setFloat( pos, record.getFloat( index ) ); break;
+						case DOUBLE: statement.setDouble( pos, record.getDouble( index ) ); break;
+						case BOOLEAN: statement.setBoolean( pos, record.getBoolean( index ) ); break;
+						default:
+							Object value = record.getObject( index );
+							if( value instanceof InputStream )
+								statement.setBinaryStream( pos, (InputStream)value );
+							else if( value instanceof Reader )
+								statement.setCharacterStream( pos, (Reader)value );
+							else
+								statement.setObject( pos, value );
+					}
+				pos++; // Increment after a potential exception
+			}
+			catch( SQLException e )
+			{
+				throw new ProcessException( e ).addProcess( "trying to set parameter " + pos + " with type " + record.getKind( index ) + " for: " + buildMessage( this.sql, this.parameterMap, record.toArray() ) );
+			}
+		}
+
+		execute( null, record );
+	}
+
+	/**
+	 * Executes the statement, or adds it to the batch.
+	 *
+	 * @param record The record for the error message, or null.
+	 * @param typedRecord The typed record for the error message, or null.
+	 */
+	private void execute( Object[] record, Record typedRecord ) throws SQLException
+	{
 		if( this.batchLimit <= 0 )
 			try
 			{
 				this.statement.execute();
 				if( this.batchCommit )
 					this.statement.getConnection().commit();
+				if( this.closer != null )
+					this.closer.closeAll();
 			}
 			catch( SQLException e )
 			{
 				// When NOBATCH is on, you can see the actual insert statement and line number in the file where the SQLException occurred.
-				throw new ProcessException( e ).addProcess( "executing: " + buildMessage( this.sql, this.parameterMap, record ) );
+				throw new ProcessException( e ).addProcess( "executing: " + buildMessage( this.sql, this.parameterMap, record != null ? record : typedRecord.toArray() ) );
 			}
 		else
 		{
 			this.statement.addBatch();
 			this.batchSize++;
-			if( this.batchSize >= this.batchLimit )
-			{
-				this.statement.executeBatch();
-				this.batchSize = 0;
-				if( this.batchCommit )
-					this.statement.getConnection().commit();
-			}
+			if( this.adaptive != null )
+				this.batchBytes += record != null ? AdaptiveBatchSize.estimate( record ) : AdaptiveBatchSize.estimate( typedRecord );
+			if( isBatchFull() )
+				executeBatch();
 		}
 	}
 
@@ -207,18 +470,41 @@ public class DBWriter implements RecordSink
 	public void end() throws SQLException
 	{
 		if( this.batchSize > 0 )
-		{
-			this.statement.executeBatch();
-			this.batchSize = 0;
-			if( this.batchCommit )
-				this.statement.getConnection().commit();
-		}
+			executeBatch();
 	}
 
 	public void close( boolean commit ) throws SQLException
 	{
-		if( this.statement != null )
-			this.processor.closeStatement( this.statement, commit );
+		if( this.processor != null )
+		{
+			if( this.statement != null )
+				this.processor.closeStatement( this.statement, commit );
+			else if( this.bulkInsert != null )
+				try
+				{
+					this.bulkInsert.close();
+				}
+				finally
+				{
+					this.processor.endTransaction( this.bulkConnection, commit );
+				}
+			return;
+		}
+
+		try
+		{
+			if( this.statement != null )
+				this.statement.close();
+			else if( this.bulkInsert != null )
+				this.bulkInsert.close();
+		}
+		finally
+		{
+			if( commit )
+				this.connection.commit();
+			else
+				this.connection.rollback();
+		}
 	}
 
 	static private String buildMessage( String sql, int[] parameterMap, Object[] values )
@@ -21,10 +21,19 @@ import java.sql.SQLException;
 import java.sql.Types;
 
 
+/**
+ * Transforms the rows of a {@link ResultSet} into records. When the sink is a {@link TypedRecordSink}, a single typed
+ * {@link Record} is reused for all rows and integral and floating point values are passed without boxing. Otherwise a
+ * new {@code Object[]} is created for each row.
+ *
+ * @author René M. de Bloois
+ */
 public class DefaultFromJDBCTransformer implements ResultSink, RecordSource
 {
 	private Column[] columns;
 	private RecordSink sink;
+	private TypedRecordSink typedSink;
+	private Record record;
 	private Object[] currentRecord;
 
 
@@ -33,6 +42,11 @@ public class DefaultFromJDBCTransformer implements ResultSink, RecordSource
 	{
 		this.sink.init( columns );
 		this.columns = columns;
+		if( this.sink instanceof TypedRecordSink )
+		{
+			this.typedSink = (TypedRecordSink)this.sink;
+			this.record = new Record( columns );
+		}
 	}
 
 	@Override
@@ -50,6 +64,8 @@ public class DefaultFromJDBCTransformer implements ResultSink, RecordSource
 	@Override
 	public Object[] getCurrentRecord()
 	{
+		if( this.record != null )
+			return this.record.toArray();
 		return this.currentRecord;
 	}
 
@@ -62,60 +78,86 @@ public class DefaultFromJDBCTransformer implements ResultSink, RecordSource
 	@Override
 	public void process( ResultSet result ) throws SQLException
 	{
-		int colCount = this.columns.length;
-		Object[] values = this.currentRecord = new Object[ colCount ];
-
-		for( int i = 0; i < colCount; i++ )
+		if( this.typedSink != null )
 		{
-			int col = i + 1;
-			if( result.getObject( col ) != null )
+			Record record = this.record;
+			int colCount = this.columns.length;
+			for( int i = 0; i < colCount; i++ )
 			{
-				int type = this.columns[ i ].getType();
-				Object value;
-				switch( type )
+				int col = i + 1;
+				switch( record.getKind( i ) )
 				{
-					case Types.TINYINT:
-					case Types.SMALLINT:
-					case Types.INTEGER:
-						value = result.getInt( col ); break;
-					case Types.BIGINT:
-						value = result.getLong( col ); break;
-					case Types.NUMERIC:
-					case Types.DECIMAL:
-						value = result.getBigDecimal( col ); break;
-					case Types.FLOAT:
-						value = result.getFloat( col ); break;
-					case Types.DOUBLE:
-						value = result.getDouble( col ); break;
-					case Types.BOOLEAN:
-						value = result.getBoolean( col ); break;
-					case Types.CHAR:
-					case Types.VARCHAR:
-						value = result.getString( col ); break;
-					case Types.BINARY:
-					case Types.VARBINARY:
-						value = result.getBytes( col ); break;
-					case Types.CLOB:
-						value = result.getClob( col ); break;
-					case Types.BLOB:
-						value = result.getBlob( col ); break;
-					case Types.DATE:
-						value = result.getDate( col ); break;
-					case Types.TIME:
-						value = result.getTime( col ); break;
-					case Types.TIMESTAMP:
-						value = result.getTimestamp( col ); break;
-					default:
-						throw new UnsupportedOperationException( "type: " + type );
+					case INT: record.setInt( i, result.getInt( col ) ); break;
+					case LONG: record.setLong( i, result.getLong( col ) ); break;
+					case FLOAT: record.setFloat( i, result.getFloat( col ) ); break;
+					case DOUBLE: record.setDouble( i, result.getDouble( col ) ); break;
+					case BOOLEAN: record.setBoolean( i, result.getBoolean( col ) ); break;
+					default: record.setObject( i, getObject( result, col, this.columns[ i ].getType() ) ); continue;
 				}
-
-				values[ i ] = value;
+				if( result.wasNull() )
+					record.setNull( i );
 			}
+			this.typedSink.process( record );
+			return;
 		}
 
+		int colCount = this.columns.length;
+		Object[] values = this.currentRecord = new Object[ colCount ];
+		for( int i = 0; i < colCount; i++ )
+			values[ i ] = getObject( result, i + 1, this.columns[ i ].getType() );
 		this.sink.process( values );
 	}
 
+	/**
+	 * Gets the value of a column with the getter for its type. Each column is fetched once, null is detected with
+	 * {@link ResultSet#wasNull()}.
+	 */
+	static private Object getObject( ResultSet result, int col, int type ) throws SQLException
+	{
+		Object value;
+		switch( type )
+		{
+			case Types.TINYINT:
+			case Types.SMALLINT:
+			case Types.INTEGER:
+				value = result.getInt( col ); break;
+			case Types.BIGINT:
+				value = result.getLong( col ); break;
+			case Types.NUMERIC:
+			case Types.DECIMAL:
+				value = result.getBigDecimal( col ); break;
+			case Types.FLOAT:
+				value = result.getFloat( col ); break;
+			case Types.DOUBLE:
+				value = result.getDouble( col ); break;
+			case Types.BOOLEAN:
+				value = result.getBoolean( col ); break;
+			case Types.CHAR:
+			case Types.VARCHAR:
+				value = result.getString( col ); break;
+			case Types.BINARY:
+			case Types.VARBINARY:
+				value = result.getBytes( col ); break;
+			case Types.CLOB:
+				value = result.getClob( col ); break;
+			case Types.BLOB:
+				value = result.getBlob( col ); break;
+			case Types.DATE:
+				value = result.getDate( col ); break;
+			case Types.TIME:
+				value = result.getTime( col ); break;
+			case Types.TIMESTAMP:
+				value = result.getTimestamp( col ); break;
+			default:
+				if( result.getObject( col ) == null )
+					return null;
+				throw new UnsupportedOperationException( "type: " + type );
+		}
+		if( result.wasNull() )
+			return null;
+		return value;
+	}
+
 	@Override
 	public void end() throws SQLException
 	{
@@ -23,7 +23,7 @@ import java.util.Date;
 import solidbase.core.ProcessException;
 
 
-public class DefaultToJDBCTransformer implements RecordSink, RecordSource
+public class DefaultToJDBCTransformer implements TypedRecordSink, RecordSource
 {
 	private RecordSink sink;
 	private Column[] columns;
@@ -57,45 +57,69 @@ public class DefaultToJDBCTransformer implements RecordSink, RecordSource
 				{
 					Object value = record[ i ];
 					if( value != null )
-						try
-						{
-							// TODO Time zones, is there a default way of putting times and dates in a text file? For example whats in a HTTP header?
-							// TODO Use internet formats (XML)
-							switch( this.columns[ i ].getType() )
-							{
-								case Types.DATE:
-									if( value instanceof String )
-										record[ i ] = java.sql.Date.valueOf( (String)value );
-									else if( value instanceof Date )
-										record[ i ] = new java.sql.Date( ( (Date)value ).getTime() );
-									break;
-
-								case Types.TIMESTAMP:
-									if( value instanceof String )
-										record[ i ] = java.sql.Timestamp.valueOf( (String)value );
-									else if( value instanceof Date )
-										record[ i ] = new java.sql.Timestamp( ( (Date)value ).getTime() );
-									break;
-
-								case Types.TIME:
-									if( value instanceof String )
-										record[ i ] = java.sql.Time.valueOf( (String)value );
-									else if( value instanceof Date )
-										record[ i ] = new java.sql.Time( ( (Date)value ).getTime() );
-									break;
-							}
-						}
-						catch( IllegalArgumentException e ) // Thrown by the valueOfs
-						{
-							// TODO Add test? C:\_WORK\SAO-20150612\build.xml:32: The following error occurred while executing this line:
-							// C:\_WORK\SAO-20150612\build.xml:13: Timestamp format must be yyyy-mm-dd hh:mm:ss[.fffffffff], at line 17 of file C:/_WORK/SAO-20150612/SYSTEEM/sca.JSON.GZ
-							throw new ProcessException( e ).addProcess( "trying to convert " + value + " to " + this.columns[ i ].getType() );
-						}
+						record[ i ] = convert( i, value );
 				}
 
 		this.sink.process( record );
 	}
 
+	@Override
+	public void process( Record record ) throws SQLException
+	{
+		// Only object values need to be converted
+		if( this.columns != null )
+		{
+			int count = Math.min( record.size(), this.columns.length );
+			for( int i = 0; i < count; i++ )
+				if( record.getKind( i ) == Record.Kind.OBJECT && !record.isNull( i ) )
+					record.setObject( i, convert( i, record.getObject( i ) ) );
+		}
+
+		if( this.sink instanceof TypedRecordSink )
+			( (TypedRecordSink)this.sink ).process( record );
+		else
+			this.sink.process( record.toArray() );
+	}
+
+	private Object convert( int i, Object value )
+	{
+		try
+		{
+			// TODO Time zones, is there a default way of putting times and dates in a text file? For example whats in a HTTP header?
+			// TODO Use internet formats (XML)
+			switch( this.columns[ i ].getType() )
+			{
+				case Types.DATE:
+					if( value instanceof String )
+						return java.sql.Date.valueOf( (String)value );
+					if( value instanceof Date )
+						return new java.sql.Date( ( (Date)value ).getTime() );
+					break;
+
+				case Types.TIMESTAMP:
+					if( value instanceof String )
+						return java.sql.Timestamp.valueOf( (String)value );
+					if( value instanceof Date )
+						return new java.sql.Timestamp( ( (Date)value ).getTime() );
+					break;
+
+				case Types.TIME:
+					if( value instanceof String )
+						return java.sql.Time.valueOf( (String)value );
+					if( value instanceof Date )
+						return new java.sql.Time( ( (Date)value ).getTime() );
+					break;
+			}
+			return value;
+		}
+		catch( IllegalArgumentException e ) // Thrown by the valueOfs
+		{
+			// TODO Add test? C:\_WORK\SAO-20150612\build.xml:32: The following error occurred while executing this line:
+			// C:\_WORK\SAO-20150612\build.xml:13: Timestamp format must be yyyy-mm-dd hh:mm:ss[.fffffffff], at line 17 of file C:/_WORK/SAO-20150612/SYSTEEM/sca.JSON.GZ
+			throw new ProcessException( e ).addProcess( "trying to convert " + value + " to " + this.columns[ i ].getType() );
+		}
+	}
+
 	@Override
 	public void end() throws SQLException
 	{
@@ -29,13 +29,14 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
 import java.util.regex.Pattern;
 
 import funny.Symbol;
 import solidbase.core.Command;
-import solidbase.core.CommandListener;
 import solidbase.core.CommandProcessor;
 import solidbase.core.FatalException;
+import solidbase.core.KeywordCommandListener;
 import solidbase.core.ProcessException;
 import solidbase.util.FixedIntervalLogCounter;
 import solidbase.util.LogCounter;
@@ -58,11 +59,17 @@ import solidstack.script.scopes.UndefinedException;
  *
  * @author René M. de Bloois
  */
-public class ExportCBOR implements CommandListener
+public class ExportCBOR implements KeywordCommandListener
 {
 	static private final Pattern triggerPattern = Pattern.compile( "\\s*EXPORT\\s+CBOR\\s+.*", Pattern.DOTALL | Pattern.CASE_INSENSITIVE );
 
 
+	@Override
+	public String[] getKeywords()
+	{
+		return new String[] { "EXPORT" };
+	}
+
 	//@Override
 	// TODO Escape dynamic file names, because illegal characters may be generated
 	// TODO Export multiple tables to a single file. If no PK than sort on all columns. Schema name for import or not?
@@ -107,146 +114,245 @@ public class ExportCBOR implements CommandListener
 			createdDate = true;
 		}
 
+		if( parsed.parallel > 1 )
+		{
+			exportParallel( processor, parsed, createdDate );
+			return true;
+		}
+
 		Resource cborOutput = new FileResource( new File( parsed.fileName ) ); // Relative to current folder TODO Use factory?
 		cborOutput.setGZip( parsed.gzip );
+
+		int fetchSize = FetchSize.resolve( processor, parsed.fetchSize );
+		Statement statement = processor.createQueryStatement( FetchSize.forStatement( fetchSize ) );
 		try
 		{
-			OutputStream out = cborOutput.newOutputStream();
+			ResultSet result;
 			try
 			{
-				Statement statement = processor.createStatement();
-				try
+				result = statement.executeQuery( parsed.query );
+			}
+			catch( SQLException e )
+			{
+				throw new ProcessException( e ).addProcess( "executing: " + parsed.query );
+			}
+
+			LogCounter counter = createLogCounter( parsed );
+			DBReader reader = new DBReader( result, counter != null ? new ExportLogger( counter, processor.getProgressListener() ) : null, parsed.dateAsTimestamp );
+			reader.setFetchSize( fetchSize );
+			export( parsed, cborOutput, new DBReader[] { reader }, createdDate );
+		}
+		finally
+		{
+			processor.closeQueryStatement( statement, true );
+		}
+
+		return true;
+	}
+
+	/**
+	 * Exports the query split in ranges, each range read by its own thread. With a parameterized file name each range
+	 * is written to its own file, with ?1 replaced by the number of the range. Otherwise all ranges are merged into one
+	 * file, in no particular order.
+	 */
+	protected void exportParallel( CommandProcessor processor, final Parsed parsed, final boolean createdDate ) throws SQLException
+	{
+		FileNameGenerator generator = new FileNameGenerator( parsed.fileName );
+		if( generator.isParameterized() )
+		{
+			// The file specs keep state per file, they can't be shared by the ranges
+			boolean toFile = false;
+			if( parsed.columns != null )
+				for( ColumnSpec spec : parsed.columns.values() )
+					if( spec.toFile != null )
+						toFile = true;
+			if( toFile )
+				throw new FatalException( "PARALLEL with a file per range can't be combined with files for columns" );
+		}
+
+		int fetchSize = FetchSize.resolve( processor, parsed.fetchSize );
+		ParallelQuery query = new ParallelQuery( processor, parsed.query, parsed.splitColumn, parsed.parallel, fetchSize );
+		try
+		{
+			ResultSet[] results = query.execute();
+
+			LogCounter counter = createLogCounter( parsed );
+			ExportLogger logger = counter != null ? new ExportLogger( counter, processor.getProgressListener(), results.length ) : null;
+			DBReader[] readers = new DBReader[ results.length ];
+			for( int i = 0; i < readers.length; i++ )
+			{
+				readers[ i ] = new DBReader( results[ i ], logger, parsed.dateAsTimestamp );
+				readers[ i ].setFetchSize( fetchSize );
+			}
+
+			if( !generator.isParameterized() )
+			{
+				Resource cborOutput = new FileResource( new File( parsed.fileName ) ); // Relative to current folder TODO Use factory?
+				cborOutput.setGZip( parsed.gzip );
+				export( parsed, cborOutput, readers, createdDate );
+				return;
+			}
+
+			List<Callable<Void>> tasks = new ArrayList<>();
+			for( int i = 0; i < readers.length; i++ )
+			{
+				final Resource cborOutput = new FileResource( new File( generator.generateFileName( new Object[] { i + 1 } ) ) );
+				cborOutput.setGZip( parsed.gzip );
+				final DBReader reader = readers[ i ];
+				tasks.add( new Callable<Void>()
 				{
-					statement.setFetchSize( 1000 );
-					ResultSet result;
-					try
+					@Override
+					public Void call() throws SQLException
 					{
-						result = statement.executeQuery( parsed.query );
+						export( parsed, cborOutput, new DBReader[] { reader }, createdDate );
+						return null;
 					}
-					catch( SQLException e )
+				} );
+			}
+			ParallelQuery.invokeAll( tasks );
+		}
+		finally
+		{
+			query.close();
+		}
+	}
+
+	/**
+	 * Exports the records from the given readers to the given output. When there is more than one reader, each reader
+	 * runs in its own thread.
+	 */
+	protected void export( Parsed parsed, Resource cborOutput, DBReader[] readers, boolean createdDate ) throws SQLException
+	{
+		try
+		{
+			OutputStream out = cborOutput.newOutputStream();
+			try
+			{
+				// The first source, it gives access to the original values
+				RecordSource first;
+				if( readers.length == 1 )
+				{
+					DefaultFromJDBCTransformer trans = new DefaultFromJDBCTransformer();
+					readers[ 0 ].setSink( trans );
+					first = trans;
+				}
+				else
+				{
+					MergingRecordSink merger = new MergingRecordSink( readers.length );
+					for( DBReader reader : readers )
 					{
-						throw new ProcessException( e ).addProcess( "executing: " + parsed.query );
+						DefaultFromJDBCTransformer trans = new DefaultFromJDBCTransformer();
+						reader.setSink( trans );
+						trans.setSink( merger );
 					}
+					first = merger;
+				}
+				RecordSource source = first;
 
-					LogCounter counter = null;
-					if( parsed.logRecords > 0 )
-						counter = new FixedIntervalLogCounter( parsed.logRecords );
-					else if( parsed.logSeconds > 0 )
-						counter = new TimeIntervalLogCounter( parsed.logSeconds );
-
-					DBReader reader = new DBReader( result, counter != null ? new ExportLogger( counter, processor.getProgressListener() ) : null, parsed.dateAsTimestamp );
-					DefaultFromJDBCTransformer trans = new DefaultFromJDBCTransformer();
-					RecordSource source = trans;
-					reader.setSink( trans );
+				Column[] columns = readers[ 0 ].getColumns();
+				int count = columns.length;
 
-					Column[] columns = reader.getColumns();
-					int count = columns.length;
+				FileSpec[] fileSpecs = new FileSpec[ count ];
 
-					FileSpec[] fileSpecs = new FileSpec[ count ];
+				// Analyze columns
 
-					// Analyze columns
+				SelectProcessor selector = new SelectProcessor();
+				if( parsed.columns != null )
+					for( Entry<String, ColumnSpec> entry : parsed.columns.entrySet() )
+						if( entry.getValue().skip )
+							selector.deselect( entry.getKey() );
+				for( Column column : columns )
+				{
+					int type = column.getType();
+					// TODO STRUCT serialize
+					// TODO This must be optional and not the default
+					if( type == 2002 || column.getTypeName() == null )
+						selector.deselect( column.getName() );
+				}
 
-					SelectProcessor selector = new SelectProcessor();
-					if( parsed.columns != null )
-						for( Entry<String, ColumnSpec> entry : parsed.columns.entrySet() )
-							if( entry.getValue().skip )
-								selector.deselect( entry.getKey() );
-					for( Column column : columns )
+				if( parsed.columns != null )
+					for( int i = 0; i < count; i++ )
 					{
-						int type = column.getType();
-						// TODO STRUCT serialize
-						// TODO This must be optional and not the default
-						if( type == 2002 || column.getTypeName() == null )
-							selector.deselect( column.getName() );
+						ColumnSpec columnSpec = parsed.columns.get( columns[ i ].getName() );
+						if( columnSpec != null )
+							fileSpecs[ i ] = columnSpec.toFile;
 					}
 
-					if( parsed.columns != null )
-						for( int i = 0; i < count; i++ )
-						{
-							ColumnSpec columnSpec = parsed.columns.get( columns[ i ].getName() );
-							if( columnSpec != null )
-								fileSpecs[ i ] = columnSpec.toFile;
-						}
+				// Connect FileSpecs with the first source for the original values
+				for( FileSpec fileSpec : fileSpecs )
+					if( fileSpec != null )
+						fileSpec.setSource( first );
 
-					// Connect FileSpecs with the DBReader for the original values
-					for( FileSpec fileSpec : fileSpecs )
-						if( fileSpec != null )
-							fileSpec.setSource( trans );
+				if( parsed.coalesce != null )
+				{
+					CoalescerProcessor coalescer = new CoalescerProcessor( parsed.coalesce );
+					source.setSink( coalescer );
+					source = coalescer;
+				}
 
-					if( parsed.coalesce != null )
-					{
-						CoalescerProcessor coalescer = new CoalescerProcessor( parsed.coalesce );
-						source.setSink( coalescer );
-						source = coalescer;
-					}
+				if( selector.hasDeselected() )
+				{
+					source.setSink( selector );
+					source = selector;
+				}
 
-					if( selector.hasDeselected() )
+				CBORDataWriter dataWriter = new CBORDataWriter( out, parsed.columns );
+				try
+				{
+					source.setSink( dataWriter );
+					for( DBReader reader : readers )
+						reader.init();
+					columns = source.getColumns();
+
+					JSONObject properties = new JSONObject();
+					properties.set( "version", 1 );
+					properties.set( "description", "SolidBase CBOR Data Dump File" );
+					properties.set( "createdBy", new JSONObject( "product", "SolidBase", "version", "2.0.0" ) );
+					if( createdDate )
+						properties.set( "createdDate", new Date() );
+					dataWriter.getCBOROutputStream().write( properties );
+
+					properties = new JSONObject();
+					JSONArray fields = new JSONArray();
+					properties.set( "fields", fields );
+					for( int i = 0; i < columns.length; i++ )
 					{
-						source.setSink( selector );
-						source = selector;
+						Column column = columns[ i ];
+						JSONObject field = new JSONObject();
+						field.set( "schemaName", column.getSchema() );
+						field.set( "tableName", column.getTable() );
+						field.set( "name", column.getName() );
+						field.set( "type", column.getTypeName() ); // TODO Better error message when type is not recognized, for example Oracle's 2007 for a user type
+						FileSpec spec = fileSpecs[ i ];
+						if( spec != null && !spec.isParameterized() )
+						{
+							Resource fileResource = new FileResource( spec.fileName );
+							field.set( "file", fileResource.getPathFrom( cborOutput ).toString() );
+						}
+						fields.add( field );
 					}
+					dataWriter.getCBOROutputStream().tagRefNS().write( properties );
 
-					CBORDataWriter dataWriter = new CBORDataWriter( out, parsed.columns );
 					try
 					{
-						source.setSink( dataWriter );
-						reader.init();
-						columns = source.getColumns();
-
-						JSONObject properties = new JSONObject();
-						properties.set( "version", 1 );
-						properties.set( "description", "SolidBase CBOR Data Dump File" );
-						properties.set( "createdBy", new JSONObject( "product", "SolidBase", "version", "2.0.0" ) );
-						if( createdDate )
-							properties.set( "createdDate", new Date() );
-						dataWriter.getCBOROutputStream().write( properties );
-
-						properties = new JSONObject();
-						JSONArray fields = new JSONArray();
-						properties.set( "fields", fields );
-						for( int i = 0; i < columns.length; i++ )
-						{
-							Column column = columns[ i ];
-							JSONObject field = new JSONObject();
-							field.set( "schemaName", column.getSchema() );
-							field.set( "tableName", column.getTable() );
-							field.set( "name", column.getName() );
-							field.set( "type", column.getTypeName() ); // TODO Better error message when type is not recognized, for example Oracle's 2007 for a user type
-							FileSpec spec = fileSpecs[ i ];
-							if( spec != null && !spec.isParameterized() )
-							{
-								Resource fileResource = new FileResource( spec.fileName );
-								field.set( "file", fileResource.getPathFrom( cborOutput ).toString() );
-							}
-							fields.add( field );
-						}
-						dataWriter.getCBOROutputStream().tagRefNS().write( properties );
-
-						try
-						{
-							reader.process();
-						}
-						finally
-						{
-							// Close files that have been left open
-							for( FileSpec fileSpec : fileSpecs )
-								if( fileSpec != null )
-								{
-									if( fileSpec.out != null )
-										fileSpec.out.close();
-									if( fileSpec.writer != null )
-										fileSpec.writer.close();
-								}
-						}
+						ParallelQuery.process( readers );
 					}
 					finally
 					{
-						dataWriter.close();
+						// Close files that have been left open
+						for( FileSpec fileSpec : fileSpecs )
+							if( fileSpec != null )
+							{
+								if( fileSpec.out != null )
+									fileSpec.out.close();
+								if( fileSpec.writer != null )
+									fileSpec.writer.close();
+							}
 					}
 				}
 				finally
 				{
-					processor.closeStatement( statement, true );
+					dataWriter.close();
 				}
 			}
 			finally
@@ -258,8 +364,15 @@ public class ExportCBOR implements CommandListener
 		{
 			throw new FatalIOException( e );
 		}
+	}
 
-		return true;
+	static private LogCounter createLogCounter( Parsed parsed )
+	{
+		if( parsed.logRecords > 0 )
+			return new FixedIntervalLogCounter( parsed.logRecords );
+		if( parsed.logSeconds > 0 )
+			return new TimeIntervalLogCounter( parsed.logSeconds );
+		return null;
 	}
 
 	/**
@@ -277,14 +390,21 @@ public class ExportCBOR implements CommandListener
 		[ COALESCE <col>, <col> [ , <col> ] ]
 		[ LOG EVERY n ( RECORDS | SECONDS ) ]
 		[ COLUMN col1, col2 SKIP ) ]
+		[ PARALLEL <n> SPLIT ON <col> ]
+		[ FETCH SIZE <n> | AUTO ]
 		FROM <sqlstatement>
+
+		- With PARALLEL the query is split in <n> ranges on the numeric column, each read on its own connection
+		- With PARALLEL and a file name containing ?1, each range is written to its own file, ?1 being the range number
+		- With FETCH SIZE AUTO the fetch size is determined from the widths of the columns. Without FETCH SIZE, the
+		  default set with SET FETCH_SIZE is used, or else 1000
 		*/
 
 		Parsed result = new Parsed();
 
 		SQLTokenizer tokenizer = new SQLTokenizer( SourceReaders.forString( command.getCommand(), command.getLocation() ) );
 
-		EnumSet<Tokens> expected = EnumSet.of( Tokens.DATE, Tokens.COALESCE, Tokens.LOG, Tokens.FILE, Tokens.COLUMN, Tokens.FROM );
+		EnumSet<Tokens> expected = EnumSet.of( Tokens.DATE, Tokens.COALESCE, Tokens.LOG, Tokens.FILE, Tokens.COLUMN, Tokens.FROM, Tokens.PARALLEL, Tokens.FETCH );
 
 		Token t = tokenizer.skip( "EXPORT" ).skip( "CBOR" ).get();
 		for( ;; )
@@ -349,6 +469,27 @@ public class ExportCBOR implements CommandListener
 					t = tokenizer.get();
 					break;
 
+				case FETCH:
+					t = tokenizer.skip( "SIZE" ).get();
+					if( t.eq( "AUTO" ) )
+						result.fetchSize = FetchSize.AUTO;
+					else if( t.isNumber() )
+						result.fetchSize = Integer.parseInt( t.value() );
+					else
+						throw new SourceException( "Expecting a number or [AUTO], not [" + t + "]", tokenizer.getLocation() );
+					t = tokenizer.get();
+					expected.remove( Tokens.FETCH );
+					break;
+
+				case PARALLEL:
+					result.parallel = Integer.parseInt( tokenizer.getNumber().value() );
+					if( result.parallel < 1 )
+						throw new SourceException( "PARALLEL needs to be 1 or greater", tokenizer.getLocation() );
+					result.splitColumn = tokenizer.skip( "SPLIT" ).skip( "ON" ).getIdentifier().value();
+					t = tokenizer.get();
+					expected.remove( Tokens.PARALLEL );
+					break;
+
 				case FROM:
 					result.query = tokenizer.getRemaining();
 					return result;
@@ -389,5 +530,14 @@ public class ExportCBOR implements CommandListener
 		protected int logSeconds;
 
 		protected Map<String, ColumnSpec> columns;
+
+		/** The number of ranges to split the query in */
+		protected int parallel = 1;
+
+		/** The numeric column to split the query on */
+		protected String splitColumn;
+
+		/** The fetch size of the query, null if not specified */
+		protected Integer fetchSize;
 	}
 }
@@ -18,7 +18,7 @@ package solidbase.core.plugins;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -28,12 +28,13 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
 import java.util.regex.Pattern;
 
 import solidbase.core.Command;
-import solidbase.core.CommandListener;
 import solidbase.core.CommandProcessor;
 import solidbase.core.FatalException;
+import solidbase.core.KeywordCommandListener;
 import solidbase.core.ProcessException;
 import solidbase.util.FixedIntervalLogCounter;
 import solidbase.util.LogCounter;
@@ -54,11 +55,17 @@ import solidstack.io.SourceReaders;
  * @since Aug 12, 2011
  */
 // TODO Escape with \ instead of doubling double quotes. This means also \n \t \r. ESCAPE DQ CR LF TAB WITH \
-public class ExportCSV implements CommandListener
+public class ExportCSV implements KeywordCommandListener
 {
 	static private final Pattern triggerPattern = Pattern.compile( "\\s*EXPORT\\s+CSV\\s+.*", Pattern.DOTALL | Pattern.CASE_INSENSITIVE );
 
 
+	@Override
+	public String[] getKeywords()
+	{
+		return new String[] { "EXPORT" };
+	}
+
 	//@Override
 	@Override
 	public boolean execute( CommandProcessor processor, Command command, boolean skip ) throws SQLException
@@ -74,86 +81,170 @@ public class ExportCSV implements CommandListener
 
 		Parsed parsed = parse( command );
 
+		if( parsed.parallel > 1 )
+		{
+			exportParallel( processor, parsed );
+			return true;
+		}
+
 		Resource csvOutput = Resources.getResource( parsed.fileName ); // Relative to current folder
 		csvOutput.setGZip( parsed.gzip );
+
+		int fetchSize = FetchSize.resolve( processor, parsed.fetchSize );
+		Statement statement = processor.createQueryStatement( FetchSize.forStatement( fetchSize ) );
 		try
 		{
-			OutputStream out = csvOutput.newOutputStream();
+			ResultSet result;
 			try
 			{
-				Statement statement = processor.createStatement();
-				try
-				{
-					statement.setFetchSize( 1000 );
-					ResultSet result;
-					try
-					{
-						result = statement.executeQuery( parsed.query );
-					}
-					catch( SQLException e )
-					{
-						throw new ProcessException( e ).addProcess( "executing: " + parsed.query );
-					}
+				result = statement.executeQuery( parsed.query );
+			}
+			catch( SQLException e )
+			{
+				throw new ProcessException( e ).addProcess( "executing: " + parsed.query );
+			}
 
-					LogCounter counter = null;
-					if( parsed.logRecords > 0 )
-						counter = new FixedIntervalLogCounter( parsed.logRecords );
-					else if( parsed.logSeconds > 0 )
-						counter = new TimeIntervalLogCounter( parsed.logSeconds );
+			LogCounter counter = createLogCounter( parsed );
+			DBReader reader = new DBReader( result, counter != null ? new ExportLogger( counter, processor.getProgressListener() ) : null, parsed.dateAsTimestamp );
+			reader.setFetchSize( fetchSize );
+			export( parsed, csvOutput, new DBReader[] { reader } );
+		}
+		finally
+		{
+			processor.closeQueryStatement( statement, true );
+		}
 
-					DBReader reader = new DBReader( result, counter != null ? new ExportLogger( counter, processor.getProgressListener() ) : null, parsed.dateAsTimestamp );
-					DefaultFromJDBCTransformer trans = new DefaultFromJDBCTransformer();
-					RecordSource source = trans;
-					reader.setSink( trans );
+		return true;
+	}
 
-					Column[] columns = reader.getColumns();
-					int count = columns.length;
+	/**
+	 * Exports the query split in ranges, each range read by its own thread. With a parameterized file name each range
+	 * is written to its own file, with ?1 replaced by the number of the range. Otherwise all ranges are merged into one
+	 * file, in no particular order.
+	 */
+	protected void exportParallel( CommandProcessor processor, final Parsed parsed ) throws SQLException
+	{
+		int fetchSize = FetchSize.resolve( processor, parsed.fetchSize );
+		ParallelQuery query = new ParallelQuery( processor, parsed.query, parsed.splitColumn, parsed.parallel, fetchSize );
+		try
+		{
+			ResultSet[] results = query.execute();
 
-					// Analyze columns
+			LogCounter counter = createLogCounter( parsed );
+			ExportLogger logger = counter != null ? new ExportLogger( counter, processor.getProgressListener(), results.length ) : null;
+			DBReader[] readers = new DBReader[ results.length ];
+			for( int i = 0; i < readers.length; i++ )
+			{
+				readers[ i ] = new DBReader( results[ i ], logger, parsed.dateAsTimestamp );
+				readers[ i ].setFetchSize( fetchSize );
+			}
 
-					SelectProcessor selector = new SelectProcessor();
-					if( parsed.columns != null )
-						for( Entry<String, ColumnSpec> entry : parsed.columns.entrySet() )
-							if( entry.getValue().skip )
-								selector.deselect( entry.getKey() );
-					for( Column column : columns )
-					{
-						int type = column.getType();
-						// TODO STRUCT serialize
-						// TODO This must be optional and not the default
-						if( type == 2002 || column.getTypeName() == null )
-							selector.deselect( column.getName() );
-					}
+			FileNameGenerator generator = new FileNameGenerator( parsed.fileName );
+			if( !generator.isParameterized() )
+			{
+				Resource csvOutput = Resources.getResource( parsed.fileName ); // Relative to current folder
+				csvOutput.setGZip( parsed.gzip );
+				export( parsed, csvOutput, readers );
+				return;
+			}
 
-					if( parsed.coalesce != null )
+			List<Callable<Void>> tasks = new ArrayList<>();
+			for( int i = 0; i < readers.length; i++ )
+			{
+				final Resource csvOutput = Resources.getResource( generator.generateFileName( new Object[] { i + 1 } ) );
+				csvOutput.setGZip( parsed.gzip );
+				final DBReader reader = readers[ i ];
+				tasks.add( new Callable<Void>()
+				{
+					@Override
+					public Void call() throws SQLException
 					{
-						CoalescerProcessor coalescer = new CoalescerProcessor( parsed.coalesce );
-						source.setSink( coalescer );
-						source = coalescer;
+						export( parsed, csvOutput, new DBReader[] { reader } );
+						return null;
 					}
+				} );
+			}
+			ParallelQuery.invokeAll( tasks );
+		}
+		finally
+		{
+			query.close();
+		}
+	}
 
-					if( selector.hasDeselected() )
+	/**
+	 * Exports the records from the given readers to the given output. When there is more than one reader, each reader
+	 * runs in its own thread.
+	 */
+	protected void export( Parsed parsed, Resource csvOutput, DBReader[] readers ) throws SQLException
+	{
+		try
+		{
+			OutputStream out = csvOutput.newOutputStream();
+			try
+			{
+				RecordSource source;
+				if( readers.length == 1 )
+				{
+					DefaultFromJDBCTransformer trans = new DefaultFromJDBCTransformer();
+					readers[ 0 ].setSink( trans );
+					source = trans;
+				}
+				else
+				{
+					MergingRecordSink merger = new MergingRecordSink( readers.length );
+					for( DBReader reader : readers )
 					{
-						source.setSink( selector );
-						source = selector;
+						DefaultFromJDBCTransformer trans = new DefaultFromJDBCTransformer();
+						reader.setSink( trans );
+						trans.setSink( merger );
 					}
+					source = merger;
+				}
 
-					// TODO The UnsupportedEncodingException should be a SourceException
-					CSVDataWriter dataWriter = new CSVDataWriter( new OutputStreamWriter( out, parsed.encoding ), parsed.separator, parsed.withHeader );
-					try
-					{
-						source.setSink( dataWriter );
+				Column[] columns = readers[ 0 ].getColumns();
+
+				// Analyze columns
+
+				SelectProcessor selector = new SelectProcessor();
+				if( parsed.columns != null )
+					for( Entry<String, ColumnSpec> entry : parsed.columns.entrySet() )
+						if( entry.getValue().skip )
+							selector.deselect( entry.getKey() );
+				for( Column column : columns )
+				{
+					int type = column.getType();
+					// TODO STRUCT serialize
+					// TODO This must be optional and not the default
+					if( type == 2002 || column.getTypeName() == null )
+						selector.deselect( column.getName() );
+				}
+
+				if( parsed.coalesce != null )
+				{
+					CoalescerProcessor coalescer = new CoalescerProcessor( parsed.coalesce );
+					source.setSink( coalescer );
+					source = coalescer;
+				}
+
+				if( selector.hasDeselected() )
+				{
+					source.setSink( selector );
+					source = selector;
+				}
+
+				// TODO The UnsupportedCharsetException should be a SourceException
+				CSVDataWriter dataWriter = new CSVDataWriter( out, Charset.forName( parsed.encoding ), parsed.separator, parsed.withHeader );
+				try
+				{
+					source.setSink( dataWriter );
+					for( DBReader reader : readers )
 						reader.init();
-						reader.process();
-					}
-					finally
-					{
-						dataWriter.close();
-					}
+					ParallelQuery.process( readers );
 				}
 				finally
 				{
-					processor.closeStatement( statement, true );
+					dataWriter.close();
 				}
 			}
 			finally
@@ -165,8 +256,15 @@ public class ExportCSV implements CommandListener
 		{
 			throw new FatalIOException( e );
 		}
+	}
 
-		return true;
+	static private LogCounter createLogCounter( Parsed parsed )
+	{
+		if( parsed.logRecords > 0 )
+			return new FixedIntervalLogCounter( parsed.logRecords );
+		if( parsed.logSeconds > 0 )
+			return new TimeIntervalLogCounter( parsed.logSeconds );
+		return null;
 	}
 
 
@@ -188,14 +286,21 @@ public class ExportCSV implements CommandListener
 		[ COALESCE <col>, <col> [ , <col> ] ]
 		[ LOG EVERY n ( RECORDS | SECONDS ) ]
 		[ COLUMN <col> [ , <col> ] SKIP ]
+		[ PARALLEL <n> SPLIT ON <col> ]
+		[ FETCH SIZE <n> | AUTO ]
 		FROM <sqlstatement>
+
+		- With PARALLEL the query is split in <n> ranges on the numeric column, each read on its own connection
+		- With PARALLEL and a file name containing ?1, each range is written to its own file, ?1 being the range number
+		- With FETCH SIZE AUTO the fetch size is determined from the widths of the columns. Without FETCH SIZE, the
+		  default set with SET FETCH_SIZE is used, or else 1000
 		*/
 
 		Parsed result = new Parsed();
 
 		SQLTokenizer tokenizer = new SQLTokenizer( SourceReaders.forString( command.getCommand(), command.getLocation() ) );
 
-		EnumSet<Tokens> expected = EnumSet.of( Tokens.DATE, Tokens.COALESCE, Tokens.LOG, Tokens.FILE, Tokens.COLUMN, Tokens.FROM, Tokens.WITH, Tokens.SEPARATED );
+		EnumSet<Tokens> expected = EnumSet.of( Tokens.DATE, Tokens.COALESCE, Tokens.LOG, Tokens.FILE, Tokens.COLUMN, Tokens.FROM, Tokens.WITH, Tokens.SEPARATED, Tokens.PARALLEL, Tokens.FETCH );
 
 		Token t = tokenizer.skip( "EXPORT" ).skip( "CSV" ).get();
 		for( ;; )
@@ -283,6 +388,27 @@ public class ExportCSV implements CommandListener
 					expected.remove( Tokens.SEPARATED );
 					break;
 
+				case FETCH:
+					t = tokenizer.skip( "SIZE" ).get();
+					if( t.eq( "AUTO" ) )
+						result.fetchSize = FetchSize.AUTO;
+					else if( t.isNumber() )
+						result.fetchSize = Integer.parseInt( t.value() );
+					else
+						throw new SourceException( "Expecting a number or [AUTO], not [" + t + "]", tokenizer.getLocation() );
+					t = tokenizer.get();
+					expected.remove( Tokens.FETCH );
+					break;
+
+				case PARALLEL:
+					result.parallel = Integer.parseInt( tokenizer.getNumber().value() );
+					if( result.parallel < 1 )
+						throw new SourceException( "PARALLEL needs to be 1 or greater", tokenizer.getLocation() );
+					result.splitColumn = tokenizer.skip( "SPLIT" ).skip( "ON" ).getIdentifier().value();
+					t = tokenizer.get();
+					expected.remove( Tokens.PARALLEL );
+					break;
+
 				case FROM:
 					result.query = tokenizer.getRemaining();
 					return result;
@@ -333,5 +459,14 @@ public class ExportCSV implements CommandListener
 		protected int logSeconds;
 
 		protected Map<String, ColumnSpec> columns;
+
+		/** The number of ranges to split the query in */
+		protected int parallel = 1;
+
+		/** The numeric column to split the query on */
+		protected String splitColumn;
+
+		/** The fetch size of the query, null if not specified */
+		protected Integer fetchSize;
 	}
 }
@@ -30,13 +30,14 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
 import java.util.regex.Pattern;
 
 import funny.Symbol;
 import solidbase.core.Command;
-import solidbase.core.CommandListener;
 import solidbase.core.CommandProcessor;
 import solidbase.core.FatalException;
+import solidbase.core.KeywordCommandListener;
 import solidbase.core.ProcessException;
 import solidbase.util.FixedIntervalLogCounter;
 import solidbase.util.LogCounter;
@@ -48,6 +49,7 @@ import solidstack.io.FileResource;
 import solidstack.io.Resource;
 import solidstack.io.Resources;
 import solidstack.io.SourceException;
+import solidstack.io.SourceLocation;
 import solidstack.io.SourceReaders;
 import solidstack.json.JSONArray;
 import solidstack.json.JSONObject;
@@ -61,11 +63,17 @@ import solidstack.script.scopes.UndefinedException;
  * @author René M. de Bloois
  * @since Aug 12, 2011
  */
-public class ExportJSON implements CommandListener
+public class ExportJSON implements KeywordCommandListener
 {
 	static private final Pattern triggerPattern = Pattern.compile( "\\s*EXPORT\\s+JSON\\s+.*", Pattern.DOTALL | Pattern.CASE_INSENSITIVE );
 
 
+	@Override
+	public String[] getKeywords()
+	{
+		return new String[] { "EXPORT" };
+	}
+
 	//@Override
 	// TODO Escape dynamic file names, because illegal characters may be generated
 	// TODO Export multiple tables to a single file. If no PK than sort on all columns. Schema name for import or not?
@@ -110,165 +118,263 @@ public class ExportJSON implements CommandListener
 			createdDate = true;
 		}
 
+		if( parsed.parallel > 1 )
+		{
+			exportParallel( processor, parsed, createdDate, command.getLocation() );
+			return true;
+		}
+
 		Resource jsonOutput = new FileResource( new File( parsed.fileName ) ); // Relative to current folder
 		jsonOutput.setGZip( parsed.gzip );
+
+		int fetchSize = FetchSize.resolve( processor, parsed.fetchSize );
+		Statement statement = processor.createQueryStatement( FetchSize.forStatement( fetchSize ) );
 		try
 		{
-			OutputStream out = jsonOutput.newOutputStream();
+			ResultSet result;
 			try
 			{
-				Statement statement = processor.createStatement();
-				try
+				result = statement.executeQuery( parsed.query );
+			}
+			catch( SQLException e )
+			{
+				throw new ProcessException( e ).addProcess( "executing: " + parsed.query );
+			}
+
+			LogCounter counter = createLogCounter( parsed );
+			DBReader reader = new DBReader( result, counter != null ? new ExportLogger( counter, processor.getProgressListener() ) : null, parsed.dateAsTimestamp );
+			reader.setFetchSize( fetchSize );
+			export( parsed, jsonOutput, new DBReader[] { reader }, createdDate, command.getLocation() );
+		}
+		finally
+		{
+			processor.closeQueryStatement( statement, true );
+		}
+
+		return true;
+	}
+
+	/**
+	 * Exports the query split in ranges, each range read by its own thread. With a parameterized file name each range
+	 * is written to its own file, with ?1 replaced by the number of the range. Otherwise all ranges are merged into one
+	 * file, in no particular order.
+	 */
+	protected void exportParallel( CommandProcessor processor, final Parsed parsed, final boolean createdDate, final SourceLocation location ) throws SQLException
+	{
+		FileNameGenerator generator = new FileNameGenerator( parsed.fileName );
+		if( generator.isParameterized() )
+		{
+			// The file specs keep state per file, they can't be shared by the ranges
+			boolean toFile = parsed.binaryFileName != null;
+			if( parsed.columns != null )
+				for( ColumnSpec spec : parsed.columns.values() )
+					if( spec.toFile != null )
+						toFile = true;
+			if( toFile )
+				throw new FatalException( "PARALLEL with a file per range can't be combined with files for columns" );
+		}
+
+		int fetchSize = FetchSize.resolve( processor, parsed.fetchSize );
+		ParallelQuery query = new ParallelQuery( processor, parsed.query, parsed.splitColumn, parsed.parallel, fetchSize );
+		try
+		{
+			ResultSet[] results = query.execute();
+
+			LogCounter counter = createLogCounter( parsed );
+			ExportLogger logger = counter != null ? new ExportLogger( counter, processor.getProgressListener(), results.length ) : null;
+			DBReader[] readers = new DBReader[ results.length ];
+			for( int i = 0; i < readers.length; i++ )
+			{
+				readers[ i ] = new DBReader( results[ i ], logger, parsed.dateAsTimestamp );
+				readers[ i ].setFetchSize( fetchSize );
+			}
+
+			if( !generator.isParameterized() )
+			{
+				Resource jsonOutput = new FileResource( new File( parsed.fileName ) ); // Relative to current folder
+				jsonOutput.setGZip( parsed.gzip );
+				export( parsed, jsonOutput, readers, createdDate, location );
+				return;
+			}
+
+			List<Callable<Void>> tasks = new ArrayList<>();
+			for( int i = 0; i < readers.length; i++ )
+			{
+				final Resource jsonOutput = new FileResource( new File( generator.generateFileName( new Object[] { i + 1 } ) ) );
+				jsonOutput.setGZip( parsed.gzip );
+				final DBReader reader = readers[ i ];
+				tasks.add( new Callable<Void>()
 				{
-					statement.setFetchSize( 1000 );
-					ResultSet result;
-					try
+					@Override
+					public Void call() throws SQLException
 					{
-						result = statement.executeQuery( parsed.query );
+						export( parsed, jsonOutput, new DBReader[] { reader }, createdDate, location );
+						return null;
 					}
-					catch( SQLException e )
+				} );
+			}
+			ParallelQuery.invokeAll( tasks );
+		}
+		finally
+		{
+			query.close();
+		}
+	}
+
+	/**
+	 * Exports the records from the given readers to the given output. When there is more than one reader, each reader
+	 * runs in its own thread.
+	 */
+	protected void export( Parsed parsed, Resource jsonOutput, DBReader[] readers, boolean createdDate, SourceLocation location ) throws SQLException
+	{
+		try
+		{
+			OutputStream out = jsonOutput.newOutputStream();
+			try
+			{
+				// The first source, it gives access to the original values
+				RecordSource first;
+				if( readers.length == 1 )
+				{
+					DefaultFromJDBCTransformer trans = new DefaultFromJDBCTransformer();
+					readers[ 0 ].setSink( trans );
+					first = trans;
+				}
+				else
+				{
+					MergingRecordSink merger = new MergingRecordSink( readers.length );
+					for( DBReader reader : readers )
 					{
-						throw new ProcessException( e ).addProcess( "executing: " + parsed.query );
+						DefaultFromJDBCTransformer trans = new DefaultFromJDBCTransformer();
+						reader.setSink( trans );
+						trans.setSink( merger );
 					}
+					first = merger;
+				}
+				RecordSource source = first;
 
-					LogCounter counter = null;
-					if( parsed.logRecords > 0 )
-						counter = new FixedIntervalLogCounter( parsed.logRecords );
-					else if( parsed.logSeconds > 0 )
-						counter = new TimeIntervalLogCounter( parsed.logSeconds );
-
-					DBReader reader = new DBReader( result, counter != null ? new ExportLogger( counter, processor.getProgressListener() ) : null, parsed.dateAsTimestamp );
-					DefaultFromJDBCTransformer trans = new DefaultFromJDBCTransformer();
-					RecordSource source = trans;
-					reader.setSink( trans );
+				Column[] columns = readers[ 0 ].getColumns();
+				int count = columns.length;
 
-					Column[] columns = reader.getColumns();
-					int count = columns.length;
+				FileSpec[] fileSpecs = new FileSpec[ count ];
 
-					FileSpec[] fileSpecs = new FileSpec[ count ];
+				// Analyze columns
 
-					// Analyze columns
+				SelectProcessor selector = new SelectProcessor();
+				if( parsed.columns != null )
+					for( Entry<String, ColumnSpec> entry : parsed.columns.entrySet() )
+						if( entry.getValue().skip )
+							selector.deselect( entry.getKey() );
+				for( Column column : columns )
+				{
+					int type = column.getType();
+					// TODO STRUCT serialize
+					// TODO This must be optional and not the default
+					if( type == 2002 || column.getTypeName() == null )
+						selector.deselect( column.getName() );
+				}
 
-					SelectProcessor selector = new SelectProcessor();
-					if( parsed.columns != null )
-						for( Entry<String, ColumnSpec> entry : parsed.columns.entrySet() )
-							if( entry.getValue().skip )
-								selector.deselect( entry.getKey() );
-					for( Column column : columns )
+				if( parsed.columns != null )
+					for( int i = 0; i < count; i++ )
 					{
-						int type = column.getType();
-						// TODO STRUCT serialize
-						// TODO This must be optional and not the default
-						if( type == 2002 || column.getTypeName() == null )
-							selector.deselect( column.getName() );
+						ColumnSpec columnSpec = parsed.columns.get( columns[ i ].getName() );
+						if( columnSpec != null )
+							fileSpecs[ i ] = columnSpec.toFile;
 					}
 
-					if( parsed.columns != null )
-						for( int i = 0; i < count; i++ )
-						{
-							ColumnSpec columnSpec = parsed.columns.get( columns[ i ].getName() );
-							if( columnSpec != null )
-								fileSpecs[ i ] = columnSpec.toFile;
-						}
-
-					// Connect FileSpecs with the DBReader for the original values
-					for( FileSpec fileSpec : fileSpecs )
-						if( fileSpec != null )
-							fileSpec.setSource( trans );
+				// Connect FileSpecs with the first source for the original values
+				for( FileSpec fileSpec : fileSpecs )
+					if( fileSpec != null )
+						fileSpec.setSource( first );
 
-					if( parsed.coalesce != null )
-					{
-						CoalescerProcessor coalescer = new CoalescerProcessor( parsed.coalesce );
-						source.setSink( coalescer );
-						source = coalescer;
-					}
+				if( parsed.coalesce != null )
+				{
+					CoalescerProcessor coalescer = new CoalescerProcessor( parsed.coalesce );
+					source.setSink( coalescer );
+					source = coalescer;
+				}
 
-					if( selector.hasDeselected() )
-					{
-						source.setSink( selector );
-						source = selector;
-					}
+				if( selector.hasDeselected() )
+				{
+					source.setSink( selector );
+					source = selector;
+				}
 
-					FileSpec binaryFile = parsed.binaryFileName != null ? new FileSpec( true, parsed.binaryFileName, 0, trans ) : null;
-					JSONDataWriter dataWriter = new JSONDataWriter( jsonOutput, out, parsed.columns, binaryFile, parsed.binaryGzip, command.getLocation() );
-					try
-					{
-						source.setSink( dataWriter );
+				FileSpec binaryFile = parsed.binaryFileName != null ? new FileSpec( true, parsed.binaryFileName, 0, first ) : null;
+				JSONDataWriter dataWriter = new JSONDataWriter( jsonOutput, out, parsed.columns, binaryFile, parsed.binaryGzip, location );
+				try
+				{
+					source.setSink( dataWriter );
+					for( DBReader reader : readers )
 						reader.init();
-						columns = source.getColumns();
+					columns = source.getColumns();
 
-						// Write header
+					// Write header
 
-						JSONObject properties = new JSONObject();
-						properties.set( "version", "1.0" );
-						properties.set( "format", "record-stream" );
-						properties.set( "description", "SolidBase JSON Data Dump File" );
-						properties.set( "createdBy", new JSONObject( "product", "SolidBase", "version", "2.0.0" ) );
+					JSONObject properties = new JSONObject();
+					properties.set( "version", "1.0" );
+					properties.set( "format", "record-stream" );
+					properties.set( "description", "SolidBase JSON Data Dump File" );
+					properties.set( "createdBy", new JSONObject( "product", "SolidBase", "version", "2.0.0" ) );
 
-						if( createdDate )
-						{
-							// TODO Use internet format
-							SimpleDateFormat format = new SimpleDateFormat( "yyyy-MM-dd HH:mm:ss" );
-							properties.set( "createdDate", format.format( new Date() ) );
-						}
+					if( createdDate )
+					{
+						// TODO Use internet format
+						SimpleDateFormat format = new SimpleDateFormat( "yyyy-MM-dd HH:mm:ss" );
+						properties.set( "createdDate", format.format( new Date() ) );
+					}
 
-						if( parsed.binaryFileName != null )
-						{
-							// TODO FIXME Should be wrapped in a SourceException: solidbase.solidstack.io.FatalURISyntaxException: java.net.URISyntaxException: Illegal character in path at index 1: &{folder}/JIADHOCCH
-							Resource binResource = Resources.getResource( parsed.binaryFileName );
-							Resource resource = Resources.getResource( parsed.fileName );
-							properties.set( "binaryFile", binResource.getPathFrom( resource ).toString() );
-						}
+					if( parsed.binaryFileName != null )
+					{
+						// TODO FIXME Should be wrapped in a SourceException: solidbase.solidstack.io.FatalURISyntaxException: java.net.URISyntaxException: Illegal character in path at index 1: &{folder}/JIADHOCCH
+						Resource binResource = Resources.getResource( parsed.binaryFileName );
+						Resource resource = Resources.getResource( parsed.fileName );
+						properties.set( "binaryFile", binResource.getPathFrom( resource ).toString() );
+					}
 
-						JSONArray fields = new JSONArray();
-						properties.set( "fields", fields );
-						for( int i = 0; i < columns.length; i++ )
+					JSONArray fields = new JSONArray();
+					properties.set( "fields", fields );
+					for( int i = 0; i < columns.length; i++ )
+					{
+						Column column = columns[ i ];
+						JSONObject field = new JSONObject();
+						field.set( "schemaName", column.getSchema() );
+						field.set( "tableName", column.getTable() );
+						field.set( "name", column.getName() );
+						field.set( "type", column.getTypeName() ); // TODO Better error message when type is not recognized, for example Oracle's 2007 for a user type
+						FileSpec spec = fileSpecs[ i ];
+						if( spec != null && !spec.isParameterized() )
 						{
-							Column column = columns[ i ];
-							JSONObject field = new JSONObject();
-							field.set( "schemaName", column.getSchema() );
-							field.set( "tableName", column.getTable() );
-							field.set( "name", column.getName() );
-							field.set( "type", column.getTypeName() ); // TODO Better error message when type is not recognized, for example Oracle's 2007 for a user type
-							FileSpec spec = fileSpecs[ i ];
-							if( spec != null && !spec.isParameterized() )
-							{
-								Resource fileResource = new FileResource( spec.fileName );
-								field.set( "file", fileResource.getPathFrom( jsonOutput ).toString() );
-							}
-							fields.add( field );
+							Resource fileResource = new FileResource( spec.fileName );
+							field.set( "file", fileResource.getPathFrom( jsonOutput ).toString() );
 						}
+						fields.add( field );
+					}
 
-						dataWriter.getJSONWriter().writeFormatted( properties, 120 );
-						dataWriter.getJSONWriter().getWriter().write( '\n' );
+					dataWriter.writeHeader( properties );
 
-						try
-						{
-							reader.process();
-						}
-						finally
-						{
-							// Close files that have been left open
-							for( FileSpec fileSpec : fileSpecs )
-								if( fileSpec != null )
-								{
-									if( fileSpec.out != null )
-										fileSpec.out.close();
-									if( fileSpec.writer != null )
-										fileSpec.writer.close();
-								}
-							if( binaryFile != null && binaryFile.out != null )
-								binaryFile.out.close();
-						}
+					try
+					{
+						ParallelQuery.process( readers );
 					}
 					finally
 					{
-						dataWriter.close();
+						// Close files that have been left open
+						for( FileSpec fileSpec : fileSpecs )
+							if( fileSpec != null )
+							{
+								if( fileSpec.out != null )
+									fileSpec.out.close();
+								if( fileSpec.writer != null )
+									fileSpec.writer.close();
+							}
+						if( binaryFile != null && binaryFile.out != null )
+							binaryFile.out.close();
 					}
 				}
 				finally
 				{
-					processor.closeStatement( statement, true );
+					dataWriter.close();
 				}
 			}
 			finally
@@ -280,8 +386,15 @@ public class ExportJSON implements CommandListener
 		{
 			throw new FatalIOException( e );
 		}
+	}
 
-		return true;
+	static private LogCounter createLogCounter( Parsed parsed )
+	{
+		if( parsed.logRecords > 0 )
+			return new FixedIntervalLogCounter( parsed.logRecords );
+		if( parsed.logSeconds > 0 )
+			return new TimeIntervalLogCounter( parsed.logSeconds );
+		return null;
 	}
 
 
@@ -307,14 +420,21 @@ public class ExportJSON implements CommandListener
 		[ COALESCE <col>, <col> [ , <col> ] ]
 		[ LOG EVERY n ( RECORDS | SECONDS ) ]
 		[ COLUMN <col> [ , <col> ] ( TO ( BINARY | TEXT ) FILE "<file>" [ THRESHOLD n ] | SKIP ) ]
+		[ PARALLEL <n> SPLIT ON <col> ]
+		[ FETCH SIZE <n> | AUTO ]
 		FROM <sqlstatement>
+
+		- With PARALLEL the query is split in <n> ranges on the numeric column, each read on its own connection
+		- With PARALLEL and a file name containing ?1, each range is written to its own file, ?1 being the range number
+		- With FETCH SIZE AUTO the fetch size is determined from the widths of the columns. Without FETCH SIZE, the
+		  default set with SET FETCH_SIZE is used, or else 1000
 		*/
 
 		Parsed result = new Parsed();
 
 		SQLTokenizer tokenizer = new SQLTokenizer( SourceReaders.forString( command.getCommand(), command.getLocation() ) );
 
-		EnumSet<Tokens> expected = EnumSet.of( Tokens.DATE, Tokens.COALESCE, Tokens.LOG, Tokens.FILE, Tokens.COLUMN, Tokens.BINARY, Tokens.FROM );
+		EnumSet<Tokens> expected = EnumSet.of( Tokens.DATE, Tokens.COALESCE, Tokens.LOG, Tokens.FILE, Tokens.COLUMN, Tokens.BINARY, Tokens.FROM, Tokens.PARALLEL, Tokens.FETCH );
 
 		Token t = tokenizer.skip( "EXPORT" ).skip( "JSON" ).get();
 		for( ;; )
@@ -409,6 +529,27 @@ public class ExportJSON implements CommandListener
 						result.columns.put( col, columnSpec );
 					break;
 
+				case FETCH:
+					t = tokenizer.skip( "SIZE" ).get();
+					if( t.eq( "AUTO" ) )
+						result.fetchSize = FetchSize.AUTO;
+					else if( t.isNumber() )
+						result.fetchSize = Integer.parseInt( t.value() );
+					else
+						throw new SourceException( "Expecting a number or [AUTO], not [" + t + "]", tokenizer.getLocation() );
+					t = tokenizer.get();
+					expected.remove( Tokens.FETCH );
+					break;
+
+				case PARALLEL:
+					result.parallel = Integer.parseInt( tokenizer.getNumber().value() );
+					if( result.parallel < 1 )
+						throw new SourceException( "PARALLEL needs to be 1 or greater", tokenizer.getLocation() );
+					result.splitColumn = tokenizer.skip( "SPLIT" ).skip( "ON" ).getIdentifier().value();
+					t = tokenizer.get();
+					expected.remove( Tokens.PARALLEL );
+					break;
+
 				case FROM:
 					result.query = tokenizer.getRemaining();
 					return result;
@@ -452,5 +593,14 @@ public class ExportJSON implements CommandListener
 		protected int logSeconds;
 
 		protected Map<String, ColumnSpec> columns;
+
+		/** The number of ranges to split the query in */
+		protected int parallel = 1;
+
+		/** The numeric column to split the query on */
+		protected String splitColumn;
+
+		/** The fetch size of the query, null if not specified */
+		protected Integer fetchSize;
 	}
 }
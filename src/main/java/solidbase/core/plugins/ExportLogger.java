@@ -24,6 +24,7 @@ public class ExportLogger
 {
 	private LogCounter counter;
 	private ProgressListener listener;
+	private int parties = 1;
 
 
 	public ExportLogger( LogCounter counter, ProgressListener progressListener )
@@ -32,14 +33,26 @@ public class ExportLogger
 		this.listener = progressListener;
 	}
 
-	public void count()
+	/**
+	 * Creates a logger that is shared by a number of readers running in parallel. The final count is logged when all of
+	 * them have ended.
+	 */
+	public ExportLogger( LogCounter counter, ProgressListener progressListener, int parties )
+	{
+		this( counter, progressListener );
+		this.parties = parties;
+	}
+
+	public synchronized void count()
 	{
 		if( this.counter.next() )
 			this.listener.println( "Exported " + this.counter.total() + " records." );
 	}
 
-	public void end()
+	public synchronized void end()
 	{
+		if( --this.parties > 0 )
+			return;
 		if( this.counter.needFinal() )
 			this.listener.println( "Exported " + this.counter.total() + " records." );
 	}
@@ -0,0 +1,139 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core.plugins;
+
+import java.sql.Types;
+
+import solidbase.core.CommandContext;
+import solidbase.core.CommandProcessor;
+
+
+/**
+ * Determines the fetch size of the queries of the exports. FETCH SIZE AUTO sizes the fetches from the widths of the
+ * columns, so that the rows of one fetch take about {@link #BUDGET} bytes of memory.
+ *
+ * @author René M. de Bloois
+ */
+public class FetchSize
+{
+	/**
+	 * The fetch size for FETCH SIZE AUTO.
+	 */
+	static public final int AUTO = CommandContext.FETCH_SIZE_AUTO;
+
+	/**
+	 * The fetch size when none is configured.
+	 */
+	static public final int DEFAULT = 1000;
+
+	/**
+	 * The fetch size of FETCH SIZE AUTO, for the first fetch, before the columns are known.
+	 */
+	static public final int INITIAL = 100;
+
+	/**
+	 * The minimum fetch size of FETCH SIZE AUTO.
+	 */
+	static public final int MINIMUM = 10;
+
+	/**
+	 * The maximum fetch size of FETCH SIZE AUTO.
+	 */
+	static public final int MAXIMUM = 10000;
+
+	/**
+	 * The estimated number of bytes of the rows in one fetch.
+	 */
+	static public final long BUDGET = 0x1000000; // 16MB
+
+	/**
+	 * The estimated size of a value of unknown or unlimited size, like CLOBs.
+	 */
+	static private final int LARGE_VALUE_CHARS = 4000;
+
+
+	/**
+	 * Determines the fetch size of an export.
+	 *
+	 * @param processor The command processor.
+	 * @param fetchSize The fetch size of the command, or null if it has none.
+	 * @return The fetch size of the command, or else the one of the context, or else the {@link #DEFAULT}.
+	 */
+	static public int resolve( CommandProcessor processor, Integer fetchSize )
+	{
+		if( fetchSize != null )
+			return fetchSize;
+		Integer result = processor.getContext().getFetchSize();
+		return result != null ? result : DEFAULT;
+	}
+
+	/**
+	 * Returns the fetch size for the statement, which is set before the query is executed.
+	 *
+	 * @param fetchSize The fetch size, or {@link #AUTO}.
+	 * @return The fetch size for the statement.
+	 */
+	static public int forStatement( int fetchSize )
+	{
+		return fetchSize == AUTO ? INITIAL : fetchSize;
+	}
+
+	/**
+	 * Determines the fetch size for rows with the given columns.
+	 *
+	 * @param columns The columns.
+	 * @return The number of rows that fit in the {@link #BUDGET}.
+	 */
+	static public int forColumns( Column[] columns )
+	{
+		long width = 16;
+		for( Column column : columns )
+			width += width( column );
+		return (int)Math.max( MINIMUM, Math.min( MAXIMUM, BUDGET / width ) );
+	}
+
+	/**
+	 * Estimates the number of bytes that a value of the given column takes.
+	 */
+	static private int width( Column column )
+	{
+		switch( column.getType() )
+		{
+			case Types.BIT:
+			case Types.BOOLEAN:
+			case Types.TINYINT:
+			case Types.SMALLINT:
+			case Types.INTEGER:
+			case Types.BIGINT:
+			case Types.REAL:
+			case Types.FLOAT:
+			case Types.DOUBLE:
+				return 24;
+			case Types.NUMERIC:
+			case Types.DECIMAL:
+			case Types.DATE:
+			case Types.TIME:
+			case Types.TIMESTAMP:
+				return 48;
+			default:
+				int size = column.getSize();
+				if( size <= 0 || size > LARGE_VALUE_CHARS )
+					size = LARGE_VALUE_CHARS;
+				return 40 + size * 2;
+		}
+	}
+}
@@ -25,12 +25,13 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import solidbase.core.Command;
-import solidbase.core.CommandListener;
 import solidbase.core.CommandProcessor;
 import solidbase.core.FatalException;
+import solidbase.core.KeywordCommandListener;
 import solidbase.core.ProcessException;
 import solidbase.util.FixedIntervalLogCounter;
 import solidbase.util.LogCounter;
+import solidbase.util.MappedFileInputStream;
 import solidbase.util.SQLTokenizer;
 import solidbase.util.SQLTokenizer.Token;
 import solidbase.util.TimeIntervalLogCounter;
@@ -42,11 +43,17 @@ import solidstack.io.SourceReader;
 import solidstack.io.SourceReaders;
 
 
-public class ImportCBOR implements CommandListener
+public class ImportCBOR implements KeywordCommandListener
 {
 	static private final Pattern triggerPattern = Pattern.compile( "\\s*IMPORT\\s+CBOR\\s+.*", Pattern.DOTALL | Pattern.CASE_INSENSITIVE );
 
 
+	@Override
+	public String[] getKeywords()
+	{
+		return new String[] { "IMPORT" };
+	}
+
 	@Override
 	public boolean execute( CommandProcessor processor, Command command, boolean skip ) throws SQLException
 	{
@@ -72,7 +79,6 @@ public class ImportCBOR implements CommandListener
 			return true;
 		}
 
-		// TODO BufferedInputStreams?
 		SourceInputStream in;
 		Resource resource = null;
 		boolean inline = false;
@@ -83,7 +89,10 @@ public class ImportCBOR implements CommandListener
 			resource.setGZip( parsed.gzip );
 			try
 			{
-				in = SourceReaders.forBinaryResource( resource );
+				if( MappedFileInputStream.canMap( resource ) )
+					in = new MappedFileInputStream( resource );
+				else
+					in = SourceReaders.forBinaryResource( resource );
 			}
 			catch( FileNotFoundException e )
 			{
@@ -104,7 +113,10 @@ public class ImportCBOR implements CommandListener
 			else if( parsed.logSeconds > 0 )
 				counter = new TimeIntervalLogCounter( parsed.logSeconds );
 
+			ImportLogger logger = counter != null ? new ImportLogger( counter, processor.getProgressListener() ) : null;
 			DBWriter writer = new DBWriter( parsed.sql, parsed.tableName, parsed.columns, parsed.values, parsed.batchSize, parsed.batchCommit, processor );
+			writer.setBulk( parsed.bulk );
+			writer.setLogger( logger );
 			RecordSink sink = writer;
 
 			if( parsed.prependRecordNumber )
@@ -114,7 +126,10 @@ public class ImportCBOR implements CommandListener
 				sink = recordNumber;
 			}
 
-			CBORDataReader reader = new CBORDataReader( in, counter != null ? new ImportLogger( counter, processor.getProgressListener() ) : null );
+			CBORDataReader reader = new CBORDataReader( in, logger );
+			PipelinedRecordSink pipeline = null;
+			if( parsed.pipeline )
+				sink = pipeline = new PipelinedRecordSink( sink, PipelinedRecordSink.capacityFor( parsed.batchSize ), reader );
 			reader.setSink( new DefaultToJDBCTransformer( sink ) );
 
 			// TODO Test prependlinenumbers
@@ -148,7 +163,15 @@ public class ImportCBOR implements CommandListener
 			}
 			finally
 			{
-				writer.close( commit );
+				try
+				{
+					if( pipeline != null )
+						pipeline.close();
+				}
+				finally
+				{
+					writer.close( commit );
+				}
 			}
 			return true;
 		}
@@ -175,12 +198,21 @@ public class ImportCBOR implements CommandListener
 		[ INTO [ <schema> . ] <table> [ ( <columns> ) ] [ VALUES ( <values> ) ] ]
 		[ PREPEND RECORDNUMBER ]
 		[ NOBATCH ]
-		[ BATCH SIZE <n> [ WITH COMMIT ] ]
+		[ BATCH SIZE <n> | AUTO [ WITH COMMIT ] ]
+		[ PIPELINE ]
+		[ USING BULK ]
 		[ LOG EVERY n RECORDS | SECONDS ]
 		[ EXEC <sqlstatement> ]
 
 		- One of INTO or EXEC is needed
 		- If FILE is missing, the data will be read inline, hexadecimal
+		- With BATCH SIZE AUTO the batch size is tuned while importing, based on the time it takes to execute the batches
+		  and the size of the records
+		- With PIPELINE the records are inserted by a second thread, while the first one reads and converts them
+		- With USING BULK the records are inserted with the bulk loader of the database when there is one, for example
+		  COPY for PostgreSQL and LOAD DATA for MySQL. Otherwise, or with VALUES or EXEC, INSERT statements are used
+		- LOAD DATA skips records with duplicate keys and truncates invalid values with a warning. These are checked, so the
+		  import fails like it does with INSERT statements
 		*/
 
 		Parsed result = new Parsed();
@@ -189,7 +221,7 @@ public class ImportCBOR implements CommandListener
 
 		SQLTokenizer tokenizer = new SQLTokenizer( SourceReaders.forString( command.getCommand(), command.getLocation() ) );
 
-		EnumSet<Tokens> expected = EnumSet.of( Tokens.PREPEND, Tokens.NOBATCH, Tokens.BATCH, Tokens.LOG, Tokens.INTO, Tokens.FILE, Tokens.EXEC, Tokens.EOF );
+		EnumSet<Tokens> expected = EnumSet.of( Tokens.PREPEND, Tokens.NOBATCH, Tokens.BATCH, Tokens.PIPELINE, Tokens.USING, Tokens.LOG, Tokens.INTO, Tokens.FILE, Tokens.EXEC, Tokens.EOF );
 
 		Token t = tokenizer.skip( "IMPORT" ).skip( "CBOR" ).get();
 		for( ;; )
@@ -210,7 +242,13 @@ public class ImportCBOR implements CommandListener
 
 				case BATCH:
 					// TODO Add to CBOR and CSV too
-					result.batchSize = Integer.parseInt( tokenizer.skip( "SIZE" ).getNumber().value() );
+					t = tokenizer.skip( "SIZE" ).get();
+					if( t.eq( "AUTO" ) )
+						result.batchSize = DBWriter.AUTO;
+					else if( t.isNumber() )
+						result.batchSize = Integer.parseInt( t.value() );
+					else
+						throw new SourceException( "Expecting a number or [AUTO], not [" + t + "]", tokenizer.getLocation() );
 					if( ( t = tokenizer.get() ).eq( "WITH" ) )
 					{
 						t = tokenizer.skip( "COMMIT" ).get();
@@ -220,6 +258,18 @@ public class ImportCBOR implements CommandListener
 					expected.remove( Tokens.BATCH );
 					break;
 
+				case PIPELINE:
+					t = tokenizer.get();
+					result.pipeline = true;
+					expected.remove( Tokens.PIPELINE );
+					break;
+
+				case USING:
+					t = tokenizer.skip( "BULK" ).get();
+					result.bulk = true;
+					expected.remove( Tokens.USING );
+					break;
+
 				case LOG:
 					int interval = Integer.parseInt( tokenizer.skip( "EVERY" ).getNumber().value() );
 					if( tokenizer.get( "RECORDS", "SECONDS" ).eq( "RECORDS" ) )
@@ -313,6 +363,12 @@ public class ImportCBOR implements CommandListener
 		protected int batchSize; // 0 is no batch
 		protected boolean batchCommit;
 
+		/** Insert the records in a second thread. */
+		protected boolean pipeline;
+
+		/** Insert the records with the bulk loader of the database. */
+		protected boolean bulk;
+
 		protected int logRecords;
 		protected int logSeconds;
 
@@ -17,6 +17,11 @@
 package solidbase.core.plugins;
 
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.EnumSet;
@@ -25,16 +30,20 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import solidbase.core.Command;
-import solidbase.core.CommandListener;
 import solidbase.core.CommandProcessor;
 import solidbase.core.FatalException;
+import solidbase.core.KeywordCommandListener;
 import solidbase.util.FixedIntervalLogCounter;
 import solidbase.util.LogCounter;
+import solidbase.util.MappedFileInputStream;
+import solidbase.util.MappedFileReader;
 import solidbase.util.SQLTokenizer;
 import solidbase.util.SQLTokenizer.Token;
 import solidbase.util.TimeIntervalLogCounter;
+import solidstack.io.FatalIOException;
 import solidstack.io.Resource;
 import solidstack.io.SourceException;
+import solidstack.io.SourceLocation;
 import solidstack.io.SourceReader;
 import solidstack.io.SourceReaders;
 
@@ -45,11 +54,17 @@ import solidstack.io.SourceReaders;
  * @author René M. de Bloois
  */
 // TODO Make this more strict, like assert that the number of values stays the same in the CSV data
-public class ImportCSV implements CommandListener
+public class ImportCSV implements KeywordCommandListener
 {
 	static private final Pattern triggerPattern = Pattern.compile( "\\s*IMPORT\\s+CSV\\s+.*", Pattern.DOTALL | Pattern.CASE_INSENSITIVE );
 
 
+	@Override
+	public String[] getKeywords()
+	{
+		return new String[] { "IMPORT" };
+	}
+
 	@Override
 	public boolean execute( CommandProcessor processor, Command command, boolean skip ) throws SQLException
 	{
@@ -74,25 +89,33 @@ public class ImportCSV implements CommandListener
 			return true;
 		}
 
-		// TODO BufferedInputStreams?
-		SourceReader sourceReader;
-		boolean needClose = false;
+		SourceReader sourceReader = null;
+		Reader fileReader = null;
+		SourceLocation fileLocation = null;
 		if( parsed.reader != null )
 			sourceReader = parsed.reader; // Data is in the command
 		else if( parsed.fileName != null )
 		{
-			// Data is in a file
+			// Data is in a file, which is read directly without a SourceReader
 			Resource resource = processor.getResource().resolve( parsed.fileName );
 			resource.setGZip( parsed.gzip );
+			Charset charset = Charset.forName( parsed.encoding );
 			try
 			{
-				sourceReader = SourceReaders.forResource( resource, parsed.encoding );
+				if( MappedFileInputStream.canMap( resource ) )
+					fileReader = new MappedFileReader( resource, charset );
+				else
+					fileReader = skipBOM( new InputStreamReader( resource.newInputStream(), charset ), charset );
 			}
 			catch( FileNotFoundException e )
 			{
 				throw new FatalException( e.toString() );
 			}
-			needClose = true;
+			catch( IOException e )
+			{
+				throw new FatalIOException( e );
+			}
+			fileLocation = resource.getLocation();
 			// TODO What about the FileNotFoundException?
 		}
 		else
@@ -105,9 +128,43 @@ public class ImportCSV implements CommandListener
 			else if( parsed.logSeconds > 0 )
 				counter = new TimeIntervalLogCounter( parsed.logSeconds );
 
-			CSVDataReader reader = new CSVDataReader( sourceReader, parsed.skipHeader, parsed.separator, !parsed.noEscape, parsed.ignoreWhiteSpace, parsed.prependLineNumber, counter != null ? new ImportLogger( counter, processor.getProgressListener() ) : null );
+			ImportLogger logger = counter != null ? new ImportLogger( counter, processor.getProgressListener() ) : null;
+			CSVDataReader reader;
+			if( fileReader != null )
+				reader = new CSVDataReader( fileReader, fileLocation, parsed.skipHeader, parsed.separator, !parsed.noEscape, parsed.ignoreWhiteSpace, parsed.prependLineNumber, logger );
+			else
+				reader = new CSVDataReader( sourceReader, parsed.skipHeader, parsed.separator, !parsed.noEscape, parsed.ignoreWhiteSpace, parsed.prependLineNumber, logger );
+
+			if( parsed.parallel > 1 )
+			{
+				ParallelDBWriter writer = new ParallelDBWriter( parsed.sql, parsed.tableName, parsed.columns, parsed.values, parsed.batchSize, parsed.batchCommit, processor, parsed.parallel, reader );
+				writer.setBulk( parsed.bulk );
+				reader.setSink( writer );
+
+				boolean commit = false;
+				try
+				{
+					reader.process();
+					commit = true;
+				}
+				finally
+				{
+					writer.close( commit );
+				}
+				return true;
+			}
+
 			DBWriter writer = new DBWriter( parsed.sql, parsed.tableName, parsed.columns, parsed.values, parsed.batchSize, parsed.batchCommit, processor );
-			reader.setSink( new DefaultToJDBCTransformer( writer ) );
+			writer.setBulk( parsed.bulk );
+			writer.setLogger( logger );
+			PipelinedRecordSink pipeline = null;
+			if( parsed.pipeline )
+			{
+				pipeline = new PipelinedRecordSink( writer, PipelinedRecordSink.capacityFor( parsed.batchSize ), reader );
+				reader.setSink( new DefaultToJDBCTransformer( pipeline ) );
+			}
+			else
+				reader.setSink( new DefaultToJDBCTransformer( writer ) );
 
 			boolean commit = false;
 			try
@@ -117,17 +174,51 @@ public class ImportCSV implements CommandListener
 			}
 			finally
 			{
-				writer.close( commit );
+				try
+				{
+					if( pipeline != null )
+						pipeline.close();
+				}
+				finally
+				{
+					writer.close( commit );
+				}
 			}
 			return true;
 		}
 		finally
 		{
-			if( needClose )
-				sourceReader.close();
+			if( fileReader != null )
+				try
+				{
+					fileReader.close();
+				}
+				catch( IOException e )
+				{
+					throw new FatalIOException( e );
+				}
 		}
 	}
 
+	/**
+	 * Skips the byte order mark at the start of a UTF encoded reader, like {@link MappedFileReader} does.
+	 *
+	 * @param reader The reader.
+	 * @param charset The character set of the reader.
+	 * @return A reader that starts after the byte order mark.
+	 * @throws IOException Whenever the reader throws an IOException.
+	 */
+	static private Reader skipBOM( Reader reader, Charset charset ) throws IOException
+	{
+		if( !charset.name().startsWith( "UTF-" ) )
+			return reader;
+		PushbackReader result = new PushbackReader( reader );
+		int ch = result.read();
+		if( ch >= 0 && ch != '\uFEFF' )
+			result.unread( ch );
+		return result;
+	}
+
 	/**
 	 * Parses the given command.
 	 *
@@ -148,7 +239,10 @@ public class ImportCSV implements CommandListener
 		[ IGNORE WHITESPACE ]
 		[ PREPEND LINENUMBER ]
 		[ NOBATCH ]
-		[ BATCH SIZE <n> [ WITH COMMIT ] ]
+		[ BATCH SIZE <n> | AUTO [ WITH COMMIT ] ]
+		[ PIPELINE ]
+		[ USING BULK ]
+		[ PARALLEL <n> ]
 		[ LOG EVERY n RECORDS | SECONDS ]
 		[ EXEC <sqlstatement> ]
 		[ DATA ]
@@ -156,6 +250,16 @@ public class ImportCSV implements CommandListener
 		- One of INTO or EXEC is needed
 		- Only one of FILE or DATA is allowed, with DATA the data is in the rest of the command
 		- If FILE and DATA is missing, the data will be read inline
+		- With PARALLEL the records are inserted by <n> threads, each with its own connection. Without WITH COMMIT
+		  all connections are committed at the end when all threads succeeded, otherwise all are rolled back
+		- With BATCH SIZE AUTO the batch size is tuned while importing, based on the time it takes to execute the batches
+		  and the size of the records
+		- With PIPELINE the records are inserted by a second thread, while the first one reads and converts them.
+		  Ignored in combination with PARALLEL
+		- With USING BULK the records are inserted with the bulk loader of the database when there is one, for example
+		  COPY for PostgreSQL and LOAD DATA for MySQL. Otherwise, or with VALUES or EXEC, INSERT statements are used
+		- LOAD DATA skips records with duplicate keys and truncates invalid values with a warning. These are checked, so the
+		  import fails like it does with INSERT statements
 		*/
 
 		Parsed result = new Parsed();
@@ -164,7 +268,7 @@ public class ImportCSV implements CommandListener
 
 		SQLTokenizer tokenizer = new SQLTokenizer( SourceReaders.forString( command.getCommand(), command.getLocation() ) );
 
-		EnumSet<Tokens> expected = EnumSet.of( Tokens.SKIP, Tokens.SEPARATED, Tokens.ESCAPE, Tokens.IGNORE, Tokens.PREPEND, Tokens.NOBATCH, Tokens.BATCH, Tokens.LOG, Tokens.INTO, Tokens.FILE, Tokens.EXEC, Tokens.DATA, Tokens.EOF );
+		EnumSet<Tokens> expected = EnumSet.of( Tokens.SKIP, Tokens.SEPARATED, Tokens.ESCAPE, Tokens.IGNORE, Tokens.PREPEND, Tokens.NOBATCH, Tokens.BATCH, Tokens.PIPELINE, Tokens.USING, Tokens.PARALLEL, Tokens.LOG, Tokens.INTO, Tokens.FILE, Tokens.EXEC, Tokens.DATA, Tokens.EOF );
 
 		Token t = tokenizer.skip( "IMPORT" ).skip( "CSV" ).get();
 		for( ;; )
@@ -219,7 +323,13 @@ public class ImportCSV implements CommandListener
 
 				case BATCH:
 					// TODO Add to CBOR and CSV too
-					result.batchSize = Integer.parseInt( tokenizer.skip( "SIZE" ).getNumber().value() );
+					t = tokenizer.skip( "SIZE" ).get();
+					if( t.eq( "AUTO" ) )
+						result.batchSize = DBWriter.AUTO;
+					else if( t.isNumber() )
+						result.batchSize = Integer.parseInt( t.value() );
+					else
+						throw new SourceException( "Expecting a number or [AUTO], not [" + t + "]", tokenizer.getLocation() );
 					if( ( t = tokenizer.get() ).eq( "WITH" ) )
 					{
 						t = tokenizer.skip( "COMMIT" ).get();
@@ -229,6 +339,26 @@ public class ImportCSV implements CommandListener
 					expected.remove( Tokens.BATCH );
 					break;
 
+				case PIPELINE:
+					t = tokenizer.get();
+					result.pipeline = true;
+					expected.remove( Tokens.PIPELINE );
+					break;
+
+				case USING:
+					t = tokenizer.skip( "BULK" ).get();
+					result.bulk = true;
+					expected.remove( Tokens.USING );
+					break;
+
+				case PARALLEL:
+					result.parallel = Integer.parseInt( tokenizer.getNumber().value() );
+					if( result.parallel < 1 )
+						throw new SourceException( "PARALLEL needs to be 1 or greater", tokenizer.getLocation() );
+					t = tokenizer.get();
+					expected.remove( Tokens.PARALLEL );
+					break;
+
 				case LOG:
 					int interval = Integer.parseInt( tokenizer.skip( "EVERY" ).getNumber().value() );
 					if( tokenizer.get( "RECORDS", "SECONDS" ).eq( "RECORDS" ) )
@@ -340,6 +470,15 @@ public class ImportCSV implements CommandListener
 		protected int batchSize; // 0 is no batch
 		protected boolean batchCommit;
 
+		/** Insert the records in a second thread. */
+		protected boolean pipeline;
+
+		/** Insert the records with the bulk loader of the database. */
+		protected boolean bulk;
+
+		/** The number of threads inserting the records. */
+		protected int parallel = 1;
+
 		protected int logRecords;
 		protected int logSeconds;
 
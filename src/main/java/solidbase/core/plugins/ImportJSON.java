@@ -25,26 +25,36 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import solidbase.core.Command;
-import solidbase.core.CommandListener;
 import solidbase.core.CommandProcessor;
 import solidbase.core.FatalException;
+import solidbase.core.KeywordCommandListener;
 import solidbase.util.Assert;
+import solidbase.util.CloseQueue;
 import solidbase.util.FixedIntervalLogCounter;
 import solidbase.util.LogCounter;
+import solidbase.util.MappedFileInputStream;
+import solidbase.util.MappedFileReader;
 import solidbase.util.SQLTokenizer;
 import solidbase.util.SQLTokenizer.Token;
 import solidbase.util.TimeIntervalLogCounter;
+import solidstack.io.ReaderSourceReader;
 import solidstack.io.Resource;
 import solidstack.io.SourceException;
 import solidstack.io.SourceReader;
 import solidstack.io.SourceReaders;
 
 
-public class ImportJSON implements CommandListener
+public class ImportJSON implements KeywordCommandListener
 {
 	static private final Pattern triggerPattern = Pattern.compile( "\\s*IMPORT\\s+JSON\\s+.*", Pattern.DOTALL | Pattern.CASE_INSENSITIVE );
 
 
+	@Override
+	public String[] getKeywords()
+	{
+		return new String[] { "IMPORT" };
+	}
+
 	@Override
 	public boolean execute( CommandProcessor processor, Command command, boolean skip ) throws SQLException
 	{
@@ -69,7 +79,6 @@ public class ImportJSON implements CommandListener
 			return true;
 		}
 
-		// TODO BufferedInputStreams?
 		SourceReader sourceReader;
 		Resource resource = null;
 		boolean inline = false;
@@ -80,7 +89,10 @@ public class ImportJSON implements CommandListener
 			resource.setGZip( parsed.gzip );
 			try
 			{
-				sourceReader = SourceReaders.forResource( resource, "UTF-8" );
+				if( MappedFileInputStream.canMap( resource ) )
+					sourceReader = new ReaderSourceReader( new MappedFileReader( resource, JSONDataReader.UTF8 ), resource.getLocation(), "UTF-8" );
+				else
+					sourceReader = SourceReaders.forResource( resource, "UTF-8" );
 			}
 			catch( FileNotFoundException e )
 			{
@@ -101,7 +113,8 @@ public class ImportJSON implements CommandListener
 			else if( parsed.logSeconds > 0 )
 				counter = new TimeIntervalLogCounter( parsed.logSeconds );
 
-			JSONDataReader reader = new JSONDataReader( sourceReader, parsed.prependLineNumber, inline, counter != null ? new ImportLogger( counter, processor.getProgressListener() ) : null );
+			ImportLogger logger = counter != null ? new ImportLogger( counter, processor.getProgressListener() ) : null;
+			JSONDataReader reader = new JSONDataReader( sourceReader, parsed.prependLineNumber, inline, logger );
 
 			// TODO Test prependlinenumbers
 
@@ -120,8 +133,15 @@ public class ImportJSON implements CommandListener
 			*/
 
 			DBWriter writer = new DBWriter( parsed.sql, parsed.tableName, parsed.columns, parsed.values, parsed.batchSize, parsed.batchCommit, processor );
+			writer.setBulk( parsed.bulk );
+			writer.setLogger( logger );
 			reader.setSink( new DefaultToJDBCTransformer( writer ) );
 
+			// The files opened for a record are closed by the writer after the batch has been executed
+			CloseQueue closer = new CloseQueue();
+			reader.setCloseQueue( closer );
+			writer.setCloseQueue( closer );
+
 			boolean commit = false;
 			try
 			{
@@ -159,12 +179,19 @@ public class ImportJSON implements CommandListener
 		[ INTO [ <schema> . ] <table> [ ( <columns> ) ] [ VALUES ( <values> ) ] ]
 		[ PREPEND LINENUMBER ]
 		[ NOBATCH ]
-		[ BATCH SIZE <n> [ WITH COMMIT ] ]
+		[ BATCH SIZE <n> | AUTO [ WITH COMMIT ] ]
+		[ USING BULK ]
 		[ LOG EVERY <n> RECORDS | SECONDS ]
 		[ EXEC <sqlstatement> ]
 
 		- One of INTO or EXEC is needed
 		- If FILE is missing, the data will be read inline
+		- With BATCH SIZE AUTO the batch size is tuned while importing, based on the time it takes to execute the batches
+		  and the size of the records
+		- With USING BULK the records are inserted with the bulk loader of the database when there is one, for example
+		  COPY for PostgreSQL and LOAD DATA for MySQL. Otherwise, or with VALUES or EXEC, INSERT statements are used
+		- LOAD DATA skips records with duplicate keys and truncates invalid values with a warning. These are checked, so the
+		  import fails like it does with INSERT statements
 		*/
 
 		Parsed result = new Parsed();
@@ -173,7 +200,7 @@ public class ImportJSON implements CommandListener
 
 		SQLTokenizer tokenizer = new SQLTokenizer( SourceReaders.forString( command.getCommand(), command.getLocation() ) );
 
-		EnumSet<Tokens> expected = EnumSet.of( Tokens.PREPEND, Tokens.NOBATCH, Tokens.BATCH, Tokens.LOG, Tokens.INTO, Tokens.FILE, Tokens.EXEC, Tokens.EOF );
+		EnumSet<Tokens> expected = EnumSet.of( Tokens.PREPEND, Tokens.NOBATCH, Tokens.BATCH, Tokens.USING, Tokens.LOG, Tokens.INTO, Tokens.FILE, Tokens.EXEC, Tokens.EOF );
 
 		Token t = tokenizer.skip( "IMPORT" ).skip( "JSON" ).get();
 		for( ;; )
@@ -194,7 +221,13 @@ public class ImportJSON implements CommandListener
 
 				case BATCH:
 					// TODO Add to CBOR and CSV too
-					result.batchSize = Integer.parseInt( tokenizer.skip( "SIZE" ).getNumber().value() );
+					t = tokenizer.skip( "SIZE" ).get();
+					if( t.eq( "AUTO" ) )
+						result.batchSize = DBWriter.AUTO;
+					else if( t.isNumber() )
+						result.batchSize = Integer.parseInt( t.value() );
+					else
+						throw new SourceException( "Expecting a number or [AUTO], not [" + t + "]", tokenizer.getLocation() );
 					if( ( t = tokenizer.get() ).eq( "WITH" ) )
 					{
 						t = tokenizer.skip( "COMMIT" ).get();
@@ -204,6 +237,12 @@ public class ImportJSON implements CommandListener
 					expected.remove( Tokens.BATCH );
 					break;
 
+				case USING:
+					t = tokenizer.skip( "BULK" ).get();
+					result.bulk = true;
+					expected.remove( Tokens.USING );
+					break;
+
 				case LOG:
 					int interval = Integer.parseInt( tokenizer.skip( "EVERY" ).getNumber().value() );
 					if( tokenizer.get( "RECORDS", "SECONDS" ).eq( "RECORDS" ) )
@@ -350,6 +389,9 @@ public class ImportJSON implements CommandListener
 		protected int batchSize; // 0 is no batch
 		protected boolean batchCommit;
 
+		/** Insert the records with the bulk loader of the database. */
+		protected boolean bulk;
+
 		protected int logRecords;
 		protected int logSeconds;
 
@@ -39,6 +39,16 @@ public class ImportLogger
 		// TODO Well, this is almost equal to the ExportLogger
 	}
 
+	/**
+	 * Reports a change of the batch size by BATCH SIZE AUTO.
+	 *
+	 * @param size The new batch size.
+	 */
+	public void batchSize( int size )
+	{
+		this.listener.println( "Batch size changed to " + size + "." );
+	}
+
 	public void end()
 	{
 		if( this.counter.needFinal() )
@@ -22,13 +22,17 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
 import java.nio.charset.Charset;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.Arrays;
 
 import solidbase.core.ProcessException;
 import solidbase.util.CloseQueue;
 import solidbase.util.JDBCSupport;
+import solidbase.util.JSONPullParser;
+import solidbase.util.JSONPullParser.Token;
 import solidstack.io.FatalIOException;
 import solidstack.io.Resource;
 import solidstack.io.SegmentedInputStream;
@@ -38,18 +42,25 @@ import solidstack.io.SourceLocation;
 import solidstack.io.SourceReader;
 import solidstack.json.JSONArray;
 import solidstack.json.JSONObject;
-import solidstack.json.JSONReader;
 import solidstack.lang.Assert;
 import solidstack.lang.SystemException;
 import solidstack.lang.ThreadInterrupted;
 
 
+/**
+ * Reads a JSON record stream. The records are read with a {@link JSONPullParser}. When the header defines the field
+ * types, the values are decoded straight into a reusable {@link Record}, with integral numbers parsed into the
+ * primitive slots of the record. Otherwise each record becomes an {@code Object[]} with the values as the
+ * {@link solidstack.json.JSONReader} would read them.
+ */
 // TODO BufferedInputStreams?
 public class JSONDataReader // TODO implements RecordSource
 {
 	static public Charset UTF8 = Charset.forName( "UTF-8" );
 
-	private JSONReader reader;
+	private SourceReader reader;
+	private JSONPullParser parser;
+	private SourceLocation location;
 	private boolean prependLineNumber;
 	private ImportLogger counter;
 
@@ -62,12 +73,14 @@ public class JSONDataReader // TODO implements RecordSource
 	private SegmentedInputStream[] streams;
 	private SegmentedReader[] textStreams;
 
-	private JSONArray firstRecord;
+	private CloseQueue closer;
 
 
 	public JSONDataReader( SourceReader reader, boolean prependLineNumber, boolean emptyLineIsEOF, ImportLogger counter )
 	{
-		this.reader = new JSONReader( reader, emptyLineIsEOF );
+		this.reader = reader;
+		this.parser = new JSONPullParser( reader, emptyLineIsEOF );
+		this.location = reader.getLocation();
 		this.prependLineNumber = prependLineNumber;
 		this.counter = counter;
 	}
@@ -82,48 +95,65 @@ public class JSONDataReader // TODO implements RecordSource
 		this.sink = sink;
 	}
 
+	/**
+	 * Sets the queue for the files that are opened for one record. The files are then not closed after the record has
+	 * been processed, but by the sink that shares the queue, for example the {@link DBWriter} after the batch has been
+	 * executed. Files still in the queue are closed at the end.
+	 *
+	 * @param closer The queue for the files that are opened for one record.
+	 */
+	public void setCloseQueue( CloseQueue closer )
+	{
+		this.closer = closer;
+	}
+
 	public void process() throws SQLException
 	{
+		JSONPullParser parser = this.parser;
+
+		Token token = parser.next();
+		if( token == Token.BEGIN_OBJECT )
 		{
 			// Read the header
-			Object object = this.reader.read();
-			if( object instanceof JSONObject )
-			{
-				JSONObject properties = (JSONObject)object;
+			JSONObject properties = (JSONObject)parser.readValue( token );
 
-				// The default binary file
-				this.binaryFile = properties.findString( "binaryFile" );
+			// The default binary file
+			this.binaryFile = properties.findString( "binaryFile" );
 
-				// The fields
-				JSONArray fields = properties.getArray( "fields" );
-				int fieldCount = fields.size();
+			// The fields
+			JSONArray fields = properties.getArray( "fields" );
+			int fieldCount = fields.size();
 
-				this.columns = new Column[ fieldCount ];
+			this.columns = new Column[ fieldCount ];
 
-				// Initialise the working arrays
-				this.fieldNames = new String[ fieldCount ];
-				this.fileNames = new String[ fieldCount ];
-				this.streams = new SegmentedInputStream[ fieldCount ];
-				this.textStreams = new SegmentedReader[ fieldCount ];
+			// Initialise the working arrays
+			this.fieldNames = new String[ fieldCount ];
+			this.fileNames = new String[ fieldCount ];
+			this.streams = new SegmentedInputStream[ fieldCount ];
+			this.textStreams = new SegmentedReader[ fieldCount ];
 
-				for( int i = 0; i < fieldCount; i++ )
-				{
-					JSONObject field = (JSONObject)fields.get( i );
-					this.fileNames[ i ] = field.findString( "file" );
-					String name = this.fieldNames[ i ] = field.findString( "name" );
-					this.columns[ i ] = new Column( name, JDBCSupport.fromTypeName( field.getString( "type" ) ), field.findString( "tableName" ), field.findString( "schemaName" ) );
-				}
+			for( int i = 0; i < fieldCount; i++ )
+			{
+				JSONObject field = (JSONObject)fields.get( i );
+				this.fileNames[ i ] = field.findString( "file" );
+				String name = this.fieldNames[ i ] = field.findString( "name" );
+				this.columns[ i ] = new Column( name, JDBCSupport.fromTypeName( field.getString( "type" ) ), field.findString( "tableName" ), field.findString( "schemaName" ) );
 			}
-			else if( object != null )
-				this.firstRecord = (JSONArray)object;
+
+			token = parser.next();
 		}
 
 		this.sink.init( this.columns );
 		this.sink.start();
 
+		// With field types, the values are decoded into a reusable record
+		Record record = null;
+		if( this.columns != null && !this.prependLineNumber && this.sink instanceof TypedRecordSink )
+			record = new Record( this.columns );
+
 		// Queues that will remember the files we need to close
 		CloseQueue outerCloser = new CloseQueue();
-		CloseQueue closer = new CloseQueue();
+		CloseQueue closer = this.closer != null ? this.closer : new CloseQueue();
 
 		try
 		{
@@ -133,20 +163,9 @@ public class JSONDataReader // TODO implements RecordSource
 				if( Thread.currentThread().isInterrupted() ) // TODO Is this the right spot during an upgrade?
 					throw new ThreadInterrupted();
 
-				// Read a record
-				JSONArray array;
-				if( this.firstRecord != null )
-				{
-					array = this.firstRecord;
-					this.firstRecord = null;
-				}
-				else
-					array = (JSONArray)this.reader.read();
-				if( array == null )
+				if( token == Token.EOF )
 				{
 					// End of file, finalize things
-					Assert.isTrue( this.reader.isEOF() );
-
 					this.sink.end();
 
 					if( this.counter != null )
@@ -155,170 +174,34 @@ public class JSONDataReader // TODO implements RecordSource
 					return;
 				}
 
-				SourceLocation loc = this.reader.getLocation();
-
-				Object[] values = new Object[ array.size() + ( this.prependLineNumber ? 1 : 0 ) ];
-				int pos = 0;
-				if( this.prependLineNumber )
-					values[ pos++ ] = loc.getLineNumber();
-
-				for( int i = 0; i < array.size(); i++ )
-				{
-					Object value;
-					try
-					{
-						value = array.get( i );
-					}
-					catch( ArrayIndexOutOfBoundsException e )
-					{
-						throw new SourceException( "Value with index " + ( i + 1 ) + " does not exist, record has only " + array.size() + " values", this.reader.getLocation() );
-					}
-
-					if( value instanceof JSONObject )
-					{
-						if( this.columns == null )
-							throw new SourceException( "File refs only supported with a JSON header object that defines the field types", this.reader.getLocation() );
-
-						int type = this.columns[ i ].getType();
-
-						// Value of parameter is in a separate file
-						JSONObject object = (JSONObject)value;
-						String filename = object.findString( "file" );
-						if( filename != null )
-						{
-							// One file per record
-							// TODO No CLOB here?
-							if( type == Types.BLOB || type == Types.VARBINARY || type == Types.BINARY )
-								try
-								{
-									// TODO Fix the input stream size given the size in the JSON file
-									Resource r = this.reader.getResource().resolve( filename );
-									Number filesize = object.findNumber( "size" );
-									if( filesize == null || filesize.intValue() > 10240 ) // TODO Whats a good size here? Should it be a long?
-									{
-										// Some databases read the stream directly (Oracle), others read it later (HSQLDB).
-										// TODO Do we need to decrease the batch size when files are being kept open?
-										// TODO We could detect that the database has read the stream already, and close the file
-										InputStream in = r.newInputStream();
-										values[ pos++ ] = in;
-										closer.add( in );
-									}
-									else
-										values[ pos++ ] = readBytes( r ); // TODO Do a speed test
-								}
-								catch( FileNotFoundException e )
-								{
-									throw new SourceException( e.getMessage(), this.reader.getLocation() );
-								}
-							else
-								Assert.fail( "Unexpected field type for external file: " + JDBCSupport.toTypeName( type ) );
-						}
-						else
-						{
-							// One file for all records
-							Number lobIndex = object.getNumber( "index" ); // TODO Use findNumber
-							if( lobIndex == null )
-								throw new SourceException( "Expected a 'file' or 'index' attribute", this.reader.getLocation() );
-							Number lobLength = object.getNumber( "length" );
-							if( lobLength == null )
-								throw new SourceException( "Expected a 'length' attribute", this.reader.getLocation() );
-
-							if( type == Types.BLOB || type == Types.VARBINARY || type == Types.BINARY )
-							{
-								// Get the input stream
-								SegmentedInputStream in = this.streams[ i ];
-								if( in == null )
-								{
-									// File not opened yet, open it
-									// TODO What if already opened for another column?
-									String fileName = this.fileNames[ i ];
-									if( fileName == null )
-										fileName = this.binaryFile;
-									if( fileName == null )
-										throw new SourceException( "No file or default binary file configured", this.reader.getLocation() );
-									Resource r = this.reader.getResource().resolve( fileName );
-									try
-									{
-										in = new SegmentedInputStream( r.newInputStream() );
-										outerCloser.add( in ); // Close at the final end
-										this.streams[ i ] = in;
-									}
-									catch( FileNotFoundException e )
-									{
-										throw new SourceException( e.getMessage(), this.reader.getLocation() );
-									}
-								}
-								// TODO Maybe use the limited setBinaryStream instead (see DBWriter)
-								values[ pos++ ] = in.getSegmentInputStream( lobIndex.longValue(), lobLength.longValue() );
-							}
-							else if( type == Types.CLOB )
-							{
-								// Get the reader
-								SegmentedReader in = this.textStreams[ i ];
-								if( in == null )
-								{
-									// File not opened yet, open it
-									if( this.fileNames[ i ] == null )
-										throw new SourceException( "No file configured", this.reader.getLocation() );
-									Resource r = this.reader.getResource().resolve( this.fileNames[ i ] );
-									try
-									{
-										try
-										{
-											in = new SegmentedReader( new InputStreamReader( r.newInputStream(), "UTF-8" ) );
-										}
-										catch( UnsupportedEncodingException e )
-										{
-											throw new SystemException( e );
-										}
-										outerCloser.add( in ); // Close at the very end
-										this.textStreams[ i ] = in;
-									}
-									catch( FileNotFoundException e )
-									{
-										throw new SourceException( e.getMessage(), this.reader.getLocation() );
-									}
-								}
-								values[ pos++ ] = in.getSegmentReader( lobIndex.longValue(), lobLength.longValue() );
-							}
-							else
-								Assert.fail( "Unexpected field type for external file: " + JDBCSupport.toTypeName( type ) );
-						}
-					}
-					else
-						//						if( type == Types.CLOB )
-//						{
-//							if( values.get( index ) == null )
-//								System.out.println( "NULL!" );
-//							else if( ( (String)values.get( index ) ).length() == 0 )
-//								System.out.println( "EMPTY!" );
-//
-//							// TODO What if it is a CLOB and the string value is too long?
-//							// Oracle needs this because CLOBs can contain empty strings "", and setObject() makes that null BUT THIS DOES NOT WORK!
-//							statement.setCharacterStream( pos++, new StringReader( (String)values.get( index ) ) );
-//						}
-//						else
-						// MonetDB complains when calling setObject with null value
-//							Object v = values.get( index );
-//						if( v != null )
-						values[ pos++ ] = array.get( i );
-//						else
-//							statement.setNull( pos++, type );
-				}
+				// Read a record
+				parser.expect( token, Token.BEGIN_ARRAY );
+				Object[] values = null;
+				if( record != null )
+					readRecord( record, outerCloser, closer );
+				else
+					values = readValues( outerCloser, closer );
+				int lineNumber = parser.getLineNumber();
 
 				try
 				{
-					this.sink.process( values );
+					if( record != null )
+						( (TypedRecordSink)this.sink ).process( record );
+					else
+						this.sink.process( values );
 				}
 				catch( ProcessException e )
 				{
-					throw new ProcessException( e ).addLocation( loc );
+					throw new ProcessException( e ).addLocation( this.location.lineNumber( lineNumber ) );
 				}
 
-				closer.closeAll();
+				if( this.closer == null )
+					closer.closeAll();
 
 				if( this.counter != null )
 					this.counter.count();
+
+				token = parser.next();
 			}
 		}
 		finally
@@ -328,6 +211,311 @@ public class JSONDataReader // TODO implements RecordSource
 		}
 	}
 
+	/**
+	 * Reads the values of a record into an array. Numbers are read as {@link BigDecimal}s.
+	 */
+	private Object[] readValues( CloseQueue outerCloser, CloseQueue closer )
+	{
+		JSONPullParser parser = this.parser;
+		Object[] values = new Object[ this.columns != null ? this.columns.length + 1 : 16 ];
+		int pos = 0;
+		if( this.prependLineNumber )
+			pos++;
+
+		Token token = parser.next();
+		if( token != Token.END_ARRAY )
+			for( int i = 0; ; i++ )
+			{
+				if( pos >= values.length )
+					values = Arrays.copyOf( values, pos * 2 );
+				if( token == Token.BEGIN_OBJECT )
+					values[ pos++ ] = readReference( i, outerCloser, closer );
+				else
+					values[ pos++ ] = parser.readValue( token );
+
+				token = parser.next();
+				if( token == Token.END_ARRAY )
+					break;
+				parser.expect( token, Token.VALUE_SEPARATOR );
+				token = parser.next();
+			}
+
+		if( this.prependLineNumber )
+			values[ 0 ] = parser.getLineNumber();
+		return Arrays.copyOf( values, pos );
+	}
+
+	/**
+	 * Reads the values of a record into the given record. Integral numbers are parsed without a {@link BigDecimal}.
+	 */
+	private void readRecord( Record record, CloseQueue outerCloser, CloseQueue closer )
+	{
+		JSONPullParser parser = this.parser;
+		int count = record.size();
+		int i = 0;
+
+		Token token = parser.next();
+		if( token != Token.END_ARRAY )
+			while( true )
+			{
+				if( i >= count )
+					throw new SourceException( "Record has more than the " + count + " values defined in the header", parser.getLocation() );
+
+				switch( token )
+				{
+					case NULL:
+						record.setNull( i );
+						break;
+					case NUMBER:
+						Record.Kind kind = record.getKind( i );
+						if( kind == Record.Kind.LONG && parser.isLong() )
+							record.setLong( i, parser.getLong() );
+						else if( kind == Record.Kind.INT && parser.isLong() && (int)parser.getLong() == parser.getLong() )
+							record.setInt( i, (int)parser.getLong() );
+						else if( kind == Record.Kind.DOUBLE )
+							record.setDouble( i, parser.getDouble() );
+						else
+							setConverted( record, i, parser.getDecimal() );
+						break;
+					case TRUE:
+					case FALSE:
+						if( record.getKind( i ) == Record.Kind.BOOLEAN )
+							record.setBoolean( i, token == Token.TRUE );
+						else
+							setConverted( record, i, token == Token.TRUE );
+						break;
+					case BEGIN_OBJECT:
+						record.setObject( i, readReference( i, outerCloser, closer ) );
+						break;
+					default:
+						setConverted( record, i, parser.readValue( token ) );
+				}
+				i++;
+
+				token = parser.next();
+				if( token == Token.END_ARRAY )
+					break;
+				parser.expect( token, Token.VALUE_SEPARATOR );
+				token = parser.next();
+			}
+
+		if( i < count )
+			throw new SourceException( "Record has " + i + " values, expecting " + count + " as defined in the header", parser.getLocation() );
+	}
+
+	/**
+	 * Sets a value that does not match the kind of slot of the column, converting it when the slot is primitive.
+	 */
+	private void setConverted( Record record, int index, Object value )
+	{
+		Record.Kind kind = record.getKind( index );
+		if( kind == Record.Kind.OBJECT || value == null )
+		{
+			record.setObject( index, value );
+			return;
+		}
+		try
+		{
+			if( kind == Record.Kind.BOOLEAN )
+			{
+				if( value instanceof Boolean )
+					record.setBoolean( index, (Boolean)value );
+				else if( value instanceof String && ( "true".equalsIgnoreCase( (String)value ) || "false".equalsIgnoreCase( (String)value ) ) )
+					record.setBoolean( index, "true".equalsIgnoreCase( (String)value ) );
+				else
+					record.setBoolean( index, toDecimal( value ).signum() != 0 );
+				return;
+			}
+			BigDecimal decimal = toDecimal( value );
+			switch( kind )
+			{
+				case INT: record.setInt( index, decimal.intValueExact() ); break;
+				case LONG: record.setLong( index, decimal.longValueExact() ); break;
+				case FLOAT: record.setFloat( index, decimal.floatValue() ); break;
+				default: record.setDouble( index, decimal.doubleValue() );
+			}
+		}
+		catch( ArithmeticException | NumberFormatException | ClassCastException e )
+		{
+			throw new SourceException( "Can't convert '" + value + "' to " + JDBCSupport.toTypeName( this.columns[ index ].getType() ) + " for field " + this.columns[ index ].getName(), this.parser.getLocation() );
+		}
+	}
+
+	static private BigDecimal toDecimal( Object value )
+	{
+		if( value instanceof BigDecimal )
+			return (BigDecimal)value;
+		if( value instanceof Boolean )
+			return (Boolean)value ? BigDecimal.ONE : BigDecimal.ZERO;
+		if( value instanceof String )
+			return new BigDecimal( ( (String)value ).trim() );
+		throw new ClassCastException( value.getClass().getName() );
+	}
+
+	/**
+	 * Reads a reference to a value in a separate file, without building a {@link JSONObject}. The reference is either
+	 * {"file":..., "size":...} for a file per record, or {"index":..., "length":...} for a segment of a file that is
+	 * shared by all records.
+	 *
+	 * @param i The index of the field.
+	 * @return The value, as an {@link InputStream}, a {@link java.io.Reader} or a byte array.
+	 */
+	private Object readReference( int i, CloseQueue outerCloser, CloseQueue closer )
+	{
+		JSONPullParser parser = this.parser;
+		if( this.columns == null )
+			throw new SourceException( "File refs only supported with a JSON header object that defines the field types", parser.getLocation() );
+
+		// Read the attributes
+		String filename = null;
+		long filesize = -1;
+		long lobIndex = -1;
+		long lobLength = -1;
+		Token token = parser.next();
+		if( token != Token.END_OBJECT )
+			while( true )
+			{
+				parser.expect( token, Token.STRING );
+				if( parser.isValue( "file" ) )
+				{
+					parser.expect( parser.next(), Token.NAME_SEPARATOR );
+					filename = (String)parser.readValue( parser.next() );
+				}
+				else if( parser.isValue( "size" ) )
+					filesize = readNumber();
+				else if( parser.isValue( "index" ) )
+					lobIndex = readNumber();
+				else if( parser.isValue( "length" ) )
+					lobLength = readNumber();
+				else
+				{
+					parser.expect( parser.next(), Token.NAME_SEPARATOR );
+					parser.readValue( parser.next() );
+				}
+
+				token = parser.next();
+				if( token == Token.END_OBJECT )
+					break;
+				parser.expect( token, Token.VALUE_SEPARATOR );
+				token = parser.next();
+			}
+
+		int type = this.columns[ i ].getType();
+
+		// Value of parameter is in a separate file
+		if( filename != null )
+		{
+			// One file per record
+			// TODO No CLOB here?
+			if( type == Types.BLOB || type == Types.VARBINARY || type == Types.BINARY )
+				try
+				{
+					// TODO Fix the input stream size given the size in the JSON file
+					Resource r = this.reader.getResource().resolve( filename );
+					if( filesize < 0 || filesize > 10240 ) // TODO Whats a good size here?
+					{
+						// Some databases read the stream directly (Oracle), others read it later (HSQLDB).
+						// The DBWriter executes the batch early when too many files are kept open
+						// TODO We could detect that the database has read the stream already, and close the file
+						InputStream in = r.newInputStream();
+						closer.add( in );
+						return in;
+					}
+					return readBytes( r ); // TODO Do a speed test
+				}
+				catch( FileNotFoundException e )
+				{
+					throw new SourceException( e.getMessage(), parser.getLocation() );
+				}
+			Assert.fail( "Unexpected field type for external file: " + JDBCSupport.toTypeName( type ) );
+		}
+
+		// One file for all records
+		if( lobIndex < 0 )
+			throw new SourceException( "Expected a 'file' or 'index' attribute", parser.getLocation() );
+		if( lobLength < 0 )
+			throw new SourceException( "Expected a 'length' attribute", parser.getLocation() );
+
+		if( type == Types.BLOB || type == Types.VARBINARY || type == Types.BINARY )
+		{
+			// Get the input stream
+			SegmentedInputStream in = this.streams[ i ];
+			if( in == null )
+			{
+				// File not opened yet, open it
+				// TODO What if already opened for another column?
+				String fileName = this.fileNames[ i ];
+				if( fileName == null )
+					fileName = this.binaryFile;
+				if( fileName == null )
+					throw new SourceException( "No file or default binary file configured", parser.getLocation() );
+				Resource r = this.reader.getResource().resolve( fileName );
+				try
+				{
+					in = new SegmentedInputStream( r.newInputStream() );
+					outerCloser.add( in ); // Close at the final end
+					this.streams[ i ] = in;
+				}
+				catch( FileNotFoundException e )
+				{
+					throw new SourceException( e.getMessage(), parser.getLocation() );
+				}
+			}
+			// TODO Maybe use the limited setBinaryStream instead (see DBWriter)
+			return in.getSegmentInputStream( lobIndex, lobLength );
+		}
+
+		if( type == Types.CLOB )
+		{
+			// Get the reader
+			SegmentedReader in = this.textStreams[ i ];
+			if( in == null )
+			{
+				// File not opened yet, open it
+				if( this.fileNames[ i ] == null )
+					throw new SourceException( "No file configured", parser.getLocation() );
+				Resource r = this.reader.getResource().resolve( this.fileNames[ i ] );
+				try
+				{
+					try
+					{
+						in = new SegmentedReader( new InputStreamReader( r.newInputStream(), "UTF-8" ) );
+					}
+					catch( UnsupportedEncodingException e )
+					{
+						throw new SystemException( e );
+					}
+					outerCloser.add( in ); // Close at the very end
+					this.textStreams[ i ] = in;
+				}
+				catch( FileNotFoundException e )
+				{
+					throw new SourceException( e.getMessage(), parser.getLocation() );
+				}
+			}
+			return in.getSegmentReader( lobIndex, lobLength );
+		}
+
+		Assert.fail( "Unexpected field type for external file: " + JDBCSupport.toTypeName( type ) );
+		return null;
+	}
+
+	/**
+	 * Reads the value of an attribute of a reference, which is a non-negative number.
+	 */
+	private long readNumber()
+	{
+		JSONPullParser parser = this.parser;
+		parser.expect( parser.next(), Token.NAME_SEPARATOR );
+		Token token = parser.next();
+		if( token == Token.NULL )
+			return -1;
+		parser.expect( token, Token.NUMBER );
+		if( parser.isLong() )
+			return parser.getLong();
+		return parser.getDecimal().longValue();
+	}
+
 	static byte[] readBytes( Resource resource ) throws FileNotFoundException
 	{
 		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
@@ -17,17 +17,23 @@
 package solidbase.core.plugins;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
 import java.sql.Blob;
 import java.sql.Clob;
+import java.sql.RowId;
 import java.sql.SQLException;
-import java.util.ListIterator;
+import java.sql.Time;
+import java.sql.Timestamp;
 import java.util.Map;
 
+import solidbase.util.FastJSONWriter;
 import solidstack.io.DeferringWriter;
 import solidstack.io.FatalIOException;
 import solidstack.io.FileResource;
@@ -35,7 +41,6 @@ import solidstack.io.HexInputStreamReader;
 import solidstack.io.Resource;
 import solidstack.io.SourceException;
 import solidstack.io.SourceLocation;
-import solidstack.json.JSONArray;
 import solidstack.json.JSONObject;
 import solidstack.json.JSONWriter;
 
@@ -43,8 +48,10 @@ import solidstack.json.JSONWriter;
 // TODO BufferedOutputStreams?
 public class JSONDataWriter implements RecordSink
 {
+	static private final String ENCODING = "UTF-8";
+
 	private Resource resource;
-	private JSONWriter jsonWriter;
+	private FastJSONWriter jsonWriter;
 	private FileSpec[] fileSpecs;
 	private Column[] columns;
 	private FileSpec binaryFile;
@@ -56,7 +63,7 @@ public class JSONDataWriter implements RecordSink
 	public JSONDataWriter( Resource resource, OutputStream out, Map<String, ColumnSpec> columnSpecs, FileSpec binaryFile, boolean binaryGZip, SourceLocation location )
 	{
 		this.resource = resource;
-		this.jsonWriter = new JSONWriter( out );
+		this.jsonWriter = new FastJSONWriter( out, Charset.forName( ENCODING ) );
 		this.columnSpecs = columnSpecs;
 		this.binaryFile = binaryFile;
 		this.binaryGZip = binaryGZip;
@@ -90,15 +97,16 @@ public class JSONDataWriter implements RecordSink
 	{
 		try
 		{
+			FastJSONWriter out = this.jsonWriter;
 			int columns = record.length;
 
-			JSONArray array = new JSONArray();
+			out.startArray();
 			for( int i = 0; i < columns; i++ )
 			{
 				Object value = record[ i ];
 				if( value == null )
 				{
-					array.add( null );
+					out.writeNull();
 					continue;
 				}
 
@@ -148,18 +156,10 @@ public class JSONDataWriter implements RecordSink
 						if( spec.isParameterized() )
 						{
 							spec.out.close();
-							JSONObject ref = new JSONObject();
-							ref.set( "file", relFileName );
-							ref.set( "size", spec.index - startIndex );
-							array.add( ref );
+							writeFileReference( relFileName, spec.index - startIndex );
 						}
 						else
-						{
-							JSONObject ref = new JSONObject();
-							ref.set( "index", startIndex );
-							ref.set( "length", spec.index - startIndex );
-							array.add( ref );
-						}
+							writeIndexReference( startIndex, spec.index - startIndex );
 					}
 					else
 					{
@@ -167,7 +167,7 @@ public class JSONDataWriter implements RecordSink
 						{
 							String fileName = spec.generateFileName();
 							Resource fileResource = new FileResource( fileName );
-							spec.writer = new DeferringWriter( spec.threshold, fileResource, this.jsonWriter.getEncoding() );
+							spec.writer = new DeferringWriter( spec.threshold, fileResource, ENCODING );
 							spec.index = 0;
 							relFileName = fileResource.getPathFrom( this.resource ).toString();
 						}
@@ -175,7 +175,7 @@ public class JSONDataWriter implements RecordSink
 						{
 							String fileName = spec.generateFileName();
 							Resource fileResource = new FileResource( fileName );
-							spec.writer = new OutputStreamWriter( fileResource.newOutputStream(), this.jsonWriter.getEncoding() );
+							spec.writer = new OutputStreamWriter( fileResource.newOutputStream(), ENCODING );
 						}
 						if( value instanceof Blob || value instanceof byte[] )
 							throw new SourceException( this.columns[ i ].getName() + " is a binary column. Binary columns like BLOB, RAW, BINARY VARYING cannot be written to a text file", this.location );
@@ -202,31 +202,21 @@ public class JSONDataWriter implements RecordSink
 						{
 							DeferringWriter writer = (DeferringWriter)spec.writer;
 							if( writer.isBuffered() )
-								array.add( writer.clearBuffer() );
+								out.writeValue( writer.clearBuffer() );
 							else
-							{
-								JSONObject ref = new JSONObject();
-								ref.set( "file", relFileName );
-								ref.set( "size", spec.index - startIndex );
-								array.add( ref );
-							}
+								writeFileReference( relFileName, spec.index - startIndex );
 							writer.close();
 						}
 						else
-						{
-							JSONObject ref = new JSONObject();
-							ref.set( "index", startIndex );
-							ref.set( "length", spec.index - startIndex );
-							array.add( ref );
-						}
+							writeIndexReference( startIndex, spec.index - startIndex );
 					}
 				}
 				else if( value instanceof Clob )
-					array.add( ( (Clob)value ).getCharacterStream() );
+					writeValue( ( (Clob)value ).getCharacterStream() );
 				else if( this.binaryFile == null && value instanceof Blob )
-					array.add( new HexInputStreamReader( ( (Blob)value ).getBinaryStream() ) );
+					writeValue( new HexInputStreamReader( ( (Blob)value ).getBinaryStream() ) );
 				else if( this.binaryFile == null && value instanceof byte[] )
-					array.add( new HexInputStreamReader( new ByteArrayInputStream( (byte[])value ) ) );
+					writeValue( new HexInputStreamReader( new ByteArrayInputStream( (byte[])value ) ) );
 				else if( this.binaryFile != null && ( value instanceof Blob || value instanceof byte[] ) )
 				{
 					// TODO Exception when binaryFile is not set, or hexadecimal
@@ -254,28 +244,89 @@ public class JSONDataWriter implements RecordSink
 						this.binaryFile.out.write( (byte[])value );
 						this.binaryFile.index += ( (byte[])value ).length;
 					}
-					JSONObject ref = new JSONObject();
-					ref.set( "index", startIndex );
-					ref.set( "length", this.binaryFile.index - startIndex );
-					array.add( ref );
+					writeIndexReference( startIndex, this.binaryFile.index - startIndex );
 				}
 				else
-					array.add( value );
+					writeValue( value );
 			}
+			out.endArray();
+			out.newline();
+		}
+		catch( IOException e )
+		{
+			throw new FatalIOException( e );
+		}
+	}
 
-			for( ListIterator< Object > i = array.iterator(); i.hasNext(); )
-			{
-				Object value = i.next();
-				if( value instanceof java.sql.Date || value instanceof java.sql.Time || value instanceof java.sql.Timestamp || value instanceof java.sql.RowId )
-					i.set( value.toString() );
-			}
-			this.jsonWriter.write( array );
-			this.jsonWriter.getWriter().write( '\n' );
+	private void writeValue( Object value )
+	{
+		FastJSONWriter out = this.jsonWriter;
+		if( value instanceof String )
+			out.writeValue( (String)value );
+		else if( value instanceof Integer || value instanceof Long )
+			out.writeValue( ( (Number)value ).longValue() );
+		else if( value instanceof BigDecimal || value instanceof Double || value instanceof Float || value instanceof Boolean )
+			out.writeLiteral( value.toString() );
+		else if( value instanceof Timestamp )
+			out.writeValue( (Timestamp)value );
+		else if( value instanceof java.sql.Date )
+			out.writeValue( (java.sql.Date)value );
+		else if( value instanceof Time )
+			out.writeValue( (Time)value );
+		else if( value instanceof RowId )
+			out.writeValue( value.toString() );
+		else
+			throw new ClassCastException( "Unexpected object type: " + value.getClass().getName() );
+	}
+
+	private void writeValue( Reader in ) throws IOException
+	{
+		this.jsonWriter.writeValue( in );
+		in.close();
+	}
+
+	private void writeIndexReference( int index, int length )
+	{
+		FastJSONWriter out = this.jsonWriter;
+		out.startObject();
+		out.writeName( "index" );
+		out.writeValue( index );
+		out.writeName( "length" );
+		out.writeValue( length );
+		out.endObject();
+	}
+
+	private void writeFileReference( String file, int size )
+	{
+		FastJSONWriter out = this.jsonWriter;
+		out.startObject();
+		out.writeName( "file" );
+		out.writeValue( file );
+		out.writeName( "size" );
+		out.writeValue( size );
+		out.endObject();
+	}
+
+	/**
+	 * Writes the header of the JSON file, formatted by the {@link JSONWriter}, followed by a newline.
+	 *
+	 * @param properties The properties of the header.
+	 */
+	public void writeHeader( JSONObject properties )
+	{
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		JSONWriter writer = new JSONWriter( header );
+		writer.writeFormatted( properties, 120 );
+		writer.close();
+		try
+		{
+			this.jsonWriter.writeRaw( header.toString( ENCODING ) );
 		}
 		catch( IOException e )
 		{
 			throw new FatalIOException( e );
 		}
+		this.jsonWriter.newline();
 	}
 
 	@Override
@@ -288,7 +339,7 @@ public class JSONDataWriter implements RecordSink
 		this.jsonWriter.close();
 	}
 
-	public JSONWriter getJSONWriter()
+	public FastJSONWriter getJSONWriter()
 	{
 		return this.jsonWriter;
 	}
@@ -24,8 +24,8 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import solidbase.core.Command;
-import solidbase.core.CommandListener;
 import solidbase.core.CommandProcessor;
+import solidbase.core.KeywordCommandListener;
 import solidbase.core.ProgressListener;
 import solidbase.core.SystemException;
 import solidbase.util.Assert;
@@ -37,7 +37,7 @@ import solidstack.lang.ThreadInterrupted;
  * @author René M. de Bloois
  * @since May 29, 2006
  */
-public class LogPoller implements CommandListener
+public class LogPoller implements KeywordCommandListener
 {
 	static private Pattern disablePattern = Pattern.compile( "LOG\\s+POLLER\\s+OFF", Pattern.DOTALL | Pattern.CASE_INSENSITIVE );
 	static private Pattern enablePattern = Pattern.compile( "LOG\\s+POLLER\\s+ON", Pattern.DOTALL | Pattern.CASE_INSENSITIVE );
@@ -45,6 +45,12 @@ public class LogPoller implements CommandListener
 	private Poller poller;
 
 
+	@Override
+	public String[] getKeywords()
+	{
+		return new String[] { "LOG" };
+	}
+
 	@Override
 	public boolean execute( CommandProcessor processor, Command command, boolean skip ) throws SQLException
 	{
@@ -0,0 +1,119 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core.plugins;
+
+import java.sql.SQLException;
+
+
+/**
+ * Merges the records from a number of sources that run in their own threads into a single sink. The sink is only
+ * accessed by one thread at a time. The sink is initialized and started by the first source, and ended by the last.
+ * Typed records are passed on as they are when the sink accepts them, and converted to {@code Object[]} otherwise.
+ *
+ * <p>The records are written by the thread of the source, while it holds the lock, instead of being handed to a writer
+ * thread through a queue. The values of a record, like CLOBs and BLOBs, can only be read while the result set of the
+ * source is still positioned on the row, and the typed record of a source is reused for its next row. The sources
+ * still read ahead from the database while another one writes, and they block each other when writing is slower.</p>
+ *
+ * @author René M. de Bloois
+ */
+public class MergingRecordSink implements TypedRecordSink, RecordSource
+{
+	private RecordSink sink;
+	private TypedRecordSink typedSink;
+	private int sources;
+
+	private Column[] columns;
+	private Object[] currentRecord;
+	private Record currentTypedRecord;
+	private int started;
+	private int ended;
+
+
+	/**
+	 * @param sources The number of sources that will be merged.
+	 */
+	public MergingRecordSink( int sources )
+	{
+		this.sources = sources;
+	}
+
+	@Override
+	public synchronized void init( Column[] columns )
+	{
+		if( this.columns != null )
+			return;
+		this.columns = columns;
+		this.sink.init( columns );
+		if( this.sink instanceof TypedRecordSink )
+			this.typedSink = (TypedRecordSink)this.sink;
+	}
+
+	@Override
+	public synchronized void start()
+	{
+		if( this.started++ == 0 )
+			this.sink.start();
+	}
+
+	@Override
+	public synchronized void process( Object[] record ) throws SQLException
+	{
+		this.currentRecord = record;
+		this.currentTypedRecord = null;
+		this.sink.process( record );
+	}
+
+	@Override
+	public synchronized void process( Record record ) throws SQLException
+	{
+		if( this.typedSink != null )
+		{
+			this.currentTypedRecord = record;
+			this.typedSink.process( record );
+		}
+		else
+			process( record.toArray() );
+	}
+
+	@Override
+	public synchronized void end() throws SQLException
+	{
+		if( ++this.ended == this.sources )
+			this.sink.end();
+	}
+
+	@Override
+	public Column[] getColumns()
+	{
+		return this.columns;
+	}
+
+	@Override
+	public void setSink( RecordSink sink )
+	{
+		this.sink = sink;
+	}
+
+	@Override
+	public synchronized Object[] getCurrentRecord()
+	{
+		if( this.currentTypedRecord != null )
+			return this.currentTypedRecord.toArray();
+		return this.currentRecord;
+	}
+}
@@ -0,0 +1,101 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core.plugins;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+
+
+/**
+ * Loads records with MySQL's LOAD DATA LOCAL INFILE, streamed from memory with the setLocalInfileInputStream() of the
+ * MySQL Connector/J statement. The driver is called through reflection, so that it is not needed on the classpath when
+ * it is not used. The connection needs to allow local infiles, for example with allowLoadLocalInfile=true in the URL.
+ * LOAD DATA LOCAL skips records with duplicate keys and truncates invalid values with a warning. A load fails when
+ * not all records are inserted or when it gave warnings.
+ *
+ * @author René M. de Bloois
+ */
+public class MySQLBulkLoader implements BulkLoader
+{
+	static private final Charset UTF8 = Charset.forName( "UTF-8" );
+
+	// Connector/J 8 and 5
+	static private final Class<?> CONNECTION = find( "com.mysql.cj.jdbc.JdbcConnection", "com.mysql.jdbc.Connection" );
+	static private final Class<?> STATEMENT = find( "com.mysql.cj.jdbc.JdbcStatement", "com.mysql.jdbc.Statement" );
+
+
+	static private Class<?> find( String... names )
+	{
+		for( String name : names )
+		{
+			Class<?> result = TextBulkInsert.findClass( name );
+			if( result != null )
+				return result;
+		}
+		return null;
+	}
+
+	@Override
+	public boolean accepts( Connection connection ) throws SQLException
+	{
+		return CONNECTION != null && STATEMENT != null && connection.isWrapperFor( CONNECTION );
+	}
+
+	@Override
+	public BulkInsert newInsert( Connection connection, String tableName, String[] columnNames ) throws SQLException
+	{
+		final Statement statement = connection.createStatement();
+		final Object mysqlStatement = statement.unwrap( STATEMENT );
+		final Method setInput = TextBulkInsert.method( STATEMENT, "setLocalInfileInputStream", InputStream.class );
+		final String sql = "LOAD DATA LOCAL INFILE 'solidbase' INTO TABLE " + tableName + " CHARACTER SET utf8mb4" + TextBulkInsert.columnList( columnNames );
+
+		return new TextBulkInsert()
+		{
+			@Override
+			protected void load( String data ) throws SQLException
+			{
+				invoke( mysqlStatement, setInput, new ByteArrayInputStream( data.getBytes( UTF8 ) ) );
+				statement.execute( sql );
+
+				// LOAD DATA LOCAL implies IGNORE, duplicate keys and conversion errors only give warnings
+				int loaded = statement.getUpdateCount();
+				SQLWarning warning = statement.getWarnings();
+				if( loaded != getCount() || warning != null )
+					throw new SQLException( "LOAD DATA inserted " + loaded + " of " + getCount() + " records" + ( warning != null ? ", " + warning.getMessage() : "" ), warning );
+			}
+
+			@Override
+			protected void appendBoolean( boolean value )
+			{
+				this.data.append( value ? '1' : '0' );
+			}
+
+			@Override
+			public void close() throws SQLException
+			{
+				super.close();
+				statement.close();
+			}
+		};
+	}
+}
@@ -0,0 +1,343 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core.plugins;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import solidbase.core.CommandProcessor;
+import solidbase.core.ProcessException;
+import solidbase.core.SystemException;
+import solidstack.io.SourceLocation;
+import solidstack.lang.ThreadInterrupted;
+
+
+/**
+ * Distributes the records over a number of {@link DBWriter}s, each running in its own thread with its own connection.
+ * The records are converted with a {@link DefaultToJDBCTransformer} in the worker threads.
+ *
+ * <p>When the writers commit per batch, each connection commits its own batches. Otherwise all connections are
+ * committed after all workers finished successfully, and all are rolled back when one of them failed.</p>
+ *
+ * @author René M. de Bloois
+ */
+public class ParallelDBWriter implements RecordSink
+{
+	static private final Entry END = new Entry( null, null );
+
+	private String sql;
+	private String tableName;
+	private String[] fieldNames;
+	private String[] values;
+	private int batchLimit;
+	private boolean batchCommit;
+	private CommandProcessor processor;
+	private int parallel;
+	private RecordLocator locator;
+	private boolean bulk;
+
+	private BlockingQueue<Entry> queue;
+	private Worker[] workers;
+	private Connection[] connections;
+	private DBWriter[] writers;
+	private Throwable failure;
+
+
+	public ParallelDBWriter( String sql, String tableName, String[] fieldNames, String[] values, int batchLimit, boolean batchCommit, CommandProcessor processor, int parallel, RecordLocator locator )
+	{
+		if( parallel < 1 )
+			throw new IllegalArgumentException( "parallel must be 1 or greater" );
+		this.sql = sql;
+		this.tableName = tableName;
+		this.fieldNames = fieldNames;
+		this.values = values;
+		this.batchLimit = batchLimit;
+		this.batchCommit = batchCommit;
+		this.processor = processor;
+		this.parallel = parallel;
+		this.locator = locator;
+	}
+
+	/**
+	 * Insert the records with the {@link BulkLoader} for the database, if there is one.
+	 *
+	 * @param bulk True to insert the records with the bulk loader for the database.
+	 * @see DBWriter#setBulk(boolean)
+	 */
+	public void setBulk( boolean bulk )
+	{
+		this.bulk = bulk;
+	}
+
+	@Override
+	public void init( Column[] columns )
+	{
+		this.queue = new ArrayBlockingQueue<>( this.parallel * Math.max( this.batchLimit, 100 ) );
+		this.workers = new Worker[ this.parallel ];
+		this.connections = new Connection[ this.parallel ];
+		this.writers = new DBWriter[ this.parallel ];
+
+		try
+		{
+			this.processor.getCurrentDatabase().warmUp( this.parallel );
+			for( int i = 0; i < this.parallel; i++ )
+			{
+				Connection connection = this.processor.getCurrentDatabase().newConnection();
+				this.connections[ i ] = connection;
+				try
+				{
+					connection.setAutoCommit( false );
+				}
+				catch( SQLException e )
+				{
+					throw new SystemException( e );
+				}
+				DBWriter writer = new DBWriter( this.sql, this.tableName, this.fieldNames, this.values, this.batchLimit, this.batchCommit, connection );
+				writer.setBulk( this.bulk );
+				this.writers[ i ] = writer;
+				RecordSink sink = new DefaultToJDBCTransformer( writer );
+				sink.init( columns );
+				this.workers[ i ] = new Worker( "Import worker " + ( i + 1 ), sink );
+			}
+		}
+		catch( RuntimeException e )
+		{
+			// Close the connections that are already opened, the workers are not started yet
+			for( Connection connection : this.connections )
+				if( connection != null )
+					try
+					{
+						connection.close();
+					}
+					catch( SQLException e2 )
+					{
+						e.addSuppressed( e2 );
+					}
+			this.workers = null;
+			throw e;
+		}
+
+		for( Worker worker : this.workers )
+			worker.start();
+	}
+
+	@Override
+	public void start()
+	{
+	}
+
+	@Override
+	public void process( Object[] record ) throws SQLException
+	{
+		checkFailure();
+		put( new Entry( record, this.locator.getLocation() ) );
+	}
+
+	@Override
+	public void end() throws SQLException
+	{
+		if( this.workers == null )
+			return;
+		for( int i = 0; i < this.workers.length; i++ )
+			put( END );
+		try
+		{
+			for( Worker worker : this.workers )
+				worker.join();
+		}
+		catch( InterruptedException e )
+		{
+			throw new ThreadInterrupted();
+		}
+		checkFailure();
+	}
+
+	/**
+	 * Stops the workers if they are still running, commits or rolls back the connections and closes them.
+	 *
+	 * @param commit Commit when all workers finished successfully, otherwise roll back.
+	 */
+	public void close( boolean commit ) throws SQLException
+	{
+		if( this.workers == null )
+			return;
+
+		for( Worker worker : this.workers )
+			if( worker.isAlive() )
+			{
+				commit = false;
+				worker.interrupt();
+			}
+		for( Worker worker : this.workers )
+			try
+			{
+				worker.join();
+			}
+			catch( InterruptedException e )
+			{
+				throw new ThreadInterrupted();
+			}
+
+		if( failed() )
+			commit = false;
+
+		SQLException error = null;
+		for( int i = 0; i < this.parallel; i++ )
+			try
+			{
+				try
+				{
+					this.writers[ i ].close( commit );
+				}
+				finally
+				{
+					this.connections[ i ].close();
+				}
+			}
+			catch( SQLException e )
+			{
+				if( error == null )
+					error = e;
+			}
+		if( error != null )
+			throw error;
+	}
+
+	/**
+	 * Puts the entry in the queue. Does not block forever when all workers have stopped.
+	 */
+	private void put( Entry entry )
+	{
+		try
+		{
+			while( !this.queue.offer( entry, 100, TimeUnit.MILLISECONDS ) )
+			{
+				checkFailure();
+				if( !isAlive() )
+					throw new IllegalStateException( "The import workers have stopped" );
+			}
+		}
+		catch( InterruptedException e )
+		{
+			throw new ThreadInterrupted();
+		}
+	}
+
+	private boolean isAlive()
+	{
+		for( Worker worker : this.workers )
+			if( worker.isAlive() )
+				return true;
+		return false;
+	}
+
+	private synchronized void fail( Throwable e )
+	{
+		if( this.failure == null )
+			this.failure = e;
+	}
+
+	private synchronized boolean failed()
+	{
+		return this.failure != null;
+	}
+
+	private synchronized void checkFailure()
+	{
+		if( this.failure instanceof Error )
+			throw (Error)this.failure;
+		if( this.failure instanceof RuntimeException )
+			throw (RuntimeException)this.failure;
+		if( this.failure != null )
+			throw new SystemException( this.failure );
+	}
+
+
+	static private class Entry
+	{
+		Object[] record;
+		SourceLocation location;
+
+		Entry( Object[] record, SourceLocation location )
+		{
+			this.record = record;
+			this.location = location;
+		}
+	}
+
+
+	private class Worker extends Thread
+	{
+		private RecordSink sink;
+
+		Worker( String name, RecordSink sink )
+		{
+			super( name );
+			this.sink = sink;
+		}
+
+		@Override
+		public void run()
+		{
+			try
+			{
+				this.sink.start();
+				for( ;; )
+				{
+					Entry entry = ParallelDBWriter.this.queue.take();
+					if( entry == END )
+						break;
+					if( failed() )
+						continue; // Keep draining the queue, the reader will notice the failure
+					try
+					{
+						this.sink.process( entry.record );
+					}
+					catch( SQLException e )
+					{
+						fail( new ProcessException( e ).addLocation( entry.location ) );
+					}
+					catch( ProcessException e )
+					{
+						fail( new ProcessException( e ).addLocation( entry.location ) );
+					}
+					catch( RuntimeException e )
+					{
+						fail( e );
+					}
+				}
+				if( !failed() )
+					this.sink.end();
+			}
+			catch( InterruptedException e )
+			{
+				// Stopped by close()
+			}
+			catch( SQLException e )
+			{
+				fail( new ProcessException( e ).addProcess( "executing the final batch in " + getName() ) );
+			}
+			catch( Throwable e )
+			{
+				fail( e ); // Errors too, the other workers drain the queue and the import is rolled back
+			}
+		}
+	}
+}
@@ -0,0 +1,286 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core.plugins;
+
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import solidbase.core.CommandProcessor;
+import solidbase.core.FatalException;
+import solidbase.core.ProcessException;
+import solidbase.core.SystemException;
+import solidstack.lang.ThreadInterrupted;
+
+
+/**
+ * Splits a query into a number of range queries on a numeric column. Each range query is executed on its own
+ * connection, so that the results can be read in parallel.
+ *
+ * @author René M. de Bloois
+ */
+public class ParallelQuery
+{
+	private CommandProcessor processor;
+	private String query;
+	private String splitColumn;
+	private int parallel;
+	private int fetchSize;
+
+	private List<Connection> connections = new ArrayList<>();
+	private List<Statement> statements = new ArrayList<>();
+
+
+	public ParallelQuery( CommandProcessor processor, String query, String splitColumn, int parallel, int fetchSize )
+	{
+		if( parallel < 1 )
+			throw new IllegalArgumentException( "parallel must be 1 or greater" );
+		this.processor = processor;
+		this.query = query;
+		this.splitColumn = splitColumn;
+		this.parallel = parallel;
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * Determines the ranges and executes the range queries. The first range also contains the rows where the split
+	 * column is null. When the split column contains only nulls, there will be only one range.
+	 *
+	 * @return The results of the range queries.
+	 */
+	public ResultSet[] execute() throws SQLException
+	{
+		Long[] bounds = determineBounds();
+
+		String query = "SELECT * FROM ( " + this.query + " ) SPLIT_RANGE";
+		String column = "SPLIT_RANGE." + this.splitColumn;
+
+		int count = bounds == null ? 1 : this.parallel;
+		ResultSet[] results = new ResultSet[ count ];
+		this.processor.getCurrentDatabase().warmUp( count );
+		for( int i = 0; i < count; i++ )
+		{
+			String sql;
+			if( bounds == null )
+				sql = query;
+			else if( i == 0 )
+				sql = query + " WHERE " + column + " IS NULL OR " + column + " < ?";
+			else if( i == count - 1 )
+				sql = query + " WHERE " + column + " >= ?";
+			else
+				sql = query + " WHERE " + column + " >= ? AND " + column + " < ?";
+
+			Connection connection = this.processor.getCurrentDatabase().newConnection();
+			this.connections.add( connection );
+			connection.setAutoCommit( false ); // Needed for PostgreSQL to honor the fetch size
+			PreparedStatement statement = connection.prepareStatement( sql );
+			this.statements.add( statement );
+			statement.setFetchSize( FetchSize.forStatement( this.fetchSize ) );
+			if( bounds != null )
+			{
+				int par = 1;
+				if( i > 0 )
+					statement.setLong( par++, bounds[ i ] );
+				if( i < count - 1 )
+					statement.setLong( par++, bounds[ i + 1 ] );
+			}
+			try
+			{
+				results[ i ] = statement.executeQuery();
+			}
+			catch( SQLException e )
+			{
+				throw new ProcessException( e ).addProcess( "executing: " + sql );
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Determines the lower bound of each range. Returns null when there are no values to split on.
+	 */
+	private Long[] determineBounds() throws SQLException
+	{
+		String sql = "SELECT MIN( " + this.splitColumn + " ), MAX( " + this.splitColumn + " ) FROM ( " + this.query + " ) SPLIT_RANGE";
+		Object min, max;
+		Statement statement = this.processor.createStatement();
+		try
+		{
+			ResultSet result;
+			try
+			{
+				result = statement.executeQuery( sql );
+			}
+			catch( SQLException e )
+			{
+				throw new ProcessException( e ).addProcess( "executing: " + sql );
+			}
+			result.next();
+			min = result.getObject( 1 );
+			max = result.getObject( 2 );
+		}
+		finally
+		{
+			this.processor.closeStatement( statement, true );
+		}
+
+		if( min == null )
+			return null;
+		if( !( min instanceof Number ) )
+			throw new FatalException( "SPLIT ON column " + this.splitColumn + " must be numeric, not " + min.getClass().getName() );
+
+		BigInteger low = BigInteger.valueOf( ( (Number)min ).longValue() );
+		BigInteger size = BigInteger.valueOf( ( (Number)max ).longValue() ).subtract( low ).add( BigInteger.ONE );
+		BigInteger parallel = BigInteger.valueOf( this.parallel );
+
+		Long[] result = new Long[ this.parallel ];
+		for( int i = 0; i < this.parallel; i++ )
+			result[ i ] = size.multiply( BigInteger.valueOf( i ) ).divide( parallel ).add( low ).longValue();
+		return result;
+	}
+
+	/**
+	 * Closes the statements and the connections. All are closed, also when closing one of them fails. The first error
+	 * is rethrown.
+	 */
+	public void close()
+	{
+		SQLException error = null;
+		for( Statement statement : this.statements )
+			try
+			{
+				statement.close();
+			}
+			catch( SQLException e )
+			{
+				if( error == null )
+					error = e;
+			}
+		for( Connection connection : this.connections )
+			try
+			{
+				try
+				{
+					connection.rollback();
+				}
+				finally
+				{
+					connection.close();
+				}
+			}
+			catch( SQLException e )
+			{
+				if( error == null )
+					error = e;
+			}
+		if( error != null )
+			throw new SystemException( error );
+	}
+
+	/**
+	 * Processes the given readers. When there is more than one, each reader runs in its own thread.
+	 *
+	 * @param readers The readers to process.
+	 */
+	static public void process( DBReader[] readers ) throws SQLException
+	{
+		if( readers.length == 1 )
+		{
+			readers[ 0 ].process();
+			return;
+		}
+
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for( final DBReader reader : readers )
+			tasks.add( new Callable<Void>()
+			{
+				@Override
+				public Void call() throws SQLException
+				{
+					reader.process();
+					return null;
+				}
+			} );
+		invokeAll( tasks );
+	}
+
+	/**
+	 * Runs the given tasks, each in its own thread. When one of the tasks fails, the others are interrupted and the
+	 * exception is rethrown.
+	 *
+	 * @param tasks The tasks to run.
+	 */
+	static public void invokeAll( List<Callable<Void>> tasks ) throws SQLException
+	{
+		ExecutorService executor = Executors.newFixedThreadPool( tasks.size() );
+		try
+		{
+			CompletionService<Void> service = new ExecutorCompletionService<>( executor );
+			for( Callable<Void> task : tasks )
+				service.submit( task );
+			for( int i = 0; i < tasks.size(); i++ )
+			{
+				Future<Void> future = service.take();
+				try
+				{
+					future.get();
+				}
+				catch( ExecutionException e )
+				{
+					Throwable cause = e.getCause();
+					if( cause instanceof SQLException )
+						throw (SQLException)cause;
+					if( cause instanceof RuntimeException )
+						throw (RuntimeException)cause;
+					if( cause instanceof Error )
+						throw (Error)cause;
+					throw new SystemException( cause );
+				}
+			}
+		}
+		catch( InterruptedException e )
+		{
+			throw new ThreadInterrupted();
+		}
+		finally
+		{
+			executor.shutdownNow();
+			try
+			{
+				while( !executor.awaitTermination( 1, TimeUnit.MINUTES ) )
+					continue;
+			}
+			catch( InterruptedException e )
+			{
+				throw new ThreadInterrupted();
+			}
+		}
+	}
+}
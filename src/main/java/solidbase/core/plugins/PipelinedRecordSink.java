@@ -0,0 +1,252 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core.plugins;
+
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import solidbase.core.ProcessException;
+import solidbase.core.SystemException;
+import solidstack.io.SourceLocation;
+import solidstack.lang.ThreadInterrupted;
+
+
+/**
+ * Hands the records over to another thread through a bounded queue, so that the reading and converting of the records
+ * and the writing of them to the database can run at the same time. Failures in the writing thread are reported to
+ * the reading thread at the location of the record that caused them.
+ *
+ * <p>The records need to be complete in themselves, the reader may not reuse them or close resources referred to by
+ * them after they have been passed to this sink.</p>
+ *
+ * @author René M. de Bloois
+ */
+public class PipelinedRecordSink implements RecordSink
+{
+	static private final Entry END = new Entry( null, null );
+
+	private RecordSink sink;
+	private int capacity;
+	private RecordLocator locator;
+
+	private BlockingQueue<Entry> queue;
+	private Worker worker;
+	private Throwable failure;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param sink The sink to call from the other thread.
+	 * @param capacity The maximum number of records waiting to be processed.
+	 * @param locator Gives the location of the record being passed to this sink.
+	 */
+	public PipelinedRecordSink( RecordSink sink, int capacity, RecordLocator locator )
+	{
+		if( capacity < 1 )
+			throw new IllegalArgumentException( "capacity must be 1 or greater" );
+		this.sink = sink;
+		this.capacity = capacity;
+		this.locator = locator;
+	}
+
+	/**
+	 * Determines the capacity for a pipeline in front of a {@link DBWriter}. It fits two batches, one that is being
+	 * filled while the other one is being executed.
+	 *
+	 * @param batchSize The batch size of the writer, 0 when not batching, or {@link DBWriter#AUTO}.
+	 * @return The capacity for the pipeline.
+	 */
+	static public int capacityFor( int batchSize )
+	{
+		if( batchSize == DBWriter.AUTO )
+			batchSize = AdaptiveBatchSize.INITIAL;
+		return 2 * Math.max( batchSize, 100 );
+	}
+
+	@Override
+	public void init( Column[] columns )
+	{
+		this.sink.init( columns );
+	}
+
+	@Override
+	public void start()
+	{
+		this.sink.start();
+		this.queue = new ArrayBlockingQueue<>( this.capacity );
+		this.worker = new Worker();
+		this.worker.start();
+	}
+
+	@Override
+	public void process( Object[] record ) throws SQLException
+	{
+		checkFailure();
+		put( new Entry( record, this.locator.getLocation() ) );
+	}
+
+	@Override
+	public void end() throws SQLException
+	{
+		if( this.worker == null )
+			return;
+		put( END );
+		try
+		{
+			this.worker.join();
+		}
+		catch( InterruptedException e )
+		{
+			throw new ThreadInterrupted();
+		}
+		checkFailure();
+	}
+
+	/**
+	 * Stops the writing thread if it is still running. Needs to be called before closing the sink that is called from
+	 * the writing thread.
+	 */
+	public void close()
+	{
+		if( this.worker == null )
+			return;
+		if( this.worker.isAlive() )
+			this.worker.interrupt();
+		try
+		{
+			this.worker.join();
+		}
+		catch( InterruptedException e )
+		{
+			throw new ThreadInterrupted();
+		}
+	}
+
+	/**
+	 * Puts the entry in the queue. Does not block forever when the writing thread has stopped.
+	 */
+	private void put( Entry entry )
+	{
+		try
+		{
+			while( !this.queue.offer( entry, 100, TimeUnit.MILLISECONDS ) )
+			{
+				checkFailure();
+				if( !this.worker.isAlive() )
+					throw new IllegalStateException( "The import pipeline has stopped" );
+			}
+		}
+		catch( InterruptedException e )
+		{
+			throw new ThreadInterrupted();
+		}
+	}
+
+	private synchronized void fail( Throwable e )
+	{
+		if( this.failure == null )
+			this.failure = e;
+	}
+
+	private synchronized boolean failed()
+	{
+		return this.failure != null;
+	}
+
+	private synchronized void checkFailure()
+	{
+		if( this.failure instanceof Error )
+			throw (Error)this.failure;
+		if( this.failure instanceof RuntimeException )
+			throw (RuntimeException)this.failure;
+		if( this.failure != null )
+			throw new SystemException( this.failure );
+	}
+
+
+	static private class Entry
+	{
+		Object[] record;
+		SourceLocation location;
+
+		Entry( Object[] record, SourceLocation location )
+		{
+			this.record = record;
+			this.location = location;
+		}
+	}
+
+
+	private class Worker extends Thread
+	{
+		Worker()
+		{
+			super( "Import pipeline" );
+		}
+
+		@Override
+		public void run()
+		{
+			RecordSink sink = PipelinedRecordSink.this.sink;
+			BlockingQueue<Entry> queue = PipelinedRecordSink.this.queue;
+			try
+			{
+				for( ;; )
+				{
+					Entry entry = queue.take();
+					if( entry == END )
+						break;
+					if( failed() )
+						continue; // Keep draining the queue, the reader will notice the failure
+					try
+					{
+						sink.process( entry.record );
+					}
+					catch( SQLException e )
+					{
+						fail( new ProcessException( e ).addLocation( entry.location ) );
+					}
+					catch( ProcessException e )
+					{
+						fail( new ProcessException( e ).addLocation( entry.location ) );
+					}
+					catch( RuntimeException e )
+					{
+						fail( e );
+					}
+				}
+				if( !failed() )
+					sink.end();
+			}
+			catch( InterruptedException e )
+			{
+				// Stopped by close()
+			}
+			catch( SQLException e )
+			{
+				fail( new ProcessException( e ).addProcess( "executing the final batch" ) );
+			}
+			catch( Throwable e )
+			{
+				fail( e ); // Errors too, the reader must not wait for a dead thread
+			}
+		}
+	}
+}
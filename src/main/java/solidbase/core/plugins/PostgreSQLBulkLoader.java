@@ -0,0 +1,73 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core.plugins;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+
+/**
+ * Loads records with PostgreSQL's COPY ... FROM STDIN through the CopyManager of the PostgreSQL JDBC driver. The
+ * driver is called through reflection, so that it is not needed on the classpath when it is not used.
+ *
+ * @author René M. de Bloois
+ */
+public class PostgreSQLBulkLoader implements BulkLoader
+{
+	static private final Class<?> PGCONNECTION = TextBulkInsert.findClass( "org.postgresql.PGConnection" );
+
+
+	@Override
+	public boolean accepts( Connection connection ) throws SQLException
+	{
+		return PGCONNECTION != null && connection.isWrapperFor( PGCONNECTION );
+	}
+
+	@Override
+	public BulkInsert newInsert( Connection connection, String tableName, String[] columnNames ) throws SQLException
+	{
+		final Object copyManager = TextBulkInsert.invoke( connection.unwrap( PGCONNECTION ), TextBulkInsert.method( PGCONNECTION, "getCopyAPI" ) );
+		final Method copyIn = TextBulkInsert.method( copyManager.getClass(), "copyIn", String.class, Reader.class );
+		final String sql = "COPY " + tableName + TextBulkInsert.columnList( columnNames ) + " FROM STDIN";
+
+		return new TextBulkInsert()
+		{
+			@Override
+			protected void load( String data ) throws SQLException
+			{
+				invoke( copyManager, copyIn, sql, new StringReader( data ) );
+			}
+
+			@Override
+			protected boolean supportsBytes()
+			{
+				return true;
+			}
+
+			@Override
+			protected void appendBytes( byte[] value )
+			{
+				// bytea in hex format, with the backslash escaped for the text format
+				this.data.append( "\\\\x" );
+				appendHex( value );
+			}
+		};
+	}
+}
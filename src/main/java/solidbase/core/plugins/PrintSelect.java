@@ -28,8 +28,8 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import solidbase.core.Command;
-import solidbase.core.CommandListener;
 import solidbase.core.CommandProcessor;
+import solidbase.core.KeywordCommandListener;
 import solidbase.util.JDBCSupport;
 import solidstack.io.SourceException;
 
@@ -46,10 +46,16 @@ import solidstack.io.SourceException;
  * @author René M. de Bloois
  * @since May 2010
  */
-public class PrintSelect implements CommandListener
+public class PrintSelect implements KeywordCommandListener
 {
 	static private final Pattern printSelectPattern = Pattern.compile( "\\s*PRINT\\s+(SELECT\\s+.+)", Pattern.DOTALL | Pattern.CASE_INSENSITIVE );
 
+	@Override
+	public String[] getKeywords()
+	{
+		return new String[] { "PRINT" };
+	}
+
 	@Override
 	public boolean execute( CommandProcessor processor, Command command, boolean skip ) throws SQLException
 	{
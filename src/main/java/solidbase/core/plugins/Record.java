@@ -0,0 +1,248 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core.plugins;
+
+import java.sql.Types;
+
+
+/**
+ * A reusable record with typed column slots. Integral and floating point columns are kept in primitive slots, so that
+ * they are passed through the pipeline without boxing. The kind of each column is resolved once from the JDBC types of
+ * the columns. Null values are registered in a separate null bitmap.
+ *
+ * @author René M. de Bloois
+ */
+public class Record
+{
+	/**
+	 * The kind of slot that holds the value of a column.
+	 */
+	static public enum Kind { INT, LONG, FLOAT, DOUBLE, BOOLEAN, OBJECT }
+
+	private Column[] columns;
+	private Kind[] kinds;
+
+	private long[] longs;
+	private double[] doubles;
+	private Object[] objects;
+	private long[] nulls;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param columns The columns of the record.
+	 */
+	public Record( Column[] columns )
+	{
+		int count = columns.length;
+		this.columns = columns;
+		this.kinds = new Kind[ count ];
+		this.longs = new long[ count ];
+		this.doubles = new double[ count ];
+		this.objects = new Object[ count ];
+		this.nulls = new long[ ( count + 63 ) >>> 6 ];
+
+		for( int i = 0; i < count; i++ )
+			this.kinds[ i ] = toKind( columns[ i ].getType() );
+	}
+
+	/**
+	 * Determines the kind of slot for the given JDBC type.
+	 *
+	 * @param type The JDBC type.
+	 * @return The kind of slot.
+	 */
+	static public Kind toKind( int type )
+	{
+		switch( type )
+		{
+			case Types.TINYINT:
+			case Types.SMALLINT:
+			case Types.INTEGER:
+				return Kind.INT;
+			case Types.BIGINT:
+				return Kind.LONG;
+			case Types.FLOAT:
+				return Kind.FLOAT;
+			case Types.DOUBLE:
+				return Kind.DOUBLE;
+			case Types.BOOLEAN:
+				return Kind.BOOLEAN;
+			default:
+				return Kind.OBJECT;
+		}
+	}
+
+	/**
+	 * @return The columns of the record.
+	 */
+	public Column[] getColumns()
+	{
+		return this.columns;
+	}
+
+	/**
+	 * @return The number of columns.
+	 */
+	public int size()
+	{
+		return this.kinds.length;
+	}
+
+	/**
+	 * @param index The index of the column.
+	 * @return The kind of slot of the column.
+	 */
+	public Kind getKind( int index )
+	{
+		return this.kinds[ index ];
+	}
+
+	/**
+	 * @param index The index of the column.
+	 * @return True if the value of the column is null, false otherwise.
+	 */
+	public boolean isNull( int index )
+	{
+		return ( this.nulls[ index >>> 6 ] & 1L << index ) != 0;
+	}
+
+	/**
+	 * Sets the value of the column to null.
+	 *
+	 * @param index The index of the column.
+	 */
+	public void setNull( int index )
+	{
+		this.nulls[ index >>> 6 ] |= 1L << index;
+		this.objects[ index ] = null;
+	}
+
+	private void setNotNull( int index )
+	{
+		this.nulls[ index >>> 6 ] &= ~( 1L << index );
+	}
+
+	public void setInt( int index, int value )
+	{
+		this.longs[ index ] = value;
+		setNotNull( index );
+	}
+
+	public void setLong( int index, long value )
+	{
+		this.longs[ index ] = value;
+		setNotNull( index );
+	}
+
+	public void setFloat( int index, float value )
+	{
+		this.doubles[ index ] = value;
+		setNotNull( index );
+	}
+
+	public void setDouble( int index, double value )
+	{
+		this.doubles[ index ] = value;
+		setNotNull( index );
+	}
+
+	public void setBoolean( int index, boolean value )
+	{
+		this.longs[ index ] = value ? 1 : 0;
+		setNotNull( index );
+	}
+
+	/**
+	 * Sets the value of an {@link Kind#OBJECT} column. A null value sets the column to null.
+	 *
+	 * @param index The index of the column.
+	 * @param value The value.
+	 */
+	public void setObject( int index, Object value )
+	{
+		if( value == null )
+			setNull( index );
+		else
+		{
+			this.objects[ index ] = value;
+			setNotNull( index );
+		}
+	}
+
+	public int getInt( int index )
+	{
+		return (int)this.longs[ index ];
+	}
+
+	public long getLong( int index )
+	{
+		return this.longs[ index ];
+	}
+
+	public float getFloat( int index )
+	{
+		return (float)this.doubles[ index ];
+	}
+
+	public double getDouble( int index )
+	{
+		return this.doubles[ index ];
+	}
+
+	public boolean getBoolean( int index )
+	{
+		return this.longs[ index ] != 0;
+	}
+
+	/**
+	 * Returns the value of the column, boxed if the column has a primitive slot.
+	 *
+	 * @param index The index of the column.
+	 * @return The value of the column, or null.
+	 */
+	public Object getObject( int index )
+	{
+		if( isNull( index ) )
+			return null;
+		switch( this.kinds[ index ] )
+		{
+			case INT: return getInt( index );
+			case LONG: return getLong( index );
+			case FLOAT: return getFloat( index );
+			case DOUBLE: return getDouble( index );
+			case BOOLEAN: return getBoolean( index );
+			default: return this.objects[ index ];
+		}
+	}
+
+	/**
+	 * Copies the values into a new array, boxing the primitive values. This is used to hand the record to sinks that
+	 * only accept {@code Object[]} records.
+	 *
+	 * @return The values of the record.
+	 */
+	public Object[] toArray()
+	{
+		int count = this.kinds.length;
+		Object[] result = new Object[ count ];
+		for( int i = 0; i < count; i++ )
+			result[ i ] = getObject( i );
+		return result;
+	}
+}
@@ -0,0 +1,34 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core.plugins;
+
+import solidstack.io.SourceLocation;
+
+
+/**
+ * Gives access to the location in the source of the record that is currently being read. Used by sinks that process
+ * the records asynchronously, so that they can report errors at the location of the record that caused them.
+ *
+ * @author René M. de Bloois
+ */
+public interface RecordLocator
+{
+	/**
+	 * @return The location of the record that is currently being read.
+	 */
+	SourceLocation getLocation();
+}
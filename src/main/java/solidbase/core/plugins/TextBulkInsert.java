@@ -0,0 +1,325 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core.plugins;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Timestamp;
+import java.util.Date;
+
+import solidbase.core.SystemException;
+import solidstack.io.FatalIOException;
+
+
+/**
+ * Collects the records in the text format that is understood by both PostgreSQL's COPY and MySQL's LOAD DATA: values
+ * separated by tabs, records terminated by newlines, \N for null and backslash escapes for backslashes, tabs and
+ * newlines in the values.
+ *
+ * @author René M. de Bloois
+ */
+abstract public class TextBulkInsert implements BulkInsert
+{
+	static private final int MAX_REUSE = 0x100000;
+	static private final char[] HEX = "0123456789abcdef".toCharArray();
+
+	/**
+	 * The records added since the previous execute.
+	 */
+	protected StringBuilder data = new StringBuilder();
+
+	private int count;
+
+
+	@Override
+	public void add( Object[] values ) throws SQLException
+	{
+		if( !supportsBytes() )
+			for( Object value : values )
+				if( value instanceof byte[] || value instanceof InputStream )
+					throw new SQLFeatureNotSupportedException( "Binary values are not supported by " + getClass().getName() );
+
+		for( int i = 0; i < values.length; i++ )
+		{
+			if( i > 0 )
+				this.data.append( '\t' );
+			appendValue( values[ i ] );
+		}
+		this.data.append( '\n' );
+		this.count++;
+	}
+
+	@Override
+	public void execute() throws SQLException
+	{
+		if( this.count == 0 )
+			return;
+		load( this.data.toString() );
+		this.count = 0;
+		if( this.data.capacity() > MAX_REUSE )
+			this.data = new StringBuilder();
+		else
+			this.data.setLength( 0 );
+	}
+
+	@Override
+	public void close() throws SQLException
+	{
+		this.data = null;
+	}
+
+	/**
+	 * @return The number of records added since the previous execute. While loading, the number of records being
+	 *         loaded.
+	 */
+	protected int getCount()
+	{
+		return this.count;
+	}
+
+	/**
+	 * Loads the given records into the table.
+	 *
+	 * @param data The records.
+	 * @throws SQLException When JDBC throws an SQLException.
+	 */
+	abstract protected void load( String data ) throws SQLException;
+
+	/**
+	 * Appends a value.
+	 *
+	 * @param value The value to append.
+	 * @throws SQLException When the value is not supported.
+	 */
+	protected void appendValue( Object value ) throws SQLException
+	{
+		if( value == null )
+			this.data.append( "\\N" );
+		else if( value instanceof String )
+			appendText( (String)value );
+		else if( value instanceof Number )
+		{
+			if( value instanceof BigDecimal )
+				this.data.append( ( (BigDecimal)value ).toPlainString() );
+			else
+				this.data.append( value );
+		}
+		else if( value instanceof Boolean )
+			appendBoolean( (Boolean)value );
+		else if( value instanceof byte[] )
+			appendBytes( (byte[])value );
+		else if( value instanceof Reader )
+			appendText( read( (Reader)value ) );
+		else if( value instanceof InputStream )
+			appendBytes( read( (InputStream)value ) );
+		else if( value instanceof Date && !( value instanceof java.sql.Date ) && !( value instanceof java.sql.Time ) && !( value instanceof Timestamp ) )
+			this.data.append( new Timestamp( ( (Date)value ).getTime() ) );
+		else
+			appendText( value.toString() ); // The JDBC date, time and timestamp are formatted as the databases expect
+	}
+
+	/**
+	 * Appends a text value, escaping backslashes, tabs and newlines.
+	 *
+	 * @param text The text to append.
+	 */
+	protected void appendText( CharSequence text )
+	{
+		StringBuilder data = this.data;
+		int len = text.length();
+		for( int i = 0; i < len; i++ )
+		{
+			char ch = text.charAt( i );
+			switch( ch )
+			{
+				case '\\': data.append( "\\\\" ); break;
+				case '\t': data.append( "\\t" ); break;
+				case '\n': data.append( "\\n" ); break;
+				case '\r': data.append( "\\r" ); break;
+				default: data.append( ch );
+			}
+		}
+	}
+
+	/**
+	 * Appends a boolean value.
+	 *
+	 * @param value The value to append.
+	 */
+	protected void appendBoolean( boolean value )
+	{
+		this.data.append( value );
+	}
+
+	/**
+	 * @return True when {@link #appendBytes(byte[])} is overridden to support binary values. False by default.
+	 */
+	protected boolean supportsBytes()
+	{
+		return false;
+	}
+
+	/**
+	 * Appends a binary value. Not supported by default.
+	 *
+	 * @param value The value to append.
+	 * @throws SQLException When binary values are not supported.
+	 */
+	protected void appendBytes( byte[] value ) throws SQLException
+	{
+		throw new SQLFeatureNotSupportedException( "Binary values are not supported by " + getClass().getName() );
+	}
+
+	/**
+	 * Appends a binary value as hexadecimal digits.
+	 *
+	 * @param value The value to append.
+	 */
+	protected void appendHex( byte[] value )
+	{
+		StringBuilder data = this.data;
+		for( byte b : value )
+			data.append( HEX[ b >> 4 & 0x0F ] ).append( HEX[ b & 0x0F ] );
+	}
+
+	static private String read( Reader in )
+	{
+		StringBuilder result = new StringBuilder();
+		char[] buffer = new char[ 4096 ];
+		try
+		{
+			for( int count = in.read( buffer ); count >= 0; count = in.read( buffer ) )
+				result.append( buffer, 0, count );
+		}
+		catch( IOException e )
+		{
+			throw new FatalIOException( e );
+		}
+		return result.toString();
+	}
+
+	static private byte[] read( InputStream in )
+	{
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		byte[] buffer = new byte[ 4096 ];
+		try
+		{
+			for( int count = in.read( buffer ); count >= 0; count = in.read( buffer ) )
+				result.write( buffer, 0, count );
+		}
+		catch( IOException e )
+		{
+			throw new FatalIOException( e );
+		}
+		return result.toByteArray();
+	}
+
+	/**
+	 * Finds a class of a JDBC driver.
+	 *
+	 * @param name The name of the class.
+	 * @return The class, or null if the driver is not on the classpath.
+	 */
+	static protected Class<?> findClass( String name )
+	{
+		try
+		{
+			return Class.forName( name );
+		}
+		catch( ClassNotFoundException e )
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Calls a method of a JDBC driver that is not available at compile time.
+	 *
+	 * @param target The object to call the method on.
+	 * @param method The method to call.
+	 * @param args The arguments.
+	 * @return The return value of the method.
+	 * @throws SQLException When the method throws an SQLException.
+	 */
+	static protected Object invoke( Object target, Method method, Object... args ) throws SQLException
+	{
+		try
+		{
+			return method.invoke( target, args );
+		}
+		catch( InvocationTargetException e )
+		{
+			Throwable cause = e.getCause();
+			if( cause instanceof SQLException )
+				throw (SQLException)cause;
+			if( cause instanceof RuntimeException )
+				throw (RuntimeException)cause;
+			throw new SystemException( cause );
+		}
+		catch( IllegalAccessException e )
+		{
+			throw new SystemException( e );
+		}
+	}
+
+	/**
+	 * Looks up a public method of a JDBC driver that is not available at compile time.
+	 *
+	 * @param type The class or interface that declares the method.
+	 * @param name The name of the method.
+	 * @param parameterTypes The parameter types of the method.
+	 * @return The method.
+	 */
+	static protected Method method( Class<?> type, String name, Class<?>... parameterTypes )
+	{
+		try
+		{
+			return type.getMethod( name, parameterTypes );
+		}
+		catch( NoSuchMethodException e )
+		{
+			throw new SystemException( e );
+		}
+	}
+
+	/**
+	 * Builds the list of column names to add to the COPY or LOAD DATA statement.
+	 *
+	 * @param columnNames The column names, or null.
+	 * @return The list of column names, or an empty string if the column names are null.
+	 */
+	static protected String columnList( String[] columnNames )
+	{
+		if( columnNames == null )
+			return "";
+		StringBuilder result = new StringBuilder( " (" );
+		for( int i = 0; i < columnNames.length; i++ )
+		{
+			if( i > 0 )
+				result.append( ',' );
+			result.append( columnNames[ i ] );
+		}
+		return result.append( ')' ).toString();
+	}
+}
@@ -9,6 +9,8 @@ enum Tokens
 	IGNORE,
 	PREPEND,
 	NOBATCH,
+	PIPELINE,
+	USING,
 	BATCH,
 	INTO,
 	EXEC,
@@ -20,9 +22,11 @@ enum Tokens
 	COLUMN,
 	FROM,
 	BINARY,
+	FETCH,
 	// Both
 	LOG,
 	FILE,
+	PARALLEL,
 	EOF( null );
 
 	private String name;
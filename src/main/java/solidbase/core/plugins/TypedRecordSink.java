@@ -0,0 +1,38 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core.plugins;
+
+import java.sql.SQLException;
+
+
+/**
+ * A {@link RecordSink} that also accepts typed {@link Record}s. Sources that produce typed records check for this
+ * interface and fall back to {@link #process(Object[])} when the sink does not implement it.
+ *
+ * @author René M. de Bloois
+ */
+public interface TypedRecordSink extends RecordSink
+{
+	/**
+	 * Processes a typed record. The record is reused by the source for the next record, so the sink should not keep a
+	 * reference to it after this method returns.
+	 *
+	 * @param record The record.
+	 * @throws SQLException Whenever an SQLException is thrown.
+	 */
+	void process( Record record ) throws SQLException;
+}
@@ -54,6 +54,13 @@ public class CloseQueue
 		files.add( nonNull( in ) );
 	}
 
+	/**
+	 * @return The number of registered input streams and readers.
+	 */
+	public int size() {
+		return files.size();
+	}
+
 	/**
 	 * Close all registered input streams and readers.
 	 */
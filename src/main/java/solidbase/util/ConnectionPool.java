@@ -0,0 +1,832 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.util;
+
+import static solidbase.util.Nulls.nonNull;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+
+/**
+ * A bounded and thread-safe pool of connections per user and password, on top of a non-pooling data source like the
+ * {@link DriverDataSource}. Closing a connection returns it to the pool. The statements that are still open are closed,
+ * uncommitted work is rolled back, and auto commit, read only, transaction isolation, holdability, catalog and schema are restored to the values of a new
+ * connection. A connection that cannot be restored is closed. Session state that JDBC does not expose, like temporary
+ * tables or session variables, is not reset. Idle connections are validated before they are handed out again, and
+ * closed when they have been idle for too long.
+ *
+ * @author René M. de Bloois
+ */
+public class ConnectionPool implements DataSource
+{
+	/**
+	 * The default maximum number of connections per user.
+	 */
+	static public final int DEFAULT_MAX_SIZE = 64;
+
+	/**
+	 * The default number of milliseconds after which an idle connection is closed.
+	 */
+	static public final long DEFAULT_MAX_IDLE_TIME = 600000; // 10 minutes
+
+	/**
+	 * The default number of milliseconds after which an idle connection is validated before it is handed out.
+	 */
+	static public final long DEFAULT_VALIDATE_AFTER = 10000; // 10 seconds
+
+	/**
+	 * The default number of milliseconds to wait for a connection when the maximum number of connections is reached.
+	 */
+	static public final long DEFAULT_WAIT_TIMEOUT = 60000; // 1 minute
+
+	static private final int VALIDATION_TIMEOUT = 5; // seconds
+
+	private DataSource dataSource;
+	private int maxSize = DEFAULT_MAX_SIZE;
+	private long maxIdleTime = DEFAULT_MAX_IDLE_TIME;
+	private long validateAfter = DEFAULT_VALIDATE_AFTER;
+	private long waitTimeout = DEFAULT_WAIT_TIMEOUT;
+
+	/**
+	 * The pools indexed by user name and password. The user name is null for connections without a user name.
+	 */
+	private Map<List<String>, UserPool> pools = new HashMap<>();
+
+	/**
+	 * When closed, returned connections are closed instead of pooled.
+	 */
+	private boolean closed;
+
+	private int created;
+	private int reused;
+	private int invalidated;
+	private int evicted;
+	private int waited;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param dataSource The data source that creates the physical connections.
+	 */
+	public ConnectionPool( DataSource dataSource )
+	{
+		this.dataSource = nonNull( dataSource );
+	}
+
+	/**
+	 * @param maxSize The maximum number of connections per user, idle and borrowed.
+	 */
+	public void setMaxSize( int maxSize )
+	{
+		Assert.isTrue( maxSize > 0, "maxSize must be 1 or greater" );
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @param maxIdleTime The number of milliseconds after which an idle connection is closed.
+	 */
+	public void setMaxIdleTime( long maxIdleTime )
+	{
+		this.maxIdleTime = maxIdleTime;
+	}
+
+	/**
+	 * @param validateAfter The number of milliseconds after which an idle connection is validated before it is handed
+	 *        out.
+	 */
+	public void setValidateAfter( long validateAfter )
+	{
+		this.validateAfter = validateAfter;
+	}
+
+	/**
+	 * @param waitTimeout The number of milliseconds to wait for a connection when the maximum number of connections
+	 *        is reached.
+	 */
+	public void setWaitTimeout( long waitTimeout )
+	{
+		this.waitTimeout = waitTimeout;
+	}
+
+	/**
+	 * Returns a pooled connection without a user name.
+	 */
+	@Override
+	public Connection getConnection() throws SQLException
+	{
+		return borrow( null, null );
+	}
+
+	/**
+	 * Returns a pooled connection for the given user. Connections are pooled by user name and password, an idle
+	 * connection is only handed out to a request with the same password it was opened with.
+	 *
+	 * @param username The user name to connect with.
+	 * @param password The password of the user.
+	 */
+	@Override
+	public Connection getConnection( String username, String password ) throws SQLException
+	{
+		return borrow( nonNull( username ), password );
+	}
+
+	/**
+	 * Opens connections in parallel until the given number of idle connections is available for the given user, or
+	 * the maximum number of connections is reached.
+	 *
+	 * @param username The user name to connect with, or null to connect without a user name.
+	 * @param password The password of the user.
+	 * @param count The number of idle connections needed.
+	 * @throws SQLException Whenever JDBC throws an SQLException.
+	 */
+	public void warmUp( final String username, final String password, int count ) throws SQLException
+	{
+		final UserPool pool;
+		int missing;
+		synchronized( this )
+		{
+			this.closed = false;
+			pool = getPool( username, password );
+			missing = Math.min( count - pool.idle.size(), this.maxSize - pool.open );
+			if( missing <= 0 )
+				return;
+			pool.open += missing; // Reserve
+		}
+
+		List<Callable<Void>> tasks = new ArrayList<>( missing );
+		for( int i = 0; i < missing; i++ )
+			tasks.add( new Callable<Void>()
+			{
+				@Override
+				public Void call() throws SQLException
+				{
+					Connection connection = create( pool, username, password );
+					release( pool, connection );
+					return null;
+				}
+			} );
+
+		ExecutorService executor = Executors.newFixedThreadPool( missing );
+		try
+		{
+			for( Future<Void> future : executor.invokeAll( tasks ) )
+				future.get();
+		}
+		catch( ExecutionException e )
+		{
+			Throwable cause = e.getCause();
+			if( cause instanceof SQLException )
+				throw (SQLException)cause;
+			if( cause instanceof RuntimeException )
+				throw (RuntimeException)cause;
+			throw (Error)cause;
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new SQLException( "Interrupted while opening connections" );
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Closes the idle connections. Connections that are still borrowed are closed when they are returned. The pool
+	 * opens again when a new connection is requested.
+	 */
+	public void close()
+	{
+		List<Connection> close = new ArrayList<>();
+		synchronized( this )
+		{
+			this.closed = true;
+			for( UserPool pool : this.pools.values() )
+			{
+				for( Idle idle : pool.idle )
+					close.add( idle.connection );
+				pool.open -= pool.idle.size();
+				pool.idle.clear();
+			}
+		}
+		closeAll( close );
+	}
+
+	/**
+	 * Closes the connections that have been idle for too long.
+	 */
+	public void evictIdle()
+	{
+		List<Connection> close = new ArrayList<>();
+		synchronized( this )
+		{
+			long now = System.currentTimeMillis();
+			for( UserPool pool : this.pools.values() )
+				evict( pool, now, close );
+		}
+		closeAll( close );
+	}
+
+	/**
+	 * @return The number of physical connections that have been opened.
+	 */
+	public synchronized int getCreated()
+	{
+		return this.created;
+	}
+
+	/**
+	 * @return The number of times an idle connection was handed out again.
+	 */
+	public synchronized int getReused()
+	{
+		return this.reused;
+	}
+
+	/**
+	 * @return The number of idle connections that were closed because they failed the validation.
+	 */
+	public synchronized int getInvalidated()
+	{
+		return this.invalidated;
+	}
+
+	/**
+	 * @return The number of idle connections that were closed because they have been idle for too long.
+	 */
+	public synchronized int getEvicted()
+	{
+		return this.evicted;
+	}
+
+	/**
+	 * @return The number of times a connection was requested when the maximum number of connections was reached.
+	 */
+	public synchronized int getWaited()
+	{
+		return this.waited;
+	}
+
+	/**
+	 * @return The number of open physical connections, idle and borrowed.
+	 */
+	public synchronized int getOpen()
+	{
+		int result = 0;
+		for( UserPool pool : this.pools.values() )
+			result += pool.open;
+		return result;
+	}
+
+	/**
+	 * @return The number of idle connections.
+	 */
+	public synchronized int getIdle()
+	{
+		int result = 0;
+		for( UserPool pool : this.pools.values() )
+			result += pool.idle.size();
+		return result;
+	}
+
+	/**
+	 * @return A one line summary of the pool metrics.
+	 */
+	public synchronized String getStatistics()
+	{
+		return "created " + this.created + ", reused " + this.reused + ", invalidated " + this.invalidated + ", evicted " + this.evicted + ", waited " + this.waited;
+	}
+
+	private UserPool getPool( String username, String password )
+	{
+		List<String> key = Arrays.asList( username, password );
+		UserPool pool = this.pools.get( key );
+		if( pool == null )
+		{
+			pool = new UserPool();
+			this.pools.put( key, pool );
+		}
+		return pool;
+	}
+
+	private Connection borrow( String username, String password ) throws SQLException
+	{
+		UserPool pool;
+		synchronized( this )
+		{
+			this.closed = false;
+			pool = getPool( username, password );
+		}
+
+		while( true )
+		{
+			Idle idle = take( pool );
+			if( idle == null )
+				return wrap( pool, create( pool, username, password ) );
+			if( validate( idle ) )
+			{
+				synchronized( this )
+				{
+					this.reused++;
+				}
+				return wrap( pool, idle.connection );
+			}
+			synchronized( this )
+			{
+				this.invalidated++;
+			}
+			discard( pool, idle.connection );
+		}
+	}
+
+	/**
+	 * Takes the most recently used idle connection, or reserves room for a new connection.
+	 *
+	 * @return An idle connection, or null when room is reserved for a new connection.
+	 */
+	private Idle take( UserPool pool ) throws SQLException
+	{
+		List<Connection> close = new ArrayList<>();
+		try
+		{
+			synchronized( this )
+			{
+				long deadline = 0;
+				while( true )
+				{
+					long now = System.currentTimeMillis();
+					evict( pool, now, close );
+					Idle idle = pool.idle.pollFirst();
+					if( idle != null )
+						return idle;
+					if( pool.open < this.maxSize )
+					{
+						pool.open++;
+						return null;
+					}
+					if( deadline == 0 )
+					{
+						deadline = now + this.waitTimeout;
+						this.waited++;
+					}
+					if( now >= deadline )
+						throw new SQLException( "Timed out waiting for a connection, the maximum of " + this.maxSize + " connections is reached" );
+					try
+					{
+						wait( deadline - now );
+					}
+					catch( InterruptedException e )
+					{
+						Thread.currentThread().interrupt();
+						throw new SQLException( "Interrupted while waiting for a connection" );
+					}
+				}
+			}
+		}
+		finally
+		{
+			closeAll( close );
+		}
+	}
+
+	/**
+	 * Opens a physical connection. Room for the connection must have been reserved.
+	 */
+	Connection create( UserPool pool, String username, String password ) throws SQLException
+	{
+		boolean success = false;
+		try
+		{
+			Connection connection = username == null ? this.dataSource.getConnection() : this.dataSource.getConnection( username, password );
+			synchronized( this )
+			{
+				this.created++;
+			}
+			try
+			{
+				SessionState state = new SessionState( connection );
+				synchronized( this )
+				{
+					if( pool.state == null )
+						pool.state = state;
+				}
+			}
+			catch( SQLException | RuntimeException e )
+			{
+				closeQuietly( connection );
+				throw e;
+			}
+			success = true;
+			return connection;
+		}
+		finally
+		{
+			if( !success )
+				synchronized( this )
+				{
+					pool.open--;
+					notifyAll();
+				}
+		}
+	}
+
+	private boolean validate( Idle idle )
+	{
+		if( System.currentTimeMillis() - idle.since < this.validateAfter )
+			return true;
+		try
+		{
+			return idle.connection.isValid( VALIDATION_TIMEOUT );
+		}
+		catch( SQLException e )
+		{
+			return false;
+		}
+		catch( AbstractMethodError e )
+		{
+			return true; // Drivers older than JDBC 4
+		}
+	}
+
+	/**
+	 * Returns a physical connection to the pool.
+	 */
+	void release( UserPool pool, Connection connection )
+	{
+		boolean reusable;
+		try
+		{
+			if( !connection.getAutoCommit() )
+			{
+				connection.rollback();
+				connection.setAutoCommit( true );
+			}
+			reusable = !connection.isClosed() && pool.state.restore( connection );
+		}
+		catch( SQLException | RuntimeException e )
+		{
+			reusable = false;
+		}
+
+		List<Connection> close = new ArrayList<>();
+		synchronized( this )
+		{
+			if( reusable && !this.closed )
+			{
+				long now = System.currentTimeMillis();
+				pool.idle.addFirst( new Idle( connection, now ) );
+				evict( pool, now, close );
+			}
+			else
+			{
+				pool.open--;
+				close.add( connection );
+			}
+			notifyAll();
+		}
+		closeAll( close );
+	}
+
+	private void discard( UserPool pool, Connection connection )
+	{
+		synchronized( this )
+		{
+			pool.open--;
+			notifyAll();
+		}
+		closeQuietly( connection );
+	}
+
+	/**
+	 * Removes the connections that have been idle for too long. Must be called while synchronized.
+	 */
+	private void evict( UserPool pool, long now, List<Connection> close )
+	{
+		// The oldest connections are at the end
+		for( Iterator<Idle> i = pool.idle.descendingIterator(); i.hasNext(); )
+		{
+			Idle idle = i.next();
+			if( now - idle.since < this.maxIdleTime )
+				break;
+			i.remove();
+			pool.open--;
+			this.evicted++;
+			close.add( idle.connection );
+		}
+	}
+
+	static private void closeAll( List<Connection> connections )
+	{
+		for( Connection connection : connections )
+			closeQuietly( connection );
+	}
+
+	static private void closeQuietly( Connection connection )
+	{
+		try
+		{
+			connection.close();
+		}
+		catch( SQLException e )
+		{
+			// The connection is of no use anymore
+		}
+	}
+
+	private Connection wrap( UserPool pool, Connection connection )
+	{
+		return (Connection)Proxy.newProxyInstance( Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, new PooledConnection( pool, connection ) );
+	}
+
+	@Override
+	public PrintWriter getLogWriter() throws SQLException
+	{
+		return this.dataSource.getLogWriter();
+	}
+
+	@Override
+	public void setLogWriter( PrintWriter out ) throws SQLException
+	{
+		this.dataSource.setLogWriter( out );
+	}
+
+	@Override
+	public void setLoginTimeout( int seconds ) throws SQLException
+	{
+		this.dataSource.setLoginTimeout( seconds );
+	}
+
+	@Override
+	public int getLoginTimeout() throws SQLException
+	{
+		return this.dataSource.getLoginTimeout();
+	}
+
+	@Override
+	public <T> T unwrap( Class<T> iface ) throws SQLException
+	{
+		if( iface.isInstance( this ) )
+			return iface.cast( this );
+		return this.dataSource.unwrap( iface );
+	}
+
+	@Override
+	public boolean isWrapperFor( Class<?> iface ) throws SQLException
+	{
+		return iface.isInstance( this ) || this.dataSource.isWrapperFor( iface );
+	}
+
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException
+	{
+		return this.dataSource.getParentLogger();
+	}
+
+
+	/**
+	 * The connections of one user.
+	 */
+	static class UserPool
+	{
+		/**
+		 * The idle connections, the most recently returned first.
+		 */
+		Deque<Idle> idle = new ArrayDeque<>();
+
+		/**
+		 * The number of open connections, idle and borrowed, including the connections being opened.
+		 */
+		int open;
+
+		/**
+		 * The session state of the first connection that was opened.
+		 */
+		volatile SessionState state;
+	}
+
+
+	/**
+	 * The session state of a new connection, which is restored when a connection is returned to the pool.
+	 */
+	static class SessionState
+	{
+		boolean readOnly;
+		int transactionIsolation;
+		int holdability;
+		String catalog;
+		String schema;
+		boolean schemaSupported;
+
+		SessionState( Connection connection ) throws SQLException
+		{
+			this.readOnly = connection.isReadOnly();
+			this.transactionIsolation = connection.getTransactionIsolation();
+			this.holdability = connection.getHoldability();
+			this.catalog = connection.getCatalog();
+			try
+			{
+				this.schema = connection.getSchema();
+				this.schemaSupported = true;
+			}
+			catch( AbstractMethodError | SQLFeatureNotSupportedException e )
+			{
+				// Drivers older than JDBC 4.1
+			}
+		}
+
+		/**
+		 * Restores the session state of the given connection, which must be in auto commit mode.
+		 *
+		 * @return False when the connection could not be restored and must be closed.
+		 */
+		boolean restore( Connection connection ) throws SQLException
+		{
+			connection.clearWarnings();
+			if( matches( connection ) )
+				return true;
+			// Some drivers ignore these setters, so check again
+			connection.setReadOnly( this.readOnly );
+			connection.setTransactionIsolation( this.transactionIsolation );
+			connection.setHoldability( this.holdability );
+			if( !Objects.equals( connection.getCatalog(), this.catalog ) )
+				connection.setCatalog( this.catalog );
+			if( this.schemaSupported && !Objects.equals( connection.getSchema(), this.schema ) )
+				connection.setSchema( this.schema );
+			return matches( connection );
+		}
+
+		private boolean matches( Connection connection ) throws SQLException
+		{
+			return connection.isReadOnly() == this.readOnly && connection.getTransactionIsolation() == this.transactionIsolation
+					&& connection.getHoldability() == this.holdability && Objects.equals( connection.getCatalog(), this.catalog )
+					&& ( !this.schemaSupported || Objects.equals( connection.getSchema(), this.schema ) );
+		}
+	}
+
+
+	/**
+	 * An idle connection.
+	 */
+	static class Idle
+	{
+		Connection connection;
+		long since;
+
+		Idle( Connection connection, long since )
+		{
+			this.connection = connection;
+			this.since = since;
+		}
+	}
+
+
+	/**
+	 * Handles the calls to a borrowed connection. Closing the connection closes the statements that were created
+	 * through it and returns it to the pool.
+	 */
+	class PooledConnection implements InvocationHandler
+	{
+		private UserPool pool;
+		private volatile Connection connection;
+
+		/**
+		 * The statements created through this connection. The closed ones are removed when the list grows.
+		 */
+		private List<Statement> statements = new ArrayList<>();
+		private int pruneAt = 16;
+
+		PooledConnection( UserPool pool, Connection connection )
+		{
+			this.pool = pool;
+			this.connection = connection;
+		}
+
+		@Override
+		public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable
+		{
+			String name = method.getName();
+			if( args == null )
+			{
+				switch( name )
+				{
+					case "close":
+						Connection connection = this.connection;
+						if( connection != null )
+						{
+							this.connection = null;
+							if( closeStatements() )
+								release( this.pool, connection );
+							else
+								discard( this.pool, connection );
+						}
+						return null;
+					case "isClosed":
+						if( this.connection == null )
+							return true;
+						break;
+					case "hashCode":
+						return System.identityHashCode( proxy );
+					case "toString":
+						return "Pooled " + this.connection;
+				}
+			}
+			else if( name.equals( "equals" ) && args.length == 1 )
+				return proxy == args[ 0 ];
+
+			Connection connection = this.connection;
+			if( connection == null )
+				throw new SQLException( "Connection is closed" );
+			Object result;
+			try
+			{
+				result = method.invoke( connection, args );
+			}
+			catch( InvocationTargetException e )
+			{
+				throw e.getCause();
+			}
+			if( result instanceof Statement )
+				track( (Statement)result );
+			return result;
+		}
+
+		private synchronized void track( Statement statement ) throws SQLException
+		{
+			if( this.statements == null )
+			{
+				statement.close(); // Closed by another thread meanwhile
+				throw new SQLException( "Connection is closed" );
+			}
+			if( this.statements.size() >= this.pruneAt )
+			{
+				for( Iterator<Statement> i = this.statements.iterator(); i.hasNext(); )
+					if( i.next().isClosed() )
+						i.remove();
+				this.pruneAt = Math.max( 16, this.statements.size() * 2 );
+			}
+			this.statements.add( statement );
+		}
+
+		/**
+		 * Closes the statements that are still open, which closes their result sets too.
+		 *
+		 * @return False when a statement could not be closed, the connection must not be reused then.
+		 */
+		private synchronized boolean closeStatements()
+		{
+			boolean result = true;
+			for( Statement statement : this.statements )
+				try
+				{
+					statement.close();
+				}
+				catch( SQLException | RuntimeException e )
+				{
+					result = false;
+				}
+			this.statements = null;
+			return result;
+		}
+	}
+}
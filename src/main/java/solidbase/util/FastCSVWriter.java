@@ -0,0 +1,224 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.sql.Time;
+import java.sql.Timestamp;
+
+import solidstack.io.FatalIOException;
+
+
+/**
+ * Writes CSV data directly to an {@link OutputStream} through a large character buffer. This is a faster alternative
+ * to the {@link CSVWriter} on an {@link java.io.OutputStreamWriter}. Characters that need quotes are found with a
+ * lookup table instead of a regular expression, values are copied or escaped straight into the buffer, and the buffer
+ * is encoded in large blocks. Numbers, dates and times are formatted into the buffer without creating strings. The
+ * output is the same as that of the {@link CSVWriter}.
+ *
+ * @author René M. de Bloois
+ */
+public class FastCSVWriter extends FastTextWriter
+{
+	private char separator;
+	private boolean valueWritten;
+
+	/**
+	 * The characters that need the value to be enclosed in double quotes, indexed by character.
+	 */
+	private boolean[] needQuotes;
+
+	/**
+	 * Can numbers, dates and times be written without checking for characters that need quotes?
+	 */
+	private boolean plainNumbers;
+
+
+	/**
+	 * @param out The output stream.
+	 * @param charset The character set to encode the CSV with.
+	 * @param separator The value separator.
+	 */
+	public FastCSVWriter( OutputStream out, Charset charset, char separator )
+	{
+		super( out, charset );
+
+		Assert.isFalse( separator == '"', "Double quote (\") not allowed as value separator" );
+
+		this.separator = separator;
+
+		// ", CR, NL or the separator
+		this.needQuotes = new boolean[ Math.max( 128, separator + 1 ) ];
+		this.needQuotes[ '"' ] = true;
+		this.needQuotes[ '\r' ] = true;
+		this.needQuotes[ '\n' ] = true;
+		this.needQuotes[ separator ] = true;
+
+		this.plainNumbers = "0123456789-+.:E ".indexOf( separator ) < 0;
+	}
+
+	/**
+	 * Write a value.
+	 *
+	 * @param value The value to write.
+	 */
+	public void writeValue( String value )
+	{
+		writeSeparatorIfNeeded();
+		if( value == null )
+			return;
+
+		boolean[] needQuotes = this.needQuotes;
+		int len = value.length();
+		for( int i = 0; i < len; i++ )
+		{
+			char c = value.charAt( i );
+			if( c < needQuotes.length && needQuotes[ c ] )
+			{
+				writeQuoted( value, i );
+				return;
+			}
+		}
+		write( value, 0, len );
+	}
+
+	private void writeQuoted( String value, int start )
+	{
+		write( '"' );
+		write( value, 0, start );
+		int len = value.length();
+		for( int i = start; i < len; i++ )
+		{
+			char c = value.charAt( i );
+			if( c == '"' )
+				write( c );
+			write( c );
+		}
+		write( '"' );
+	}
+
+	/**
+	 * Write the contents of the reader as a value to the CSV.
+	 *
+	 * @param reader The reader to write to the CSV.
+	 */
+	public void writeValue( Reader reader )
+	{
+		writeSeparatorIfNeeded();
+		write( '"' );
+		char[] chars = this.chars;
+		try
+		{
+			for( int read = reader.read( chars ); read >= 0; read = reader.read( chars ) )
+				for( int i = 0; i < read; i++ )
+				{
+					char c = chars[ i ];
+					if( c == '"' )
+						write( c );
+					write( c );
+				}
+		}
+		catch( IOException e )
+		{
+			throw new FatalIOException( e );
+		}
+		write( '"' );
+	}
+
+	/**
+	 * Write a number.
+	 *
+	 * @param value The number to write.
+	 */
+	public void writeValue( long value )
+	{
+		if( !this.plainNumbers )
+		{
+			writeValue( Long.toString( value ) );
+			return;
+		}
+		writeSeparatorIfNeeded();
+		writeLong( value );
+	}
+
+	/**
+	 * Write a timestamp, formatted like {@link Timestamp#toString()}.
+	 *
+	 * @param value The timestamp to write.
+	 */
+	public void writeValue( Timestamp value )
+	{
+		if( !this.plainNumbers || !canFormat( value ) )
+		{
+			writeValue( value.toString() );
+			return;
+		}
+		writeSeparatorIfNeeded();
+		writeTimestamp( value );
+	}
+
+	/**
+	 * Write a date, formatted like {@link java.sql.Date#toString()}.
+	 *
+	 * @param value The date to write.
+	 */
+	public void writeValue( java.sql.Date value )
+	{
+		if( !this.plainNumbers || !canFormat( value ) )
+		{
+			writeValue( value.toString() );
+			return;
+		}
+		writeSeparatorIfNeeded();
+		writeDate( value );
+	}
+
+	/**
+	 * Write a time, formatted like {@link Time#toString()}.
+	 *
+	 * @param value The time to write.
+	 */
+	public void writeValue( Time value )
+	{
+		if( !this.plainNumbers )
+		{
+			writeValue( value.toString() );
+			return;
+		}
+		writeSeparatorIfNeeded();
+		writeTime( value );
+	}
+
+	private void writeSeparatorIfNeeded()
+	{
+		if( this.valueWritten )
+			write( this.separator );
+		this.valueWritten = true;
+	}
+
+	/**
+	 * Start the next record. This writes a newline.
+	 */
+	public void nextRecord()
+	{
+		this.valueWritten = false;
+		write( '\n' );
+	}
+}
@@ -0,0 +1,303 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.sql.Time;
+import java.sql.Timestamp;
+
+import solidstack.io.FatalIOException;
+
+
+/**
+ * Streams JSON directly to an {@link OutputStream} through a large character buffer, without building a tree of
+ * {@link solidstack.json.JSONArray}s and {@link solidstack.json.JSONObject}s first. Strings are escaped straight into
+ * the buffer, and numbers, dates and times are formatted into the buffer without creating strings. The output is the
+ * same as the unformatted output of the {@link solidstack.json.JSONWriter}.
+ *
+ * @author René M. de Bloois
+ */
+public class FastJSONWriter extends FastTextWriter
+{
+	/**
+	 * The escapes of the characters that need to be escaped, indexed by character.
+	 */
+	static private final String[] ESCAPES = new String[ '\\' + 1 ];
+
+	static
+	{
+		for( int i = 0; i < 0x20; i++ )
+			ESCAPES[ i ] = String.format( "\\u%04X", i );
+		ESCAPES[ '\b' ] = "\\b";
+		ESCAPES[ '\t' ] = "\\t";
+		ESCAPES[ '\n' ] = "\\n";
+		ESCAPES[ '\f' ] = "\\f";
+		ESCAPES[ '\r' ] = "\\r";
+		ESCAPES[ '"' ] = "\\\"";
+		ESCAPES[ '\\' ] = "\\\\";
+	}
+
+	private boolean valueWritten;
+
+
+	/**
+	 * @param out The output stream.
+	 * @param charset The character set to encode the JSON with.
+	 */
+	public FastJSONWriter( OutputStream out, Charset charset )
+	{
+		super( out, charset );
+	}
+
+	/**
+	 * Start an array.
+	 */
+	public void startArray()
+	{
+		writeSeparatorIfNeeded();
+		write( '[' );
+		this.valueWritten = false;
+	}
+
+	/**
+	 * End an array.
+	 */
+	public void endArray()
+	{
+		write( ']' );
+		this.valueWritten = true;
+	}
+
+	/**
+	 * Start an object.
+	 */
+	public void startObject()
+	{
+		writeSeparatorIfNeeded();
+		write( '{' );
+		this.valueWritten = false;
+	}
+
+	/**
+	 * End an object.
+	 */
+	public void endObject()
+	{
+		write( '}' );
+		this.valueWritten = true;
+	}
+
+	/**
+	 * Write the name of the next value in an object.
+	 *
+	 * @param name The name.
+	 */
+	public void writeName( String name )
+	{
+		writeSeparatorIfNeeded();
+		writeString( name );
+		write( ':' );
+		this.valueWritten = false;
+	}
+
+	/**
+	 * Write a null.
+	 */
+	public void writeNull()
+	{
+		writeSeparatorIfNeeded();
+		write( "null", 0, 4 );
+	}
+
+	/**
+	 * Write a value that needs no quotes and no escaping, like a number or a boolean.
+	 *
+	 * @param value The value to write.
+	 */
+	public void writeLiteral( String value )
+	{
+		writeSeparatorIfNeeded();
+		write( value, 0, value.length() );
+	}
+
+	/**
+	 * Write a number.
+	 *
+	 * @param value The number to write.
+	 */
+	public void writeValue( long value )
+	{
+		writeSeparatorIfNeeded();
+		writeLong( value );
+	}
+
+	/**
+	 * Write a string.
+	 *
+	 * @param value The string to write.
+	 */
+	public void writeValue( String value )
+	{
+		writeSeparatorIfNeeded();
+		writeString( value );
+	}
+
+	private void writeString( String value )
+	{
+		write( '"' );
+		int len = value.length();
+		int start = 0;
+		for( int i = 0; i < len; i++ )
+		{
+			String escape = escape( value.charAt( i ) );
+			if( escape != null )
+			{
+				write( value, start, i );
+				write( escape, 0, escape.length() );
+				start = i + 1;
+			}
+		}
+		write( value, start, len );
+		write( '"' );
+	}
+
+	/**
+	 * Write the contents of the reader as a string. The reader is not closed.
+	 *
+	 * @param reader The reader to write.
+	 */
+	public void writeValue( Reader reader )
+	{
+		writeSeparatorIfNeeded();
+		write( '"' );
+		char[] chars = this.chars;
+		try
+		{
+			for( int read = reader.read( chars ); read >= 0; read = reader.read( chars ) )
+			{
+				int start = 0;
+				for( int i = 0; i < read; i++ )
+				{
+					String escape = escape( chars[ i ] );
+					if( escape != null )
+					{
+						write( chars, start, i - start );
+						write( escape, 0, escape.length() );
+						start = i + 1;
+					}
+				}
+				write( chars, start, read - start );
+			}
+		}
+		catch( IOException e )
+		{
+			throw new FatalIOException( e );
+		}
+		write( '"' );
+	}
+
+	/**
+	 * Write a timestamp as a string, formatted like {@link Timestamp#toString()}.
+	 *
+	 * @param value The timestamp to write.
+	 */
+	public void writeValue( Timestamp value )
+	{
+		if( !canFormat( value ) )
+		{
+			writeValue( value.toString() );
+			return;
+		}
+		writeSeparatorIfNeeded();
+		write( '"' );
+		writeTimestamp( value );
+		write( '"' );
+	}
+
+	/**
+	 * Write a date as a string, formatted like {@link java.sql.Date#toString()}.
+	 *
+	 * @param value The date to write.
+	 */
+	public void writeValue( java.sql.Date value )
+	{
+		if( !canFormat( value ) )
+		{
+			writeValue( value.toString() );
+			return;
+		}
+		writeSeparatorIfNeeded();
+		write( '"' );
+		writeDate( value );
+		write( '"' );
+	}
+
+	/**
+	 * Write a time as a string, formatted like {@link Time#toString()}.
+	 *
+	 * @param value The time to write.
+	 */
+	public void writeValue( Time value )
+	{
+		writeSeparatorIfNeeded();
+		write( '"' );
+		writeTime( value );
+		write( '"' );
+	}
+
+	/**
+	 * Write text as is, for example JSON formatted by the {@link solidstack.json.JSONWriter}. The next value starts a
+	 * new top level value.
+	 *
+	 * @param text The text to write.
+	 */
+	public void writeRaw( String text )
+	{
+		write( text, 0, text.length() );
+		this.valueWritten = false;
+	}
+
+	/**
+	 * Write a newline. The next value starts a new top level value.
+	 */
+	public void newline()
+	{
+		write( '\n' );
+		this.valueWritten = false;
+	}
+
+	static private String escape( char c )
+	{
+		if( c < ESCAPES.length )
+			return ESCAPES[ c ];
+		if( c == '\u2028' )
+			return "\\u2028";
+		if( c == '\u2029' )
+			return "\\u2029";
+		return null;
+	}
+
+	private void writeSeparatorIfNeeded()
+	{
+		if( this.valueWritten )
+			write( ',' );
+		this.valueWritten = true;
+	}
+}
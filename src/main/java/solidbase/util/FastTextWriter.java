@@ -0,0 +1,307 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.sql.Time;
+import java.sql.Timestamp;
+
+import solidstack.io.FatalIOException;
+
+
+/**
+ * Base class for writers that write text directly to an {@link OutputStream} through a large character buffer. The
+ * buffer is encoded in large blocks, and numbers, dates and times are formatted into the buffer without creating
+ * strings.
+ *
+ * @author René M. de Bloois
+ */
+abstract public class FastTextWriter
+{
+	static private final int BUFFER_SIZE = 0x10000;
+
+	private OutputStream out;
+	private CharsetEncoder encoder;
+
+	/**
+	 * The characters to be encoded.
+	 */
+	private char[] buffer = new char[ BUFFER_SIZE ];
+	private int pos;
+
+	/**
+	 * The encoded bytes.
+	 */
+	private ByteBuffer bytes = ByteBuffer.allocate( BUFFER_SIZE * 2 );
+
+	/**
+	 * Buffer for reading values from a {@link java.io.Reader}, and for formatting numbers, dates and times.
+	 */
+	protected char[] chars = new char[ 4096 ];
+
+
+	/**
+	 * @param out The output stream.
+	 * @param charset The character set to encode the text with.
+	 */
+	protected FastTextWriter( OutputStream out, Charset charset )
+	{
+		this.out = out;
+		// Same as the OutputStreamWriter
+		this.encoder = charset.newEncoder().onMalformedInput( CodingErrorAction.REPLACE ).onUnmappableCharacter( CodingErrorAction.REPLACE );
+	}
+
+	/**
+	 * Can the given date be formatted by {@link #writeTimestamp(Timestamp)} or {@link #writeDate(java.sql.Date)}? This
+	 * is the case for years with 4 digits.
+	 *
+	 * @param value The date.
+	 * @return True if the date can be formatted, false otherwise.
+	 */
+	@SuppressWarnings( "deprecation" )
+	static protected boolean canFormat( java.util.Date value )
+	{
+		int year = value.getYear() + 1900;
+		return year >= 0 && year <= 9999;
+	}
+
+	/**
+	 * Writes a number.
+	 *
+	 * @param value The number to write.
+	 */
+	protected void writeLong( long value )
+	{
+		if( value == Long.MIN_VALUE )
+		{
+			String string = Long.toString( value );
+			write( string, 0, string.length() );
+			return;
+		}
+		if( value < 0 )
+		{
+			write( '-' );
+			value = -value;
+		}
+		char[] chars = this.chars;
+		int i = 20;
+		do
+		{
+			chars[ --i ] = (char)( '0' + value % 10 );
+			value /= 10;
+		}
+		while( value > 0 );
+		write( chars, i, 20 - i );
+	}
+
+	/**
+	 * Writes a timestamp, formatted like {@link Timestamp#toString()}. Only timestamps accepted by
+	 * {@link #canFormat(java.util.Date)} are supported.
+	 *
+	 * @param value The timestamp to write.
+	 */
+	@SuppressWarnings( "deprecation" )
+	protected void writeTimestamp( Timestamp value )
+	{
+		char[] chars = this.chars;
+		format( chars, 0, value.getYear() + 1900, 4 );
+		chars[ 4 ] = '-';
+		format( chars, 5, value.getMonth() + 1, 2 );
+		chars[ 7 ] = '-';
+		format( chars, 8, value.getDate(), 2 );
+		chars[ 10 ] = ' ';
+		format( chars, 11, value.getHours(), 2 );
+		chars[ 13 ] = ':';
+		format( chars, 14, value.getMinutes(), 2 );
+		chars[ 16 ] = ':';
+		format( chars, 17, value.getSeconds(), 2 );
+		chars[ 19 ] = '.';
+		int nanos = value.getNanos();
+		int len;
+		if( nanos == 0 )
+		{
+			chars[ 20 ] = '0';
+			len = 21;
+		}
+		else
+		{
+			// Trailing zeros are left out
+			format( chars, 20, nanos, 9 );
+			len = 29;
+			while( chars[ len - 1 ] == '0' )
+				len--;
+		}
+		write( chars, 0, len );
+	}
+
+	/**
+	 * Writes a date, formatted like {@link java.sql.Date#toString()}. Only dates accepted by
+	 * {@link #canFormat(java.util.Date)} are supported.
+	 *
+	 * @param value The date to write.
+	 */
+	@SuppressWarnings( "deprecation" )
+	protected void writeDate( java.sql.Date value )
+	{
+		char[] chars = this.chars;
+		format( chars, 0, value.getYear() + 1900, 4 );
+		chars[ 4 ] = '-';
+		format( chars, 5, value.getMonth() + 1, 2 );
+		chars[ 7 ] = '-';
+		format( chars, 8, value.getDate(), 2 );
+		write( chars, 0, 10 );
+	}
+
+	/**
+	 * Writes a time, formatted like {@link Time#toString()}.
+	 *
+	 * @param value The time to write.
+	 */
+	@SuppressWarnings( "deprecation" )
+	protected void writeTime( Time value )
+	{
+		char[] chars = this.chars;
+		format( chars, 0, value.getHours(), 2 );
+		chars[ 2 ] = ':';
+		format( chars, 3, value.getMinutes(), 2 );
+		chars[ 5 ] = ':';
+		format( chars, 6, value.getSeconds(), 2 );
+		write( chars, 0, 8 );
+	}
+
+	/**
+	 * Formats a non-negative number with leading zeros.
+	 */
+	static private void format( char[] chars, int offset, int value, int digits )
+	{
+		for( int i = offset + digits - 1; i >= offset; i-- )
+		{
+			chars[ i ] = (char)( '0' + value % 10 );
+			value /= 10;
+		}
+	}
+
+	/**
+	 * Writes a character.
+	 *
+	 * @param c The character to write.
+	 */
+	protected void write( char c )
+	{
+		if( this.pos >= this.buffer.length )
+			flushBuffer();
+		this.buffer[ this.pos++ ] = c;
+	}
+
+	/**
+	 * Writes a part of a string.
+	 *
+	 * @param value The string.
+	 * @param start The index of the first character to write.
+	 * @param end The index after the last character to write.
+	 */
+	protected void write( String value, int start, int end )
+	{
+		while( start < end )
+		{
+			if( this.pos >= this.buffer.length )
+				flushBuffer();
+			int count = Math.min( end - start, this.buffer.length - this.pos );
+			value.getChars( start, start + count, this.buffer, this.pos );
+			this.pos += count;
+			start += count;
+		}
+	}
+
+	/**
+	 * Writes characters.
+	 *
+	 * @param chars The characters.
+	 * @param off The offset of the first character to write.
+	 * @param len The number of characters to write.
+	 */
+	protected void write( char[] chars, int off, int len )
+	{
+		while( len > 0 )
+		{
+			if( this.pos >= this.buffer.length )
+				flushBuffer();
+			int count = Math.min( len, this.buffer.length - this.pos );
+			System.arraycopy( chars, off, this.buffer, this.pos, count );
+			this.pos += count;
+			off += count;
+			len -= count;
+		}
+	}
+
+	/**
+	 * Encodes the buffer. The high surrogate of a pair that is split by the end of the buffer is kept.
+	 */
+	private void flushBuffer()
+	{
+		CharBuffer chars = CharBuffer.wrap( this.buffer, 0, this.pos );
+		encode( chars, false );
+		int remaining = chars.remaining();
+		System.arraycopy( this.buffer, chars.position(), this.buffer, 0, remaining );
+		this.pos = remaining;
+	}
+
+	private void encode( CharBuffer chars, boolean endOfInput )
+	{
+		while( this.encoder.encode( chars, this.bytes, endOfInput ).isOverflow() )
+			writeBytes();
+	}
+
+	private void writeBytes()
+	{
+		try
+		{
+			this.out.write( this.bytes.array(), 0, this.bytes.position() );
+		}
+		catch( IOException e )
+		{
+			throw new FatalIOException( e );
+		}
+		this.bytes.clear();
+	}
+
+	/**
+	 * Close the writer. This also closes the output stream.
+	 */
+	public void close()
+	{
+		encode( CharBuffer.wrap( this.buffer, 0, this.pos ), true );
+		this.pos = 0;
+		while( this.encoder.flush( this.bytes ).isOverflow() )
+			writeBytes();
+		writeBytes();
+		try
+		{
+			this.out.close();
+		}
+		catch( IOException e )
+		{
+			throw new FatalIOException( e );
+		}
+	}
+}
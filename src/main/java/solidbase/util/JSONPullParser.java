@@ -0,0 +1,406 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.util;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import solidstack.io.SourceException;
+import solidstack.io.SourceLocation;
+import solidstack.io.SourceReader;
+import solidstack.json.JSONArray;
+import solidstack.json.JSONObject;
+
+
+/**
+ * A pull parser for JSON. Unlike the {@link solidstack.json.JSONReader}, which builds a complete tree of
+ * {@link JSONArray}s and {@link JSONObject}s for each value read, this parser returns one token at a time. The text of
+ * strings and numbers is collected in a reusable buffer, and is only turned into a {@link String} or a number when
+ * asked for. Integral numbers are parsed without a {@link BigDecimal}. The syntax accepted is the same as for the
+ * {@link solidstack.json.JSONReader}.
+ *
+ * @author René M. de Bloois
+ */
+public class JSONPullParser
+{
+	/**
+	 * The tokens returned by the parser.
+	 */
+	static public enum Token { BEGIN_ARRAY, END_ARRAY, BEGIN_OBJECT, END_OBJECT, NAME_SEPARATOR, VALUE_SEPARATOR, STRING, NUMBER, TRUE, FALSE, NULL, EOF }
+
+	private SourceReader in;
+	private boolean emptyLineIsEOF;
+	private boolean startOfLine;
+	private boolean eof;
+
+	/**
+	 * The text of the last string or number.
+	 */
+	private char[] value = new char[ 256 ];
+	private int length;
+
+	/**
+	 * Does the last number have a fraction or an exponent?
+	 */
+	private boolean fraction;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param in The source of the JSON.
+	 * @param emptyLineIsEOF Is an empty line the end of the JSON? This is used for JSON data embedded in another file.
+	 */
+	public JSONPullParser( SourceReader in, boolean emptyLineIsEOF )
+	{
+		this.in = in;
+		this.emptyLineIsEOF = emptyLineIsEOF;
+		this.startOfLine = true;
+	}
+
+	/**
+	 * Reads the next token.
+	 *
+	 * @return The next token.
+	 */
+	public Token next()
+	{
+		if( this.eof )
+			return Token.EOF;
+
+		SourceReader in = this.in;
+		int ch = in.read();
+		while( true )
+		{
+			switch( ch )
+			{
+				case -1:
+					this.eof = true;
+					return Token.EOF;
+				case '\n':
+					if( this.emptyLineIsEOF )
+					{
+						if( this.startOfLine )
+						{
+							this.eof = true;
+							return Token.EOF;
+						}
+						this.startOfLine = true;
+					}
+					//$FALL-THROUGH$
+				case ' ':
+				case '\t':
+				case '\r':
+					ch = in.read();
+					continue;
+			}
+			break;
+		}
+
+		this.startOfLine = false;
+		switch( ch )
+		{
+			case ',': return Token.VALUE_SEPARATOR;
+			case ':': return Token.NAME_SEPARATOR;
+			case '[': return Token.BEGIN_ARRAY;
+			case ']': return Token.END_ARRAY;
+			case '{': return Token.BEGIN_OBJECT;
+			case '}': return Token.END_OBJECT;
+			case '"':
+				readString();
+				return Token.STRING;
+			case '+': case '-':
+			case '0': case '1': case '2': case '3': case '4': case '5': case '6': case '7': case '8': case '9':
+				readNumber( ch );
+				return Token.NUMBER;
+		}
+
+		if( ch >= 'a' && ch <= 'z' )
+		{
+			this.length = 0;
+			while( ch >= 'a' && ch <= 'z' )
+			{
+				append( ch );
+				ch = in.read();
+			}
+			in.rewind();
+			if( isValue( "false" ) )
+				return Token.FALSE;
+			if( isValue( "null" ) )
+				return Token.NULL;
+			if( isValue( "true" ) )
+				return Token.TRUE;
+			throw new SourceException( "Unexpected keyword " + getString(), in.getLocation() );
+		}
+
+		throw new SourceException( "Unexpected character '" + (char)ch + "'", in.getLocation() );
+	}
+
+	private void readString()
+	{
+		SourceReader in = this.in;
+		this.length = 0;
+		while( true )
+		{
+			int ch = in.read();
+			if( ch == -1 )
+				throw new SourceException( "Missing \"", in.getLocation() );
+			if( ch == '"' )
+				return;
+			if( ch == '\\' )
+			{
+				ch = in.read();
+				switch( ch )
+				{
+					case '"': case '\\': case '/': break;
+					case 'b': ch = '\b'; break;
+					case 'f': ch = '\f'; break;
+					case 'n': ch = '\n'; break;
+					case 'r': ch = '\r'; break;
+					case 't': ch = '\t'; break;
+					case 'u':
+						int result = 0;
+						for( int i = 0; i < 4; i++ )
+						{
+							int digit = Character.digit( in.read(), 16 );
+							if( digit < 0 )
+								throw new SourceException( "Illegal escape sequence: \\u", in.getLocation() );
+							result = result << 4 | digit;
+						}
+						ch = result;
+						break;
+					case -1:
+						throw new SourceException( "Incomplete escape sequence", in.getLocation() );
+					default:
+						throw new SourceException( "Illegal escape sequence: \\" + (char)ch, in.getLocation() );
+				}
+			}
+			append( ch );
+		}
+	}
+
+	private void readNumber( int ch )
+	{
+		SourceReader in = this.in;
+		this.length = 0;
+		this.fraction = false;
+		if( ch == '+' || ch == '-' )
+		{
+			append( ch );
+			ch = in.read();
+		}
+		ch = readDigits( ch );
+		if( ch == '.' )
+		{
+			this.fraction = true;
+			append( ch );
+			ch = readDigits( in.read() );
+		}
+		if( ch == 'E' || ch == 'e' )
+		{
+			this.fraction = true;
+			append( ch );
+			ch = in.read();
+			if( ch == '+' || ch == '-' )
+			{
+				append( ch );
+				ch = in.read();
+			}
+			readDigits( ch );
+		}
+		in.rewind();
+	}
+
+	/**
+	 * Reads one or more digits.
+	 *
+	 * @param ch The first digit.
+	 * @return The character after the digits.
+	 */
+	private int readDigits( int ch )
+	{
+		if( ch < '0' || ch > '9' )
+			throw new SourceException( "Invalid number", this.in.getLocation() );
+		do
+		{
+			append( ch );
+			ch = this.in.read();
+		}
+		while( ch >= '0' && ch <= '9' );
+		return ch;
+	}
+
+	private void append( int ch )
+	{
+		if( this.length >= this.value.length )
+			this.value = Arrays.copyOf( this.value, this.length * 2 );
+		this.value[ this.length++ ] = (char)ch;
+	}
+
+	/**
+	 * Is the text of the last string equal to the given value? This does not create a string.
+	 *
+	 * @param value The value to compare with.
+	 * @return True if the text of the last string is equal to the given value, false otherwise.
+	 */
+	public boolean isValue( String value )
+	{
+		int length = this.length;
+		if( value.length() != length )
+			return false;
+		char[] chars = this.value;
+		for( int i = 0; i < length; i++ )
+			if( chars[ i ] != value.charAt( i ) )
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return The text of the last string or number.
+	 */
+	public String getString()
+	{
+		return new String( this.value, 0, this.length );
+	}
+
+	/**
+	 * @return True if the last number has no fraction or exponent and fits in a long, false otherwise.
+	 */
+	public boolean isLong()
+	{
+		// 18 digits always fit
+		return !this.fraction && this.length <= 18;
+	}
+
+	/**
+	 * Returns the last number as a long. Only numbers accepted by {@link #isLong()} are supported.
+	 *
+	 * @return The last number as a long.
+	 */
+	public long getLong()
+	{
+		char[] chars = this.value;
+		int length = this.length;
+		int i = 0;
+		boolean negative = chars[ 0 ] == '-';
+		if( negative || chars[ 0 ] == '+' )
+			i++;
+		long result = 0;
+		while( i < length )
+			result = result * 10 + ( chars[ i++ ] - '0' );
+		return negative ? -result : result;
+	}
+
+	/**
+	 * @return The last number as a double.
+	 */
+	public double getDouble()
+	{
+		return Double.parseDouble( getString() );
+	}
+
+	/**
+	 * @return The last number as a {@link BigDecimal}.
+	 */
+	public BigDecimal getDecimal()
+	{
+		int offset = this.value[ 0 ] == '+' ? 1 : 0;
+		return new BigDecimal( this.value, offset, this.length - offset );
+	}
+
+	/**
+	 * Reads a complete value that starts with the given token, the same way as the
+	 * {@link solidstack.json.JSONReader} does. Objects and arrays are returned as {@link JSONObject}s and
+	 * {@link JSONArray}s, numbers as {@link BigDecimal}s.
+	 *
+	 * @param token The first token of the value.
+	 * @return The value.
+	 */
+	public Object readValue( Token token )
+	{
+		switch( token )
+		{
+			case STRING: return getString();
+			case NUMBER: return getDecimal();
+			case TRUE: return Boolean.TRUE;
+			case FALSE: return Boolean.FALSE;
+			case NULL: return null;
+			case BEGIN_ARRAY:
+				JSONArray array = new JSONArray();
+				token = next();
+				if( token == Token.END_ARRAY )
+					return array;
+				while( true )
+				{
+					array.add( readValue( token ) );
+					token = next();
+					if( token == Token.END_ARRAY )
+						return array;
+					expect( token, Token.VALUE_SEPARATOR );
+					token = next();
+				}
+			case BEGIN_OBJECT:
+				JSONObject object = new JSONObject();
+				token = next();
+				if( token == Token.END_OBJECT )
+					return object;
+				while( true )
+				{
+					expect( token, Token.STRING );
+					String name = getString();
+					expect( next(), Token.NAME_SEPARATOR );
+					object.set( name, readValue( next() ) );
+					token = next();
+					if( token == Token.END_OBJECT )
+						return object;
+					expect( token, Token.VALUE_SEPARATOR );
+					token = next();
+				}
+			default:
+				throw new SourceException( "Unexpected " + token, this.in.getLocation() );
+		}
+	}
+
+	/**
+	 * Checks the token.
+	 *
+	 * @param token The token.
+	 * @param expected The expected token.
+	 * @throws SourceException When the token is not the expected token.
+	 */
+	public void expect( Token token, Token expected )
+	{
+		if( token != expected )
+			throw new SourceException( "Expecting " + expected + ", not " + token, this.in.getLocation() );
+	}
+
+	/**
+	 * @return The current line number.
+	 */
+	public int getLineNumber()
+	{
+		return this.in.getLineNumber();
+	}
+
+	/**
+	 * @return The current location.
+	 */
+	public SourceLocation getLocation()
+	{
+		return this.in.getLocation();
+	}
+}
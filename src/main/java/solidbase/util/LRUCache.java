@@ -0,0 +1,65 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * A map that holds a maximum number of entries. When full, the least recently used entry is removed and passed to
+ * {@link #evicted(Object, Object)}.
+ *
+ * @author René de Bloois
+ * @param <K> The type of the keys.
+ * @param <V> The type of the values.
+ */
+public class LRUCache<K, V> extends LinkedHashMap<K, V>
+{
+	private static final long serialVersionUID = 1L;
+
+	private int maxSize;
+
+	/**
+	 * @param maxSize The maximum number of entries.
+	 */
+	public LRUCache( int maxSize )
+	{
+		super( 16, 0.75f, true );
+		this.maxSize = maxSize;
+	}
+
+	@Override
+	protected boolean removeEldestEntry( Map.Entry<K, V> eldest )
+	{
+		if( size() <= this.maxSize )
+			return false;
+		evicted( eldest.getKey(), eldest.getValue() );
+		return true;
+	}
+
+	/**
+	 * Called when an entry is removed because the cache is full.
+	 *
+	 * @param key The key of the removed entry.
+	 * @param value The value of the removed entry.
+	 */
+	protected void evicted( K key, V value )
+	{
+		// Nothing by default
+	}
+}
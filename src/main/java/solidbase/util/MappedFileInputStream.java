@@ -0,0 +1,226 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.util;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import solidstack.io.FatalIOException;
+import solidstack.io.FileResource;
+import solidstack.io.Resource;
+import solidstack.io.SourceInputStream;
+import solidstack.io.SourceLocation;
+
+
+/**
+ * Reads a local file through memory mapped windows, without the stream and buffer layering of
+ * {@link solidstack.io.SourceReaders#forBinaryResource(Resource)}.
+ *
+ * @author René M. de Bloois
+ */
+public class MappedFileInputStream extends SourceInputStream
+{
+	/**
+	 * The default size of the mapped windows.
+	 */
+	static public final int WINDOW_SIZE = 0x4000000; // 64MB
+
+	static private final ByteBuffer EMPTY = ByteBuffer.allocate( 0 );
+
+	private Resource resource;
+	private FileChannel channel;
+	private long size;
+	private int windowSize;
+
+	/**
+	 * The position in the file of the current window.
+	 */
+	long windowStart;
+
+	/**
+	 * The current window.
+	 */
+	ByteBuffer window;
+
+
+	/**
+	 * Can the given resource be read through memory mapped windows? This is the case for local files which are not
+	 * compressed.
+	 *
+	 * @param resource The resource.
+	 * @return True if the resource can be mapped, false otherwise.
+	 */
+	static public boolean canMap( Resource resource )
+	{
+		return resource.unwrap() instanceof FileResource && !resource.isGZip();
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param resource The file to read.
+	 * @throws FileNotFoundException When the file is not found.
+	 */
+	public MappedFileInputStream( Resource resource ) throws FileNotFoundException
+	{
+		this( resource, WINDOW_SIZE );
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param resource The file to read.
+	 * @param windowSize The size of the mapped windows.
+	 * @throws FileNotFoundException When the file is not found.
+	 */
+	public MappedFileInputStream( Resource resource, int windowSize ) throws FileNotFoundException
+	{
+		this.resource = resource;
+		this.windowSize = windowSize;
+		this.channel = new RandomAccessFile( new File( resource.getURI() ), "r" ).getChannel();
+		try
+		{
+			this.size = this.channel.size();
+			map( 0 );
+		}
+		catch( IOException e )
+		{
+			close();
+			throw new FatalIOException( e );
+		}
+	}
+
+	/**
+	 * Maps the window starting at the given position in the file.
+	 *
+	 * @param position The position in the file.
+	 * @return False if the position is at the end of the file, true otherwise.
+	 * @throws IOException When the mapping fails.
+	 */
+	boolean map( long position ) throws IOException
+	{
+		return map( position, this.windowSize );
+	}
+
+	/**
+	 * Maps the window starting at the given position in the file.
+	 *
+	 * @param position The position in the file.
+	 * @param minimumSize The minimum size of the window, if the file is large enough.
+	 * @return False if the position is at the end of the file, true otherwise.
+	 * @throws IOException When the mapping fails.
+	 */
+	boolean map( long position, int minimumSize ) throws IOException
+	{
+		this.windowStart = position;
+		if( position >= this.size )
+		{
+			this.window = EMPTY;
+			return false;
+		}
+		this.window = this.channel.map( MapMode.READ_ONLY, position, Math.min( Math.max( this.windowSize, minimumSize ), this.size - position ) );
+		return true;
+	}
+
+	/**
+	 * Is the current window the last one of the file?
+	 *
+	 * @return True if the current window is the last one of the file, false otherwise.
+	 */
+	boolean isLastWindow()
+	{
+		return this.windowStart + this.window.limit() >= this.size;
+	}
+
+	/**
+	 * Makes sure that bytes are available in the current window.
+	 *
+	 * @return False if the end of the file is reached, true otherwise.
+	 * @throws IOException When the mapping fails.
+	 */
+	private boolean ensureAvailable() throws IOException
+	{
+		if( this.window.hasRemaining() )
+			return true;
+		return map( this.windowStart + this.window.limit() );
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		if( !ensureAvailable() )
+			return -1;
+		return this.window.get() & 0xFF;
+	}
+
+	@Override
+	public int read( byte[] b, int off, int len ) throws IOException
+	{
+		if( len == 0 )
+			return 0;
+		if( !ensureAvailable() )
+			return -1;
+		int count = Math.min( len, this.window.remaining() );
+		this.window.get( b, off, count );
+		return count;
+	}
+
+	@Override
+	public int available()
+	{
+		return this.window.remaining();
+	}
+
+	/**
+	 * @return The position in the file.
+	 */
+	public long getPosition()
+	{
+		return this.windowStart + this.window.position();
+	}
+
+	@Override
+	public Resource getResource()
+	{
+		return this.resource;
+	}
+
+	@Override
+	public SourceLocation getLocation()
+	{
+		return SourceLocation.forBinary( this.resource, getPosition() );
+	}
+
+	@Override
+	public void close()
+	{
+		this.window = EMPTY;
+		try
+		{
+			this.channel.close();
+		}
+		catch( IOException e )
+		{
+			throw new FatalIOException( e );
+		}
+	}
+}
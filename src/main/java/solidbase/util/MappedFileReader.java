@@ -0,0 +1,166 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.util;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import solidstack.io.Resource;
+
+
+/**
+ * Decodes a local file directly from its memory mapped windows into the caller's character buffer. A byte order mark
+ * at the start of a UTF encoded file is skipped, like {@link solidstack.io.SourceReaders#forResource(Resource, String)}
+ * does.
+ *
+ * @author René M. de Bloois
+ */
+public class MappedFileReader extends Reader
+{
+	private MappedFileInputStream in;
+	private CharsetDecoder decoder;
+	private boolean skipBOM;
+	private boolean eof;
+
+	/**
+	 * Buffer for small reads.
+	 */
+	private char[] chars = new char[ 8192 ];
+	private int pos;
+	private int limit;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param resource The file to read.
+	 * @param charset The character set of the file.
+	 * @throws FileNotFoundException When the file is not found.
+	 */
+	public MappedFileReader( Resource resource, Charset charset ) throws FileNotFoundException
+	{
+		this( new MappedFileInputStream( resource ), charset );
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param in The memory mapped file to read.
+	 * @param charset The character set of the file.
+	 */
+	public MappedFileReader( MappedFileInputStream in, Charset charset )
+	{
+		this.in = in;
+		// Same as the InputStreamReader
+		this.decoder = charset.newDecoder().onMalformedInput( CodingErrorAction.REPLACE ).onUnmappableCharacter( CodingErrorAction.REPLACE );
+		this.skipBOM = charset.name().startsWith( "UTF-" );
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		if( this.pos >= this.limit && !fill() )
+			return -1;
+		return this.chars[ this.pos++ ];
+	}
+
+	@Override
+	public int read( char[] cbuf, int off, int len ) throws IOException
+	{
+		if( len == 0 )
+			return 0;
+		if( this.pos >= this.limit )
+		{
+			// Large reads are decoded directly into the caller's buffer
+			if( len >= this.chars.length )
+				return decode( cbuf, off, len );
+			if( !fill() )
+				return -1;
+		}
+		int count = Math.min( len, this.limit - this.pos );
+		System.arraycopy( this.chars, this.pos, cbuf, off, count );
+		this.pos += count;
+		return count;
+	}
+
+	private boolean fill() throws IOException
+	{
+		int count = decode( this.chars, 0, this.chars.length );
+		this.pos = 0;
+		this.limit = Math.max( count, 0 );
+		return count > 0;
+	}
+
+	/**
+	 * Decodes characters from the mapped windows.
+	 *
+	 * @param cbuf The buffer to decode into.
+	 * @param off The offset in the buffer.
+	 * @param len The maximum number of characters, at least 2 to fit a surrogate pair.
+	 * @return The number of characters decoded, or -1 at the end of the file.
+	 * @throws IOException When the mapping fails.
+	 */
+	private int decode( char[] cbuf, int off, int len ) throws IOException
+	{
+		CharBuffer out = CharBuffer.wrap( cbuf, off, len );
+		while( out.position() == off )
+		{
+			if( this.eof )
+				return -1;
+
+			ByteBuffer window = this.in.window;
+			boolean last = this.in.isLastWindow();
+			CoderResult result = this.decoder.decode( window, out, last );
+			if( result.isUnderflow() )
+			{
+				if( last )
+				{
+					this.decoder.flush( out );
+					this.eof = true;
+				}
+				else
+					// The bytes of an incomplete character are mapped again at the start of the next window, which
+					// needs to be larger than these bytes
+					this.in.map( this.in.windowStart + window.position(), window.remaining() * 2 + 8 );
+			}
+
+			if( this.skipBOM && out.position() > off )
+			{
+				this.skipBOM = false;
+				if( cbuf[ off ] == '\uFEFF' )
+				{
+					System.arraycopy( cbuf, off + 1, cbuf, off, out.position() - off - 1 );
+					out.position( out.position() - 1 );
+				}
+			}
+		}
+		return out.position() - off;
+	}
+
+	@Override
+	public void close()
+	{
+		this.in.close();
+	}
+}
@@ -0,0 +1,73 @@
+
+--* // Copyright 2010 René M. de Bloois
+
+--* // Licensed under the Apache License, Version 2.0 (the "License");
+--* // you may not use this file except in compliance with the License.
+--* // You may obtain a copy of the License at
+
+--* //     http://www.apache.org/licenses/LICENSE-2.0
+
+--* // Unless required by applicable law or agreed to in writing, software
+--* // distributed under the License is distributed on an "AS IS" BASIS,
+--* // WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+--* // See the License for the specific language governing permissions and
+--* // limitations under the License.
+
+--* // ========================================================================
+
+--*	DEFINITION
+--*		SETUP "" --> "1.1"
+--*		UPGRADE "" --> "1"
+--*	/DEFINITION
+
+--* SETUP "" --> "1.1"
+RUN "setup-1.1.sql";
+--* /SETUP
+
+--* UPGRADE "" --> "1"
+CREATE TABLE TEMP ( ID INTEGER, TEXT VARCHAR(40) );
+
+IMPORT CSV INTO TEMP;
+1,one
+2,two
+3,three
+
+INSERT INTO TEMP SELECT ID + 3, TEXT FROM TEMP;
+INSERT INTO TEMP SELECT ID + 6, TEXT FROM TEMP;
+INSERT INTO TEMP SELECT ID + 12, TEXT FROM TEMP;
+INSERT INTO TEMP SELECT ID + 24, TEXT FROM TEMP;
+INSERT INTO TEMP SELECT ID + 48, TEXT FROM TEMP;
+
+EXPORT CSV
+FILE "output/export-fetch-size.csv" ENCODING "UTF-8"
+FETCH SIZE 10
+FROM SELECT * FROM TEMP;
+
+EXPORT JSON
+FILE "output/export-fetch-size.json"
+FETCH SIZE AUTO
+FROM SELECT * FROM TEMP;
+
+--* SET FETCH_SIZE = AUTO
+--* SET COMMIT_STRATEGY = AUTOCOMMIT
+
+EXPORT CBOR
+FILE "output/export-fetch-size-?1.cbor"
+PARALLEL 2 SPLIT ON ID
+FROM SELECT * FROM TEMP;
+
+EXPORT CBOR
+FILE "output/export-fetch-size.cbor"
+FROM SELECT * FROM TEMP;
+
+--* RESET COMMIT_STRATEGY
+
+CREATE TABLE TEMP2 ( ID INTEGER, TEXT VARCHAR(40) );
+
+IMPORT CSV INTO TEMP2 FILE "output/export-fetch-size.csv" ENCODING "UTF-8";
+IMPORT JSON INTO TEMP2 FILE "output/export-fetch-size.json";
+IMPORT CBOR INTO TEMP2 FILE "output/export-fetch-size-1.cbor";
+IMPORT CBOR INTO TEMP2 FILE "output/export-fetch-size-2.cbor";
+IMPORT CBOR INTO TEMP2 FILE "output/export-fetch-size.cbor";
+
+--* /UPGRADE
@@ -0,0 +1,73 @@
+
+--* // Copyright 2010 René M. de Bloois
+
+--* // Licensed under the Apache License, Version 2.0 (the "License");
+--* // you may not use this file except in compliance with the License.
+--* // You may obtain a copy of the License at
+
+--* //     http://www.apache.org/licenses/LICENSE-2.0
+
+--* // Unless required by applicable law or agreed to in writing, software
+--* // distributed under the License is distributed on an "AS IS" BASIS,
+--* // WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+--* // See the License for the specific language governing permissions and
+--* // limitations under the License.
+
+--* // ========================================================================
+
+--*	DEFINITION
+--*		SETUP "" --> "1.1"
+--*		UPGRADE "" --> "1"
+--*	/DEFINITION
+
+--* SETUP "" --> "1.1"
+RUN "setup-1.1.sql";
+--* /SETUP
+
+--* UPGRADE "" --> "1"
+SET DATABASE TRANSACTION CONTROL MVCC;
+
+CREATE TABLE TEMP ( ID INTEGER, TEXT VARCHAR(40) );
+
+IMPORT CSV INTO TEMP;
+1,one
+2,two
+3,three
+
+INSERT INTO TEMP SELECT ID + 3, TEXT FROM TEMP;
+INSERT INTO TEMP SELECT ID + 6, TEXT FROM TEMP;
+INSERT INTO TEMP SELECT ID + 12, TEXT FROM TEMP;
+INSERT INTO TEMP SELECT ID + 24, TEXT FROM TEMP;
+INSERT INTO TEMP SELECT ID + 48, TEXT FROM TEMP;
+INSERT INTO TEMP VALUES ( NULL, 'null' );
+
+EXPORT CSV
+FILE "output/export-parallel.csv" ENCODING "UTF-8"
+PARALLEL 3 SPLIT ON ID
+FROM SELECT * FROM TEMP;
+
+EXPORT CSV
+FILE "output/export-parallel-?1.csv" ENCODING "UTF-8"
+PARALLEL 3 SPLIT ON ID
+FROM SELECT * FROM TEMP;
+
+EXPORT JSON
+FILE "output/export-parallel.json"
+PARALLEL 4 SPLIT ON ID
+FROM SELECT * FROM TEMP;
+
+EXPORT CBOR
+FILE "output/export-parallel.cbor"
+PARALLEL 5 SPLIT ON ID
+FROM SELECT * FROM TEMP;
+
+CREATE TABLE TEMP2 ( ID INTEGER, TEXT VARCHAR(40) );
+
+IMPORT CSV INTO TEMP2 FILE "output/export-parallel.csv" ENCODING "UTF-8";
+IMPORT CSV INTO TEMP2 FILE "output/export-parallel-1.csv" ENCODING "UTF-8";
+IMPORT CSV INTO TEMP2 FILE "output/export-parallel-2.csv" ENCODING "UTF-8";
+IMPORT CSV INTO TEMP2 FILE "output/export-parallel-3.csv" ENCODING "UTF-8";
+IMPORT JSON INTO TEMP2 FILE "output/export-parallel.json";
+IMPORT CBOR INTO TEMP2 FILE "output/export-parallel.cbor";
+
+--* /UPGRADE
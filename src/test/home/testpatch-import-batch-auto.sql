@@ -0,0 +1,52 @@
+
+--* // Copyright 2010 René M. de Bloois
+
+--* // Licensed under the Apache License, Version 2.0 (the "License");
+--* // you may not use this file except in compliance with the License.
+--* // You may obtain a copy of the License at
+
+--* //     http://www.apache.org/licenses/LICENSE-2.0
+
+--* // Unless required by applicable law or agreed to in writing, software
+--* // distributed under the License is distributed on an "AS IS" BASIS,
+--* // WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+--* // See the License for the specific language governing permissions and
+--* // limitations under the License.
+
+--*	DEFINITION
+--*		SETUP "" --> "1.1"
+--*		UPGRADE "" --> "1"
+--*		UPGRADE "1" --> "2"
+--*	/DEFINITION
+
+--* SETUP "" --> "1.1"
+RUN "setup-1.1.sql";
+--* /SETUP
+
+--* UPGRADE "" --> "1"
+CREATE TABLE TEMP1 ( ID INTEGER NOT NULL, PICTURE BLOB );
+--* /UPGRADE
+
+--* UPGRADE "1" --> "2"
+EXPORT JSON
+FILE "output/export-batch-auto.json"
+COLUMN PICTURE TO BINARY FILE "output/export-batch-auto-?1.bin"
+FROM SELECT ID, PICTURE FROM TEMP1;
+
+CREATE TABLE TEMP2 ( ID INTEGER NOT NULL, PICTURE BLOB );
+
+--* // The files are kept open until the batch is executed
+IMPORT JSON
+BATCH SIZE AUTO
+LOG EVERY 100 RECORDS
+INTO TEMP2
+FILE "output/export-batch-auto.json";
+
+CREATE TABLE TEMP3 ( TEMP1 INTEGER NOT NULL, TEMP2 VARCHAR(40) );
+
+IMPORT CSV BATCH SIZE AUTO WITH COMMIT INTO TEMP3;
+1,a
+2,b
+3,c
+
+--* /UPGRADE
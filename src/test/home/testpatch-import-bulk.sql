@@ -0,0 +1,58 @@
+
+--* // Copyright 2010 René M. de Bloois
+
+--* // Licensed under the Apache License, Version 2.0 (the "License");
+--* // you may not use this file except in compliance with the License.
+--* // You may obtain a copy of the License at
+
+--* //     http://www.apache.org/licenses/LICENSE-2.0
+
+--* // Unless required by applicable law or agreed to in writing, software
+--* // distributed under the License is distributed on an "AS IS" BASIS,
+--* // WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+--* // See the License for the specific language governing permissions and
+--* // limitations under the License.
+
+--*	DEFINITION
+--*		SETUP "" --> "1.1"
+--*		UPGRADE "" --> "1"
+--*		UPGRADE "1" --> "2"
+--*		UPGRADE "2" --> "3"
+--*	/DEFINITION
+
+--* SETUP "" --> "1.1"
+RUN "setup-1.1.sql";
+--* /SETUP
+
+--* UPGRADE "" --> "1"
+CREATE TABLE TEMP ( TEMP1 INTEGER NOT NULL, TEMP2 VARCHAR(40), TEMP3 VARCHAR(40) );
+
+IMPORT CSV BATCH SIZE 2 USING BULK INTO TEMP;
+1,"back\slash","tab	tab"
+2,,"multi
+line"
+3,"\N",x
+
+--* /UPGRADE
+
+--* UPGRADE "1" --> "2"
+--* // VALUES can't be bulk loaded
+IMPORT CSV USING BULK INTO TEMP ( TEMP1, TEMP2 ) VALUES ( :1, :2 );
+4,a
+5,b
+
+--* /UPGRADE
+
+--* UPGRADE "2" --> "3"
+CREATE TABLE TEMP2 ( ID INTEGER, PICTURE BLOB );
+
+--* // The bulk loader can't load binary values, INSERTs take over at the third record
+IMPORT CBOR BATCH SIZE 10 USING BULK INTO TEMP2;
+9F
+	82 01 F6
+	82 02 F6
+	82 03 43 010203
+	82 04 F6
+FF
+
+--* /UPGRADE
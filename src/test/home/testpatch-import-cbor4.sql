@@ -0,0 +1,46 @@
+
+--* // Copyright 2010 René M. de Bloois
+
+--* // Licensed under the Apache License, Version 2.0 (the "License");
+--* // you may not use this file except in compliance with the License.
+--* // You may obtain a copy of the License at
+
+--* //     http://www.apache.org/licenses/LICENSE-2.0
+
+--* // Unless required by applicable law or agreed to in writing, software
+--* // distributed under the License is distributed on an "AS IS" BASIS,
+--* // WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+--* // See the License for the specific language governing permissions and
+--* // limitations under the License.
+
+--* // ========================================================================
+
+--*	DEFINITION
+--*		SETUP "" --> "1.1"
+--*		UPGRADE "" --> "1"
+--*	/DEFINITION
+
+--* SETUP "" --> "1.1"
+RUN "setup-1.1.sql";
+--* /SETUP
+
+--* UPGRADE "" --> "1"
+CREATE TABLE TEMP1 ( ID INTEGER, BIG BIGINT, AMOUNT DECIMAL(10,2), RATIO DOUBLE, FLAG BOOLEAN, TEXT VARCHAR(40), CREATED TIMESTAMP );
+
+INSERT INTO TEMP1 VALUES ( 1, 10000000000, 1.25, 0.5, TRUE, 'one', '2016-06-08 12:00:00' );
+INSERT INTO TEMP1 VALUES ( 2, -10000000000, -1.25, -0.5, FALSE, 'two', '2016-06-08 13:00:00' );
+INSERT INTO TEMP1 VALUES ( 3, NULL, NULL, NULL, NULL, NULL, NULL );
+INSERT INTO TEMP1 SELECT ID + 3, BIG, AMOUNT, RATIO, FLAG, TEXT, CREATED FROM TEMP1;
+INSERT INTO TEMP1 SELECT ID + 6, BIG, AMOUNT, RATIO, FLAG, TEXT, CREATED FROM TEMP1;
+
+EXPORT CBOR
+FILE "output/import-cbor4.cbor"
+FROM SELECT * FROM TEMP1;
+
+CREATE TABLE TEMP2 ( ID INTEGER, BIG BIGINT, AMOUNT DECIMAL(10,2), RATIO DOUBLE, FLAG BOOLEAN, TEXT VARCHAR(40), CREATED TIMESTAMP );
+
+IMPORT CBOR
+INTO TEMP2
+FILE "output/import-cbor4.cbor";
+
+--* /UPGRADE
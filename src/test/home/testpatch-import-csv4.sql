@@ -0,0 +1,74 @@
+
+--* // Copyright 2010 René M. de Bloois
+
+--* // Licensed under the Apache License, Version 2.0 (the "License");
+--* // you may not use this file except in compliance with the License.
+--* // You may obtain a copy of the License at
+
+--* //     http://www.apache.org/licenses/LICENSE-2.0
+
+--* // Unless required by applicable law or agreed to in writing, software
+--* // distributed under the License is distributed on an "AS IS" BASIS,
+--* // WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+--* // See the License for the specific language governing permissions and
+--* // limitations under the License.
+
+--* // ========================================================================
+
+--*	DEFINITION
+--*		SETUP "" --> "1.1"
+--*		UPGRADE "" --> "1"
+--*		UPGRADE "1" --> "2"
+--*	/DEFINITION
+
+--* SETUP "" --> "1.1"
+RUN "setup-1.1.sql";
+--* /SETUP
+
+--* UPGRADE "" --> "1"
+SET DATABASE TRANSACTION CONTROL MVCC;
+
+CREATE TABLE TEMP ( TEMP1 INTEGER NOT NULL, TEMP2 VARCHAR(40), TEMP3 VARCHAR(40) );
+
+IMPORT CSV INTO TEMP;
+1,2,3
+4,5,6
+7,8,9
+
+INSERT INTO TEMP SELECT * FROM TEMP;
+INSERT INTO TEMP SELECT * FROM TEMP;
+INSERT INTO TEMP SELECT * FROM TEMP;
+INSERT INTO TEMP SELECT * FROM TEMP;
+INSERT INTO TEMP SELECT * FROM TEMP;
+
+EXPORT CSV
+FILE "output/export-parallel.csv" ENCODING "UTF-8"
+FROM SELECT * FROM TEMP;
+
+CREATE TABLE TEMP2 ( TEMP1 INTEGER NOT NULL, TEMP2 VARCHAR(40), TEMP3 VARCHAR(40) );
+
+IMPORT CSV
+PARALLEL 4
+INTO TEMP2
+FILE "output/export-parallel.csv" ENCODING "UTF-8";
+
+IMPORT CSV
+BATCH SIZE 10 WITH COMMIT
+PARALLEL 3
+INTO TEMP2
+FILE "output/export-parallel.csv" ENCODING "UTF-8";
+
+--* /UPGRADE
+
+--* UPGRADE "1" --> "2"
+CREATE TABLE TEMP3 ( TEMP1 INTEGER NOT NULL );
+
+IMPORT CSV PARALLEL 2 INTO TEMP3;
+1
+2
+3
+4
+x
+6
+
+--* /UPGRADE
@@ -0,0 +1,54 @@
+
+--* // Copyright 2010 René M. de Bloois
+
+--* // Licensed under the Apache License, Version 2.0 (the "License");
+--* // you may not use this file except in compliance with the License.
+--* // You may obtain a copy of the License at
+
+--* //     http://www.apache.org/licenses/LICENSE-2.0
+
+--* // Unless required by applicable law or agreed to in writing, software
+--* // distributed under the License is distributed on an "AS IS" BASIS,
+--* // WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+--* // See the License for the specific language governing permissions and
+--* // limitations under the License.
+
+--* // ========================================================================
+
+--*	DEFINITION
+--*		SETUP "" --> "1.1"
+--*		UPGRADE "" --> "1"
+--*		UPGRADE "1" --> "2"
+--*	/DEFINITION
+
+--* SETUP "" --> "1.1"
+RUN "setup-1.1.sql";
+--* /SETUP
+
+--* UPGRADE "" --> "1"
+
+CREATE TABLE TEMP5 ( ID INTEGER, NAME VARCHAR(40), REMARK VARCHAR(40) );
+
+IMPORT CSV
+SKIP HEADER
+IGNORE WHITESPACE
+INTO TEMP5
+FILE "import-csv5.csv" ENCODING "UTF-8";
+
+CREATE TABLE TEMP7 ( ID INTEGER, NAME VARCHAR(40) );
+
+IMPORT CSV
+INTO TEMP7
+FILE "import-csv6.csv.gz" ENCODING "UTF-8" GZIP;
+
+--* /UPGRADE
+
+--* UPGRADE "1" --> "2"
+
+CREATE TABLE TEMP6 ( ID INTEGER, NAME VARCHAR(40) );
+
+IMPORT CSV
+INTO TEMP6
+FILE "import-csv5-error.csv" ENCODING "UTF-8";
+
+--* /UPGRADE
@@ -0,0 +1,65 @@
+
+--* // Copyright 2010 René M. de Bloois
+
+--* // Licensed under the Apache License, Version 2.0 (the "License");
+--* // you may not use this file except in compliance with the License.
+--* // You may obtain a copy of the License at
+
+--* //     http://www.apache.org/licenses/LICENSE-2.0
+
+--* // Unless required by applicable law or agreed to in writing, software
+--* // distributed under the License is distributed on an "AS IS" BASIS,
+--* // WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+--* // See the License for the specific language governing permissions and
+--* // limitations under the License.
+
+
+--*	DEFINITION
+--*		UPGRADE "" --> "1"
+--*		UPGRADE "1" --> "2"
+--*		UPGRADE "2" --> "3"
+--*	/DEFINITION
+
+--* UPGRADE "" --> "1"
+--* SECTION "Creating control tables"
+CREATE TABLE DBVERSION
+( 
+	VERSION VARCHAR(20), 
+	TARGET VARCHAR(20), 
+	STATEMENTS INTEGER NOT NULL 
+);
+CREATE TABLE DBVERSIONLOG
+(
+	ID INTEGER IDENTITY,
+	SOURCE VARCHAR(20),
+	TARGET VARCHAR(20) NOT NULL,
+	STATEMENT INTEGER NOT NULL,
+	STAMP TIMESTAMP NOT NULL,
+	COMMAND VARCHAR(4000),
+	RESULT VARCHAR(4000)
+);
+--* /UPGRADE
+
+--* UPGRADE "1" --> "2"
+CREATE TABLE TEMP ( ID INTEGER, BIG BIGINT, AMOUNT DECIMAL(10,2), RATIO DOUBLE, FLAG BOOLEAN, NAME VARCHAR(40) );
+--* // The header defines the field types, the values are converted to these types
+IMPORT JSON INTO TEMP;
+{ "fields": [ { "name": "ID", "type": "INTEGER" }, { "name": "BIG", "type": "BIGINT" }, { "name": "AMOUNT", "type": "DECIMAL" },
+	{ "name": "RATIO", "type": "DOUBLE" }, { "name": "FLAG", "type": "BOOLEAN" }, { "name": "NAME", "type": "VARCHAR" } ] }
+[1,9223372036854775807,12.34,0.5,true,"one"]
+[-2,-9223372036854775808,-1,1e3,false,"two \"2\" \u00e9\u00C9"]
+["3","30",3,3,"true","three"]
+[ 4 , 4.0E1 , null , -0.25 , 1 , null ]
+[null,null,null,null,null,null]
+
+--* /UPGRADE
+
+--* UPGRADE "2" --> "3"
+--* // A fraction does not fit in an INTEGER
+IMPORT JSON INTO TEMP;
+{ "fields": [ { "name": "ID", "type": "INTEGER" }, { "name": "BIG", "type": "BIGINT" }, { "name": "AMOUNT", "type": "DECIMAL" },
+	{ "name": "RATIO", "type": "DOUBLE" }, { "name": "FLAG", "type": "BOOLEAN" }, { "name": "NAME", "type": "VARCHAR" } ] }
+[5,5,5,5,true,"five"]
+[6.5,6,6,6,true,"six"]
+
+--* /UPGRADE
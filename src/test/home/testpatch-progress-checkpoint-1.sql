@@ -0,0 +1,43 @@
+
+--* // Copyright 2010 René M. de Bloois
+
+--* // Licensed under the Apache License, Version 2.0 (the "License");
+--* // you may not use this file except in compliance with the License.
+--* // You may obtain a copy of the License at
+
+--* //     http://www.apache.org/licenses/LICENSE-2.0
+
+--* // Unless required by applicable law or agreed to in writing, software
+--* // distributed under the License is distributed on an "AS IS" BASIS,
+--* // WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+--* // See the License for the specific language governing permissions and
+--* // limitations under the License.
+
+--* // ========================================================================
+
+--*	DEFINITION
+--*		SETUP "" --> "1.1"
+--*		UPGRADE "" --> "1"
+--*	/DEFINITION
+
+--* SETUP "" --> "1.1"
+RUN "setup-1.1.sql";
+--* /SETUP
+
+--* UPGRADE "" --> "1"
+--* SET PROGRESS_CHECKPOINT = 3
+
+CREATE TABLE TEMP ( TEMP1 INTEGER NOT NULL );
+
+INSERT INTO TEMP VALUES ( 1 );
+INSERT INTO TEMP VALUES ( 2 );
+INSERT INTO TEMP VALUES ( 3 );
+INSERT INTO TEMP VALUES ( 4 );
+INSERT INTO TEMP VALUES ( 5 );
+INSERT INTO TEMPX VALUES ( 6 );
+
+--* RESET PROGRESS_CHECKPOINT
+
+INSERT INTO TEMP VALUES ( 7 );
+
+--* /UPGRADE
@@ -0,0 +1,50 @@
+
+--* // Copyright 2010 René M. de Bloois
+
+--* // Licensed under the Apache License, Version 2.0 (the "License");
+--* // you may not use this file except in compliance with the License.
+--* // You may obtain a copy of the License at
+
+--* //     http://www.apache.org/licenses/LICENSE-2.0
+
+--* // Unless required by applicable law or agreed to in writing, software
+--* // distributed under the License is distributed on an "AS IS" BASIS,
+--* // WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+--* // See the License for the specific language governing permissions and
+--* // limitations under the License.
+
+--* // ========================================================================
+
+--*	DEFINITION
+--*		SETUP "" --> "1.1"
+--*		UPGRADE "" --> "1"
+--*		UPGRADE "1" --> "2"
+--*		UPGRADE "2" --> "3" DEPENDS ON "1"
+--*		UPGRADE "3" --> "4" DEPENDS ON "2", "3"
+--*	/DEFINITION
+
+--* SETUP "" --> "1.1"
+RUN "setup-1.1.sql";
+--* /SETUP
+
+--* UPGRADE "" --> "1"
+CREATE PROCEDURE AWAIT_SEGMENT() LANGUAGE JAVA NO SQL EXTERNAL NAME 'CLASSPATH:solidbase.core.SegmentDependencies.awaitSegment';
+--* /UPGRADE
+
+--* UPGRADE "1" --> "2"
+CREATE TABLE TEMP1 ( TEMP1 INTEGER NOT NULL );
+-- Waits for "2" --> "3", which only happens when the segments are executed concurrently
+CALL AWAIT_SEGMENT();
+INSERT INTO TEMP1 VALUES ( 1 );
+--* /UPGRADE
+
+--* UPGRADE "2" --> "3"
+CREATE TABLE TEMP2 ( TEMP2 INTEGER NOT NULL );
+CALL AWAIT_SEGMENT();
+INSERT INTO TEMP2 VALUES ( 2 );
+--* /UPGRADE
+
+--* UPGRADE "3" --> "4"
+CREATE TABLE TEMP3 ( TEMP3 INTEGER NOT NULL );
+INSERT INTO TEMP3 SELECT TEMP1 + TEMP2 FROM TEMP1, TEMP2;
+--* /UPGRADE
@@ -0,0 +1,28 @@
+
+--* // Copyright 2010 René M. de Bloois
+
+--* // Licensed under the Apache License, Version 2.0 (the "License");
+--* // you may not use this file except in compliance with the License.
+--* // You may obtain a copy of the License at
+
+--* //     http://www.apache.org/licenses/LICENSE-2.0
+
+--* // Unless required by applicable law or agreed to in writing, software
+--* // distributed under the License is distributed on an "AS IS" BASIS,
+--* // WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+--* // See the License for the specific language governing permissions and
+--* // limitations under the License.
+
+
+
+--* SET TERMINATOR=;
+--* SET COMMIT_STRATEGY = AUTOCOMMIT
+
+CREATE TABLE TEMP ( ID INTEGER, TEXT VARCHAR(40) );
+INSERT INTO TEMP VALUES ( 1, 'one' );
+
+--* // Auto commit is turned off for the fetch size, the export turns it on again
+EXPORT CSV
+FILE "output/export-fetch-size2.csv" ENCODING "UTF-8"
+FETCH SIZE 10
+FROM SELECT * FROM TEMP;
@@ -0,0 +1,37 @@
+
+--* // Copyright 2010 Ren M. de Bloois
+
+--* // Licensed under the Apache License, Version 2.0 (the "License");
+--* // you may not use this file except in compliance with the License.
+--* // You may obtain a copy of the License at
+
+--* //     http://www.apache.org/licenses/LICENSE-2.0
+
+--* // Unless required by applicable law or agreed to in writing, software
+--* // distributed under the License is distributed on an "AS IS" BASIS,
+--* // WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+--* // See the License for the specific language governing permissions and
+--* // limitations under the License.
+
+--* // ========================================================================
+
+
+
+--* SET TERMINATOR=;
+--* SET COMMIT_STRATEGY = AUTOCOMMIT
+
+CREATE TABLE TEMP1 ( ID INTEGER NOT NULL PRIMARY KEY );
+CREATE TABLE TEMP2 ( ID INTEGER NOT NULL PRIMARY KEY );
+
+--* PARALLEL STATEMENTS 3
+
+INSERT INTO TEMP1 VALUES ( 1 );
+INSERT INTO TEMP2 VALUES ( 1 );
+INSERT INTO TEMP1 VALUES ( 2 );
+INSERT INTO TEMPX VALUES ( 1 );
+INSERT INTO TEMP2 VALUES ( 2 );
+INSERT INTO TEMP2 VALUES ( 3 );
+
+--* END PARALLEL
+
+INSERT INTO TEMP1 VALUES ( 3 );
@@ -0,0 +1,106 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import solidbase.core.plugins.AdaptiveBatchSize;
+import solidbase.core.plugins.ImportLogger;
+import solidbase.util.FixedIntervalLogCounter;
+
+public class BatchSizeAuto
+{
+	@Test
+	public void testAdaptiveBatchSize()
+	{
+		final List<String> changes = new ArrayList<>();
+		ProgressListener listener = new TestProgressListener()
+		{
+			@Override
+			public void println( String message )
+			{
+				changes.add( message );
+			}
+		};
+
+		// A fixed latency of 1 ms per batch and 10 µs per record: larger batches help until the latency is amortized
+		AdaptiveBatchSize size = new AdaptiveBatchSize();
+		size.setLogger( new ImportLogger( new FixedIntervalLogCounter( 1000 ), listener ) );
+		for( int i = 0; i < 20; i++ )
+		{
+			int records = size.getSize();
+			size.executed( records, records * 100, 1000000 + records * 10000L );
+		}
+		assertThat( size.getSize() ).isEqualTo( 1600 ); // 800 to 1600 improves less than 10%
+		assertThat( changes ).containsExactly( "Batch size changed to 200.", "Batch size changed to 400.", "Batch size changed to 800.", "Batch size changed to 1600." );
+
+		// Batches that are executed early do not count
+		size.executed( 10, 1000, 100000000 );
+		assertThat( size.getSize() ).isEqualTo( 1600 );
+
+		// The rate collapses
+		size.executed( 1600, 160000, 1000000000 );
+		assertThat( size.getSize() ).isEqualTo( 800 );
+
+		// Wide records are limited by the bytes per batch
+		size = new AdaptiveBatchSize();
+		size.executed( 100, 100 * 100000, 1000000 );
+		assertThat( size.getSize() ).isEqualTo( (int)( AdaptiveBatchSize.MAXIMUM_BYTES / 100000 ) );
+		size.executed( 41, 41 * 10000000L, 1000000 );
+		assertThat( size.getSize() ).isEqualTo( AdaptiveBatchSize.MINIMUM );
+	}
+
+	@Test
+	public void testImportFilesKeptOpen() throws SQLException
+	{
+		TestUtil.dropHSQLDBSchema( Setup.defaultdb, "sa", null );
+		UpgradeProcessor processor = Setup.setupUpgradeProcessor( "testpatch-import-batch-auto.sql" );
+		try
+		{
+			processor.upgrade( "1" );
+
+			// More records with large files than the maximum number of open files
+			byte[] picture = new byte[ 20000 ];
+			Arrays.fill( picture, (byte)7 );
+			PreparedStatement statement = processor.prepareStatement( "INSERT INTO TEMP1 ( ID, PICTURE ) VALUES ( ?, ? )" );
+			for( int i = 1; i <= 150; i++ )
+			{
+				statement.setInt( 1, i );
+				statement.setBytes( 2, picture );
+				statement.execute();
+			}
+			processor.closeStatement( statement, true );
+
+			processor.upgrade( "2" );
+			TestUtil.assertRecordCount( processor.getCurrentDatabase(), "TEMP2", 150 );
+			TestUtil.assertQueryResultEquals( processor, "SELECT COUNT(*) FROM TEMP2 WHERE OCTET_LENGTH( PICTURE ) = 20000", 150L );
+			TestUtil.assertRecordCount( processor.getCurrentDatabase(), "TEMP3", 3 );
+		}
+		finally
+		{
+			processor.end();
+		}
+	}
+}
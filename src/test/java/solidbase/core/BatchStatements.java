@@ -0,0 +1,77 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
+import java.sql.SQLException;
+
+import org.testng.annotations.Test;
+
+public class BatchStatements
+{
+	@Test
+	public void testUpgrade() throws SQLException
+	{
+		TestUtil.dropHSQLDBSchema( Setup.defaultdb, "sa", null );
+		UpgradeProcessor patcher = Setup.setupUpgradeProcessor( "testpatch-batch-statements-1.sql" );
+		try
+		{
+			patcher.upgrade( "1" );
+			failBecauseExceptionWasNotThrown( ProcessException.class );
+		}
+		catch( ProcessException e )
+		{
+			assertThat( e.getMessage() ).contains( "TEMPX" );
+			// The statement before the failing statement in the batch is committed and recorded
+			TestUtil.verifyVersion( patcher, null, "1", 8, "1.1" );
+			TestUtil.assertRecordCount( patcher.getCurrentDatabase(), "TEMP", 6 );
+			TestUtil.assertQueryResultEquals( patcher, "SELECT COUNT(*) FROM DBVERSIONLOG", 9L );
+			TestUtil.assertQueryResultEquals( patcher, "SELECT COUNT(*) FROM DBVERSIONLOG WHERE RESULT IS NOT NULL", 2L );
+		}
+		finally
+		{
+			patcher.end();
+		}
+
+		patcher = Setup.setupUpgradeProcessor( "testpatch-batch-statements-2.sql" );
+		try
+		{
+			patcher.upgrade( "1" );
+			TestUtil.verifyVersion( patcher, "1", null, 11, "1.1" );
+			TestUtil.assertRecordCount( patcher.getCurrentDatabase(), "TEMP", 9 );
+			TestUtil.assertQueryResultEquals( patcher, "SELECT COUNT(*) FROM DBVERSIONLOG", 13L );
+		}
+		finally
+		{
+			patcher.end();
+		}
+	}
+
+	@Test
+	public void testSql() throws SQLException
+	{
+		TestUtil.dropHSQLDBSchema( Setup.defaultdb, "sa", null );
+		SQLProcessor processor = Setup.setupSQLProcessor( "testsql-batch-statements.sql" );
+
+		processor.process();
+		processor.end();
+
+		TestUtil.assertRecordCount( processor.getCurrentDatabase(), "TEMP", 6 );
+	}
+}
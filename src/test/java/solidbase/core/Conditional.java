@@ -23,6 +23,7 @@ import org.testng.annotations.Test;
 public class Conditional
 {
 	static private final String db = "jdbc:hsqldb:mem:testConditional";
+	static private final String db2 = "jdbc:hsqldb:mem:testConditional2";
 
 	@Test
 	public void testIfHistoryContains1() throws SQLException
@@ -46,4 +47,45 @@ public class Conditional
 
 		patcher.end();
 	}
+
+	@Test
+	public void testIfHistoryContainsDowngrade() throws SQLException
+	{
+		ifHistoryContainsDowngrade( "testpatch-conditional3.sql", "1.1" );
+	}
+
+	@Test
+	public void testIfHistoryContainsDowngradeSpec10() throws SQLException
+	{
+		ifHistoryContainsDowngrade( "testpatch-conditional4.sql", null );
+	}
+
+	private void ifHistoryContainsDowngrade( String fileName, String spec ) throws SQLException
+	{
+		TestUtil.dropHSQLDBSchema( db2, "sa", null );
+		UpgradeProcessor patcher = Setup.setupUpgradeProcessor( fileName, db2 );
+
+		patcher.upgrade( "1.0.1" );
+		TestUtil.verifyHistoryIncludes( patcher, "1.0.1" );
+		TestUtil.verifyHistoryNotIncludes( patcher, "1.0.2" );
+
+		patcher.upgrade( "1.0.2" );
+		TestUtil.verifyVersion( patcher, "1.0.2", null, 3, spec );
+		TestUtil.verifyHistoryIncludes( patcher, "1.0.2" );
+
+		patcher.upgrade( "1.0.1", true );
+		TestUtil.verifyVersion( patcher, "1.0.1", null, 3, spec );
+		TestUtil.verifyHistoryIncludes( patcher, "1.0.1" );
+		TestUtil.verifyHistoryNotIncludes( patcher, "1.0.2" );
+
+		patcher.upgrade( "1.0.3" );
+		TestUtil.verifyVersion( patcher, "1.0.3", null, 3, spec );
+		TestUtil.verifyHistoryIncludes( patcher, "1.0.2" );
+		TestUtil.verifyHistoryIncludes( patcher, "1.0.3" );
+
+		TestUtil.assertQueryResultEquals( patcher, "SELECT GROUP_CONCAT( SEGMENT || ':' || VERSION ORDER BY ID SEPARATOR ',' ) FROM SEEN",
+				"1.0.2:1.0.1,down:1.0.1,down:1.0.2,1.0.2:1.0.1,1.0.3:1.0.1,1.0.3:1.0.2" );
+
+		patcher.end();
+	}
 }
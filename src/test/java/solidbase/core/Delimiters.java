@@ -16,6 +16,9 @@
 
 package solidbase.core;
 
+import java.util.Arrays;
+import java.util.regex.Matcher;
+
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -33,4 +36,28 @@ public class Delimiters
 		assert command != null;
 		Assert.assertEquals( command.getCommand(), "COMMAND\n" );
 	}
+
+	@Test
+	public void testLiteralMatch()
+	{
+		String[] lines = { "", " ", "GO", " GO ", "GOGO", "x GO", "x GO ", "GO x", "GO  x  ", "xGOy GO z", "x;", "x;;", "x; ", "x ; y", ";",
+				" \t; \f", "x\u2028;", "x;\u2028", "\u2028GO", "x\u0085GO y", "G", "O", "^", "x^", "^^", "--;", "x\u000B;\u000B" };
+		for( Type type : Type.values() )
+			for( String text : new String[] { "GO", ";", "^", ";;" } )
+			{
+				Delimiter delimiter = new Delimiter( text, type );
+				for( String line : lines )
+				{
+					String[] expected = null;
+					Matcher matcher = delimiter.pattern.matcher( line );
+					if( matcher.matches() )
+					{
+						expected = new String[ 2 ];
+						for( int i = 0; i < matcher.groupCount(); i++ )
+							expected[ i ] = matcher.group( i + 1 );
+					}
+					Assert.assertEquals( delimiter.match( line ), expected, delimiter + " [" + line + "] " + Arrays.toString( expected ) );
+				}
+			}
+	}
 }
@@ -0,0 +1,78 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.testng.annotations.Test;
+
+public class DriverCalls
+{
+	@Test
+	public void testAutoCommit() throws SQLException
+	{
+		TestUtil.dropHSQLDBSchema( Setup.defaultdb, "sa", null );
+		SQLProcessor processor = Setup.setupSQLProcessor( "testsql1.sql" );
+		processor.process();
+
+		Database database = processor.getDefaultDatabase();
+		assertThat( database.getSavedDriverCalls() ).isGreaterThan( 0 );
+
+		Connection connection = database.getConnection();
+		database.setAutoCommit( connection, true );
+		int saved = database.getSavedDriverCalls();
+		database.setAutoCommit( connection, true );
+		assertThat( connection.getAutoCommit() ).isTrue();
+		database.setAutoCommit( connection, false );
+		assertThat( connection.getAutoCommit() ).isFalse();
+		assertThat( database.getSavedDriverCalls() ).isEqualTo( saved + 1 );
+
+		processor.end();
+	}
+
+	@Test
+	public void testStatistics() throws SQLException
+	{
+		final StringBuilder statistics = new StringBuilder();
+		ProgressListener listener = new ProgressListener()
+		{
+			@Override
+			public void cr()
+			{
+			}
+
+			@Override
+			public void println( String message )
+			{
+			}
+
+			@Override
+			protected void statistics( String message )
+			{
+				statistics.append( message );
+			}
+		};
+
+		Database database = new Database( "default", "org.hsqldb.jdbcDriver", Setup.defaultdb, "sa", "", listener );
+		database.setAutoCommit( database.getVersionTablesConnection(), false ); // Already done by the database
+		database.closeConnections();
+		assertThat( statistics.toString() ).isEqualTo( "Database default: 1 driver calls saved" );
+	}
+}
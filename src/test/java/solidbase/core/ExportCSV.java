@@ -147,4 +147,23 @@ public class ExportCSV
 
 		processor.end();
 	}
+
+	@Test
+	public void testExportParallel() throws SQLException
+	{
+		TestUtil.dropHSQLDBSchema( Setup.defaultdb, "sa", null );
+		UpgradeProcessor processor = Setup.setupUpgradeProcessor( "testpatch-export-parallel.sql" );
+		try
+		{
+			processor.upgrade( "1" );
+			// 97 records exported 4 times, 1 with a null in the split column
+			TestUtil.assertRecordCount( processor.getCurrentDatabase(), "TEMP2", 388 );
+			TestUtil.assertQueryResultEquals( processor, "SELECT SUM( ID ) FROM TEMP2", 18624L );
+			TestUtil.assertQueryResultEquals( processor, "SELECT COUNT(*) FROM TEMP2 WHERE ID IS NULL", 4L );
+		}
+		finally
+		{
+			processor.end();
+		}
+	}
 }
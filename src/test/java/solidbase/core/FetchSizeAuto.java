@@ -0,0 +1,87 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.SQLException;
+import java.sql.Types;
+
+import org.testng.annotations.Test;
+
+import solidbase.core.plugins.Column;
+import solidbase.core.plugins.FetchSize;
+
+public class FetchSizeAuto
+{
+	@Test
+	public void testFetchSize()
+	{
+		// Narrow rows are limited by the maximum
+		Column text = new Column( "TEXT", Types.VARCHAR, null, null );
+		text.setSize( 40 );
+		assertThat( FetchSize.forColumns( new Column[] { new Column( "ID", Types.INTEGER, null, null ), text } ) ).isEqualTo( FetchSize.MAXIMUM );
+
+		// Values of unknown size count as large values
+		Column[] clobs = new Column[ 10 ];
+		for( int i = 0; i < clobs.length; i++ )
+			clobs[ i ] = new Column( "CLOB" + i, Types.CLOB, null, null );
+		assertThat( FetchSize.forColumns( clobs ) ).isEqualTo( (int)( FetchSize.BUDGET / ( 16 + 10 * 8040 ) ) );
+
+		clobs = new Column[ 1000 ];
+		for( int i = 0; i < clobs.length; i++ )
+			clobs[ i ] = new Column( "CLOB" + i, Types.CLOB, null, null );
+		assertThat( FetchSize.forColumns( clobs ) ).isEqualTo( FetchSize.MINIMUM );
+
+		assertThat( FetchSize.forStatement( FetchSize.AUTO ) ).isEqualTo( FetchSize.INITIAL );
+		assertThat( FetchSize.forStatement( 500 ) ).isEqualTo( 500 );
+	}
+
+	@Test
+	public void testExportFetchSize() throws SQLException
+	{
+		TestUtil.dropHSQLDBSchema( Setup.defaultdb, "sa", null );
+		UpgradeProcessor processor = Setup.setupUpgradeProcessor( "testpatch-export-fetch-size.sql" );
+		try
+		{
+			processor.upgrade( "1" );
+			TestUtil.assertRecordCount( processor.getCurrentDatabase(), "TEMP2", 384 );
+			TestUtil.assertQueryResultEquals( processor, "SELECT COUNT(*) FROM ( SELECT ID, TEXT FROM TEMP2 EXCEPT SELECT ID, TEXT FROM TEMP )", 0L );
+			assertThat( processor.getContext().getFetchSize() ).isEqualTo( FetchSize.AUTO );
+		}
+		finally
+		{
+			processor.end();
+		}
+	}
+
+	@Test
+	public void testExportAutoCommit() throws SQLException
+	{
+		TestUtil.dropHSQLDBSchema( Setup.defaultdb, "sa", null );
+		SQLProcessor processor = Setup.setupSQLProcessor( "testsql-export-fetch-size.sql" );
+		try
+		{
+			processor.process();
+			assertThat( processor.getCurrentDatabase().getConnection().getAutoCommit() ).isTrue();
+		}
+		finally
+		{
+			processor.end();
+		}
+	}
+}
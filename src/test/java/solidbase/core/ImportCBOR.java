@@ -104,6 +104,51 @@ public class ImportCBOR
 		patcher.end();
 	}
 
+	@Test
+	public void testImportCBORPipeline() throws SQLException
+	{
+		TestUtil.dropHSQLDBSchema( Setup.defaultdb, "sa", null );
+		UpgradeProcessor patcher = Setup.setupUpgradeProcessor( "testpatch-import-pipeline.sql" );
+		try
+		{
+			patcher.upgrade( "1" );
+			TestUtil.assertRecordCount( patcher.getCurrentDatabase(), "TEMP3", 96 );
+			TestUtil.assertQueryResultEquals( patcher, "SELECT SUM( TEMP1 ) FROM TEMP3", 384L );
+
+			try
+			{
+				patcher.upgrade( "3" );
+				failBecauseExceptionWasNotThrown( ProcessException.class );
+			}
+			catch( ProcessException e )
+			{
+				assertThat( e.getMessage() ).contains( "integrity constraint violation" ).contains( "line 84" );
+			}
+		}
+		finally
+		{
+			patcher.end();
+		}
+	}
+
+	@Test
+	public void testImportCBORTypes() throws SQLException
+	{
+		TestUtil.dropHSQLDBSchema( Setup.defaultdb, "sa", null );
+		UpgradeProcessor patcher = Setup.setupUpgradeProcessor( "testpatch-import-cbor4.sql" );
+		try
+		{
+			patcher.upgrade( "1" );
+			TestUtil.assertRecordCount( patcher.getCurrentDatabase(), "TEMP2", 12 );
+			TestUtil.assertQueryResultEquals( patcher, "SELECT COUNT(*) FROM ( SELECT * FROM TEMP1 EXCEPT SELECT * FROM TEMP2 )", 0L );
+			TestUtil.assertQueryResultEquals( patcher, "SELECT COUNT(*) FROM TEMP2 WHERE BIG = -10000000000 AND FLAG = FALSE AND TEXT = 'two'", 4L );
+		}
+		finally
+		{
+			patcher.end();
+		}
+	}
+
 	@Test
 	static public void testImportCBORProgress() throws SQLException
 	{
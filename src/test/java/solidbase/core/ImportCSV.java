@@ -23,6 +23,7 @@ import java.sql.SQLException;
 
 import org.testng.annotations.Test;
 
+import solidbase.test.mocks.MockBulkLoader;
 import solidstack.io.SourceException;
 
 public class ImportCSV
@@ -106,6 +107,135 @@ public class ImportCSV
 		patcher.end();
 	}
 
+	@Test
+	public void testImportCSVParallel() throws SQLException
+	{
+		TestUtil.dropHSQLDBSchema( Setup.defaultdb, "sa", null );
+		UpgradeProcessor patcher = Setup.setupUpgradeProcessor( "testpatch-import-csv4.sql" );
+		try
+		{
+			patcher.upgrade( "1" );
+			TestUtil.assertRecordCount( patcher.getCurrentDatabase(), "TEMP2", 192 );
+			TestUtil.assertQueryResultEquals( patcher, "SELECT SUM( TEMP1 ) FROM TEMP2", 768L );
+
+			try
+			{
+				patcher.upgrade( "2" );
+				failBecauseExceptionWasNotThrown( ProcessException.class );
+			}
+			catch( ProcessException e )
+			{
+				assertThat( e.getMessage() ).contains( "line 71" );
+			}
+			TestUtil.assertRecordCount( patcher.getCurrentDatabase(), "TEMP3", 0 );
+		}
+		finally
+		{
+			patcher.end();
+		}
+	}
+
+	@Test
+	public void testImportCSVPipeline() throws SQLException
+	{
+		TestUtil.dropHSQLDBSchema( Setup.defaultdb, "sa", null );
+		UpgradeProcessor patcher = Setup.setupUpgradeProcessor( "testpatch-import-pipeline.sql" );
+		try
+		{
+			patcher.upgrade( "1" );
+			TestUtil.assertRecordCount( patcher.getCurrentDatabase(), "TEMP2", 96 );
+			TestUtil.assertQueryResultEquals( patcher, "SELECT SUM( TEMP1 ) FROM TEMP2", 384L );
+
+			try
+			{
+				patcher.upgrade( "2" );
+				failBecauseExceptionWasNotThrown( ProcessException.class );
+			}
+			catch( ProcessException e )
+			{
+				assertThat( e.getMessage() ).contains( "line 73" );
+			}
+			TestUtil.assertRecordCount( patcher.getCurrentDatabase(), "TEMP4", 0 );
+		}
+		finally
+		{
+			patcher.end();
+		}
+	}
+
+	@Test
+	public void testImportCSVBulk() throws SQLException
+	{
+		// The MockBulkLoader only accepts its own database, the default database gets INSERTs
+		for( String url : new String[] { MockBulkLoader.URL, Setup.defaultdb } )
+		{
+			int loads = MockBulkLoader.loads;
+			TestUtil.dropHSQLDBSchema( url, "sa", null );
+			UpgradeProcessor patcher = Setup.setupUpgradeProcessor( "testpatch-import-bulk.sql", url );
+			try
+			{
+				patcher.upgrade( "1" );
+				TestUtil.assertRecordCount( patcher.getCurrentDatabase(), "TEMP", 3 );
+				TestUtil.assertQueryResultEquals( patcher, "SELECT TEMP2 FROM TEMP WHERE TEMP1 = 1", "back\\slash" );
+				TestUtil.assertQueryResultEquals( patcher, "SELECT TEMP3 FROM TEMP WHERE TEMP1 = 1", "tab\ttab" );
+				TestUtil.assertQueryResultEquals( patcher, "SELECT TEMP2 FROM TEMP WHERE TEMP1 = 2", null );
+				TestUtil.assertQueryResultEquals( patcher, "SELECT TEMP3 FROM TEMP WHERE TEMP1 = 2", "multi\r\nline" );
+				TestUtil.assertQueryResultEquals( patcher, "SELECT TEMP2 FROM TEMP WHERE TEMP1 = 3", "\\N" );
+				assertThat( MockBulkLoader.loads - loads ).isEqualTo( url == MockBulkLoader.URL ? 2 : 0 );
+
+				patcher.upgrade( "2" );
+				TestUtil.assertRecordCount( patcher.getCurrentDatabase(), "TEMP", 5 );
+				assertThat( MockBulkLoader.loads - loads ).isEqualTo( url == MockBulkLoader.URL ? 2 : 0 );
+
+				// The first two records are loaded, then INSERTs take over
+				patcher.upgrade( "3" );
+				TestUtil.assertRecordCount( patcher.getCurrentDatabase(), "TEMP2", 4 );
+				TestUtil.assertQueryResultEquals( patcher, "SELECT COUNT(*) FROM TEMP2 WHERE PICTURE IS NOT NULL", 1L );
+				assertThat( MockBulkLoader.loads - loads ).isEqualTo( url == MockBulkLoader.URL ? 3 : 0 );
+			}
+			finally
+			{
+				patcher.end();
+			}
+		}
+	}
+
+	@Test
+	public void testImportCSVFile() throws SQLException
+	{
+		TestUtil.dropHSQLDBSchema( Setup.defaultdb, "sa", null );
+		UpgradeProcessor patcher = Setup.setupUpgradeProcessor( "testpatch-import-csv5.sql" );
+		try
+		{
+			patcher.upgrade( "1" );
+			TestUtil.assertRecordCount( patcher.getCurrentDatabase(), "TEMP5", 3 );
+			TestUtil.assertQueryResultEquals( patcher, "SELECT NAME FROM TEMP5 WHERE ID = 1", "Jan" );
+			TestUtil.assertQueryResultEquals( patcher, "SELECT REMARK FROM TEMP5 WHERE ID = 1", "multi\r\nline" );
+			TestUtil.assertQueryResultEquals( patcher, "SELECT NAME FROM TEMP5 WHERE ID = 2", "René \"the\" man" );
+			TestUtil.assertQueryResultEquals( patcher, "SELECT REMARK FROM TEMP5 WHERE ID = 2", null );
+			TestUtil.assertQueryResultEquals( patcher, "SELECT NAME FROM TEMP5 WHERE ID = 3", null );
+			TestUtil.assertQueryResultEquals( patcher, "SELECT REMARK FROM TEMP5 WHERE ID = 3", "  spaced  " );
+
+			// Gzipped, so not memory mapped, and starts with a BOM
+			TestUtil.assertRecordCount( patcher.getCurrentDatabase(), "TEMP7", 2 );
+			TestUtil.assertQueryResultEquals( patcher, "SELECT NAME FROM TEMP7 WHERE ID = 2", "René" );
+
+			try
+			{
+				patcher.upgrade( "2" );
+				failBecauseExceptionWasNotThrown( SourceException.class );
+			}
+			catch( SourceException e )
+			{
+				assertThat( e.getMessage() ).contains( "not 'x'" ).contains( "import-csv5-error.csv" ).contains( "at line 2" );
+			}
+		}
+		finally
+		{
+			patcher.end();
+		}
+	}
+
 	@Test
 	static public void testImportCSVProgress() throws SQLException
 	{
@@ -114,4 +114,36 @@ public class ImportJSON
 		patcher.upgrade( "1" );
 		patcher.end();
 	}
+
+	@Test
+	public void testImportJSONTypes() throws SQLException
+	{
+		TestUtil.dropHSQLDBSchema( Setup.defaultdb, "sa", null );
+		UpgradeProcessor patcher = Setup.setupUpgradeProcessor( "testpatch-import-json4.sql" );
+
+		patcher.upgrade( "2" );
+		TestUtil.assertRecordCount( patcher.getCurrentDatabase(), "TEMP", 5 );
+		TestUtil.assertQueryResultEquals( patcher, "SELECT BIG FROM TEMP WHERE ID = 1", Long.MAX_VALUE );
+		TestUtil.assertQueryResultEquals( patcher, "SELECT BIG FROM TEMP WHERE ID = -2", Long.MIN_VALUE );
+		TestUtil.assertQueryResultEquals( patcher, "SELECT NAME FROM TEMP WHERE ID = -2", "two \"2\" \u00E9\u00C9" );
+		TestUtil.assertQueryResultEquals( patcher, "SELECT RATIO FROM TEMP WHERE ID = -2", 1000.0 );
+		TestUtil.assertQueryResultEquals( patcher, "SELECT BIG FROM TEMP WHERE ID = 3", 30L );
+		TestUtil.assertQueryResultEquals( patcher, "SELECT FLAG FROM TEMP WHERE ID = 3", true );
+		TestUtil.assertQueryResultEquals( patcher, "SELECT BIG FROM TEMP WHERE ID = 4", 40L );
+		TestUtil.assertQueryResultEquals( patcher, "SELECT FLAG FROM TEMP WHERE ID = 4", true );
+		TestUtil.assertQueryResultEquals( patcher, "SELECT AMOUNT FROM TEMP WHERE ID = 4", null );
+		TestUtil.assertQueryResultEquals( patcher, "SELECT COUNT(*) FROM TEMP WHERE ID IS NULL AND NAME IS NULL", 1L );
+
+		try
+		{
+			patcher.upgrade( "3" );
+			failBecauseExceptionWasNotThrown( SourceException.class );
+		}
+		catch( SourceException e )
+		{
+			assertThat( e.getMessage() ).contains( "Can't convert '6.5' to INTEGER for field ID" ).contains( "at line 63" );
+		}
+
+		patcher.end();
+	}
 }
@@ -0,0 +1,136 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
+import java.sql.SQLException;
+
+import org.testng.annotations.Test;
+
+import solidbase.core.plugins.Column;
+import solidbase.core.plugins.ParallelDBWriter;
+import solidbase.core.plugins.PipelinedRecordSink;
+import solidbase.core.plugins.RecordLocator;
+import solidbase.core.plugins.RecordSink;
+import solidstack.io.SourceLocation;
+
+public class ImportPipeline
+{
+	@Test(timeOut=10000)
+	public void testWorkerError() throws SQLException
+	{
+		RecordSink sink = new RecordSink()
+		{
+			@Override
+			public void init( Column[] columns )
+			{
+			}
+
+			@Override
+			public void start()
+			{
+			}
+
+			@Override
+			public void process( Object[] record )
+			{
+				throw new Error( "Worker died" );
+			}
+
+			@Override
+			public void end()
+			{
+				throw new AssertionError( "end() should not be called" );
+			}
+		};
+		RecordLocator locator = new RecordLocator()
+		{
+			@Override
+			public SourceLocation getLocation()
+			{
+				return null;
+			}
+		};
+
+		PipelinedRecordSink pipeline = new PipelinedRecordSink( sink, 1, locator );
+		pipeline.start();
+		try
+		{
+			// Without the failure check the reader would block forever once the queue is full
+			for( int i = 0; i < 100; i++ )
+				pipeline.process( new Object[] { i } );
+			pipeline.end();
+			failBecauseExceptionWasNotThrown( Error.class );
+		}
+		catch( Error e )
+		{
+			assertThat( e.getMessage() ).isEqualTo( "Worker died" );
+		}
+		finally
+		{
+			pipeline.close();
+		}
+	}
+
+	@Test(timeOut=10000)
+	public void testParallelWorkerError() throws SQLException
+	{
+		TestUtil.dropHSQLDBSchema( Setup.defaultdb, "sa", null );
+		UpgradeProcessor processor = Setup.setupUpgradeProcessor( "testpatch-import-bulk.sql" );
+		processor.upgrade( "1" );
+
+		RecordLocator locator = new RecordLocator()
+		{
+			@Override
+			public SourceLocation getLocation()
+			{
+				return null;
+			}
+		};
+		Object value = new Object()
+		{
+			@Override
+			public String toString()
+			{
+				throw new Error( "Worker died" );
+			}
+		};
+
+		ParallelDBWriter writer = new ParallelDBWriter( null, "TEMP", new String[] { "TEMP2" }, null, 0, false, processor, 2, locator );
+		writer.init( null );
+		try
+		{
+			// Without the failure check the reader would block forever once all workers died
+			for( int i = 0; i < 1000; i++ )
+				writer.process( new Object[] { value } );
+			writer.end();
+			failBecauseExceptionWasNotThrown( Error.class );
+		}
+		catch( Error e )
+		{
+			assertThat( e.getMessage() ).isEqualTo( "Worker died" );
+		}
+		finally
+		{
+			writer.close( true );
+		}
+		TestUtil.assertRecordCount( processor.getCurrentDatabase(), "TEMP", 3 );
+		processor.end();
+	}
+}
@@ -0,0 +1,93 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
+import java.sql.SQLException;
+
+import org.testng.annotations.Test;
+
+import solidstack.io.SourceException;
+
+public class ParallelStatements
+{
+	@Test
+	public void testUpgrade() throws SQLException
+	{
+		TestUtil.dropHSQLDBSchema( Setup.defaultdb, "sa", null );
+		UpgradeProcessor patcher = Setup.setupUpgradeProcessor( "testpatch-parallel-statements.sql" );
+		try
+		{
+			patcher.upgrade( "1" );
+			failBecauseExceptionWasNotThrown( SourceException.class );
+		}
+		catch( SourceException e )
+		{
+			assertThat( e.getMessage() ).contains( "PARALLEL STATEMENTS is not allowed in an upgrade file" );
+			TestUtil.assertRecordCount( patcher.getCurrentDatabase(), "TEMP1", 0 );
+		}
+		finally
+		{
+			patcher.end();
+		}
+	}
+
+	@Test
+	public void testSql() throws SQLException
+	{
+		TestUtil.dropHSQLDBSchema( Setup.defaultdb, "sa", null );
+		SQLProcessor processor = Setup.setupSQLProcessor( "testsql-parallel-statements.sql" );
+		try
+		{
+			processor.process();
+			failBecauseExceptionWasNotThrown( ProcessException.class );
+		}
+		catch( ProcessException e )
+		{
+			assertThat( e.getMessage() ).contains( "TEMPX" );
+			// The statements in the same group are executed, the statements after the group are not
+			TestUtil.assertRecordCount( processor.getCurrentDatabase(), "TEMP1", 2 );
+			TestUtil.assertRecordCount( processor.getCurrentDatabase(), "TEMP2", 3 );
+		}
+		finally
+		{
+			processor.end();
+		}
+	}
+
+	@Test
+	public void testSqlTransactional() throws SQLException
+	{
+		TestUtil.dropHSQLDBSchema( Setup.defaultdb, "sa", null );
+		SQLProcessor processor = Setup.setupSQLProcessor( "testsql-parallel-statements2.sql" );
+		try
+		{
+			processor.process();
+			failBecauseExceptionWasNotThrown( SourceException.class );
+		}
+		catch( SourceException e )
+		{
+			assertThat( e.getMessage() ).contains( "PARALLEL STATEMENTS needs SET COMMIT_STRATEGY = AUTOCOMMIT" );
+		}
+		finally
+		{
+			processor.end();
+		}
+	}
+}
@@ -191,4 +191,39 @@ public class PatchFileTests
 
 		Assert.assertEquals( result, expected );
 	}
+
+	/**
+	 * Tests the upgrade path and the reachable versions in a long upgrade file with dead end branches.
+	 *
+	 * @throws IOException Whenever it needs to.
+	 */
+	@Test
+	public void testLongPath() throws IOException
+	{
+		RandomAccessSourceReader ralr = new RandomAccessSourceReader( new FileResource( "testpatch1.sql" ) );
+		UpgradeFile upgradeFile = new UpgradeFile( ralr );
+		upgradeFile.close();
+
+		Map< String, Collection< UpgradeSegment > > patches = upgradeFile.segments;
+		for( int i = 0; i < 2000; i++ )
+		{
+			put( patches, "1." + i, new UpgradeSegment( Type.UPGRADE, "1." + i, "1." + ( i + 1 ), false ) );
+			if( i % 10 == 0 )
+				put( patches, "1." + i, new UpgradeSegment( Type.UPGRADE, "1." + i, "2." + i, false ) ); // dead end
+		}
+		upgradeFile.versions.addAll( patches.keySet() );
+
+		Path path = upgradeFile.getUpgradePath( "1.0", "1.2000", false );
+		Assert.assertEquals( path.size(), 2000 );
+		Path path2 = upgradeFile.getUpgradePath( "1.0", "1.2000", false );
+		Assert.assertNotSame( path2, path );
+		Assert.assertEquals( path2.size(), 2000 );
+		Assert.assertNull( upgradeFile.getUpgradePath( "1.10", "2.0", false ) );
+
+		Set< String > result = new HashSet<>();
+		upgradeFile.collectTargets( "1.0", null, true, false, null, result );
+		Assert.assertEquals( result.size(), 201 );
+		Assert.assertTrue( result.contains( "1.2000" ) );
+		Assert.assertEquals( upgradeFile.getReachableVersions( "1.1990", null, false ).size(), 12 );
+	}
 }
@@ -0,0 +1,61 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core;
+
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
+import java.sql.SQLException;
+
+import org.testng.annotations.Test;
+
+public class ProgressCheckpoint
+{
+	@Test
+	public void testCheckpoint() throws SQLException
+	{
+		TestUtil.dropHSQLDBSchema( Setup.defaultdb, "sa", null );
+		UpgradeProcessor patcher = Setup.setupUpgradeProcessor( "testpatch-progress-checkpoint-1.sql" );
+		try
+		{
+			patcher.upgrade( "1" );
+			failBecauseExceptionWasNotThrown( ProcessException.class );
+		}
+		catch( ProcessException e )
+		{
+			// The progress must be written before the exception is rethrown
+			TestUtil.verifyVersion( patcher, null, "1", 6, "1.1" );
+			TestUtil.assertQueryResultEquals( patcher, "SELECT COUNT(*) FROM DBVERSIONLOG", 7L );
+		}
+		finally
+		{
+			patcher.end();
+		}
+
+		patcher = Setup.setupUpgradeProcessor( "testpatch-progress-checkpoint-2.sql" );
+		try
+		{
+			patcher.upgrade( "1" );
+			TestUtil.verifyVersion( patcher, "1", null, 8, "1.1" );
+			TestUtil.assertRecordCount( patcher.getCurrentDatabase(), "TEMP", 7 );
+			TestUtil.assertQueryResultEquals( patcher, "SELECT COUNT(*) FROM DBVERSIONLOG", 10L );
+		}
+		finally
+		{
+			patcher.end();
+		}
+	}
+}
@@ -0,0 +1,176 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import solidbase.core.Delimiter.Type;
+import solidstack.io.FileResource;
+import solidstack.io.SourceReaders;
+
+/**
+ * Reads a synthetic SQL file with large inline data statements and PL/SQL blocks, and compares the regular expression
+ * delimiter matching with the literal matching. Run as a main class, the optional argument is the size of the file in
+ * MB (default 1024).
+ */
+public class SQLSourceBenchmark
+{
+	static private final Charset UTF8 = Charset.forName( "UTF-8" );
+	static private final int WARMUP = 3;
+	static private final int RUNS = 5;
+
+	static public void main( String... args ) throws IOException
+	{
+		long size = ( args.length > 0 ? Long.parseLong( args[ 0 ] ) : 1024 ) * 1024 * 1024;
+
+		File file = File.createTempFile( "benchmark", ".sql" );
+		file.deleteOnExit();
+		generate( file, size );
+
+		long start = System.nanoTime();
+		int commands = read( file );
+		long time = System.nanoTime() - start;
+		System.out.println( "SQLSource: " + commands + " commands, " + size / 1024 / 1024 + " MB in " + time / 1000000 + " ms, " + size * 1000 / time + " MB/s" );
+
+		List<String> lines = sample( 100000 );
+		Delimiter[] delimiters = { new Delimiter( ";", Type.TRAILING ), new Delimiter( "/", Type.ISOLATED ), new Delimiter( "GO", Type.FREE ) };
+		for( Delimiter delimiter : delimiters )
+		{
+			for( int i = 0; i < WARMUP; i++ )
+			{
+				matchPattern( delimiter, lines );
+				match( delimiter, lines );
+			}
+
+			long pattern = 0;
+			long literal = 0;
+			for( int i = 0; i < RUNS; i++ )
+			{
+				start = System.nanoTime();
+				int patternMatches = matchPattern( delimiter, lines );
+				pattern += System.nanoTime() - start;
+				start = System.nanoTime();
+				int literalMatches = match( delimiter, lines );
+				literal += System.nanoTime() - start;
+				if( patternMatches != literalMatches )
+					throw new AssertionError( patternMatches + " <> " + literalMatches );
+			}
+
+			System.out.println( delimiter + ": regex " + pattern / RUNS / 1000000 + " ms, literal " + literal / RUNS / 1000000 + " ms" );
+		}
+	}
+
+	static private void generate( File file, long size ) throws IOException
+	{
+		Random random = new Random( 1 );
+		try( Writer out = new OutputStreamWriter( new FileOutputStream( file ), UTF8 ) )
+		{
+			long written = 0;
+			int i = 0;
+			while( written < size )
+			{
+				StringBuilder statement = new StringBuilder();
+				if( i++ % 10 == 0 )
+				{
+					// A PL/SQL block with ; inside, ended by an isolated /
+					statement.append( "--* DELIMITER ISOLATED /\n" );
+					statement.append( "CREATE OR REPLACE PACKAGE BODY P" ).append( i ).append( " AS\n" );
+					for( int j = 0; j < 2000; j++ )
+						statement.append( "  PROCEDURE X" ).append( j ).append( " IS BEGIN UPDATE T SET C = C + 1 WHERE ID = " ).append( j ).append( "; END;\n" );
+					statement.append( "END;\n/\n--* RESET DELIMITER\n" );
+				}
+				else
+				{
+					// A large inline data statement
+					statement.append( "INSERT INTO DATA ( ID, VALUE ) VALUES\n" );
+					for( int j = 0; j < 10000; j++ )
+						statement.append( "  ( " ).append( j ).append( ", 'value ; " ).append( random.nextInt() ).append( "' ),\n" );
+					statement.append( "  ( -1, NULL );\n" );
+				}
+				out.write( statement.toString() );
+				written += statement.length();
+			}
+		}
+	}
+
+	static private int read( File file ) throws IOException
+	{
+		SQLSource source = new SQLSource( SourceReaders.forResource( new FileResource( file ), "UTF-8" ) );
+		int count = 0;
+		try
+		{
+			for( Command command = source.readCommand(); command != null; command = source.readCommand() )
+			{
+				if( command.isAnnotation() )
+				{
+					if( command.getCommand().startsWith( "DELIMITER" ) )
+						source.setDelimiters( new Delimiter[] { new Delimiter( "/", Type.ISOLATED ) } );
+					else
+						source.setDelimiters( null );
+				}
+				count++;
+			}
+		}
+		finally
+		{
+			source.close();
+		}
+		return count;
+	}
+
+	static private List<String> sample( int count )
+	{
+		Random random = new Random( 1 );
+		List<String> result = new ArrayList<>( count );
+		for( int i = 0; i < count; i++ )
+		{
+			StringBuilder line = new StringBuilder( "  ( " ).append( i ).append( ", 'value ; " );
+			int length = random.nextInt( 200 );
+			for( int j = 0; j < length; j++ )
+				line.append( (char)( 'a' + random.nextInt( 26 ) ) );
+			line.append( i % 100 == 0 ? "' );" : "' )," );
+			result.add( line.toString() );
+		}
+		return result;
+	}
+
+	static private int matchPattern( Delimiter delimiter, List<String> lines )
+	{
+		int count = 0;
+		for( String line : lines )
+			if( delimiter.pattern.matcher( line ).matches() )
+				count++;
+		return count;
+	}
+
+	static private int match( Delimiter delimiter, List<String> lines )
+	{
+		int count = 0;
+		for( String line : lines )
+			if( delimiter.match( line ) != null )
+				count++;
+		return count;
+	}
+}
@@ -0,0 +1,116 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
+import java.sql.SQLException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import solidstack.io.Resources;
+import solidstack.io.SourceException;
+
+public class SegmentDependencies
+{
+	static private CyclicBarrier barrier;
+
+	/**
+	 * Called by the AWAIT_SEGMENT procedure. Only returns when 2 segments are waiting at the same time.
+	 */
+	static public void awaitSegment() throws Exception
+	{
+		barrier.await( 10, TimeUnit.SECONDS );
+	}
+
+	@Test
+	public void testConcurrent() throws SQLException
+	{
+		TestUtil.dropHSQLDBSchema( Setup.defaultdb, "sa", null );
+		barrier = new CyclicBarrier( 2 );
+
+		UpgradeProcessor patcher = Setup.setupUpgradeProcessor( "testpatch-segment-dependencies.sql" );
+		try
+		{
+			patcher.upgrade( "4" );
+			TestUtil.verifyVersion( patcher, "4", null, 0, "1.1" );
+			TestUtil.assertQueryResultEquals( patcher, "SELECT COUNT(*) FROM DBVERSIONLOG WHERE TYPE = 'B'", 4L );
+			TestUtil.assertQueryResultEquals( patcher, "SELECT TEMP3 FROM TEMP3", 3 );
+			TestUtil.assertQueryResultEquals( patcher, "SELECT COUNT(*) FROM DBVERSIONLOG WHERE TYPE = 'S'", 9L );
+		}
+		finally
+		{
+			patcher.end();
+		}
+	}
+
+	@Test
+	public void testRestart() throws SQLException
+	{
+		TestUtil.dropHSQLDBSchema( Setup.defaultdb, "sa", null );
+
+		UpgradeProcessor patcher = Setup.setupUpgradeProcessor( "testpatch-segment-dependencies-2.sql" );
+		try
+		{
+			patcher.upgrade( "4" );
+			failBecauseExceptionWasNotThrown( ProcessException.class );
+		}
+		catch( ProcessException e )
+		{
+			assertThat( e.getMessage() ).contains( "TEMPX" );
+			// "2" --> "3" is complete, but "1" --> "2" is not
+			TestUtil.verifyVersion( patcher, "1", null, 0, "1.1" );
+			TestUtil.assertQueryResultEquals( patcher, "SELECT COUNT(*) FROM DBVERSIONLOG WHERE TYPE = 'B' AND TARGET = '3'", 1L );
+		}
+		finally
+		{
+			patcher.end();
+		}
+
+		patcher = Setup.setupUpgradeProcessor( "testpatch-segment-dependencies-3.sql" );
+		try
+		{
+			patcher.upgrade( "4" );
+			TestUtil.verifyVersion( patcher, "4", null, 0, "1.1" );
+			// All segments have been executed concurrently, with connections of their own
+			Database database = patcher.getDefaultDatabase();
+			database.resetUser();
+			TestUtil.assertRecordCount( database, "TEMP1", 3 );
+		}
+		finally
+		{
+			patcher.end();
+		}
+	}
+
+	@Test
+	public void testDependencyAfterSegment()
+	{
+		try
+		{
+			Factory.openUpgradeFile( Resources.getResource( "testpatch-segment-dependencies-error.sql" ), new TestProgressListener() );
+			failBecauseExceptionWasNotThrown( SourceException.class );
+		}
+		catch( SourceException e )
+		{
+			assertThat( e.getMessage() ).contains( "Version \"3\" does not come before \"1\"" );
+		}
+	}
+}
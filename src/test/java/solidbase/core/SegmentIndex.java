@@ -0,0 +1,84 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.File;
+import java.sql.SQLException;
+
+import org.testng.annotations.Test;
+
+import solidstack.io.FileResource;
+
+public class SegmentIndex
+{
+	@Test
+	public void testSegmentIndex() throws SQLException
+	{
+		File file = new File( "testpatch-segment-index.sql" );
+		File index = new File( "testpatch-segment-index.idx" );
+		long modified = file.lastModified();
+		index.delete();
+		try
+		{
+			// Scanned, index written
+			UpgradeFile upgradeFile = Factory.openUpgradeFile( new FileResource( file ), new TestProgressListener() );
+			assert index.exists();
+			UpgradeSegment segment = upgradeFile.getSegment( "1", "2" );
+			assertEquals( segment.getLineNumber(), 37 );
+			assert segment.getOffset() > 0;
+			upgradeFile.close();
+
+			// Loaded from the index, the index is not written again
+			index.setLastModified( 0 );
+			upgradeFile = Factory.openUpgradeFile( new FileResource( file ), new TestProgressListener() );
+			assertEquals( index.lastModified(), 0 );
+			segment = upgradeFile.getSegment( "1", "2" );
+			assertEquals( segment.getLineNumber(), 37 );
+			assert segment.getOffset() > 0;
+			Command command = upgradeFile.gotoSegment( segment ).readCommand();
+			assertEquals( command.getCommand(), "INSERT INTO TEMP VALUES ( 2 )" );
+			assertEquals( command.getLocation().getLineNumber(), 39 );
+			upgradeFile.close();
+
+			// The upgrade file is changed, scanned again
+			file.setLastModified( modified - 10000 );
+			upgradeFile = Factory.openUpgradeFile( new FileResource( file ), new TestProgressListener() );
+			assert index.lastModified() != 0;
+			upgradeFile.close();
+
+			TestUtil.dropHSQLDBSchema( Setup.defaultdb, "sa", null );
+			UpgradeProcessor patcher = Setup.setupUpgradeProcessor( "testpatch-segment-index.sql" );
+			try
+			{
+				patcher.upgrade( "2" );
+				TestUtil.verifyVersion( patcher, "2", null, 2, "1.1" );
+				TestUtil.assertRecordCount( patcher.getCurrentDatabase(), "TEMP", 3 );
+			}
+			finally
+			{
+				patcher.end();
+			}
+		}
+		finally
+		{
+			file.setLastModified( modified );
+			index.delete();
+		}
+	}
+}
@@ -0,0 +1,50 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.testng.annotations.Test;
+
+public class StatementCaching
+{
+	@Test
+	public void testCache() throws SQLException
+	{
+		TestProgressListener progress = new TestProgressListener();
+		Database database = new Database( "default", "org.hsqldb.jdbcDriver", Setup.defaultdb, "sa", null, progress );
+		database.init();
+		Connection connection = database.getConnection();
+
+		PreparedStatement first = database.prepareCachedStatement( connection, "VALUES ( 0 )" );
+		assertThat( database.prepareCachedStatement( connection, "VALUES ( 0 )" ) ).isSameAs( first );
+
+		// Fill the cache, the first statement gets evicted and closed
+		for( int i = 1; i <= Database.STATEMENT_CACHE_SIZE; i++ )
+			database.prepareCachedStatement( connection, "VALUES ( " + i + " )" );
+		assertThat( first.isClosed() ).isTrue();
+		PreparedStatement second = database.prepareCachedStatement( connection, "VALUES ( 1 )" );
+		assertThat( second.isClosed() ).isFalse();
+
+		database.closeConnections();
+		assertThat( second.isClosed() ).isTrue();
+	}
+}
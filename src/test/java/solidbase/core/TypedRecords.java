@@ -0,0 +1,164 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.core;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import solidbase.core.plugins.Column;
+import solidbase.core.plugins.DefaultFromJDBCTransformer;
+import solidbase.core.plugins.Record;
+import solidbase.core.plugins.RecordSink;
+import solidbase.core.plugins.TypedRecordSink;
+
+public class TypedRecords
+{
+	@Test
+	public void testNulls()
+	{
+		Column[] columns = new Column[ 70 ];
+		for( int i = 0; i < columns.length; i++ )
+			columns[ i ] = new Column( "C" + i, i % 2 == 0 ? Types.INTEGER : Types.VARCHAR, null, null );
+		Record record = new Record( columns );
+
+		for( int i = 0; i < columns.length; i++ )
+			if( i % 3 == 0 )
+				record.setNull( i );
+			else if( i % 2 == 0 )
+				record.setInt( i, i );
+			else
+				record.setObject( i, "v" + i );
+
+		for( int i = 0; i < columns.length; i++ )
+			if( i % 3 == 0 )
+			{
+				assertTrue( record.isNull( i ) );
+				assertEquals( record.getObject( i ), null );
+			}
+			else
+			{
+				assertFalse( record.isNull( i ) );
+				assertEquals( record.getObject( i ), i % 2 == 0 ? (Object)i : "v" + i );
+			}
+
+		record.setInt( 66, 1 );
+		assertFalse( record.isNull( 66 ) );
+		assertEquals( record.toArray()[ 66 ], 1 );
+	}
+
+	@Test
+	public void testTransformer() throws SQLException
+	{
+		Connection connection = DriverManager.getConnection( "jdbc:hsqldb:mem:testTypedRecords", "sa", null );
+		try
+		{
+			Statement statement = connection.createStatement();
+			statement.execute( "CREATE TABLE TEMP ( I INTEGER, L BIGINT, D DOUBLE, B BOOLEAN, N DECIMAL(10,2), S VARCHAR(10) )" );
+			statement.execute( "INSERT INTO TEMP VALUES ( 1, 2, 3.5, TRUE, 4.25, 'five' )" );
+			statement.execute( "INSERT INTO TEMP VALUES ( 0, NULL, NULL, NULL, NULL, NULL )" );
+
+			final List<Object[]> typed = new ArrayList<>();
+			final List<Object[]> untyped = new ArrayList<>();
+			transform( statement, new CollectingSink()
+			{
+				@Override
+				public void process( Object[] record )
+				{
+					untyped.add( record );
+				}
+			} );
+			transform( statement, new TypedCollectingSink()
+			{
+				@Override
+				public void process( Record record )
+				{
+					typed.add( record.toArray() );
+				}
+			} );
+
+			assertEquals( typed.size(), 2 );
+			assertEquals( Arrays.asList( typed.get( 0 ) ), Arrays.asList( (Object)1, 2L, 3.5, true, new BigDecimal( "4.25" ), "five" ) );
+			assertEquals( Arrays.asList( typed.get( 1 ) ), Arrays.asList( (Object)0, null, null, null, null, null ) );
+			for( int i = 0; i < typed.size(); i++ )
+				assertEquals( Arrays.asList( typed.get( i ) ), Arrays.asList( untyped.get( i ) ) );
+		}
+		finally
+		{
+			connection.close();
+		}
+	}
+
+	static private void transform( Statement statement, RecordSink sink ) throws SQLException
+	{
+		ResultSet result = statement.executeQuery( "SELECT * FROM TEMP ORDER BY I DESC" );
+		ResultSetMetaData metaData = result.getMetaData();
+		Column[] columns = new Column[ metaData.getColumnCount() ];
+		for( int i = 0; i < columns.length; i++ )
+			columns[ i ] = new Column( metaData.getColumnName( i + 1 ), metaData.getColumnType( i + 1 ), null, null );
+
+		DefaultFromJDBCTransformer transformer = new DefaultFromJDBCTransformer();
+		transformer.setSink( sink );
+		transformer.init( columns );
+		transformer.start();
+		while( result.next() )
+			transformer.process( result );
+		transformer.end();
+		result.close();
+	}
+
+	static abstract class CollectingSink implements RecordSink
+	{
+		@Override
+		public void init( Column[] columns )
+		{
+		}
+
+		@Override
+		public void start()
+		{
+		}
+
+		@Override
+		public void end()
+		{
+		}
+	}
+
+	static abstract class TypedCollectingSink extends CollectingSink implements TypedRecordSink
+	{
+		@Override
+		public void process( Object[] record )
+		{
+			throw new AssertionError( "Expected typed records" );
+		}
+	}
+}
@@ -0,0 +1,120 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.test.mocks;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import solidbase.core.plugins.BulkInsert;
+import solidbase.core.plugins.BulkLoader;
+import solidbase.core.plugins.TextBulkInsert;
+
+
+// This mock BulkLoader simulates a database with a bulk load fast path, like PostgreSQL's COPY
+// It parses the text format of the TextBulkInsert back into records and inserts them with a JDBC batch
+public class MockBulkLoader implements BulkLoader
+{
+	static public final String URL = "jdbc:hsqldb:mem:testBulk";
+
+	static public int loads;
+	static public int records;
+
+	@Override
+	public boolean accepts( Connection connection ) throws SQLException
+	{
+		return URL.equals( connection.getMetaData().getURL() );
+	}
+
+	@Override
+	public BulkInsert newInsert( final Connection connection, final String tableName, final String[] columnNames )
+	{
+		return new TextBulkInsert()
+		{
+			@Override
+			protected void load( String data ) throws SQLException
+			{
+				loads++;
+				PreparedStatement statement = null;
+				for( String line : data.split( "\n" ) )
+				{
+					List<String> values = parse( line );
+					if( statement == null )
+						statement = connection.prepareStatement( insert( tableName, columnNames, values.size() ) );
+					for( int i = 0; i < values.size(); i++ )
+						statement.setString( i + 1, values.get( i ) );
+					statement.addBatch();
+					records++;
+				}
+				try
+				{
+					statement.executeBatch();
+				}
+				finally
+				{
+					statement.close();
+				}
+			}
+		};
+	}
+
+	static String insert( String tableName, String[] columnNames, int count )
+	{
+		StringBuilder result = new StringBuilder( "INSERT INTO " ).append( tableName );
+		if( columnNames != null )
+		{
+			result.append( " (" );
+			for( int i = 0; i < columnNames.length; i++ )
+				result.append( i > 0 ? "," : "" ).append( columnNames[ i ] );
+			result.append( ')' );
+		}
+		result.append( " VALUES (?" );
+		for( int i = 1; i < count; i++ )
+			result.append( ",?" );
+		return result.append( ')' ).toString();
+	}
+
+	static List<String> parse( String line )
+	{
+		List<String> result = new ArrayList<>();
+		for( String field : line.split( "\t", -1 ) )
+		{
+			if( field.equals( "\\N" ) )
+			{
+				result.add( null );
+				continue;
+			}
+			StringBuilder value = new StringBuilder();
+			for( int i = 0; i < field.length(); i++ )
+			{
+				char ch = field.charAt( i );
+				if( ch == '\\' )
+					switch( ch = field.charAt( ++i ) )
+					{
+						case 't': ch = '\t'; break;
+						case 'n': ch = '\n'; break;
+						case 'r': ch = '\r'; break;
+					}
+				value.append( ch );
+			}
+			result.add( value.toString() );
+		}
+		return result;
+	}
+}
@@ -42,4 +42,25 @@ public class Scripting
 			processor.end();
 		}
 	}
+
+	@Test
+	public void testCachedScripts() throws SQLException
+	{
+		// The second run uses the cached expressions and scripts
+		for( int i = 0; i < 2; i++ )
+		{
+			TestUtil.dropHSQLDBSchema( Setup.defaultdb, "sa", null );
+			SQLProcessor processor = Setup.setupSQLProcessor( "scripting/testsql-parameter1.sql" );
+			try
+			{
+				processor.process();
+				TestUtil.assertRecordCount( processor.getDefaultDatabase(), "TESTTEST", 1 );
+				TestUtil.assertRecordCount( processor.getDefaultDatabase(), "TESTTESTTEST", 1 );
+			}
+			finally
+			{
+				processor.end();
+			}
+		}
+	}
 }
@@ -0,0 +1,156 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.util;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.lang3.StringUtils;
+
+import solidstack.io.ReaderSourceReader;
+import solidstack.io.Resources;
+import solidstack.io.SourceLocation;
+
+/**
+ * Compares the {@link FastCSVReader} with the {@link CSVReader} on narrow and wide CSV data. Run as a main class.
+ */
+public class CSVReaderBenchmark
+{
+	static private final int WARMUP = 5;
+	static private final int RUNS = 10;
+
+	static public void main( String... args )
+	{
+		String narrow = generate( 1000000, 3 );
+		String wide = generate( 20000, 100 );
+
+		verify( narrow );
+		verify( wide );
+		verify( "1,\"" + StringUtils.repeat( "x\"\"\r\n", 50000 ) + "\"\n2," + StringUtils.repeat( 'y', 200000 ) + "\n" ); // Values larger than the window
+
+		run( "narrow", narrow );
+		run( "wide", wide );
+	}
+
+	static private String generate( int lines, int columns )
+	{
+		Random random = new Random( 1 );
+		StringBuilder result = new StringBuilder();
+		for( int i = 0; i < lines; i++ )
+		{
+			for( int j = 0; j < columns; j++ )
+			{
+				if( j > 0 )
+					result.append( ',' );
+				switch( j % 4 )
+				{
+					case 0:
+						result.append( i );
+						break;
+					case 1:
+						result.append( "\"value \"\"" ).append( random.nextInt( 1000 ) ).append( "\"\", quoted\"" );
+						break;
+					case 2:
+						if( random.nextBoolean() )
+							result.append( "plain value " ).append( random.nextInt() );
+						break;
+					default:
+						result.append( random.nextDouble() );
+				}
+			}
+			result.append( "\r\n" );
+		}
+		return result.toString();
+	}
+
+	static private SourceLocation location()
+	{
+		return SourceLocation.forText( Resources.getResource( "memory" ), 1 );
+	}
+
+	static private void verify( String data )
+	{
+		CSVReader reader = new CSVReader( new ReaderSourceReader( new StringReader( data ), location() ), ',', true, false );
+		FastCSVReader fastReader = new FastCSVReader( new StringReader( data ), location(), ',', true, false );
+		while( true )
+		{
+			String[] line = reader.getLine();
+			String[] fastLine = fastReader.getLine();
+			if( line == null )
+			{
+				if( fastLine != null )
+					throw new AssertionError( "Extra line" );
+				break;
+			}
+			for( int i = 0; i < line.length; i++ )
+				if( line[ i ].length() == 0 )
+					line[ i ] = null;
+			if( !Arrays.equals( line, fastLine ) )
+				throw new AssertionError( Arrays.toString( line ) + " <> " + Arrays.toString( fastLine ) );
+			if( reader.getLineNumber() != fastReader.getLineNumber() )
+				throw new AssertionError( "Line number " + reader.getLineNumber() + " <> " + fastReader.getLineNumber() );
+		}
+	}
+
+	static private void run( String name, String data )
+	{
+		for( int i = 0; i < WARMUP; i++ )
+		{
+			runCSVReader( data );
+			runFastCSVReader( data );
+		}
+
+		long csvReader = 0;
+		long fastCSVReader = 0;
+		for( int i = 0; i < RUNS; i++ )
+		{
+			long start = System.nanoTime();
+			runCSVReader( data );
+			csvReader += System.nanoTime() - start;
+			start = System.nanoTime();
+			runFastCSVReader( data );
+			fastCSVReader += System.nanoTime() - start;
+		}
+
+		System.out.println( name + ": CSVReader " + csvReader / RUNS / 1000000 + " ms, FastCSVReader " + fastCSVReader / RUNS / 1000000 + " ms" );
+	}
+
+	static private int runCSVReader( String data )
+	{
+		CSVReader reader = new CSVReader( new ReaderSourceReader( new StringReader( data ), location() ), ',', true, false );
+		int count = 0;
+		for( String[] line = reader.getLine(); line != null; line = reader.getLine() )
+		{
+			// Empty --> null, as done by the CSVDataReader
+			for( int i = 0; i < line.length; i++ )
+				if( line[ i ].length() == 0 )
+					line[ i ] = null;
+			count += line.length;
+		}
+		return count;
+	}
+
+	static private int runFastCSVReader( String data )
+	{
+		FastCSVReader reader = new FastCSVReader( new StringReader( data ), location(), ',', true, false );
+		int count = 0;
+		for( String[] line = reader.getLine(); line != null; line = reader.getLine() )
+			count += line.length;
+		return count;
+	}
+}
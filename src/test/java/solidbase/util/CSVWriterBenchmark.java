@@ -0,0 +1,181 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Compares the {@link FastCSVWriter} with the {@link CSVWriter} on an {@link OutputStreamWriter} on narrow and wide
+ * data. Run as a main class.
+ */
+public class CSVWriterBenchmark
+{
+	static private final int WARMUP = 5;
+	static private final int RUNS = 10;
+	static private final Charset UTF8 = Charset.forName( "UTF-8" );
+
+	static public void main( String... args )
+	{
+		Object[][] narrow = generate( 1000000, 3 );
+		Object[][] wide = generate( 20000, 100 );
+
+		verify( narrow, ',' );
+		verify( wide, ',' );
+		verify( wide, ';' );
+		verify( wide, '-' ); // Numbers need quotes
+		verify( new Object[][] { { "1", StringUtils.repeat( "x\"\"\r\n😀", 50000 ) }, { "2", StringUtils.repeat( '€', 200001 ) } }, ',' ); // Values larger than the buffer
+
+		run( "narrow", narrow );
+		run( "wide", wide );
+	}
+
+	static private Object[][] generate( int lines, int columns )
+	{
+		Random random = new Random( 1 );
+		Object[][] result = new Object[ lines ][];
+		for( int i = 0; i < lines; i++ )
+		{
+			Object[] line = result[ i ] = new Object[ columns ];
+			for( int j = 0; j < columns; j++ )
+				switch( j % 6 )
+				{
+					case 0:
+						line[ j ] = (long)i - lines / 2;
+						break;
+					case 1:
+						line[ j ] = "value \"" + random.nextInt( 1000 ) + "\", quoted";
+						break;
+					case 2:
+						if( random.nextBoolean() )
+							line[ j ] = "plain value " + random.nextInt();
+						break;
+					case 3:
+						Timestamp timestamp = new Timestamp( random.nextLong() % 4000000000000L );
+						if( random.nextBoolean() )
+							timestamp.setNanos( random.nextInt( 1000000000 ) );
+						line[ j ] = timestamp;
+						break;
+					case 4:
+						line[ j ] = random.nextBoolean() ? new java.sql.Date( random.nextLong() % 4000000000000L ) : new Time( random.nextLong() % 4000000000000L );
+						break;
+					default:
+						line[ j ] = new StringReader( "clob " + random.nextDouble() + "\n\"" );
+				}
+		}
+		return result;
+	}
+
+	static private void verify( Object[][] data, char separator )
+	{
+		byte[] expected = runCSVWriter( data, separator );
+		byte[] actual = runFastCSVWriter( data, separator );
+		if( !Arrays.equals( expected, actual ) )
+			throw new AssertionError( "Output differs for separator " + separator );
+	}
+
+	static private void run( String name, Object[][] data )
+	{
+		for( int i = 0; i < WARMUP; i++ )
+		{
+			runCSVWriter( data, ',' );
+			runFastCSVWriter( data, ',' );
+		}
+
+		long csvWriter = 0;
+		long fastCSVWriter = 0;
+		for( int i = 0; i < RUNS; i++ )
+		{
+			long start = System.nanoTime();
+			runCSVWriter( data, ',' );
+			csvWriter += System.nanoTime() - start;
+			start = System.nanoTime();
+			runFastCSVWriter( data, ',' );
+			fastCSVWriter += System.nanoTime() - start;
+		}
+
+		System.out.println( name + ": CSVWriter " + csvWriter / RUNS / 1000000 + " ms, FastCSVWriter " + fastCSVWriter / RUNS / 1000000 + " ms" );
+	}
+
+	static private byte[] runCSVWriter( Object[][] data, char separator )
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CSVWriter writer = new CSVWriter( new OutputStreamWriter( out, UTF8 ), separator );
+		for( Object[] line : data )
+		{
+			for( Object value : line )
+				if( value == null )
+					writer.writeValue( (String)null );
+				else if( value instanceof StringReader )
+					writer.writeValue( reset( (StringReader)value ) );
+				else
+					writer.writeValue( value.toString() );
+			writer.nextRecord();
+		}
+		writer.close();
+		return out.toByteArray();
+	}
+
+	static private byte[] runFastCSVWriter( Object[][] data, char separator )
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		FastCSVWriter writer = new FastCSVWriter( out, UTF8, separator );
+		for( Object[] line : data )
+		{
+			for( Object value : line )
+				if( value == null )
+					writer.writeValue( (String)null );
+				else if( value instanceof StringReader )
+					writer.writeValue( reset( (StringReader)value ) );
+				else if( value instanceof Long )
+					writer.writeValue( (long)(Long)value );
+				else if( value instanceof Timestamp )
+					writer.writeValue( (Timestamp)value );
+				else if( value instanceof java.sql.Date )
+					writer.writeValue( (java.sql.Date)value );
+				else if( value instanceof Time )
+					writer.writeValue( (Time)value );
+				else
+					writer.writeValue( (String)value );
+			writer.nextRecord();
+		}
+		writer.close();
+		return out.toByteArray();
+	}
+
+	static private StringReader reset( StringReader reader )
+	{
+		try
+		{
+			reader.reset();
+		}
+		catch( IOException e )
+		{
+			throw new AssertionError( e );
+		}
+		return reader;
+	}
+}
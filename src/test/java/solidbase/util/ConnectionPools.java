@@ -0,0 +1,204 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.testng.annotations.Test;
+
+public class ConnectionPools
+{
+	static private ConnectionPool createPool()
+	{
+		return new ConnectionPool( new DriverDataSource( "org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:pooldb", "sa", null ) );
+	}
+
+	@Test
+	public void testReuse() throws SQLException
+	{
+		ConnectionPool pool = createPool();
+
+		Connection connection = pool.getConnection();
+		connection.setAutoCommit( false );
+		try( Statement statement = connection.createStatement() )
+		{
+			statement.execute( "CREATE TABLE POOLTEST ( ID INTEGER )" );
+			statement.execute( "INSERT INTO POOLTEST VALUES ( 1 )" );
+		}
+		connection.close();
+		assertThat( connection.isClosed() ).isTrue();
+		try
+		{
+			connection.createStatement();
+			failBecauseExceptionWasNotThrown( SQLException.class );
+		}
+		catch( SQLException e )
+		{
+			assertThat( e.getMessage() ).isEqualTo( "Connection is closed" );
+		}
+
+		// Same physical connection, rolled back and back in auto commit mode
+		Connection connection2 = pool.getConnection();
+		assertThat( connection2 ).isNotSameAs( connection );
+		assertThat( connection2.getAutoCommit() ).isTrue();
+		try( Statement statement = connection2.createStatement() )
+		{
+			assertThat( statement.executeQuery( "SELECT COUNT(*) FROM POOLTEST" ).next() ).isTrue();
+			statement.execute( "DROP TABLE POOLTEST" );
+		}
+		connection2.close();
+
+		assertThat( pool.getCreated() ).isEqualTo( 1 );
+		assertThat( pool.getReused() ).isEqualTo( 1 );
+		assertThat( pool.getIdle() ).isEqualTo( 1 );
+
+		pool.close();
+		assertThat( pool.getOpen() ).isEqualTo( 0 );
+	}
+
+	@Test
+	public void testPassword() throws SQLException
+	{
+		ConnectionPool pool = createPool();
+
+		pool.getConnection( "sa", null ).close();
+		try
+		{
+			pool.getConnection( "sa", "wrong" );
+			failBecauseExceptionWasNotThrown( SQLException.class );
+		}
+		catch( SQLException e )
+		{
+			// The idle connection of sa is not handed out for another password
+		}
+		assertThat( pool.getReused() ).isEqualTo( 0 );
+
+		pool.getConnection( "sa", null ).close();
+		assertThat( pool.getReused() ).isEqualTo( 1 );
+
+		pool.close();
+	}
+
+	@Test
+	public void testSessionState() throws SQLException
+	{
+		ConnectionPool pool = createPool();
+
+		Connection connection = pool.getConnection();
+		String schema = connection.getSchema();
+		int isolation = connection.getTransactionIsolation();
+		connection.setReadOnly( true );
+		connection.setTransactionIsolation( Connection.TRANSACTION_SERIALIZABLE );
+		try( Statement statement = connection.createStatement() )
+		{
+			statement.execute( "SET SCHEMA INFORMATION_SCHEMA" );
+		}
+		assertThat( connection.getSchema() ).isNotEqualTo( schema );
+		connection.close();
+
+		connection = pool.getConnection();
+		assertThat( pool.getReused() ).isEqualTo( 1 );
+		assertThat( connection.isReadOnly() ).isFalse();
+		assertThat( connection.getTransactionIsolation() ).isEqualTo( isolation );
+		assertThat( connection.getSchema() ).isEqualTo( schema );
+		connection.close();
+
+		pool.close();
+	}
+
+	@Test
+	public void testOpenStatements() throws SQLException
+	{
+		ConnectionPool pool = createPool();
+
+		Connection connection = pool.getConnection();
+		Statement statement = connection.createStatement();
+		ResultSet result = statement.executeQuery( "SELECT * FROM INFORMATION_SCHEMA.SYSTEM_TABLES" );
+		assertThat( result.next() ).isTrue();
+		for( int i = 0; i < 100; i++ )
+			connection.createStatement().close();
+		connection.close();
+
+		// The next borrower does not inherit the open statement and its result set
+		assertThat( statement.isClosed() ).isTrue();
+		pool.getConnection().close();
+		assertThat( pool.getReused() ).isEqualTo( 1 );
+
+		pool.close();
+	}
+
+	@Test
+	public void testMaxSize() throws SQLException
+	{
+		ConnectionPool pool = createPool();
+		pool.setMaxSize( 2 );
+		pool.setWaitTimeout( 100 );
+
+		Connection connection1 = pool.getConnection();
+		Connection connection2 = pool.getConnection( "sa", null );
+		Connection connection3 = pool.getConnection();
+		try
+		{
+			pool.getConnection();
+			failBecauseExceptionWasNotThrown( SQLException.class );
+		}
+		catch( SQLException e )
+		{
+			assertThat( e.getMessage() ).startsWith( "Timed out waiting for a connection" );
+		}
+		assertThat( pool.getWaited() ).isEqualTo( 1 );
+
+		connection1.close();
+		pool.getConnection().close();
+		connection2.close();
+		connection3.close();
+		assertThat( pool.getCreated() ).isEqualTo( 3 );
+
+		// Connections returned after closing the pool are closed
+		connection1 = pool.getConnection();
+		pool.close();
+		connection1.close();
+		assertThat( pool.getOpen() ).isEqualTo( 0 );
+	}
+
+	@Test
+	public void testEvictionAndWarmUp() throws SQLException
+	{
+		ConnectionPool pool = createPool();
+		pool.warmUp( null, null, 3 );
+		assertThat( pool.getCreated() ).isEqualTo( 3 );
+		assertThat( pool.getIdle() ).isEqualTo( 3 );
+		pool.warmUp( null, null, 2 );
+		assertThat( pool.getCreated() ).isEqualTo( 3 );
+
+		pool.setValidateAfter( 0 );
+		pool.getConnection().close();
+		assertThat( pool.getReused() ).isEqualTo( 1 );
+		assertThat( pool.getInvalidated() ).isEqualTo( 0 );
+
+		pool.setMaxIdleTime( 0 );
+		pool.evictIdle();
+		assertThat( pool.getEvicted() ).isEqualTo( 3 );
+		assertThat( pool.getOpen() ).isEqualTo( 0 );
+	}
+}
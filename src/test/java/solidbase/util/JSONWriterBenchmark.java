@@ -0,0 +1,203 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.lang3.StringUtils;
+
+import solidstack.json.JSONArray;
+import solidstack.json.JSONObject;
+import solidstack.json.JSONWriter;
+
+/**
+ * Compares the {@link FastJSONWriter} with a {@link JSONArray} per record written by the {@link JSONWriter}, as the
+ * JSONDataWriter used to do, on narrow and wide data. Run as a main class.
+ */
+public class JSONWriterBenchmark
+{
+	static private final int WARMUP = 5;
+	static private final int RUNS = 10;
+	static private final Charset UTF8 = Charset.forName( "UTF-8" );
+
+	static public void main( String... args )
+	{
+		Object[][] narrow = generate( 1000000, 3 );
+		Object[][] wide = generate( 20000, 100 );
+
+		verify( narrow );
+		verify( wide );
+		StringBuilder all = new StringBuilder();
+		for( char c = 0; c < 0x3000; c++ )
+			all.append( c );
+		verify( new Object[][] { { all.toString(), all }, { StringUtils.repeat( "x\"\\\r\n😀", 50000 ), Long.MIN_VALUE } } ); // Values larger than the buffer
+
+		run( "narrow", narrow );
+		run( "wide", wide );
+	}
+
+	static private Object[][] generate( int lines, int columns )
+	{
+		Random random = new Random( 1 );
+		Object[][] result = new Object[ lines ][];
+		for( int i = 0; i < lines; i++ )
+		{
+			Object[] line = result[ i ] = new Object[ columns ];
+			for( int j = 0; j < columns; j++ )
+				switch( j % 8 )
+				{
+					case 0:
+						line[ j ] = random.nextBoolean() ? (Object)( i - lines / 2 ) : (Object)random.nextLong();
+						break;
+					case 1:
+						line[ j ] = "value \"" + random.nextInt( 1000 ) + "\",\tescaped\\";
+						break;
+					case 2:
+						if( random.nextBoolean() )
+							line[ j ] = "plain value " + random.nextInt();
+						break;
+					case 3:
+						Timestamp timestamp = new Timestamp( random.nextLong() % 4000000000000L );
+						if( random.nextBoolean() )
+							timestamp.setNanos( random.nextInt( 1000000000 ) );
+						line[ j ] = timestamp;
+						break;
+					case 4:
+						line[ j ] = random.nextBoolean() ? new java.sql.Date( random.nextLong() % 4000000000000L ) : new Time( random.nextLong() % 4000000000000L );
+						break;
+					case 5:
+						line[ j ] = random.nextBoolean() ? (Object)new BigDecimal( random.nextInt() ).movePointLeft( 2 ) : (Object)random.nextDouble();
+						break;
+					case 6:
+						line[ j ] = new int[] { random.nextInt( 1000000 ), random.nextInt( 1000 ) }; // A file reference
+						break;
+					default:
+						line[ j ] = new StringBuilder( "clob " ).append( random.nextDouble() ).append( "\n\"" ); // A CLOB
+				}
+		}
+		return result;
+	}
+
+	static private void verify( Object[][] data )
+	{
+		byte[] expected = runJSONWriter( data );
+		byte[] actual = runFastJSONWriter( data );
+		if( !Arrays.equals( expected, actual ) )
+			throw new AssertionError( "Output differs" );
+	}
+
+	static private void run( String name, Object[][] data )
+	{
+		for( int i = 0; i < WARMUP; i++ )
+		{
+			runJSONWriter( data );
+			runFastJSONWriter( data );
+		}
+
+		long jsonWriter = 0;
+		long fastJSONWriter = 0;
+		for( int i = 0; i < RUNS; i++ )
+		{
+			long start = System.nanoTime();
+			runJSONWriter( data );
+			jsonWriter += System.nanoTime() - start;
+			start = System.nanoTime();
+			runFastJSONWriter( data );
+			fastJSONWriter += System.nanoTime() - start;
+		}
+
+		System.out.println( name + ": JSONWriter " + jsonWriter / RUNS / 1000000 + " ms, FastJSONWriter " + fastJSONWriter / RUNS / 1000000 + " ms" );
+	}
+
+	static private byte[] runJSONWriter( Object[][] data )
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		JSONWriter writer = new JSONWriter( out );
+		try
+		{
+			for( Object[] line : data )
+			{
+				JSONArray array = new JSONArray();
+				for( Object value : line )
+					if( value instanceof StringBuilder )
+						array.add( new StringReader( value.toString() ) );
+					else if( value instanceof int[] )
+						array.add( new JSONObject( "index", ( (int[])value )[ 0 ], "length", ( (int[])value )[ 1 ] ) );
+					else if( value instanceof java.util.Date )
+						array.add( value.toString() );
+					else
+						array.add( value );
+				writer.write( array );
+				writer.getWriter().write( '\n' );
+			}
+		}
+		catch( IOException e )
+		{
+			throw new AssertionError( e );
+		}
+		writer.close();
+		return out.toByteArray();
+	}
+
+	static private byte[] runFastJSONWriter( Object[][] data )
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		FastJSONWriter writer = new FastJSONWriter( out, UTF8 );
+		for( Object[] line : data )
+		{
+			writer.startArray();
+			for( Object value : line )
+				if( value == null )
+					writer.writeNull();
+				else if( value instanceof StringBuilder )
+					writer.writeValue( new StringReader( value.toString() ) );
+				else if( value instanceof int[] )
+				{
+					writer.startObject();
+					writer.writeName( "index" );
+					writer.writeValue( ( (int[])value )[ 0 ] );
+					writer.writeName( "length" );
+					writer.writeValue( ( (int[])value )[ 1 ] );
+					writer.endObject();
+				}
+				else if( value instanceof Integer || value instanceof Long )
+					writer.writeValue( ( (Number)value ).longValue() );
+				else if( value instanceof Timestamp )
+					writer.writeValue( (Timestamp)value );
+				else if( value instanceof java.sql.Date )
+					writer.writeValue( (java.sql.Date)value );
+				else if( value instanceof Time )
+					writer.writeValue( (Time)value );
+				else if( value instanceof String )
+					writer.writeValue( (String)value );
+				else
+					writer.writeLiteral( value.toString() );
+			writer.endArray();
+			writer.newline();
+		}
+		writer.close();
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,105 @@
+/*--
+ * Copyright 2016 René M. de Bloois
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package solidbase.util;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+import solidstack.io.FileResource;
+
+public class MappedFiles
+{
+	static private final Charset UTF8 = Charset.forName( "UTF-8" );
+
+	static private File write( byte[] bytes ) throws IOException
+	{
+		File file = File.createTempFile( "mapped", ".txt" );
+		file.deleteOnExit();
+		try( OutputStream out = new FileOutputStream( file ) )
+		{
+			out.write( bytes );
+		}
+		return file;
+	}
+
+	@Test
+	public void testReader() throws IOException
+	{
+		String text = "René €uro 😀 ünïcödé\r\nline 2";
+		File file = write( ( "\uFEFF" + text ).getBytes( UTF8 ) );
+
+		// Small windows split the multi-byte characters
+		for( int windowSize = 1; windowSize <= 8; windowSize++ )
+		{
+			StringBuilder result = new StringBuilder();
+			try( MappedFileReader reader = new MappedFileReader( new MappedFileInputStream( new FileResource( file ), windowSize ), UTF8 ) )
+			{
+				for( int ch = reader.read(); ch >= 0; ch = reader.read() )
+					result.append( (char)ch );
+			}
+			assertEquals( result.toString(), text );
+		}
+
+		char[] buffer = new char[ 10000 ];
+		try( MappedFileReader reader = new MappedFileReader( new FileResource( file ), UTF8 ) )
+		{
+			int count = reader.read( buffer, 0, buffer.length );
+			assertEquals( new String( buffer, 0, count ), text );
+			assertEquals( reader.read( buffer, 0, buffer.length ), -1 );
+		}
+	}
+
+	@Test
+	public void testInputStream() throws IOException
+	{
+		byte[] bytes = new byte[ 1000 ];
+		for( int i = 0; i < bytes.length; i++ )
+			bytes[ i ] = (byte)i;
+		File file = write( bytes );
+
+		MappedFileInputStream in = new MappedFileInputStream( new FileResource( file ), 64 );
+		try
+		{
+			assertEquals( in.read(), 0 );
+			byte[] result = new byte[ 1000 ];
+			result[ 0 ] = 0;
+			int pos = 1;
+			for( int count = in.read( result, pos, 100 ); count > 0; count = in.read( result, pos, 100 ) )
+				pos += count;
+			assertEquals( pos, 1000 );
+			assertEquals( in.getPosition(), 1000 );
+			assert Arrays.equals( result, bytes );
+			assertEquals( in.read(), -1 );
+		}
+		finally
+		{
+			in.close();
+		}
+
+		in = new MappedFileInputStream( new FileResource( write( new byte[ 0 ] ) ) );
+		assertEquals( in.read(), -1 );
+		in.close();
+	}
+}